@@ -0,0 +1,28 @@
+/*
+ * Copyright 2023 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.batch;
+
+/**
+ * <p>
+ * Functional interface implemented to process each record of a stream batch, used with {@link StreamBatchProcessor}.
+ * </p>
+ * The handler should throw an exception when the record could not be processed, the record is then reported as failed.
+ *
+ * @param <R> type of the records of the batch
+ */
+@FunctionalInterface
+public interface RecordHandler<R> {
+
+    void process(R record) throws Exception;
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2023 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.batch;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+
+/**
+ * Describes the records of an event source for {@link StreamBatchProcessor}: how to checkpoint them and which of them
+ * must be processed in order.
+ *
+ * @param <R> type of the records of the event source
+ */
+public interface RecordSource<R> {
+
+    /**
+     * Records of Kinesis Data Streams, processed in order per partition key.
+     */
+    RecordSource<KinesisEvent.KinesisEventRecord> KINESIS = new RecordSource<KinesisEvent.KinesisEventRecord>() {
+        @Override
+        public String sequenceNumber(KinesisEvent.KinesisEventRecord record) {
+            return record.getKinesis().getSequenceNumber();
+        }
+
+        @Override
+        public String orderingKey(KinesisEvent.KinesisEventRecord record) {
+            return record.getKinesis().getPartitionKey();
+        }
+    };
+
+    /**
+     * Records of DynamoDB Streams, processed in order per item.
+     */
+    RecordSource<DynamodbEvent.DynamodbStreamRecord> DYNAMODB_STREAMS = new RecordSource<DynamodbEvent.DynamodbStreamRecord>() {
+        @Override
+        public String sequenceNumber(DynamodbEvent.DynamodbStreamRecord record) {
+            return record.getDynamodb().getSequenceNumber();
+        }
+
+        @Override
+        public String orderingKey(DynamodbEvent.DynamodbStreamRecord record) {
+            Map<String, ?> keys = record.getDynamodb().getKeys();
+            return keys != null ? new TreeMap<>(keys).toString() : null;
+        }
+    };
+
+    /**
+     * @return the sequence number of the record, reported to the event source mapping when the record failed
+     */
+    String sequenceNumber(R record);
+
+    /**
+     * @return the key of the records that must be processed one after the other, in order,
+     * or null when the record can be processed independently of the others
+     */
+    String orderingKey(R record);
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2023 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.lambda.powertools.core.internal.ConcurrentLanes;
+
+/**
+ * A class of helper functions to process the records of Kinesis Data Streams and DynamoDB Streams batches, and report
+ * the failed ones with a {@link StreamsEventResponse}. The event source mapping must enable
+ * {@code ReportBatchItemFailures}.
+ *
+ * <p>When a record fails, the event source mapping checkpoints before the lowest failed sequence number and retries
+ * the batch from there. Records following a failed one are then not processed, as they will be retried anyway.</p>
+ *
+ * <p>With a <code>maxConcurrency</code> greater than 1, records are processed concurrently across ordering keys
+ * (partition keys for Kinesis, items for DynamoDB), and in order for the same key. A record may then have been processed
+ * before a record with a lower sequence number fails, and be processed again on retry: the handler should be idempotent.
+ * </p>
+ */
+public final class StreamBatchProcessor {
+    private static final Logger LOG = LoggerFactory.getLogger(StreamBatchProcessor.class);
+    public static final int DEFAULT_MAX_CONCURRENCY = 32;
+
+    private static Executor executor;
+
+    private StreamBatchProcessor() {
+    }
+
+    /**
+     * Provides ability to set the {@link Executor} used to process records concurrently.
+     * By default, a virtual thread per record is used on Java 21+, and a fork-join pool otherwise.
+     *
+     * @param executor {@link Executor} to be used by utility
+     */
+    public static void overrideExecutor(Executor executor) {
+        StreamBatchProcessor.executor = executor;
+    }
+
+    /**
+     * Process the records of the Kinesis batch one after the other, and stop at the first failure.
+     *
+     * @param event   event received from Kinesis
+     * @param handler handler called for each record
+     * @return {@link StreamsEventResponse} with the failed sequence number, to be returned by the function.
+     */
+    public static StreamsEventResponse processKinesisEvent(final KinesisEvent event,
+                                                           final RecordHandler<KinesisEvent.KinesisEventRecord> handler) {
+        return processKinesisEvent(event, handler, 1);
+    }
+
+    /**
+     * Process the records of the Kinesis batch concurrently across partition keys, and in order for the same key.
+     *
+     * @param event          event received from Kinesis
+     * @param handler        handler called for each record
+     * @param maxConcurrency maximum number of records processed at the same time
+     * @return {@link StreamsEventResponse} with the lowest failed sequence number, to be returned by the function.
+     */
+    public static StreamsEventResponse processKinesisEvent(final KinesisEvent event,
+                                                           final RecordHandler<KinesisEvent.KinesisEventRecord> handler,
+                                                           final int maxConcurrency) {
+        return process(event.getRecords(), RecordSource.KINESIS, handler, maxConcurrency);
+    }
+
+    /**
+     * Process the records of the DynamoDB Streams batch one after the other, and stop at the first failure.
+     *
+     * @param event   event received from DynamoDB Streams
+     * @param handler handler called for each record
+     * @return {@link StreamsEventResponse} with the failed sequence number, to be returned by the function.
+     */
+    public static StreamsEventResponse processDynamoDbEvent(final DynamodbEvent event,
+                                                            final RecordHandler<DynamodbEvent.DynamodbStreamRecord> handler) {
+        return processDynamoDbEvent(event, handler, 1);
+    }
+
+    /**
+     * Process the records of the DynamoDB Streams batch concurrently across items, and in order for the same item.
+     *
+     * @param event          event received from DynamoDB Streams
+     * @param handler        handler called for each record
+     * @param maxConcurrency maximum number of records processed at the same time
+     * @return {@link StreamsEventResponse} with the lowest failed sequence number, to be returned by the function.
+     */
+    public static StreamsEventResponse processDynamoDbEvent(final DynamodbEvent event,
+                                                            final RecordHandler<DynamodbEvent.DynamodbStreamRecord> handler,
+                                                            final int maxConcurrency) {
+        return process(event.getRecords(), RecordSource.DYNAMODB_STREAMS, handler, maxConcurrency);
+    }
+
+    /**
+     * Process the records of a batch from any event source.
+     *
+     * @param records        records of the batch, in the order of the stream
+     * @param source         how to checkpoint and order the records
+     * @param handler        handler called for each record
+     * @param maxConcurrency maximum number of records processed at the same time, 1 to process them one after the other
+     * @return {@link StreamsEventResponse} with the lowest failed sequence number, to be returned by the function.
+     */
+    public static <R> StreamsEventResponse process(final List<R> records,
+                                                   final RecordSource<R> source,
+                                                   final RecordHandler<R> handler,
+                                                   final int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be greater than 0, got " + maxConcurrency);
+        }
+
+        Checkpoint checkpoint = new Checkpoint();
+
+        if (maxConcurrency == 1 || records.size() <= 1) {
+            // one record at a time, in the calling thread
+            for (R record : records) {
+                if (!process(record, source, handler, checkpoint)) {
+                    break;
+                }
+            }
+        } else {
+            // one lane per ordering key, one lane per record without ordering key
+            List<List<R>> lanes = ConcurrentLanes.lanes(records, source::orderingKey);
+
+            ConcurrentLanes.process(lanes, lane -> {
+                for (R record : lane) {
+                    if (checkpoint.isAfterFailure(source.sequenceNumber(record))
+                            || !process(record, source, handler, checkpoint)) {
+                        break;
+                    }
+                }
+            }, executor(), maxConcurrency);
+        }
+
+        return checkpoint.response();
+    }
+
+    private static <R> boolean process(final R record,
+                                       final RecordSource<R> source,
+                                       final RecordHandler<R> handler,
+                                       final Checkpoint checkpoint) {
+        try {
+            handler.process(record);
+            return true;
+        } catch (Exception e) {
+            String sequenceNumber = source.sequenceNumber(record);
+            LOG.error("Encountered issue processing record: {}", sequenceNumber, e);
+            checkpoint.failed(sequenceNumber);
+            return false;
+        }
+    }
+
+    private static Executor executor() {
+        return executor != null ? executor : ConcurrentLanes.defaultExecutor();
+    }
+
+    /**
+     * Lowest failed sequence number of the batch.
+     */
+    private static final class Checkpoint {
+        private String lowestFailed;
+
+        synchronized void failed(String sequenceNumber) {
+            if (lowestFailed == null || compare(sequenceNumber, lowestFailed) < 0) {
+                lowestFailed = sequenceNumber;
+            }
+        }
+
+        synchronized boolean isAfterFailure(String sequenceNumber) {
+            return lowestFailed != null && compare(sequenceNumber, lowestFailed) > 0;
+        }
+
+        synchronized StreamsEventResponse response() {
+            List<StreamsEventResponse.BatchItemFailure> failures = new ArrayList<>();
+            if (lowestFailed != null) {
+                failures.add(new StreamsEventResponse.BatchItemFailure(lowestFailed));
+            }
+            return new StreamsEventResponse(failures);
+        }
+
+        /**
+         * Sequence numbers are decimal numbers, too long for a long: the longer one is the greater.
+         */
+        private static int compare(String sequenceNumber, String other) {
+            if (sequenceNumber.length() != other.length()) {
+                return Integer.compare(sequenceNumber.length(), other.length());
+            }
+            return sequenceNumber.compareTo(other);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2023 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.KinesisEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class StreamBatchProcessorTest {
+
+    @BeforeEach
+    void setUp() {
+        StreamBatchProcessor.overrideExecutor(null);
+    }
+
+    @Test
+    void shouldReturnNoFailureWhenAllRecordsSucceed() {
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+        StreamsEventResponse response = StreamBatchProcessor.processKinesisEvent(kinesisEvent("a:1", "b:2", "a:3"),
+                record -> processed.add(record.getKinesis().getSequenceNumber()));
+
+        assertThat(response.getBatchItemFailures()).isEmpty();
+        assertThat(processed).containsExactly("1", "2", "3");
+    }
+
+    @Test
+    void shouldStopAtFirstFailureWhenProcessingSequentially() {
+        List<String> processed = new ArrayList<>();
+
+        StreamsEventResponse response = StreamBatchProcessor.processKinesisEvent(kinesisEvent("a:1", "b:2", "a:3"), record -> {
+            processed.add(record.getKinesis().getSequenceNumber());
+            if ("2".equals(record.getKinesis().getSequenceNumber())) {
+                throw new IllegalStateException("Failed processing");
+            }
+        });
+
+        assertThat(response.getBatchItemFailures())
+                .extracting(StreamsEventResponse.BatchItemFailure::getItemIdentifier)
+                .containsExactly("2");
+        assertThat(processed).containsExactly("1", "2");
+    }
+
+    @Test
+    void shouldProcessPartitionKeysConcurrentlyAndInOrder() {
+        Map<String, List<String>> processedByKey = new ConcurrentHashMap<>();
+        CountDownLatch inFlight = new CountDownLatch(3);
+
+        StreamsEventResponse response = StreamBatchProcessor.processKinesisEvent(kinesisEvent("a:1", "b:2", "c:3", "a:4", "b:5", "c:6"), record -> {
+            String key = record.getKinesis().getPartitionKey();
+            if (inFlight.getCount() > 0 && !processedByKey.containsKey(key)) {
+                // the first record of each key only completes once the three keys are processed at the same time
+                inFlight.countDown();
+                assertThat(inFlight.await(5, TimeUnit.SECONDS)).isTrue();
+            }
+            processedByKey.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(record.getKinesis().getSequenceNumber());
+        }, 3);
+
+        assertThat(response.getBatchItemFailures()).isEmpty();
+        assertThat(processedByKey)
+                .containsEntry("a", Arrays.asList("1", "4"))
+                .containsEntry("b", Arrays.asList("2", "5"))
+                .containsEntry("c", Arrays.asList("3", "6"));
+    }
+
+    @Test
+    void shouldReportLowestFailedSequenceNumberWhenProcessingConcurrently() {
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+        StreamsEventResponse response = StreamBatchProcessor.processKinesisEvent(kinesisEvent("a:10", "b:9", "a:11", "b:12"), record -> {
+            String sequenceNumber = record.getKinesis().getSequenceNumber();
+            processed.add(sequenceNumber);
+            if ("10".equals(sequenceNumber) || "9".equals(sequenceNumber)) {
+                throw new IllegalStateException("Failed processing");
+            }
+        }, 4);
+
+        assertThat(response.getBatchItemFailures())
+                .extracting(StreamsEventResponse.BatchItemFailure::getItemIdentifier)
+                .containsExactly("9");
+        assertThat(processed)
+                .containsExactlyInAnyOrder("10", "9");
+    }
+
+    @Test
+    void shouldProcessDynamoDbRecordsInOrderPerItem() {
+        Map<String, List<String>> processedByItem = new ConcurrentHashMap<>();
+
+        StreamsEventResponse response = StreamBatchProcessor.processDynamoDbEvent(dynamodbEvent("a:100", "b:101", "a:102"), record -> {
+            String id = record.getDynamodb().getKeys().get("id").getS();
+            processedByItem.computeIfAbsent(id, k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(record.getDynamodb().getSequenceNumber());
+            if ("b".equals(id)) {
+                throw new IllegalStateException("Failed processing");
+            }
+        }, 2);
+
+        assertThat(response.getBatchItemFailures())
+                .extracting(StreamsEventResponse.BatchItemFailure::getItemIdentifier)
+                .containsExactly("101");
+        assertThat(processedByItem.get("a")).containsExactly("100", "102");
+    }
+
+    @Test
+    void shouldCompareSequenceNumbersOfDifferentLengths() {
+        StreamsEventResponse response = StreamBatchProcessor.processKinesisEvent(kinesisEvent("a:99", "b:100"), record -> {
+            throw new IllegalStateException("Failed processing");
+        }, 2);
+
+        assertThat(response.getBatchItemFailures())
+                .extracting(StreamsEventResponse.BatchItemFailure::getItemIdentifier)
+                .containsExactly("99");
+    }
+
+    @Test
+    void shouldFailWithInvalidConcurrency() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> StreamBatchProcessor.processKinesisEvent(kinesisEvent("a:1"), record -> {
+                }, 0));
+    }
+
+    /**
+     * @param records records as "partitionKey:sequenceNumber"
+     */
+    private static KinesisEvent kinesisEvent(String... records) {
+        KinesisEvent event = new KinesisEvent();
+        event.setRecords(Arrays.stream(records).map(keyAndSequence -> {
+            String[] parts = keyAndSequence.split(":");
+            KinesisEvent.Record kinesis = new KinesisEvent.Record();
+            kinesis.setPartitionKey(parts[0]);
+            kinesis.setSequenceNumber(parts[1]);
+            KinesisEvent.KinesisEventRecord record = new KinesisEvent.KinesisEventRecord();
+            record.setKinesis(kinesis);
+            return record;
+        }).collect(Collectors.toList()));
+        return event;
+    }
+
+    /**
+     * @param records records as "itemId:sequenceNumber"
+     */
+    private static DynamodbEvent dynamodbEvent(String... records) {
+        DynamodbEvent event = new DynamodbEvent();
+        event.setRecords(Arrays.stream(records).map(idAndSequence -> {
+            String[] parts = idAndSequence.split(":");
+            StreamRecord streamRecord = new StreamRecord();
+            streamRecord.setKeys(Collections.singletonMap("id", new AttributeValue().withS(parts[0])));
+            streamRecord.setSequenceNumber(parts[1]);
+            DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+            record.setDynamodb(streamRecord);
+            return record;
+        }).collect(Collectors.toList()));
+        return event;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.time.Instant;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the DynamoDB requests of the idempotency hot path (conditional put of the in progress record,
+ * update with the response), without sending them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DynamoDBRequestBenchmark {
+
+    @Param({"false", "true"})
+    public boolean payloadValidation;
+
+    private DynamoDBRecordMapper mapper;
+    private DataRecord inProgress;
+    private DataRecord completed;
+
+    @Setup
+    public void setup() {
+        mapper = new DynamoDBRecordMapper("id", "idempotency#benchmark", null, "expiration", "in_progress_expiration",
+                "status", "data", "validation", "data_encoding", "data_ref", null, 0, null, 0);
+        long expiry = Instant.now().plusSeconds(3600).getEpochSecond();
+        inProgress = new DataRecord("benchmark#e7b3f4d0c6a1", DataRecord.Status.INPROGRESS, expiry, null, "hash",
+                OptionalLong.of(expiry * 1000));
+        completed = new DataRecord("benchmark#e7b3f4d0c6a1", DataRecord.Status.COMPLETED, expiry,
+                "{\"status\":\"ok\"}", "hash");
+    }
+
+    @Benchmark
+    public PutItemRequest putItemRequest() {
+        return PutItemRequest.builder()
+                .tableName("idempotency")
+                .item(mapper.getPutItem(inProgress, payloadValidation))
+                .conditionExpression(DynamoDBRecordMapper.PUT_CONDITION_EXPRESSION)
+                .expressionAttributeNames(mapper.getPutExpressionAttributeNames())
+                .expressionAttributeValues(mapper.getPutExpressionAttributeValues(Instant.now()))
+                .build();
+    }
+
+    @Benchmark
+    public UpdateItemRequest updateItemRequest() {
+        return mapper.getUpdateItemRequest("idempotency", completed, payloadValidation);
+    }
+}
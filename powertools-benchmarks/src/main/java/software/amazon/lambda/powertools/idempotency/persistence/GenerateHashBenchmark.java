@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
+import software.amazon.lambda.powertools.utilities.JsonConfig;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare {@link BasePersistenceStore#generateHash(JsonNode)} with the previous implementation
+ * (digest lookup on each call, <code>JsonNode.toString()</code> and <code>BigInteger</code> formatting).
+ * Run with <code>-prof gc</code> to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerateHashBenchmark {
+
+    @Param({"1", "16", "256"})
+    public int payloadSizeKb;
+
+    @Param({"MD5", "SHA-256"})
+    public String hashFunction;
+
+    private JsonNode payload;
+    private BasePersistenceStore store;
+
+    @Setup
+    public void setup() {
+        ObjectNode node = JsonConfig.get().getObjectMapper().createObjectNode();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+        for (int i = 0; i < payloadSizeKb * 1024 / 110; i++) {
+            node.put("field" + i, value.toString());
+        }
+        payload = node;
+
+        store = new NoOpPersistenceStore();
+        store.configure(IdempotencyConfig.builder().withHashFunction(hashFunction).build(), "benchmark");
+    }
+
+    @Benchmark
+    public String generateHash() {
+        return store.generateHash(payload);
+    }
+
+    @Benchmark
+    public String legacyGenerateHash() throws NoSuchAlgorithmException {
+        MessageDigest hashAlgorithm = MessageDigest.getInstance(hashFunction);
+        byte[] digest = hashAlgorithm.digest(payload.toString().getBytes(StandardCharsets.UTF_8));
+        return String.format("%032x", new BigInteger(1, digest));
+    }
+}
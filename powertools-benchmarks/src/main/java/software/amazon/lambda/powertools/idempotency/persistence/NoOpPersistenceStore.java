@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
+
+import java.time.Instant;
+
+/**
+ * Persistence store doing nothing, to benchmark the work done by {@link BasePersistenceStore} only.
+ */
+class NoOpPersistenceStore extends BasePersistenceStore {
+
+    @Override
+    public DataRecord getRecord(String idempotencyKey) throws IdempotencyItemNotFoundException {
+        throw new IdempotencyItemNotFoundException(idempotencyKey);
+    }
+
+    @Override
+    public void putRecord(DataRecord record, Instant now) {
+        // nothing to do
+    }
+
+    @Override
+    public void updateRecord(DataRecord record) {
+        // nothing to do
+    }
+
+    @Override
+    public void deleteRecord(String idempotencyKey) {
+        // nothing to do
+    }
+}
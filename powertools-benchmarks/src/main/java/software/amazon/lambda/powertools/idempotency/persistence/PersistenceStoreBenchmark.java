@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
+import software.amazon.lambda.powertools.utilities.JsonConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Idempotency hot path of the persistence layer (hashing, conditional put, update, lookup) without network latency,
+ * using the {@link InMemoryPersistenceStore} and the {@link FilePersistenceStore}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceStoreBenchmark {
+
+    @Param({"memory", "file"})
+    public String store;
+
+    private final AtomicLong counter = new AtomicLong();
+    private BasePersistenceStore persistenceStore;
+    private Path directory;
+    private JsonNode duplicate;
+
+    @Setup
+    public void setup() throws IOException {
+        if ("file".equals(store)) {
+            directory = Files.createTempDirectory("idempotency");
+            persistenceStore = FilePersistenceStore.builder().withPath(directory.resolve("idempotency.log")).build();
+        } else {
+            persistenceStore = InMemoryPersistenceStore.builder().build();
+        }
+        persistenceStore.configure(IdempotencyConfig.builder().withEventKeyJMESPath("id").build(), "benchmark");
+
+        duplicate = payload(-1);
+        persistenceStore.saveInProgress(duplicate, Instant.now(), OptionalInt.empty());
+        persistenceStore.saveSuccess(duplicate, "{\"status\":\"ok\"}", Instant.now());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (persistenceStore instanceof FilePersistenceStore) {
+            ((FilePersistenceStore) persistenceStore).close();
+            Files.deleteIfExists(directory.resolve("idempotency.log"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Benchmark
+    public void firstCall() {
+        JsonNode data = payload(counter.incrementAndGet());
+        Instant now = Instant.now();
+        persistenceStore.saveInProgress(data, now, OptionalInt.of(30000));
+        persistenceStore.saveSuccess(data, "{\"status\":\"ok\"}", now);
+    }
+
+    @Benchmark
+    public DataRecord duplicateCall() {
+        Instant now = Instant.now();
+        try {
+            persistenceStore.saveInProgress(duplicate, now, OptionalInt.of(30000));
+            throw new IllegalStateException("Duplicate call should not be saved");
+        } catch (IdempotencyItemAlreadyExistsException e) {
+            return persistenceStore.getRecord(duplicate, now);
+        }
+    }
+
+    private static JsonNode payload(long id) {
+        ObjectNode node = JsonConfig.get().getObjectMapper().createObjectNode();
+        node.put("id", id);
+        node.put("message", "Lorem ipsum dolor sit amet, consectetur adipiscing elit");
+        return node;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.sqs;
+
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sqs.SqsClient;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
+
+/**
+ * Compare the deserialization of the message bodies by {@link SqsUtils#batchProcessor(SQSEvent, Class, SqsTypedMessageHandler)}
+ * with the handlers parsing the body themselves, with a new <code>ObjectMapper</code> per message or a shared one.
+ * Run with <code>-prof gc</code> to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqsBodyDeserializationBenchmark {
+
+    private static final ObjectMapper SHARED_MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    @Param({"10", "100"})
+    public int batchSize;
+
+    private SQSEvent event;
+
+    @Setup
+    public void setup() {
+        // all messages succeed, the client is never called
+        SqsUtils.overrideSqsClient(SqsClient.builder().region(Region.US_EAST_1).build());
+
+        List<SQSMessage> messages = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            SQSMessage message = new SQSMessage();
+            message.setMessageId(String.valueOf(i));
+            message.setBody("{\"id\":" + i + ",\"customer\":\"customer-" + i + "\",\"amount\":" + (i * 10.5)
+                    + ",\"items\":[\"item-1\",\"item-2\",\"item-3\"]}");
+            messages.add(message);
+        }
+        event = new SQSEvent();
+        event.setRecords(messages);
+    }
+
+    @Benchmark
+    public List<Integer> newObjectMapperPerMessage() {
+        return SqsUtils.batchProcessor(event, (SQSMessage message) -> {
+            ObjectMapper mapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+            return read(mapper, message).id;
+        });
+    }
+
+    @Benchmark
+    public List<Integer> sharedObjectMapper() {
+        return SqsUtils.batchProcessor(event, (SQSMessage message) -> read(SHARED_MAPPER, message).id);
+    }
+
+    @Benchmark
+    public List<Integer> typedBatchProcessor() {
+        return SqsUtils.batchProcessor(event, Order.class, (order, message) -> order.id);
+    }
+
+    @Benchmark
+    public List<Integer> typedParallelBatchProcessor() {
+        return SqsUtils.parallelBatchProcessor(event, Order.class, (order, message) -> order.id);
+    }
+
+    private static Order read(ObjectMapper mapper, SQSMessage message) {
+        try {
+            return mapper.readValue(message.getBody(), Order.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static class Order {
+        public int id;
+        public String customer;
+        public double amount;
+        public List<String> items;
+    }
+}
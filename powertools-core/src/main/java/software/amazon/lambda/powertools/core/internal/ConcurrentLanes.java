@@ -0,0 +1,174 @@
+/*
+ * Copyright 2023 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.core.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Processes the items of a batch concurrently, grouped in lanes: the items of a lane are processed one after the other,
+ * in order, and different lanes are processed concurrently. Used by the batch utilities, where a lane is a message
+ * group or an ordering key.<br/>
+ * Also bounds the number of asynchronous requests the utilities send at the same time (see {@link #dispatch}).
+ */
+public final class ConcurrentLanes {
+    public static final int DEFAULT_POOL_SIZE = 32;
+
+    private static volatile Executor defaultExecutor;
+
+    private ConcurrentLanes() {
+    }
+
+    /**
+     * Group the items in lanes: one lane per key, in the order of their first item,
+     * and one lane per item without key.
+     *
+     * @param items items of the batch, in order
+     * @param key   key of an item, null when the item can be processed in any order
+     * @return the lanes, each with its items in order
+     */
+    public static <T> List<List<T>> lanes(final List<T> items, final Function<T, String> key) {
+        List<List<T>> lanes = new ArrayList<>(items.size());
+        Map<String, List<T>> lanesByKey = new LinkedHashMap<>();
+        for (T item : items) {
+            String itemKey = key.apply(item);
+            if (itemKey == null) {
+                lanes.add(Collections.singletonList(item));
+            } else {
+                List<T> lane = lanesByKey.get(itemKey);
+                if (lane == null) {
+                    lane = new ArrayList<>();
+                    lanesByKey.put(itemKey, lane);
+                    lanes.add(lane);
+                }
+                lane.add(item);
+            }
+        }
+        return lanes;
+    }
+
+    /**
+     * Process the lanes on the executor, and wait for all of them. Each worker takes the next lane until there is none
+     * left, so that no more than <code>maxConcurrency</code> lanes are in flight.
+     *
+     * @param lanes          lanes to process
+     * @param laneProcessor  processes the items of a lane
+     * @param executor       executor running the workers
+     * @param maxConcurrency maximum number of lanes processed at the same time
+     */
+    public static <T> void process(final List<List<T>> lanes,
+                                   final Consumer<List<T>> laneProcessor,
+                                   final Executor executor,
+                                   final int maxConcurrency) {
+        AtomicInteger nextLane = new AtomicInteger();
+
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[Math.min(maxConcurrency, lanes.size())];
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = CompletableFuture.runAsync(() -> {
+                for (int lane = nextLane.getAndIncrement(); lane < lanes.size(); lane = nextLane.getAndIncrement()) {
+                    laneProcessor.accept(lanes.get(lane));
+                }
+            }, executor);
+        }
+
+        join(CompletableFuture.allOf(workers));
+    }
+
+    /**
+     * Start the request of each item, with at most <code>maxInFlight</code> requests not completed at the same time,
+     * and wait for all of them.
+     *
+     * @param items       items to send
+     * @param request     starts the request of an item, on its own client or executor
+     * @param maxInFlight maximum number of requests in flight
+     * @return the results of the requests, in the order of the items
+     */
+    public static <T, R> List<R> dispatch(final List<T> items,
+                                          final Function<T, CompletableFuture<R>> request,
+                                          final int maxInFlight) {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<CompletableFuture<R>> requests = new ArrayList<>(items.size());
+        for (T item : items) {
+            inFlight.acquireUninterruptibly();
+            CompletableFuture<R> started;
+            try {
+                started = request.apply(item);
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+            started.whenComplete((result, e) -> inFlight.release());
+            requests.add(started);
+        }
+
+        List<R> results = new ArrayList<>(requests.size());
+        for (CompletableFuture<R> started : requests) {
+            results.add(join(started));
+        }
+        return results;
+    }
+
+    /**
+     * Wait for the future, and throw the exception it failed with rather than a {@link CompletionException}.
+     */
+    public static <T> T join(final CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Executor used when none is provided, shared by the batch utilities: a virtual thread per task on Java 21+,
+     * or a fork-join pool of {@value #DEFAULT_POOL_SIZE} threads otherwise.
+     */
+    public static Executor defaultExecutor() {
+        if (defaultExecutor == null) {
+            synchronized (ConcurrentLanes.class) {
+                if (defaultExecutor == null) {
+                    defaultExecutor = createDefaultExecutor();
+                }
+            }
+        }
+        return defaultExecutor;
+    }
+
+    private static Executor createDefaultExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // virtual threads not available before Java 21
+            return new ForkJoinPool(DEFAULT_POOL_SIZE);
+        }
+    }
+}
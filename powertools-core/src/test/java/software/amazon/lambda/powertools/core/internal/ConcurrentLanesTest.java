@@ -0,0 +1,97 @@
+package software.amazon.lambda.powertools.core.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class ConcurrentLanesTest {
+
+    @Test
+    void lanes_shouldGroupItemsByKeyInOrder() {
+        List<String> items = Arrays.asList("a1", "b1", "-1", "a2", "-2", "b2");
+
+        List<List<String>> lanes = ConcurrentLanes.lanes(items, item -> item.startsWith("-") ? null : item.substring(0, 1));
+
+        assertThat(lanes).containsExactly(
+                Arrays.asList("a1", "a2"),
+                Arrays.asList("b1", "b2"),
+                Arrays.asList("-1"),
+                Arrays.asList("-2"));
+    }
+
+    @Test
+    void process_shouldProcessEveryLaneWithAtMostMaxConcurrency() {
+        List<List<Integer>> lanes = ConcurrentLanes.lanes(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), item -> null);
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        Map<Thread, Boolean> workers = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            ConcurrentLanes.process(lanes, lane -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                workers.put(Thread.currentThread(), true);
+                processed.addAll(lane);
+                inFlight.decrementAndGet();
+            }, executor, 2);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(processed).containsExactlyInAnyOrder(1, 2, 3, 4, 5, 6, 7, 8);
+        assertThat(workers).hasSizeLessThanOrEqualTo(2);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void process_shouldRethrowFailureOfALane() {
+        List<List<Integer>> lanes = ConcurrentLanes.lanes(Arrays.asList(1, 2, 3), item -> null);
+
+        assertThatIllegalStateException().isThrownBy(() -> ConcurrentLanes.process(lanes, lane -> {
+            throw new IllegalStateException("Failed");
+        }, ConcurrentLanes.defaultExecutor(), 3));
+    }
+
+    @Test
+    void dispatch_shouldReturnResultsInOrderWithAtMostMaxInFlight() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Integer> results;
+        try {
+            results = ConcurrentLanes.dispatch(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), item -> CompletableFuture.supplyAsync(() -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                inFlight.decrementAndGet();
+                return item * 10;
+            }, executor), 2);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(results).containsExactly(10, 20, 30, 40, 50, 60, 70, 80);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void dispatch_shouldRethrowFailureOfARequest() {
+        assertThatIllegalStateException().isThrownBy(() -> ConcurrentLanes.dispatch(Arrays.asList(1, 2, 3), item -> CompletableFuture.supplyAsync(() -> {
+            if (item == 2) {
+                throw new IllegalStateException("Failed");
+            }
+            return item;
+        }, ConcurrentLanes.defaultExecutor()), 2));
+    }
+}
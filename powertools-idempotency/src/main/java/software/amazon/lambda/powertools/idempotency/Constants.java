@@ -15,4 +15,8 @@ package software.amazon.lambda.powertools.idempotency;
 
 public class Constants {
     public static final String IDEMPOTENCY_DISABLED_ENV = "POWERTOOLS_IDEMPOTENCY_DISABLED";
+    public static final String REDIS_HOST_ENV = "REDIS_HOST";
+    public static final String REDIS_PORT_ENV = "REDIS_PORT";
+    public static final String REDIS_USER_ENV = "REDIS_USER";
+    public static final String REDIS_SECRET_ENV = "REDIS_SECRET";
 }
@@ -14,7 +14,11 @@
 package software.amazon.lambda.powertools.idempotency;
 
 import com.amazonaws.services.lambda.runtime.Context;
+import software.amazon.lambda.powertools.idempotency.hash.HashFunction;
+import software.amazon.lambda.powertools.idempotency.hash.Murmur3HashFunction;
+import software.amazon.lambda.powertools.idempotency.internal.cache.ConcurrentExpiringCache;
 import software.amazon.lambda.powertools.idempotency.internal.cache.LRUCache;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener;
 
 import java.time.Duration;
 
@@ -24,21 +28,47 @@ import java.time.Duration;
 public class IdempotencyConfig {
     private final int localCacheMaxItems;
     private final boolean useLocalCache;
+    private final LocalCacheType localCacheType;
+    private final long inProgressCacheTtlInMillis;
     private final long expirationInSeconds;
     private final String eventKeyJMESPath;
     private final String payloadValidationJMESPath;
     private final boolean throwOnNoIdempotencyKey;
     private final String hashFunction;
+    private final String previousHashFunction;
+    private final boolean canonicalHashing;
+    private final boolean previousCanonicalHashing;
+    private final boolean backgroundSaveSuccess;
+    private final int backgroundSaveSuccessMaxPending;
+    private final int backgroundSaveSuccessMaxAttempts;
+    private final IdempotencyListener listener;
+    private final ResponseCopyStrategy responseCopyStrategy;
+    private final boolean coalesceInFlightCalls;
     private Context lambdaContext;
 
-    private IdempotencyConfig(String eventKeyJMESPath, String payloadValidationJMESPath, boolean throwOnNoIdempotencyKey, boolean useLocalCache, int localCacheMaxItems, long expirationInSeconds, String hashFunction) {
+    private IdempotencyConfig(String eventKeyJMESPath, String payloadValidationJMESPath, boolean throwOnNoIdempotencyKey, boolean useLocalCache, LocalCacheType localCacheType, long inProgressCacheTtlInMillis, int localCacheMaxItems, long expirationInSeconds, String hashFunction, String previousHashFunction, boolean canonicalHashing, boolean previousCanonicalHashing, boolean backgroundSaveSuccess, int backgroundSaveSuccessMaxPending, int backgroundSaveSuccessMaxAttempts, IdempotencyListener listener, ResponseCopyStrategy responseCopyStrategy, boolean coalesceInFlightCalls) {
         this.localCacheMaxItems = localCacheMaxItems;
         this.useLocalCache = useLocalCache;
+        this.localCacheType = localCacheType;
+        this.inProgressCacheTtlInMillis = inProgressCacheTtlInMillis;
         this.expirationInSeconds = expirationInSeconds;
         this.eventKeyJMESPath = eventKeyJMESPath;
         this.payloadValidationJMESPath = payloadValidationJMESPath;
         this.throwOnNoIdempotencyKey = throwOnNoIdempotencyKey;
         this.hashFunction = hashFunction;
+        this.previousHashFunction = previousHashFunction;
+        this.canonicalHashing = canonicalHashing;
+        this.previousCanonicalHashing = previousCanonicalHashing;
+        this.backgroundSaveSuccess = backgroundSaveSuccess;
+        this.backgroundSaveSuccessMaxPending = backgroundSaveSuccessMaxPending;
+        this.backgroundSaveSuccessMaxAttempts = backgroundSaveSuccessMaxAttempts;
+        this.listener = listener;
+        this.responseCopyStrategy = responseCopyStrategy;
+        this.coalesceInFlightCalls = coalesceInFlightCalls;
+    }
+
+    public long getInProgressCacheTtlInMillis() {
+        return inProgressCacheTtlInMillis;
     }
 
     public int getLocalCacheMaxItems() {
@@ -49,6 +79,10 @@ public class IdempotencyConfig {
         return useLocalCache;
     }
 
+    public LocalCacheType getLocalCacheType() {
+        return localCacheType;
+    }
+
     public long getExpirationInSeconds() {
         return expirationInSeconds;
     }
@@ -69,6 +103,42 @@ public class IdempotencyConfig {
         return hashFunction;
     }
 
+    public String getPreviousHashFunction() {
+        return previousHashFunction;
+    }
+
+    public boolean useCanonicalHashing() {
+        return canonicalHashing;
+    }
+
+    public boolean usePreviousCanonicalHashing() {
+        return previousCanonicalHashing;
+    }
+
+    public boolean useBackgroundSaveSuccess() {
+        return backgroundSaveSuccess;
+    }
+
+    public int getBackgroundSaveSuccessMaxPending() {
+        return backgroundSaveSuccessMaxPending;
+    }
+
+    public IdempotencyListener getListener() {
+        return listener;
+    }
+
+    public ResponseCopyStrategy getResponseCopyStrategy() {
+        return responseCopyStrategy;
+    }
+
+    public boolean useInFlightCoalescing() {
+        return coalesceInFlightCalls;
+    }
+
+    public int getBackgroundSaveSuccessMaxAttempts() {
+        return backgroundSaveSuccessMaxAttempts;
+    }
+
 
     /**
      * Create a builder that can be used to configure and create a {@link IdempotencyConfig}.
@@ -91,11 +161,22 @@ public class IdempotencyConfig {
 
         private int localCacheMaxItems = 256;
         private boolean useLocalCache = false;
+        private LocalCacheType localCacheType = LocalCacheType.CONCURRENT;
+        private long inProgressCacheTtlInMillis = 0;
         private long expirationInSeconds = 60 * 60; // 1 hour
         private String eventKeyJMESPath;
         private String payloadValidationJMESPath;
         private boolean throwOnNoIdempotencyKey = false;
         private String hashFunction = "MD5";
+        private String previousHashFunction;
+        private boolean canonicalHashing = false;
+        private Boolean previousCanonicalHashing;
+        private boolean backgroundSaveSuccess = false;
+        private int backgroundSaveSuccessMaxPending = 64;
+        private int backgroundSaveSuccessMaxAttempts = 3;
+        private IdempotencyListener listener = IdempotencyListener.NONE;
+        private ResponseCopyStrategy responseCopyStrategy;
+        private boolean coalesceInFlightCalls = false;
 
         /**
          * Initialize and return an instance of {@link IdempotencyConfig}.<br>
@@ -108,16 +189,32 @@ public class IdempotencyConfig {
          * Idempotency.config().withConfig(config).configure();
          * </pre>
          * @return an instance of {@link IdempotencyConfig}.
+         * @throws IllegalArgumentException if the {@link LocalCacheType#LRU} local cache, which is not thread-safe,
+         *                                  is used together with {@link #withBackgroundSaveSuccess(boolean)}
          */
         public IdempotencyConfig build() {
+            if (useLocalCache && localCacheType == LocalCacheType.LRU && backgroundSaveSuccess) {
+                throw new IllegalArgumentException("The LRU local cache is not thread-safe and cannot be used when saving responses in the background, use LocalCacheType.CONCURRENT");
+            }
             return new IdempotencyConfig(
                     eventKeyJMESPath,
                     payloadValidationJMESPath,
                     throwOnNoIdempotencyKey,
                     useLocalCache,
+                    localCacheType,
+                    inProgressCacheTtlInMillis,
                     localCacheMaxItems,
                     expirationInSeconds,
-                    hashFunction);
+                    hashFunction,
+                    previousHashFunction,
+                    canonicalHashing,
+                    previousCanonicalHashing != null ? previousCanonicalHashing : canonicalHashing,
+                    backgroundSaveSuccess,
+                    backgroundSaveSuccessMaxPending,
+                    backgroundSaveSuccessMaxAttempts,
+                    listener,
+                    responseCopyStrategy,
+                    coalesceInFlightCalls);
         }
 
         /**
@@ -157,7 +254,7 @@ public class IdempotencyConfig {
          * Whether to locally cache idempotency results, by default false
          *
          * @param useLocalCache boolean that indicate if a local cache must be used in addition to the persistence store.
-         *                      If set to true, will use the {@link LRUCache}
+         *                      If set to true, will use the cache selected with {@link #withLocalCacheType(LocalCacheType)}
          * @return the instance of the builder (to chain operations)
          */
         public Builder withUseLocalCache(boolean useLocalCache) {
@@ -165,6 +262,32 @@ public class IdempotencyConfig {
             return this;
         }
 
+        /**
+         * Implementation of the local cache, by default {@link LocalCacheType#CONCURRENT}
+         *
+         * @param localCacheType type of local cache to use when {@link #withUseLocalCache(boolean)} is enabled
+         * @return the instance of the builder (to chain operations)
+         */
+        public Builder withLocalCacheType(LocalCacheType localCacheType) {
+            this.localCacheType = localCacheType;
+            return this;
+        }
+
+        /**
+         * Also cache the records of executions in progress, for a short time (optional), by default they are not cached.<br/>
+         * During a burst of calls with the same payload, the calls received while the execution is in progress are then rejected
+         * with an {@link software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyAlreadyInProgressException}
+         * without reaching the persistence store. A record is never cached beyond its in progress expiry.<br/>
+         * Only used when {@link #withUseLocalCache(boolean)} is enabled.
+         *
+         * @param inProgressCacheTtl how long a record in progress is cached, typically a few seconds
+         * @return the instance of the builder (to chain operations)
+         */
+        public Builder withInProgressCacheTtl(Duration inProgressCacheTtl) {
+            this.inProgressCacheTtlInMillis = inProgressCacheTtl.toMillis();
+            return this;
+        }
+
         /**
          * The number of seconds to wait before a record is expired
          *
@@ -213,7 +336,9 @@ public class IdempotencyConfig {
         /**
          * Function to use for calculating hashes, by default MD5.
          *
-         * @param hashFunction Can be any algorithm supported by {@link java.security.MessageDigest}, most commons are<ul>
+         * @param hashFunction Can be {@value Murmur3HashFunction#NAME} (non-cryptographic, faster),
+         *                     the name of a {@link HashFunction} registered with the {@link java.util.ServiceLoader},
+         *                     or any algorithm supported by {@link java.security.MessageDigest}, most commons are<ul>
          *                     <li>MD5</li>
          *                     <li>SHA-1</li>
          *                     <li>SHA-256</li></ul>
@@ -223,5 +348,156 @@ public class IdempotencyConfig {
             this.hashFunction = hashFunction;
             return this;
         }
+
+        /**
+         * Function previously used for calculating hashes, when migrating to another {@link #withHashFunction(String)}.<br/>
+         * Records not found with the new hash are looked up with the previous one, so that events already processed
+         * are not processed again. This costs an additional read on the persistence store for new events:
+         * remove it once the records created with the previous function are expired (see {@link #withExpiration(Duration)}).<br/>
+         * The previous records are assumed to be hashed with the current {@link #withCanonicalHashing(boolean)} setting,
+         * use {@link #withPreviousHashFunction(String, boolean)} when changing it.
+         *
+         * @param previousHashFunction name of the function previously used, same values as {@link #withHashFunction(String)}
+         * @return the instance of the builder (to chain operations)
+         */
+        public Builder withPreviousHashFunction(String previousHashFunction) {
+            this.previousHashFunction = previousHashFunction;
+            this.previousCanonicalHashing = null;
+            return this;
+        }
+
+        /**
+         * Function and serialization previously used for calculating hashes, when migrating to another
+         * {@link #withHashFunction(String)} or enabling {@link #withCanonicalHashing(boolean)}.
+         * See {@link #withPreviousHashFunction(String)}.
+         *
+         * @param previousHashFunction     name of the function previously used, same values as {@link #withHashFunction(String)}
+         * @param previousCanonicalHashing whether the canonical representation was previously hashed
+         * @return the instance of the builder (to chain operations)
+         */
+        public Builder withPreviousHashFunction(String previousHashFunction, boolean previousCanonicalHashing) {
+            this.previousHashFunction = previousHashFunction;
+            this.previousCanonicalHashing = previousCanonicalHashing;
+            return this;
+        }
+
+        /**
+         * Whether to hash a canonical JSON representation of the idempotency key and payload, by default false.<br/>
+         * Fields are sorted by name and numbers are normalized (<code>12</code>, <code>12.0</code> and <code>1.2E1</code> are equal),
+         * so that hashes do not depend on the order of the fields or the format of the numbers.<br/>
+         * Changing this setting changes the hashes, and thus the idempotency keys of existing records:
+         * use {@link #withPreviousHashFunction(String, boolean)} to keep finding them.
+         *
+         * @param canonicalHashing boolean to indicate if the canonical representation must be hashed
+         * @return the instance of the builder (to chain operations)
+         */
+        public Builder withCanonicalHashing(boolean canonicalHashing) {
+            this.canonicalHashing = canonicalHashing;
+            return this;
+        }
+
+        /**
+         * Whether to save the response of the function in the background, by default false.<br/>
+         * The function returns without waiting for the record to be updated in the persistence store.
+         * Pending updates are retried on failure, and completed at the beginning of the next invocation
+         * (the execution environment is frozen between invocations).<br/>
+         * Until its update completes, the record stays in progress: concurrent calls with the same payload get an
+         * {@link software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyAlreadyInProgressException},
+         * and if the update never completes, the function is executed again once the in progress record expires.<br/>
+         * The local cache is then updated from the background thread: it cannot be the {@link LocalCacheType#LRU} one.
+         *
+         * @param backgroundSaveSuccess boolean to indicate if the response must be saved in the background
+         * @return the instance of the builder (to chain operations)
+         */
+        public Builder withBackgroundSaveSuccess(boolean backgroundSaveSuccess) {
+            this.backgroundSaveSuccess = backgroundSaveSuccess;
+            return this;
+        }
+
+        /**
+         * Maximum number of responses waiting to be saved in the background, by default 64.<br/>
+         * When reached, responses are saved before the function returns.
+         *
+         * @param backgroundSaveSuccessMaxPending maximum number of pending updates
+         * @return the instance of the builder (to chain operations)
+         */
+        public Builder withBackgroundSaveSuccessMaxPending(int backgroundSaveSuccessMaxPending) {
+            this.backgroundSaveSuccessMaxPending = backgroundSaveSuccessMaxPending;
+            return this;
+        }
+
+        /**
+         * Maximum number of attempts to save a response in the background, by default 3.<br/>
+         * Attempts are separated by an exponential backoff (starting at 50 ms).
+         *
+         * @param backgroundSaveSuccessMaxAttempts maximum number of attempts
+         * @return the instance of the builder (to chain operations)
+         */
+        public Builder withBackgroundSaveSuccessMaxAttempts(int backgroundSaveSuccessMaxAttempts) {
+            this.backgroundSaveSuccessMaxAttempts = backgroundSaveSuccessMaxAttempts;
+            return this;
+        }
+
+        /**
+         * Listener notified of the duration of each phase (persistence store calls and function), of the outcome
+         * of each invocation, of the local cache lookups and of the retries (optional).<br/>
+         * Use the {@link software.amazon.lambda.powertools.idempotency.metrics.EmfIdempotencyListener}
+         * to publish them as CloudWatch metrics.
+         *
+         * @param listener the listener
+         * @return the instance of the builder (to chain operations)
+         */
+        public Builder withListener(IdempotencyListener listener) {
+            this.listener = listener != null ? listener : IdempotencyListener.NONE;
+            return this;
+        }
+
+        /**
+         * Keep the responses of the function as objects in the local cache (in addition to their JSON representation),
+         * to replay them without deserializing them (optional, requires the local cache).<br/>
+         * Responses are copied with the given strategy when they are cached and each time they are replayed:
+         * use {@link ResponseCopyStrategy#IMMUTABLE} for immutable types, or provide a copy function.
+         *
+         * @param responseCopyStrategy strategy used to copy the responses
+         * @return the instance of the builder (to chain operations)
+         */
+        public Builder withResponseCopyStrategy(ResponseCopyStrategy responseCopyStrategy) {
+            this.responseCopyStrategy = responseCopyStrategy;
+            return this;
+        }
+
+        /**
+         * Whether concurrent calls with the same idempotency key, in the same execution environment, must wait for
+         * the first one instead of reaching the persistence store, by default false.<br/>
+         * Only the first call saves and reads the record: the other ones get its response, or its exception,
+         * instead of an {@link software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyAlreadyInProgressException}.
+         * Useful for multi-threaded handlers.<br/>
+         * Without a {@link #withResponseCopyStrategy(ResponseCopyStrategy) response copy strategy}, all the calls get
+         * the same response instance: it must not be modified by the callers.
+         * Calls whose validated payload differs from the first one get an
+         * {@link software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyValidationException}, and calls
+         * still waiting when their invocation is about to time out get an
+         * {@link software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyAlreadyInProgressException}.
+         * Requires the Lambda context (see {@link software.amazon.lambda.powertools.idempotency.Idempotency#registerLambdaContext}),
+         * calls are not coalesced without it.
+         *
+         * @param coalesceInFlightCalls boolean to indicate if concurrent calls with the same key must be coalesced
+         * @return the instance of the builder (to chain operations)
+         */
+        public Builder withInFlightCoalescing(boolean coalesceInFlightCalls) {
+            this.coalesceInFlightCalls = coalesceInFlightCalls;
+            return this;
+        }
+    }
+
+    /**
+     * Implementation of the local cache:
+     * <ul>
+     *  <li>CONCURRENT: thread-safe {@link ConcurrentExpiringCache}, removing expired records as new ones are added (default)</li>
+     *  <li>LRU: simple {@link LRUCache}, not thread-safe</li>
+     * </ul>
+     */
+    public enum LocalCacheType {
+        CONCURRENT, LRU
     }
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency;
+
+/**
+ * Strategy used to keep the responses of the function in the local cache as objects, and replay them without
+ * deserializing them (see {@link IdempotencyConfig.Builder#withResponseCopyStrategy(ResponseCopyStrategy)}).<br/>
+ * The response is copied when it is cached, and each time it is replayed, so that the callers can modify
+ * the responses they get without altering the cached one.
+ */
+@FunctionalInterface
+public interface ResponseCopyStrategy {
+
+    /**
+     * Share the same instance of the response: only for immutable types
+     */
+    ResponseCopyStrategy IMMUTABLE = response -> response;
+
+    /**
+     * @param response the response of the function, or the one kept in the cache (never null)
+     * @return a copy of the response, of the same type
+     */
+    Object copy(Object response);
+
+    /**
+     * Copy a response with the strategy, if any. Null and <code>String</code> responses are never copied:
+     * they are immutable, and string responses are replayed as they were saved.
+     *
+     * @param strategy the strategy, null if responses are not kept as objects
+     * @param response the response of the function, or the one kept in the cache
+     * @return the copy, or the response itself when it is not copied
+     */
+    static Object copyOf(ResponseCopyStrategy strategy, Object response) {
+        if (strategy == null || response == null || response instanceof String) {
+            return response;
+        }
+        return strategy.copy(response);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.hash;
+
+/**
+ * Function used to hash the idempotency key and the payload to validate.<br/>
+ * Implementations are looked up by their {@link #getName() name} (see {@link HashFunctions#forName(String)}):
+ * the ones provided by Powertools, then the ones registered through the {@link java.util.ServiceLoader} mechanism
+ * (<code>META-INF/services/software.amazon.lambda.powertools.idempotency.hash.HashFunction</code>),
+ * and finally any algorithm supported by {@link java.security.MessageDigest}.
+ */
+public interface HashFunction {
+
+    /**
+     * @return name of the function, as passed to
+     * {@link software.amazon.lambda.powertools.idempotency.IdempotencyConfig.Builder#withHashFunction(String)}
+     */
+    String getName();
+
+    /**
+     * Create a new {@link Hasher}. Hashers are not thread-safe, but can be reused once {@link Hasher#digest()} is called.
+     *
+     * @return a new instance of {@link Hasher}
+     */
+    Hasher newHasher();
+}
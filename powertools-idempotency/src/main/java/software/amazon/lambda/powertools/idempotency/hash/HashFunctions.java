@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.hash;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.ServiceLoader;
+
+/**
+ * Lookup of {@link HashFunction}s by name
+ */
+public final class HashFunctions {
+
+    private HashFunctions() {
+        // utility class
+    }
+
+    /**
+     * Find the {@link HashFunction} with the given name (case-insensitive), in this order:
+     * <ol>
+     *     <li>functions provided by Powertools: {@value Murmur3HashFunction#NAME}</li>
+     *     <li>functions registered with the {@link ServiceLoader} mechanism</li>
+     *     <li>algorithms supported by {@link java.security.MessageDigest} (MD5, SHA-1, SHA-256, ...)</li>
+     * </ol>
+     *
+     * @param name name of the hash function
+     * @return the {@link HashFunction}
+     * @throws IllegalArgumentException if no function exists with this name
+     */
+    public static HashFunction forName(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Hash function name cannot be null");
+        }
+        if (Murmur3HashFunction.NAME.equalsIgnoreCase(name)) {
+            return new Murmur3HashFunction();
+        }
+        for (HashFunction hashFunction : ServiceLoader.load(HashFunction.class)) {
+            if (hashFunction.getName().equalsIgnoreCase(name)) {
+                return hashFunction;
+            }
+        }
+        try {
+            return new MessageDigestHashFunction(name);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unknown hash function: " + name, e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.hash;
+
+/**
+ * Stateful computation of a hash, created by {@link HashFunction#newHasher()}. Not thread-safe.
+ */
+public interface Hasher {
+
+    /**
+     * Add a byte to the data being hashed
+     *
+     * @param input byte to add
+     */
+    void update(byte input);
+
+    /**
+     * Add bytes to the data being hashed
+     *
+     * @param input  array of bytes
+     * @param offset offset to start from in the array
+     * @param length number of bytes to use, starting at offset
+     */
+    void update(byte[] input, int offset, int length);
+
+    /**
+     * Complete the computation and reset the hasher, so that it can be reused.
+     *
+     * @return the hash of the data added since the creation or the last call to digest
+     */
+    byte[] digest();
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.hash;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * {@link HashFunction} backed by a {@link MessageDigest} algorithm (MD5, SHA-1, SHA-256, ...)
+ */
+public class MessageDigestHashFunction implements HashFunction {
+
+    private final String algorithm;
+
+    /**
+     * @param algorithm name of the {@link MessageDigest} algorithm
+     * @throws NoSuchAlgorithmException if the algorithm is not supported
+     */
+    public MessageDigestHashFunction(String algorithm) throws NoSuchAlgorithmException {
+        // fail fast when the algorithm does not exist
+        MessageDigest.getInstance(algorithm);
+        this.algorithm = algorithm;
+    }
+
+    @Override
+    public String getName() {
+        return algorithm;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        try {
+            return new MessageDigestHasher(MessageDigest.getInstance(algorithm));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unable to instantiate " + algorithm + " digest", e);
+        }
+    }
+
+    private static final class MessageDigestHasher implements Hasher {
+        private final MessageDigest digest;
+
+        private MessageDigestHasher(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void update(byte input) {
+            digest.update(input);
+        }
+
+        @Override
+        public void update(byte[] input, int offset, int length) {
+            digest.update(input, offset, length);
+        }
+
+        @Override
+        public byte[] digest() {
+            return digest.digest();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.hash;
+
+/**
+ * 128-bit variant of <a href="https://github.com/aappleby/smhasher/wiki/MurmurHash3">MurmurHash3</a> for x64
+ * (seed 0), non-cryptographic but much faster than MD5 on large payloads.<br/>
+ * The 16 bytes of the hash are <code>h1</code> followed by <code>h2</code>, both little-endian,
+ * same as the reference implementation and Guava's <code>Hashing.murmur3_128()</code>.
+ */
+public class Murmur3HashFunction implements HashFunction {
+
+    public static final String NAME = "MURMUR3_128";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return new Murmur3Hasher();
+    }
+
+    static final class Murmur3Hasher implements Hasher {
+        private static final int BLOCK_SIZE = 16;
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private final byte[] buffer = new byte[BLOCK_SIZE];
+        private int buffered;
+        private long length;
+        private long h1;
+        private long h2;
+
+        @Override
+        public void update(byte input) {
+            buffer[buffered++] = input;
+            if (buffered == BLOCK_SIZE) {
+                processBlock(buffer, 0);
+                buffered = 0;
+            }
+            length++;
+        }
+
+        @Override
+        public void update(byte[] input, int offset, int length) {
+            this.length += length;
+            int end = offset + length;
+            int position = offset;
+            if (buffered > 0) {
+                int toCopy = Math.min(BLOCK_SIZE - buffered, length);
+                System.arraycopy(input, position, buffer, buffered, toCopy);
+                buffered += toCopy;
+                position += toCopy;
+                if (buffered < BLOCK_SIZE) {
+                    return;
+                }
+                processBlock(buffer, 0);
+                buffered = 0;
+            }
+            while (end - position >= BLOCK_SIZE) {
+                processBlock(input, position);
+                position += BLOCK_SIZE;
+            }
+            buffered = end - position;
+            System.arraycopy(input, position, buffer, 0, buffered);
+        }
+
+        @Override
+        public byte[] digest() {
+            processTail();
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+
+            byte[] result = new byte[BLOCK_SIZE];
+            putLongLittleEndian(result, 0, h1);
+            putLongLittleEndian(result, 8, h2);
+            reset();
+            return result;
+        }
+
+        private void reset() {
+            buffered = 0;
+            length = 0;
+            h1 = 0;
+            h2 = 0;
+        }
+
+        private void processBlock(byte[] block, int offset) {
+            long k1 = getLongLittleEndian(block, offset, 8);
+            long k2 = getLongLittleEndian(block, offset + 8, 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private void processTail() {
+            if (buffered > 8) {
+                h2 ^= mixK2(getLongLittleEndian(buffer, 8, buffered - 8));
+            }
+            if (buffered > 0) {
+                h1 ^= mixK1(getLongLittleEndian(buffer, 0, Math.min(buffered, 8)));
+            }
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            return k1 * C2;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            return k2 * C1;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+        private static long getLongLittleEndian(byte[] bytes, int offset, int count) {
+            long value = 0;
+            for (int i = count - 1; i >= 0; i--) {
+                value = (value << 8) | (bytes[offset + i] & 0xFFL);
+            }
+            return value;
+        }
+
+        private static void putLongLittleEndian(byte[] bytes, int offset, long value) {
+            for (int i = 0; i < 8; i++) {
+                bytes[offset + i] = (byte) (value >>> (8 * i));
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.internal;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes a {@link JsonNode} in a canonical form, so that equivalent documents produce the same output:
+ * <ul>
+ *     <li>fields of objects are sorted by name</li>
+ *     <li>numbers are written in plain notation without trailing zeros (<code>12</code>, <code>12.0</code>
+ *     and <code>1.2E1</code> are all written <code>12</code>)</li>
+ *     <li>no whitespace</li>
+ * </ul>
+ */
+public final class CanonicalJsonWriter {
+
+    private CanonicalJsonWriter() {
+        // utility class
+    }
+
+    /**
+     * Write the node in canonical form
+     *
+     * @param node      the node to write
+     * @param generator the generator to write into
+     * @throws IOException if the generator fails to write
+     */
+    public static void write(JsonNode node, JsonGenerator generator) throws IOException {
+        switch (node.getNodeType()) {
+            case OBJECT:
+                List<String> fieldNames = new ArrayList<>(node.size());
+                Iterator<String> iterator = node.fieldNames();
+                while (iterator.hasNext()) {
+                    fieldNames.add(iterator.next());
+                }
+                Collections.sort(fieldNames);
+                generator.writeStartObject();
+                for (String fieldName : fieldNames) {
+                    generator.writeFieldName(fieldName);
+                    write(node.get(fieldName), generator);
+                }
+                generator.writeEndObject();
+                break;
+            case ARRAY:
+                generator.writeStartArray();
+                for (JsonNode element : node) {
+                    write(element, generator);
+                }
+                generator.writeEndArray();
+                break;
+            case NUMBER:
+                generator.writeNumber(canonicalNumber(node));
+                break;
+            case BOOLEAN:
+                generator.writeBoolean(node.booleanValue());
+                break;
+            case NULL:
+            case MISSING:
+                generator.writeNull();
+                break;
+            default:
+                // textual, binary (base64) and POJO nodes
+                generator.writeString(node.asText());
+        }
+    }
+
+    /**
+     * @param number a numeric node
+     * @return the plain representation of the number, without trailing zeros
+     */
+    public static String canonicalNumber(JsonNode number) {
+        if (number.isIntegralNumber()) {
+            return number.bigIntegerValue().toString();
+        }
+        if ((number.isDouble() || number.isFloat()) && !Double.isFinite(number.doubleValue())) {
+            return Double.toString(number.doubleValue());
+        }
+        BigDecimal decimal = number.decimalValue();
+        if (decimal.signum() == 0) {
+            return "0";
+        }
+        decimal = decimal.stripTrailingZeros();
+        return decimal.scale() <= 0 ? decimal.toBigInteger().toString() : decimal.toPlainString();
+    }
+}
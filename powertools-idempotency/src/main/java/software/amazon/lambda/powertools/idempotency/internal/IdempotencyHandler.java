@@ -14,19 +14,39 @@
 package software.amazon.lambda.powertools.idempotency.internal;
 
 import com.amazonaws.services.lambda.runtime.Context;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.lambda.powertools.idempotency.Idempotency;
+import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
+import software.amazon.lambda.powertools.idempotency.ResponseCopyStrategy;
 import software.amazon.lambda.powertools.idempotency.exceptions.*;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener.Outcome;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener.Phase;
 import software.amazon.lambda.powertools.idempotency.persistence.BasePersistenceStore;
 import software.amazon.lambda.powertools.idempotency.persistence.DataRecord;
 import software.amazon.lambda.powertools.utilities.JsonConfig;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 import static software.amazon.lambda.powertools.idempotency.persistence.DataRecord.Status.EXPIRED;
 import static software.amazon.lambda.powertools.idempotency.persistence.DataRecord.Status.INPROGRESS;
@@ -38,18 +58,27 @@ import static software.amazon.lambda.powertools.idempotency.persistence.DataReco
 public class IdempotencyHandler {
     private static final Logger LOG = LoggerFactory.getLogger(IdempotencyHandler.class);
     private static final int MAX_RETRIES = 2;
+    // calls in progress in this execution environment, by idempotency key (see IdempotencyConfig#useInFlightCoalescing)
+    private static final ConcurrentMap<String, InFlightCall> IN_FLIGHT_CALLS = new ConcurrentHashMap<>();
 
     private final ProceedingJoinPoint pjp;
     private final JsonNode data;
     private final BasePersistenceStore persistenceStore;
     private final Context lambdaContext;
+    private final IdempotencyListener listener;
+    private final boolean coalesceInFlightCalls;
+    private final ResponseCopyStrategy responseCopyStrategy;
 
     public IdempotencyHandler(ProceedingJoinPoint pjp, String functionName, JsonNode payload, Context lambdaContext) {
         this.pjp = pjp;
         this.data = payload;
         this.lambdaContext = lambdaContext;
+        IdempotencyConfig config = Idempotency.getInstance().getConfig();
         persistenceStore = Idempotency.getInstance().getPersistenceStore();
-        persistenceStore.configure(Idempotency.getInstance().getConfig(), functionName);
+        persistenceStore.configure(config, functionName);
+        listener = config.getListener();
+        coalesceInFlightCalls = config.useInFlightCoalescing();
+        responseCopyStrategy = config.getResponseCopyStrategy();
     }
 
     /**
@@ -58,6 +87,95 @@ public class IdempotencyHandler {
      * @return function response
      */
     public Object handle() throws Throwable {
+        // complete the records still being saved in the background by previous invocations, before reading them
+        persistenceStore.drainBackgroundWrites(lambdaContext != null
+                ? OptionalInt.of(lambdaContext.getRemainingTimeInMillis())
+                : OptionalInt.empty());
+
+        if (!coalesceInFlightCalls || lambdaContext == null) {
+            // without the remaining time, a call can't know how long to wait for another one
+            return processIdempotencyWithRetries();
+        }
+        Optional<String> idempotencyKey = persistenceStore.getIdempotencyKey(data);
+        if (!idempotencyKey.isPresent()) {
+            return processIdempotencyWithRetries();
+        }
+        InFlightCall call = new InFlightCall(persistenceStore.getPayloadValidationHash(data));
+        InFlightCall firstCall = IN_FLIGHT_CALLS.putIfAbsent(idempotencyKey.get(), call);
+        if (firstCall == null) {
+            return processInFlightCall(idempotencyKey.get(), call);
+        }
+        if (firstCall.thread == Thread.currentThread()) {
+            // nested call with the same key: waiting for the first call would never return
+            return processIdempotencyWithRetries();
+        }
+        if (!Objects.equals(firstCall.payloadValidationHash, call.payloadValidationHash)) {
+            // same as the validation against the record saved by the first call
+            throw new IdempotencyValidationException("Payload does not match stored record for this event key");
+        }
+        return awaitInFlightCall(idempotencyKey.get(), firstCall);
+    }
+
+    /**
+     * Process the first of the concurrent calls with the same key, and share its response (or exception)
+     * with the other ones once it completes
+     */
+    private Object processInFlightCall(String idempotencyKey, InFlightCall call) throws Throwable {
+        Object response;
+        try {
+            response = processIdempotencyWithRetries();
+        } catch (Throwable t) {
+            IN_FLIGHT_CALLS.remove(idempotencyKey, call);
+            call.result.completeExceptionally(t);
+            throw t;
+        }
+        if (isAsync(((MethodSignature) pjp.getSignature()).getReturnType())) {
+            ((CompletionStage<?>) response).whenComplete((asyncResponse, t) -> {
+                IN_FLIGHT_CALLS.remove(idempotencyKey, call);
+                if (t != null) {
+                    call.result.completeExceptionally(unwrap(t));
+                } else {
+                    call.result.complete(asyncResponse);
+                }
+            });
+        } else {
+            IN_FLIGHT_CALLS.remove(idempotencyKey, call);
+            call.result.complete(response);
+        }
+        return response;
+    }
+
+    /**
+     * Wait for the first of the concurrent calls with the same key, and return its response (or throw its exception).
+     * A blocking call waits at most the remaining time of the invocation, and is then rejected as already in progress.
+     */
+    private Object awaitInFlightCall(String idempotencyKey, InFlightCall firstCall) throws Throwable {
+        if (isAsync(((MethodSignature) pjp.getSignature()).getReturnType())) {
+            listener.onOutcome(Outcome.COALESCED);
+            return firstCall.result.thenApply(this::copyResponse);
+        }
+        Object response;
+        try {
+            response = firstCall.result.get(lambdaContext.getRemainingTimeInMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            listener.onOutcome(Outcome.COALESCED);
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            listener.onOutcome(Outcome.IN_PROGRESS);
+            throw new IdempotencyAlreadyInProgressException("Execution already in progress with idempotency key: " + idempotencyKey);
+        }
+        listener.onOutcome(Outcome.COALESCED);
+        return copyResponse(response);
+    }
+
+    private Object copyResponse(Object response) {
+        return ResponseCopyStrategy.copyOf(responseCopyStrategy, response);
+    }
+
+    private Object processIdempotencyWithRetries() throws Throwable {
+        if (isAsync(((MethodSignature) pjp.getSignature()).getReturnType())) {
+            return processIdempotencyAsync(0);
+        }
         // IdempotencyInconsistentStateException can happen under rare but expected cases
         // when persistent state changes in the small time between put & get requests.
         // In most cases we can retry successfully on this exception.
@@ -68,6 +186,7 @@ public class IdempotencyHandler {
                 if (i == MAX_RETRIES) {
                     throw e;
                 }
+                listener.onRetry(i + 1);
             }
         }
     }
@@ -78,23 +197,74 @@ public class IdempotencyHandler {
      * @return function response
      */
     private Object processIdempotency() throws Throwable {
+        boolean alreadyExists = false;
+        long start = System.nanoTime();
         try {
             // We call saveInProgress first as an optimization for the most common case where no idempotent record
             // already exists. If it succeeds, there's no need to call getRecord.
             persistenceStore.saveInProgress(data, Instant.now(), getRemainingTimeInMillis());
         } catch (IdempotencyItemAlreadyExistsException iaee) {
-            DataRecord record = getIdempotencyRecord();
-            if (record != null) {
-                return handleForStatus(record);
-            }
+            alreadyExists = true;
         } catch (IdempotencyKeyException ike) {
             throw ike;
         } catch (Exception e) {
             throw new IdempotencyPersistenceLayerException("Failed to save in progress record to idempotency store. If you believe this is a Powertools for AWS Lambda (Java) bug, please open an issue.", e);
+        } finally {
+            listener.onPhase(Phase.SAVE_IN_PROGRESS, System.nanoTime() - start);
+        }
+
+        if (alreadyExists) {
+            DataRecord record = getIdempotencyRecord();
+            if (record != null) {
+                return handleForStatus(record);
+            }
         }
         return getFunctionResponse();
     }
 
+    /**
+     * Process a function returning a {@link CompletionStage} with idempotency, without blocking:
+     * the in progress record is saved, and the existing one retrieved if any, before calling the function,
+     * and the returned future completes with the function response (or fails with the same exceptions as
+     * {@link #processIdempotency()}).
+     *
+     * @param retry number of retries so far, after an {@link IdempotencyInconsistentStateException}
+     * @return function response
+     */
+    private CompletableFuture<Object> processIdempotencyAsync(int retry) {
+        long start = System.nanoTime();
+        return persistenceStore.saveInProgressAsync(data, Instant.now(), getRemainingTimeInMillis())
+                .handle((v, saveException) -> {
+                    listener.onPhase(Phase.SAVE_IN_PROGRESS, System.nanoTime() - start);
+                    if (saveException == null) {
+                        return getAsyncFunctionResponse();
+                    }
+                    Throwable cause = unwrap(saveException);
+                    if (cause instanceof IdempotencyItemAlreadyExistsException) {
+                        return getIdempotencyRecordAsync().thenCompose(record -> record != null
+                                ? CompletableFuture.completedFuture(handleForStatus(record))
+                                : getAsyncFunctionResponse());
+                    }
+                    if (cause instanceof IdempotencyKeyException) {
+                        return IdempotencyHandler.<Object>failed(cause);
+                    }
+                    return IdempotencyHandler.<Object>failed(persistenceLayerException("Failed to save in progress record to idempotency store. If you believe this is a Powertools for AWS Lambda (Java) bug, please open an issue.", cause));
+                })
+                .thenCompose(Function.identity())
+                .handle((response, throwable) -> {
+                    if (throwable == null) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    Throwable cause = unwrap(throwable);
+                    if (cause instanceof IdempotencyInconsistentStateException && retry < MAX_RETRIES) {
+                        listener.onRetry(retry + 1);
+                        return processIdempotencyAsync(retry + 1);
+                    }
+                    return IdempotencyHandler.<Object>failed(cause);
+                })
+                .thenCompose(Function.identity());
+    }
+
     /**
      * Tries to determine the remaining time available for the current lambda invocation.
      * Currently, it only works if the idempotent handler decorator is used or using {@link Idempotency#registerLambdaContext(Context)}
@@ -116,6 +286,7 @@ public class IdempotencyHandler {
      * @return the record if available, potentially null
      */
     private DataRecord getIdempotencyRecord() {
+        long start = System.nanoTime();
         try {
             return persistenceStore.getRecord(data, Instant.now());
         } catch (IdempotencyItemNotFoundException e) {
@@ -126,14 +297,43 @@ public class IdempotencyHandler {
             throw vke;
         } catch (Exception e) {
             throw new IdempotencyPersistenceLayerException("Failed to get record from idempotency store. If you believe this is a Powertools for AWS Lambda (Java) bug, please open an issue.", e);
+        } finally {
+            listener.onPhase(Phase.GET_RECORD, System.nanoTime() - start);
         }
     }
 
+    /**
+     * Retrieve the idempotency record from the persistence layer, without blocking (see {@link #getIdempotencyRecord()}).
+     *
+     * @return the record if available, potentially null
+     */
+    private CompletableFuture<DataRecord> getIdempotencyRecordAsync() {
+        long start = System.nanoTime();
+        return persistenceStore.getRecordAsync(data, Instant.now())
+                .handle((record, throwable) -> {
+                    listener.onPhase(Phase.GET_RECORD, System.nanoTime() - start);
+                    if (throwable == null) {
+                        return record;
+                    }
+                    Throwable cause = unwrap(throwable);
+                    if (cause instanceof IdempotencyItemNotFoundException) {
+                        // This code path will only be triggered if the record is removed between saveInProgress and getRecord
+                        LOG.debug("An existing idempotency record was deleted before we could fetch it");
+                        throw new IdempotencyInconsistentStateException("saveInProgress and getRecord return inconsistent results", (Exception) cause);
+                    }
+                    if (cause instanceof IdempotencyValidationException || cause instanceof IdempotencyKeyException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new CompletionException(persistenceLayerException("Failed to get record from idempotency store. If you believe this is a Powertools for AWS Lambda (Java) bug, please open an issue.", cause));
+                });
+    }
+
     /**
      * Take appropriate action based on data_record's status
      *
      * @param record DataRecord
-     * @return Function's response previously used for this idempotency key, if it has successfully executed already.
+     * @return Function's response previously used for this idempotency key, if it has successfully executed already
+     * (the value of its {@link CompletionStage}, for a function returning one).
      */
     private Object handleForStatus(DataRecord record) {
         // This code path will only be triggered if the record becomes expired between the saveInProgress call and here
@@ -146,43 +346,179 @@ public class IdempotencyHandler {
                     && record.getInProgressExpiryTimestamp().getAsLong() < Instant.now().toEpochMilli()) {
                 throw new IdempotencyInconsistentStateException("Item should have been expired in-progress because it already time-outed.");
             }
+            listener.onOutcome(Outcome.IN_PROGRESS);
             throw new IdempotencyAlreadyInProgressException("Execution already in progress with idempotency key: " + record.getIdempotencyKey());
         }
 
         Class<?> returnType = ((MethodSignature) pjp.getSignature()).getReturnType();
         try {
             LOG.debug("Response for key '{}' retrieved from idempotency store, skipping the function", record.getIdempotencyKey());
-            if (returnType.equals(String.class))
-                return record.getResponseData();
-            return JsonConfig.get().getObjectMapper().reader().readValue(record.getResponseData(), returnType);
+            Object response;
+            if (isAsync(returnType)) {
+                response = getAsyncResponse(record);
+            } else if (returnType.equals(String.class)) {
+                response = record.getResponseData();
+            } else {
+                response = persistenceStore.getCachedResponse(record, returnType);
+                if (response == null) {
+                    response = JsonConfig.get().getObjectMapper().reader().readValue(record.getResponseData(), returnType);
+                    persistenceStore.saveResponseToCache(record, response);
+                }
+            }
+            listener.onOutcome(Outcome.REPLAYED);
+            return response;
         } catch (Exception e) {
             throw new IdempotencyPersistenceLayerException("Unable to get function response as " + returnType.getSimpleName(), e);
         }
     }
 
+    /**
+     * Deserialize the response of a function returning a {@link CompletionStage}, using its type argument
+     */
+    private Object getAsyncResponse(DataRecord record) throws Exception {
+        Type genericReturnType = ((MethodSignature) pjp.getSignature()).getMethod().getGenericReturnType();
+        Type valueType = genericReturnType instanceof ParameterizedType
+                ? ((ParameterizedType) genericReturnType).getActualTypeArguments()[0]
+                : Object.class;
+        if (valueType.equals(String.class)) {
+            return record.getResponseData();
+        }
+        ObjectMapper objectMapper = JsonConfig.get().getObjectMapper();
+        JavaType javaType = objectMapper.getTypeFactory().constructType(valueType);
+        Object response = persistenceStore.getCachedResponse(record, javaType.getRawClass());
+        if (response == null) {
+            response = objectMapper.readerFor(javaType).readValue(record.getResponseData());
+            persistenceStore.saveResponseToCache(record, response);
+        }
+        return response;
+    }
+
+    /**
+     * @return true if the function returns a {@link CompletionStage} (or {@link CompletableFuture}),
+     * in which case the record is saved when the stage completes
+     */
+    private static boolean isAsync(Class<?> returnType) {
+        return returnType.equals(CompletableFuture.class) || returnType.equals(CompletionStage.class);
+    }
+
     private Object getFunctionResponse() throws Throwable {
         Object response;
+        long start = System.nanoTime();
         try {
             response = pjp.proceed(pjp.getArgs());
+            listener.onPhase(Phase.FUNCTION, System.nanoTime() - start);
         } catch (Throwable handlerException) {
-            // We need these nested blocks to preserve function's exception in case the persistence store operation
-            // also raises an exception
-            try {
-                persistenceStore.deleteRecord(data, handlerException);
-            } catch (IdempotencyKeyException ke) {
-                throw ke;
-            } catch (Exception e) {
-                throw new IdempotencyPersistenceLayerException("Failed to delete record from idempotency store. If you believe this is a Powertools for AWS Lambda (Java) bug, please open an issue.", e);
-            }
+            listener.onPhase(Phase.FUNCTION, System.nanoTime() - start);
+            deleteRecord(handlerException);
             throw handlerException;
         }
 
+        start = System.nanoTime();
         try {
             persistenceStore.saveSuccess(data, response, Instant.now());
         } catch (Exception e) {
             throw new IdempotencyPersistenceLayerException("Failed to update record state to success in idempotency store. If you believe this is a Powertools for AWS Lambda (Java) bug, please open an issue.", e);
+        } finally {
+            listener.onPhase(Phase.SAVE_SUCCESS, System.nanoTime() - start);
         }
+        listener.onOutcome(Outcome.EXECUTED);
         return response;
     }
 
+    /**
+     * Delete the record after the function failed
+     *
+     * @param handlerException exception thrown by the function
+     */
+    private void deleteRecord(Throwable handlerException) {
+        // We need these nested blocks to preserve function's exception in case the persistence store operation
+        // also raises an exception
+        long start = System.nanoTime();
+        try {
+            persistenceStore.deleteRecord(data, handlerException);
+        } catch (IdempotencyKeyException ke) {
+            throw ke;
+        } catch (Exception e) {
+            throw new IdempotencyPersistenceLayerException("Failed to delete record from idempotency store. If you believe this is a Powertools for AWS Lambda (Java) bug, please open an issue.", e);
+        } finally {
+            listener.onPhase(Phase.DELETE_RECORD, System.nanoTime() - start);
+        }
+        listener.onOutcome(Outcome.FAILED);
+    }
+
+    /**
+     * Chain the update of the record to the completion of a function returning a {@link CompletionStage},
+     * without blocking: the record is saved (or deleted if the stage fails) before the returned future completes.
+     * An exception thrown by the function fails the returned future, like a failed stage.
+     */
+    private CompletableFuture<Object> getAsyncFunctionResponse() {
+        CompletionStage<?> stage;
+        long start = System.nanoTime();
+        try {
+            stage = (CompletionStage<?>) pjp.proceed(pjp.getArgs());
+        } catch (Throwable handlerException) {
+            stage = failed(handlerException);
+        }
+        if (stage == null) {
+            return failed(new IdempotencyPersistenceLayerException("Function returned a null " + CompletionStage.class.getSimpleName() + ", unable to save its response in idempotency store", null));
+        }
+
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        stage.whenComplete((response, handlerException) -> {
+            long completed = System.nanoTime();
+            listener.onPhase(Phase.FUNCTION, completed - start);
+            if (handlerException != null) {
+                Throwable cause = unwrap(handlerException);
+                persistenceStore.deleteRecordAsync(data, cause).whenComplete((v, deleteException) -> {
+                    listener.onPhase(Phase.DELETE_RECORD, System.nanoTime() - completed);
+                    if (deleteException == null) {
+                        listener.onOutcome(Outcome.FAILED);
+                        result.completeExceptionally(cause);
+                    } else if (unwrap(deleteException) instanceof IdempotencyKeyException) {
+                        result.completeExceptionally(unwrap(deleteException));
+                    } else {
+                        result.completeExceptionally(persistenceLayerException("Failed to delete record from idempotency store. If you believe this is a Powertools for AWS Lambda (Java) bug, please open an issue.", unwrap(deleteException)));
+                    }
+                });
+            } else {
+                persistenceStore.saveSuccessAsync(data, response, Instant.now()).whenComplete((v, saveException) -> {
+                    listener.onPhase(Phase.SAVE_SUCCESS, System.nanoTime() - completed);
+                    if (saveException == null) {
+                        listener.onOutcome(Outcome.EXECUTED);
+                        result.complete(response);
+                    } else {
+                        result.completeExceptionally(persistenceLayerException("Failed to update record state to success in idempotency store. If you believe this is a Powertools for AWS Lambda (Java) bug, please open an issue.", unwrap(saveException)));
+                    }
+                });
+            }
+        });
+        return result;
+    }
+
+    private static Throwable persistenceLayerException(String msg, Throwable throwable) {
+        return throwable instanceof Exception ? new IdempotencyPersistenceLayerException(msg, (Exception) throwable) : throwable;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable throwable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    /**
+     * Call in progress for an idempotency key, waited by the concurrent calls with the same key
+     */
+    private static final class InFlightCall {
+        private final Thread thread = Thread.currentThread();
+        private final String payloadValidationHash;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private InFlightCall(String payloadValidationHash) {
+            this.payloadValidationHash = payloadValidationHash;
+        }
+    }
 }
@@ -22,10 +22,10 @@ import org.aspectj.lang.reflect.MethodSignature;
 import com.amazonaws.services.lambda.runtime.Context;
 import software.amazon.lambda.powertools.idempotency.Constants;
 import software.amazon.lambda.powertools.idempotency.Idempotency;
+import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
 import software.amazon.lambda.powertools.idempotency.IdempotencyKey;
 import software.amazon.lambda.powertools.idempotency.Idempotent;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyConfigurationException;
-import software.amazon.lambda.powertools.utilities.JsonConfig;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
@@ -38,6 +38,9 @@ import static software.amazon.lambda.powertools.core.internal.LambdaHandlerProce
  */
 @Aspect
 public class IdempotentAspect {
+    // depends on the configuration, rebuilt when it changes
+    private volatile PayloadExtractor payloadExtractor;
+
     @SuppressWarnings({"EmptyMethod"})
     @Pointcut("@annotation(idempotent)")
     public void callAt(Idempotent idempotent) {
@@ -81,10 +84,11 @@ public class IdempotentAspect {
      * @return the payload used for idempotency
      */
     private JsonNode getPayload(ProceedingJoinPoint pjp, Method method, boolean isHandler) {
+        PayloadExtractor extractor = getPayloadExtractor();
         JsonNode payload = null;
         // handleRequest or method with one parameter: get the first one
         if (isHandler || pjp.getArgs().length == 1) {
-            payload = JsonConfig.get().getObjectMapper().valueToTree(pjp.getArgs()[0]);
+            payload = extractor.extract(pjp.getArgs()[0]);
         } else {
             // Look for a parameter annotated with @IdempotencyKey
             Annotation[][] annotations = method.getParameterAnnotations();
@@ -92,11 +96,21 @@ public class IdempotentAspect {
                 Annotation[] annotationsRow = annotations[i];
                 for (int j = 0; j < annotationsRow.length && payload == null; j++) {
                     if (annotationsRow[j].annotationType().equals(IdempotencyKey.class)) {
-                        payload = JsonConfig.get().getObjectMapper().valueToTree(pjp.getArgs()[i]);
+                        payload = extractor.extract(pjp.getArgs()[i]);
                     }
                 }
             }
         }
         return payload;
     }
+
+    private PayloadExtractor getPayloadExtractor() {
+        IdempotencyConfig config = Idempotency.getInstance().getConfig();
+        PayloadExtractor extractor = payloadExtractor;
+        if (extractor == null || !extractor.isFor(config)) {
+            extractor = PayloadExtractor.of(config);
+            payloadExtractor = extractor;
+        }
+        return extractor;
+    }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.internal;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
+import software.amazon.lambda.powertools.utilities.JsonConfig;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Converts the argument of the annotated method into the {@link JsonNode} used for idempotency.<br/>
+ * When the idempotency key (and payload validation) JMESPath expressions are simple paths
+ * (eg. <code>requestContext.requestId</code> or <code>powertools_json(body).id</code>),
+ * the argument is streamed and only the fields reached by these paths are materialized,
+ * instead of building the tree of the whole argument. The expressions return the same result
+ * on this partial payload, so idempotency keys are unchanged.<br/>
+ * For other expressions, or when the whole payload is used as the key, the whole argument is converted.
+ */
+class PayloadExtractor {
+
+    private static final String IDENTIFIER = "[A-Za-z_][A-Za-z0-9_]*";
+    private static final Pattern PATH = Pattern.compile("(" + IDENTIFIER + "|powertools_json\\(" + IDENTIFIER + "\\))(\\.(?=.)|$)");
+    private static final Pattern JSON_FUNCTION = Pattern.compile("powertools_json\\((" + IDENTIFIER + ")\\)");
+
+    private final IdempotencyConfig config;
+    // null when the whole argument must be converted
+    private final PathNode root;
+
+    private PayloadExtractor(IdempotencyConfig config, PathNode root) {
+        this.config = config;
+        this.root = root;
+    }
+
+    /**
+     * @param config idempotency configuration, providing the JMESPath expressions
+     * @return an extractor for the expressions of this configuration
+     */
+    static PayloadExtractor of(IdempotencyConfig config) {
+        if (config == null || config.getEventKeyJMESPath() == null) {
+            return new PayloadExtractor(config, null);
+        }
+        PathNode root = new PathNode();
+        if (!addPath(root, config.getEventKeyJMESPath())
+                || (config.getPayloadValidationJMESPath() != null && !addPath(root, config.getPayloadValidationJMESPath()))) {
+            root = null;
+        }
+        return new PayloadExtractor(config, root);
+    }
+
+    /**
+     * @param config idempotency configuration
+     * @return whether this extractor was created for this configuration
+     */
+    boolean isFor(IdempotencyConfig config) {
+        return this.config == config;
+    }
+
+    /**
+     * @param argument argument of the annotated method
+     * @return the payload to use for idempotency, null if the argument is null
+     */
+    JsonNode extract(Object argument) {
+        ObjectMapper mapper = JsonConfig.get().getObjectMapper();
+        if (root == null || argument == null) {
+            return mapper.valueToTree(argument);
+        }
+        try (TokenBuffer buffer = new TokenBuffer(mapper, false)) {
+            mapper.writeValue(buffer, argument);
+            try (JsonParser parser = buffer.asParser(mapper)) {
+                parser.nextToken();
+                return read(parser, root, mapper);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private static JsonNode read(JsonParser parser, PathNode pathNode, ObjectMapper mapper) throws IOException {
+        if (pathNode.whole || parser.currentToken() != JsonToken.START_OBJECT) {
+            JsonNode node = mapper.readTree(parser);
+            return node == null ? NullNode.getInstance() : node;
+        }
+        ObjectNode node = mapper.getNodeFactory().objectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            PathNode child = pathNode.children.get(fieldName);
+            if (child == null) {
+                parser.skipChildren();
+            } else {
+                node.set(fieldName, read(parser, child, mapper));
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Add the fields reached by the expression to the tree of paths.
+     *
+     * @return false if the expression is not a simple path
+     */
+    private static boolean addPath(PathNode root, String expression) {
+        Matcher matcher = PATH.matcher(expression);
+        PathNode current = root;
+        int position = 0;
+        while (position < expression.length()) {
+            if (!matcher.find(position) || matcher.start() != position) {
+                return false;
+            }
+            position = matcher.end();
+            if (current.whole) {
+                // the whole field is already kept, only check the rest of the expression is a simple path
+                continue;
+            }
+            Matcher jsonFunction = JSON_FUNCTION.matcher(matcher.group(1));
+            if (jsonFunction.matches()) {
+                // the string is parsed by the function: keep it whole
+                current = current.child(jsonFunction.group(1));
+                current.keepWhole();
+            } else {
+                current = current.child(matcher.group(1));
+            }
+        }
+        if (current == root) {
+            return false;
+        }
+        current.keepWhole();
+        return true;
+    }
+
+    private static final class PathNode {
+        private final Map<String, PathNode> children = new HashMap<>();
+        private boolean whole;
+
+        private PathNode child(String fieldName) {
+            return children.computeIfAbsent(fieldName, k -> new PathNode());
+        }
+
+        private void keepWhole() {
+            whole = true;
+            children.clear();
+        }
+    }
+}
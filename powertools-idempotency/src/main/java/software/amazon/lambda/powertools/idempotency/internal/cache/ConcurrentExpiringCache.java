@@ -0,0 +1,270 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.internal.cache;
+
+import software.amazon.lambda.powertools.idempotency.persistence.CacheStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe, bounded cache with expiry-aware eviction.
+ * <ul>
+ *     <li>Entries are spread over up to {@value #MAX_SEGMENTS} segments by the hash of their key, each with its own map,
+ *     expiry queue and eviction lock, so that puts and evictions on different segments do not contend.</li>
+ *     <li>Reads are lock-free ({@link ConcurrentHashMap} lookup), and refresh the recency of the entry at most once per
+ *     millisecond so that hot entries are not written on every read.</li>
+ *     <li>Each entry carries its own expiry (computed from the value when it is put), expired entries are never returned.
+ *     Entries that expire are kept in a queue ordered by expiry, and each put removes the ones of its segment that
+ *     expired since, so they do not hold memory until they are read again or the cache is full.</li>
+ *     <li>When a segment is full, its expired entries are removed first, then its least recently used ones.
+ *     Eviction only scans the segment, and removes a small batch of entries so that its cost is amortized over
+ *     several puts.</li>
+ * </ul>
+ * Eviction is an approximated, per-segment LRU rather than a frequency based admission policy (like W-TinyLFU):
+ * idempotency records are short-lived and read a few times at most, so their recency is what matters.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Types of the values
+ */
+public class ConcurrentExpiringCache<K, V> implements LocalCache<K, V> {
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_CAPACITY = 64;
+    private static final long ACCESS_RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final ToLongFunction<V> expiryInMillis;
+    private final LongSupplier clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity       maximum number of entries
+     * @param expiryInMillis function returning the epoch timestamp (in milliseconds) after which a value is expired,
+     *                       0 or less means the value never expires
+     */
+    public ConcurrentExpiringCache(int capacity, ToLongFunction<V> expiryInMillis) {
+        this(capacity, expiryInMillis, System::currentTimeMillis);
+    }
+
+    ConcurrentExpiringCache(int capacity, ToLongFunction<V> expiryInMillis, LongSupplier clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENTS && capacity / (segmentCount * 2) >= MIN_SEGMENT_CAPACITY) {
+            segmentCount <<= 1;
+        }
+        this.segments = newSegments(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0));
+        }
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        this.expiryInMillis = expiryInMillis;
+        this.clock = clock;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private Segment[] newSegments(int segmentCount) {
+        // an array of the inner class of a generic class can only be created raw
+        return new ConcurrentExpiringCache.Segment[segmentCount];
+    }
+
+    @Override
+    public V get(Object key) {
+        Segment segment = segmentFor(key);
+        Node<K, V> node = segment.map.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (node.isExpired(clock.getAsLong())) {
+            segment.remove(node);
+            misses.increment();
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - node.lastAccess > ACCESS_RESOLUTION_NANOS) {
+            node.lastAccess = now;
+        }
+        hits.increment();
+        return node.value;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Segment segment = segmentFor(key);
+        Node<K, V> node = new Node<>(key, value, expiryInMillis.applyAsLong(value), System.nanoTime());
+        // the expiry of a replaced node stays queued, it is dropped when it expires or when the queue is compacted
+        Node<K, V> previous = segment.map.put(key, node);
+        if (node.expiresAt > 0) {
+            segment.expiries.offer(node);
+        }
+        segment.purgeExpired(clock.getAsLong());
+        if (segment.map.size() > segment.capacity) {
+            segment.evict();
+        }
+        return previous != null ? previous.value : null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Segment segment = segmentFor(key);
+        Node<K, V> previous = segment.map.remove(key);
+        return previous != null ? previous.value : null;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.map.size();
+        }
+        return size;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private Segment segmentFor(Object key) {
+        // high bits of the spread hash, the low ones select the bins of the segment map
+        return segmentShift == 32 ? segments[0] : segments[(key.hashCode() * 0x9E3779B9) >>> segmentShift];
+    }
+
+    private final class Segment {
+        private final int capacity;
+        private final int evictionBatchSize;
+        private final ConcurrentHashMap<K, Node<K, V>> map;
+        private final PriorityBlockingQueue<Node<K, V>> expiries = new PriorityBlockingQueue<>(11,
+                Comparator.comparingLong(node -> node.expiresAt));
+        private final ReentrantLock evictionLock = new ReentrantLock();
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            // below 16 entries, a scan of the segment on each put is cheaper than evicting entries that are still in use
+            this.evictionBatchSize = capacity / 16;
+            this.map = new ConcurrentHashMap<>(capacity * 4 / 3 + 1);
+        }
+
+        private void remove(Node<K, V> node) {
+            if (map.remove(node.key, node)) {
+                evictions.increment();
+            }
+        }
+
+        /**
+         * Remove the entries that expired, in order of expiry, and the expiries of entries replaced, removed or evicted
+         * before they expired (only checking the node still in the map, rather than searching the queue on each removal).
+         * Skipped when another thread is already purging or evicting the segment.
+         */
+        private void purgeExpired(long now) {
+            Node<K, V> head = expiries.peek();
+            boolean expired = head != null && head.isExpired(now);
+            if (!expired && expiries.size() <= 2 * capacity || !evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                while ((head = expiries.peek()) != null && head.isExpired(now)) {
+                    expiries.poll();
+                    if (map.remove(head.key, head)) {
+                        evictions.increment();
+                    }
+                }
+                if (expiries.size() > 2 * capacity) {
+                    expiries.removeIf(node -> map.get(node.key) != node);
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+
+        /**
+         * Remove expired entries, then the least recently used ones, until the segment is back under its capacity
+         * (minus the eviction batch, to avoid evicting on every put once full).
+         */
+        private void evict() {
+            evictionLock.lock();
+            try {
+                if (map.size() <= capacity) {
+                    // another thread already made room
+                    return;
+                }
+                long now = clock.getAsLong();
+                List<Node<K, V>> candidates = new ArrayList<>(map.size());
+                for (Node<K, V> node : map.values()) {
+                    if (node.isExpired(now)) {
+                        if (map.remove(node.key, node)) {
+                            evictions.increment();
+                        }
+                    } else {
+                        candidates.add(node);
+                    }
+                }
+
+                int toEvict = map.size() - (capacity - evictionBatchSize);
+                if (toEvict <= 0) {
+                    return;
+                }
+                // keep only the least recently used candidates instead of sorting them all
+                PriorityQueue<Node<K, V>> leastRecentlyUsed = new PriorityQueue<>(toEvict + 1,
+                        Comparator.comparingLong((Node<K, V> node) -> node.lastAccess).reversed());
+                for (Node<K, V> node : candidates) {
+                    leastRecentlyUsed.offer(node);
+                    if (leastRecentlyUsed.size() > toEvict) {
+                        leastRecentlyUsed.poll();
+                    }
+                }
+                for (Node<K, V> node : leastRecentlyUsed) {
+                    if (map.remove(node.key, node)) {
+                        evictions.increment();
+                    }
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final long expiresAt;
+        private volatile long lastAccess;
+
+        private Node(K key, V value, long expiresAt, long lastAccess) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.lastAccess = lastAccess;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt > 0 && now > expiresAt;
+        }
+    }
+}
@@ -18,11 +18,12 @@ import java.util.Map;
 
 /**
  * Implementation of a simple LRU Cache based on a {@link LinkedHashMap}
- * See <a href="https://stackoverflow.com/a/6400874/270653">here</a>.
+ * See <a href="https://stackoverflow.com/a/6400874/270653">here</a>.<br/>
+ * Not thread-safe: prefer {@link ConcurrentExpiringCache} when the cache is shared across threads.
  * @param <K> Type of the keys
  * @param <V> Types of the values
  */
-public class LRUCache<K, V> extends LinkedHashMap<K, V> {
+public class LRUCache<K, V> extends LinkedHashMap<K, V> implements LocalCache<K, V> {
 
     private static final long serialVersionUID = 3108262622672699228L;
     private final int capacity;
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.internal.cache;
+
+import software.amazon.lambda.powertools.idempotency.persistence.CacheStats;
+
+/**
+ * Local (in-memory) cache used by the persistence store to avoid round trips to the store
+ * for records already seen in this execution environment.
+ * Method signatures mirror {@link java.util.Map} so that map-based implementations (like {@link LRUCache}) fit directly.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Types of the values
+ */
+public interface LocalCache<K, V> {
+
+    /**
+     * @param key the key of the entry
+     * @return the cached value, or null if absent (or expired)
+     */
+    V get(Object key);
+
+    /**
+     * @param key   the key of the entry
+     * @param value the value to cache
+     * @return the previous value associated with the key, or null
+     */
+    V put(K key, V value);
+
+    /**
+     * @param key the key of the entry
+     * @return the removed value, or null
+     */
+    V remove(Object key);
+
+    /**
+     * @return the number of entries currently in the cache
+     */
+    int size();
+
+    /**
+     * @return a snapshot of the hit / miss / eviction counters, empty if the implementation does not record them
+     */
+    default CacheStats stats() {
+        return CacheStats.EMPTY;
+    }
+}
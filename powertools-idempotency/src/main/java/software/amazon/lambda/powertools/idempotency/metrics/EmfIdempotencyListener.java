@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.metrics;
+
+import software.amazon.cloudwatchlogs.emf.logger.MetricsLogger;
+import software.amazon.cloudwatchlogs.emf.model.Unit;
+import software.amazon.lambda.powertools.metrics.MetricsUtils;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * {@link IdempotencyListener} publishing CloudWatch metrics with the embedded metric format (EMF), through the
+ * {@link MetricsLogger} of powertools-metrics (requires the <code>powertools-metrics</code> dependency):
+ * <ul>
+ *     <li>duration of each phase, in milliseconds: <code>IdempotencySaveInProgressTime</code>, <code>IdempotencyGetRecordTime</code>,
+ *     <code>IdempotencyFunctionTime</code>, <code>IdempotencySaveSuccessTime</code>, <code>IdempotencyDeleteRecordTime</code></li>
+ *     <li>outcomes: <code>IdempotencyExecuted</code>, <code>IdempotencyReplayed</code>, <code>IdempotencyInProgress</code>,
+ *     <code>IdempotencyFailed</code>, <code>IdempotencyCoalesced</code></li>
+ *     <li>local cache: <code>IdempotencyCacheHit</code>, <code>IdempotencyCacheMiss</code></li>
+ *     <li>retries: <code>IdempotencyRetry</code></li>
+ *     <li>responses saved in the background: <code>IdempotencyBackgroundWritten</code>, <code>IdempotencyBackgroundRetry</code>,
+ *     <code>IdempotencyBackgroundFailed</code>, <code>IdempotencyBackgroundRejected</code></li>
+ * </ul>
+ * Metrics are flushed with the other metrics of the function, when the handler annotated with
+ * {@link software.amazon.lambda.powertools.metrics.Metrics} returns.
+ */
+public class EmfIdempotencyListener implements IdempotencyListener {
+
+    private static final Map<Phase, String> PHASE_METRICS = new EnumMap<>(Phase.class);
+    private static final Map<Outcome, String> OUTCOME_METRICS = new EnumMap<>(Outcome.class);
+    private static final Map<BackgroundWriteOutcome, String> BACKGROUND_WRITE_METRICS = new EnumMap<>(BackgroundWriteOutcome.class);
+
+    static {
+        PHASE_METRICS.put(Phase.SAVE_IN_PROGRESS, "IdempotencySaveInProgressTime");
+        PHASE_METRICS.put(Phase.GET_RECORD, "IdempotencyGetRecordTime");
+        PHASE_METRICS.put(Phase.FUNCTION, "IdempotencyFunctionTime");
+        PHASE_METRICS.put(Phase.SAVE_SUCCESS, "IdempotencySaveSuccessTime");
+        PHASE_METRICS.put(Phase.DELETE_RECORD, "IdempotencyDeleteRecordTime");
+        OUTCOME_METRICS.put(Outcome.EXECUTED, "IdempotencyExecuted");
+        OUTCOME_METRICS.put(Outcome.REPLAYED, "IdempotencyReplayed");
+        OUTCOME_METRICS.put(Outcome.IN_PROGRESS, "IdempotencyInProgress");
+        OUTCOME_METRICS.put(Outcome.FAILED, "IdempotencyFailed");
+        OUTCOME_METRICS.put(Outcome.COALESCED, "IdempotencyCoalesced");
+        BACKGROUND_WRITE_METRICS.put(BackgroundWriteOutcome.WRITTEN, "IdempotencyBackgroundWritten");
+        BACKGROUND_WRITE_METRICS.put(BackgroundWriteOutcome.RETRIED, "IdempotencyBackgroundRetry");
+        BACKGROUND_WRITE_METRICS.put(BackgroundWriteOutcome.FAILED, "IdempotencyBackgroundFailed");
+        BACKGROUND_WRITE_METRICS.put(BackgroundWriteOutcome.REJECTED, "IdempotencyBackgroundRejected");
+    }
+
+    private final MetricsLogger metricsLogger;
+
+    /**
+     * Publish the metrics with the {@link MetricsLogger} of powertools-metrics ({@link MetricsUtils#metricsLogger()})
+     */
+    public EmfIdempotencyListener() {
+        this(MetricsUtils.metricsLogger());
+    }
+
+    /**
+     * @param metricsLogger the logger used to publish the metrics
+     */
+    public EmfIdempotencyListener(MetricsLogger metricsLogger) {
+        this.metricsLogger = metricsLogger;
+    }
+
+    @Override
+    public void onPhase(Phase phase, long durationNanos) {
+        metricsLogger.putMetric(PHASE_METRICS.get(phase), durationNanos / 1_000_000.0, Unit.MILLISECONDS);
+    }
+
+    @Override
+    public void onOutcome(Outcome outcome) {
+        metricsLogger.putMetric(OUTCOME_METRICS.get(outcome), 1, Unit.COUNT);
+    }
+
+    @Override
+    public void onCacheLookup(boolean hit) {
+        metricsLogger.putMetric(hit ? "IdempotencyCacheHit" : "IdempotencyCacheMiss", 1, Unit.COUNT);
+    }
+
+    @Override
+    public void onRetry(int attempt) {
+        metricsLogger.putMetric("IdempotencyRetry", 1, Unit.COUNT);
+    }
+
+    @Override
+    public void onBackgroundWrite(BackgroundWriteOutcome outcome, int attempts) {
+        metricsLogger.putMetric(BACKGROUND_WRITE_METRICS.get(outcome), 1, Unit.COUNT);
+    }
+}
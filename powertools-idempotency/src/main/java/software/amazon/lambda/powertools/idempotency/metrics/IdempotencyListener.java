@@ -0,0 +1,154 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.metrics;
+
+/**
+ * Listener notified of the idempotency processing of each invocation: duration of each phase (persistence store
+ * calls and function), outcome of the invocation, local cache lookups and retries, and of the responses saved
+ * in the background.<br/>
+ * Register it with {@link software.amazon.lambda.powertools.idempotency.IdempotencyConfig.Builder#withListener(IdempotencyListener)},
+ * or use the {@link EmfIdempotencyListener} to publish these as CloudWatch metrics.<br/>
+ * Methods are called on the hot path (on the thread completing the future for asynchronous functions):
+ * implementations must be fast, thread-safe, and must not throw.
+ */
+public interface IdempotencyListener {
+
+    /**
+     * Listener ignoring all notifications (default)
+     */
+    IdempotencyListener NONE = new IdempotencyListener() {
+    };
+
+    /**
+     * Phases of the idempotency processing
+     */
+    enum Phase {
+        /**
+         * Saving the record in progress (also fails when the record already exists)
+         */
+        SAVE_IN_PROGRESS,
+        /**
+         * Retrieving the existing record (when it could not be saved in progress)
+         */
+        GET_RECORD,
+        /**
+         * Executing the function
+         */
+        FUNCTION,
+        /**
+         * Saving the response of the function
+         */
+        SAVE_SUCCESS,
+        /**
+         * Deleting the record when the function failed
+         */
+        DELETE_RECORD
+    }
+
+    /**
+     * Outcomes of an invocation
+     */
+    enum Outcome {
+        /**
+         * The function was executed and its response saved
+         */
+        EXECUTED,
+        /**
+         * The response of a previous execution was returned, without executing the function
+         */
+        REPLAYED,
+        /**
+         * Another execution with the same payload is in progress
+         * ({@link software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyAlreadyInProgressException})
+         */
+        IN_PROGRESS,
+        /**
+         * The function failed and its record was deleted
+         */
+        FAILED,
+        /**
+         * The invocation waited for a concurrent one with the same payload, in the same execution environment,
+         * and got its response or exception
+         * (see {@link software.amazon.lambda.powertools.idempotency.IdempotencyConfig.Builder#withInFlightCoalescing(boolean)})
+         */
+        COALESCED
+    }
+
+    /**
+     * Outcomes of the attempts to save a response in the background
+     * (see {@link software.amazon.lambda.powertools.idempotency.IdempotencyConfig.Builder#withBackgroundSaveSuccess(boolean)})
+     */
+    enum BackgroundWriteOutcome {
+        /**
+         * The response was saved
+         */
+        WRITTEN,
+        /**
+         * The attempt failed, and another one is scheduled
+         */
+        RETRIED,
+        /**
+         * The last attempt failed: the record stays in progress until it expires
+         */
+        FAILED,
+        /**
+         * Too many responses were waiting to be saved: the response was saved before the function returned
+         */
+        REJECTED
+    }
+
+    /**
+     * Called when a phase completes, successfully or not
+     *
+     * @param phase         the phase
+     * @param durationNanos duration of the phase, in nanoseconds
+     */
+    default void onPhase(Phase phase, long durationNanos) {
+    }
+
+    /**
+     * Called once per invocation (unless the persistence store fails)
+     *
+     * @param outcome outcome of the invocation
+     */
+    default void onOutcome(Outcome outcome) {
+    }
+
+    /**
+     * Called for each lookup of a record in the local cache, when it is enabled
+     *
+     * @param hit true if the record was in the cache
+     */
+    default void onCacheLookup(boolean hit) {
+    }
+
+    /**
+     * Called when the processing is retried, after an
+     * {@link software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyInconsistentStateException}
+     *
+     * @param attempt number of the retry (starting at 1)
+     */
+    default void onRetry(int attempt) {
+    }
+
+    /**
+     * Called for each attempt to save a response in the background, on the background thread,
+     * and when a response can't be queued to be saved in the background
+     *
+     * @param outcome  outcome of the attempt
+     * @param attempts number of attempts so far (0 when rejected)
+     */
+    default void onBackgroundWrite(BackgroundWriteOutcome outcome, int attempts) {
+    }
+}
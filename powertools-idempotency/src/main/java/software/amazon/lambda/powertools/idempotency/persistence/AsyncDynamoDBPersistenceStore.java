@@ -0,0 +1,327 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * DynamoDB version of the {@link AsyncPersistenceStore}, using the {@link DynamoDbAsyncClient}.
+ * Will store idempotency data in DynamoDB, with the same table layout as the {@link DynamoDBPersistenceStore}.<br>
+ * Idempotent methods returning a {@link java.util.concurrent.CompletionStage} get their record saved, retrieved and updated
+ * without blocking a thread. The blocking operations of the {@link PersistenceStore} wait for the asynchronous ones.<br>
+ * Use the {@link Builder} to create a new instance.
+ */
+public class AsyncDynamoDBPersistenceStore extends BasePersistenceStore implements PersistenceStore, AsyncPersistenceStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncDynamoDBPersistenceStore.class);
+
+    private final String tableName;
+    private final DynamoDBRecordMapper mapper;
+    private final DynamoDbAsyncClient dynamoDbClient;
+
+    /**
+     * Private: use the {@link Builder} to instantiate a new {@link AsyncDynamoDBPersistenceStore}
+     */
+    private AsyncDynamoDBPersistenceStore(String tableName, DynamoDBRecordMapper mapper, DynamoDbAsyncClient client) {
+        this.tableName = tableName;
+        this.mapper = mapper;
+        // the asynchronous http client (netty-nio-client or aws-crt-client) of the default client is picked from the classpath
+        this.dynamoDbClient = client != null ? client : DynamoDBTableConfig.defaultClient(DynamoDbAsyncClient::builder);
+    }
+
+    @Override
+    public CompletableFuture<DataRecord> getRecordAsync(String idempotencyKey) {
+        return dynamoDbClient.getItem(
+                GetItemRequest.builder()
+                        .tableName(tableName)
+                        .key(mapper.getKey(idempotencyKey))
+                        .consistentRead(true)
+                        .build()
+        ).thenApply(response -> {
+            if (!response.hasItem()) {
+                throw new IdempotencyItemNotFoundException(idempotencyKey);
+            }
+            return mapper.itemToRecord(response.item());
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> putRecordAsync(DataRecord record, Instant now) {
+        Map<String, AttributeValue> item = mapper.getPutItem(record, payloadValidationEnabled);
+
+        LOG.debug("Putting record for idempotency key: {}", record.getIdempotencyKey());
+        return dynamoDbClient.putItem(
+                PutItemRequest.builder()
+                        .tableName(tableName)
+                        .item(item)
+                        .conditionExpression(DynamoDBRecordMapper.PUT_CONDITION_EXPRESSION)
+                        .expressionAttributeNames(mapper.getPutExpressionAttributeNames())
+                        .expressionAttributeValues(mapper.getPutExpressionAttributeValues(now))
+                        .build()
+        ).handle((response, throwable) -> {
+            if (throwable == null) {
+                return null;
+            }
+            Throwable cause = unwrap(throwable);
+            if (cause instanceof ConditionalCheckFailedException) {
+                LOG.debug("Failed to put record for already existing idempotency key: {}", record.getIdempotencyKey());
+                throw new IdempotencyItemAlreadyExistsException("Failed to put record for already existing idempotency key: " + record.getIdempotencyKey(), cause);
+            }
+            throw new CompletionException(cause);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> updateRecordAsync(DataRecord record) {
+        LOG.debug("Updating record for idempotency key: {}", record.getIdempotencyKey());
+        return dynamoDbClient.updateItem(mapper.getUpdateItemRequest(tableName, record, payloadValidationEnabled))
+                .thenApply(response -> null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteRecordAsync(String idempotencyKey) {
+        LOG.debug("Deleting record for idempotency key: {}", idempotencyKey);
+        return dynamoDbClient.deleteItem(mapper.getDeleteItemRequest(tableName, idempotencyKey))
+                .thenApply(response -> null);
+    }
+
+    @Override
+    public DataRecord getRecord(String idempotencyKey) throws IdempotencyItemNotFoundException {
+        return join(getRecordAsync(idempotencyKey));
+    }
+
+    @Override
+    public void putRecord(DataRecord record, Instant now) throws IdempotencyItemAlreadyExistsException {
+        join(putRecordAsync(record, now));
+    }
+
+    @Override
+    public void updateRecord(DataRecord record) {
+        join(updateRecordAsync(record));
+    }
+
+    @Override
+    public void deleteRecord(String idempotencyKey) {
+        join(deleteRecordAsync(idempotencyKey));
+    }
+
+    /**
+     * Wait for the future and rethrow the exception it completed with, as the {@link DynamoDBPersistenceStore} would.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Use this builder to get an instance of {@link AsyncDynamoDBPersistenceStore}.<br/>
+     * With this builder you can configure the characteristics of the DynamoDB Table
+     * (name, key, sort key, and other field names).<br/>
+     * You can also set a custom {@link DynamoDbAsyncClient} for further tuning.
+     */
+    public static class Builder {
+        private final DynamoDBTableConfig table = new DynamoDBTableConfig();
+        private DynamoDbAsyncClient dynamoDbClient;
+
+        /**
+         * Initialize and return a new instance of {@link AsyncDynamoDBPersistenceStore}.<br/>
+         * Example:<br>
+         * <pre>
+         *     AsyncDynamoDBPersistenceStore.builder().withTableName("idempotency_store").build();
+         * </pre>
+         *
+         * @return an instance of the {@link AsyncDynamoDBPersistenceStore}
+         */
+        public AsyncDynamoDBPersistenceStore build() {
+            // storing the response data in a blob store is not supported
+            return new AsyncDynamoDBPersistenceStore(table.tableName, table.buildMapper("data_ref", null, Integer.MAX_VALUE), dynamoDbClient);
+        }
+
+        /**
+         * Name of the table to use for storing execution records (mandatory)
+         *
+         * @param tableName Name of the DynamoDB table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withTableName(String tableName) {
+            table.tableName = tableName;
+            return this;
+        }
+
+        /**
+         * DynamoDB attribute name for partition key (optional), by default "id"
+         *
+         * @param keyAttr name of the key attribute in the table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withKeyAttr(String keyAttr) {
+            table.keyAttr = keyAttr;
+            return this;
+        }
+
+        /**
+         * DynamoDB attribute value for partition key (optional), by default "idempotency#[function-name]".
+         * This will be used if the {@link #withSortKeyAttr(String) sort key} is set.
+         *
+         * @param staticPkValue name of the partition key attribute in the table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withStaticPkValue(String staticPkValue) {
+            table.staticPkValue = staticPkValue;
+            return this;
+        }
+
+        /**
+         * DynamoDB attribute name for the sort key (optional)
+         *
+         * @param sortKeyAttr name of the sort key attribute in the table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withSortKeyAttr(String sortKeyAttr) {
+            table.sortKeyAttr = sortKeyAttr;
+            return this;
+        }
+
+        /**
+         * DynamoDB attribute name for expiry timestamp (optional), by default "expiration"
+         *
+         * @param expiryAttr name of the expiry attribute in the table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withExpiryAttr(String expiryAttr) {
+            table.expiryAttr = expiryAttr;
+            return this;
+        }
+
+        /**
+         * DynamoDB attribute name for in progress expiry timestamp (optional), by default "in_progress_expiration"
+         *
+         * @param inProgressExpiryAttr name of the attribute in the table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withInProgressExpiryAttr(String inProgressExpiryAttr) {
+            table.inProgressExpiryAttr = inProgressExpiryAttr;
+            return this;
+        }
+
+        /**
+         * DynamoDB attribute name for status (optional), by default "status"
+         *
+         * @param statusAttr name of the status attribute in the table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withStatusAttr(String statusAttr) {
+            table.statusAttr = statusAttr;
+            return this;
+        }
+
+        /**
+         * DynamoDB attribute name for response data (optional), by default "data"
+         *
+         * @param dataAttr name of the data attribute in the table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withDataAttr(String dataAttr) {
+            table.dataAttr = dataAttr;
+            return this;
+        }
+
+        /**
+         * DynamoDB attribute name for validation (optional), by default "validation"
+         *
+         * @param validationAttr name of the validation attribute in the table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withValidationAttr(String validationAttr) {
+            table.validationAttr = validationAttr;
+            return this;
+        }
+
+        /**
+         * DynamoDB attribute name for the name of the {@link ResponseCodec} used to encode the response data (optional), by default "data_encoding"
+         *
+         * @param dataEncodingAttr name of the data encoding attribute in the table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withDataEncodingAttr(String dataEncodingAttr) {
+            table.dataEncodingAttr = dataEncodingAttr;
+            return this;
+        }
+
+        /**
+         * Compress the response data larger than the threshold (optional), by default response data is not compressed.
+         * See {@link DynamoDBPersistenceStore.Builder#withResponseCodec(ResponseCodec, int)}.
+         *
+         * @param responseCodec        the codec to use, for example {@link GzipResponseCodec}
+         * @param compressionThreshold minimum size (in bytes) of the response data to compress, by default 1024
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withResponseCodec(ResponseCodec responseCodec, int compressionThreshold) {
+            table.responseCodec = responseCodec;
+            table.compressionThreshold = compressionThreshold;
+            return this;
+        }
+
+        /**
+         * Compress the response data larger than 1 KB (optional), see {@link #withResponseCodec(ResponseCodec, int)}
+         *
+         * @param responseCodec the codec to use, for example {@link GzipResponseCodec}
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withResponseCodec(ResponseCodec responseCodec) {
+            table.responseCodec = responseCodec;
+            return this;
+        }
+
+        /**
+         * Custom {@link DynamoDbAsyncClient} used to query DynamoDB (optional).<br/>
+         * The default one requires an asynchronous http client in the classpath
+         * (<code>software.amazon.awssdk:netty-nio-client</code> or <code>software.amazon.awssdk:aws-crt-client</code>).
+         *
+         * @param dynamoDbClient the {@link DynamoDbAsyncClient} instance to use
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withDynamoDbAsyncClient(DynamoDbAsyncClient dynamoDbClient) {
+            this.dynamoDbClient = dynamoDbClient;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking version of the {@link PersistenceStore}, implemented by persistence stores backed by an asynchronous client.<br/>
+ * When the persistence store implements this interface, the completion (or deletion) of the record of an idempotent
+ * method returning a {@link java.util.concurrent.CompletionStage} is chained to the completion of the method,
+ * without blocking a thread. See {@link AsyncDynamoDBPersistenceStore} for an implementation.
+ */
+public interface AsyncPersistenceStore {
+
+    /**
+     * Retrieve item from persistence store using idempotency key and return it as a DataRecord instance.
+     * @param idempotencyKey the key of the record
+     * @return DataRecord representation of existing record found in persistence store,
+     * completed exceptionally with {@link IdempotencyItemNotFoundException} if no record exists with the idempotency key
+     */
+    CompletableFuture<DataRecord> getRecordAsync(String idempotencyKey);
+
+    /**
+     * Add a DataRecord to persistence store if it does not already exist with that key
+     * @param record DataRecord instance
+     * @param now
+     * @return completed when the record is saved,
+     * completed exceptionally with {@link IdempotencyItemAlreadyExistsException} if a non-expired entry already exists
+     */
+    CompletableFuture<Void> putRecordAsync(DataRecord record, Instant now);
+
+    /**
+     * Update item in persistence store
+     * @param record DataRecord instance
+     * @return completed when the record is updated
+     */
+    CompletableFuture<Void> updateRecordAsync(DataRecord record);
+
+    /**
+     * Remove item from persistence store
+     * @param idempotencyKey the key of the record
+     * @return completed when the record is deleted
+     */
+    CompletableFuture<Void> deleteRecordAsync(String idempotencyKey);
+}
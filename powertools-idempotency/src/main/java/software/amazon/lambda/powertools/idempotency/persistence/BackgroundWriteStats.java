@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+/**
+ * Immutable snapshot of the counters of the records saved in the background
+ * (see {@link software.amazon.lambda.powertools.idempotency.IdempotencyConfig.Builder#withBackgroundSaveSuccess(boolean)}).
+ */
+public class BackgroundWriteStats {
+    public static final BackgroundWriteStats EMPTY = new BackgroundWriteStats(0, 0, 0, 0, 0, 0);
+
+    private final long submittedCount;
+    private final long writtenCount;
+    private final long retryCount;
+    private final long failureCount;
+    private final long rejectedCount;
+    private final long pendingCount;
+
+    public BackgroundWriteStats(long submittedCount, long writtenCount, long retryCount, long failureCount, long rejectedCount, long pendingCount) {
+        this.submittedCount = submittedCount;
+        this.writtenCount = writtenCount;
+        this.retryCount = retryCount;
+        this.failureCount = failureCount;
+        this.rejectedCount = rejectedCount;
+        this.pendingCount = pendingCount;
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * @return number of attempts that failed and were retried
+     */
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * @return number of records that could not be written after all attempts
+     */
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * @return number of records written before the function returned, because too many writes were pending
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public long getPendingCount() {
+        return pendingCount;
+    }
+
+    @Override
+    public String toString() {
+        return "BackgroundWriteStats{" +
+                "submittedCount=" + submittedCount +
+                ", writtenCount=" + writtenCount +
+                ", retryCount=" + retryCount +
+                ", failureCount=" + failureCount +
+                ", rejectedCount=" + rejectedCount +
+                ", pendingCount=" + pendingCount +
+                '}';
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener.BackgroundWriteOutcome;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Writes records on a single background thread, with a bounded number of pending records and a retry policy.
+ * The thread and the shutdown hook are shared by all the writers (one per persistence store): failed writes are
+ * rescheduled after a backoff, so that the thread keeps writing the records of the other stores in the meantime.
+ * The execution environment is frozen between invocations: {@link #drain(long)} lets the next invocation
+ * wait for the writes still pending.
+ */
+final class BackgroundWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BackgroundWriter.class);
+    private static final long INITIAL_BACKOFF_MILLIS = 50;
+    private static final long SHUTDOWN_DRAIN_MILLIS = 500;
+
+    private final Consumer<DataRecord> writer;
+    private final IdempotencyListener listener;
+    private final int maxPending;
+    private final int maxAttempts;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object drained = new Object();
+
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    BackgroundWriter(Consumer<DataRecord> writer, int maxPending, int maxAttempts, IdempotencyListener listener) {
+        this.writer = writer;
+        this.listener = listener;
+        this.maxPending = Math.max(1, maxPending);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        Shared.register(this);
+    }
+
+    /**
+     * Queue the record to be written in the background
+     *
+     * @param record the record to write
+     * @return false if too many writes are pending, the record must then be written by the caller
+     */
+    boolean submit(DataRecord record) {
+        // the record being written and the queued ones
+        if (pending.incrementAndGet() > maxPending + 1) {
+            LOG.debug("Too many pending writes, record for idempotency key {} will be written synchronously", record.getIdempotencyKey());
+            rejectedCount.increment();
+            done();
+            listener.onBackgroundWrite(BackgroundWriteOutcome.REJECTED, 0);
+            return false;
+        }
+        try {
+            Shared.EXECUTOR.execute(() -> write(record, 1));
+            submittedCount.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            // the JVM is shutting down
+            rejectedCount.increment();
+            done();
+            listener.onBackgroundWrite(BackgroundWriteOutcome.REJECTED, 0);
+            return false;
+        }
+    }
+
+    /**
+     * Wait for the pending writes to complete
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return true if all writes completed, false if the timeout elapsed before
+     */
+    boolean drain(long timeoutMillis) {
+        if (pending.get() == 0) {
+            return true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (drained) {
+            while (pending.get() > 0) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                try {
+                    drained.wait(remainingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    BackgroundWriteStats stats() {
+        return new BackgroundWriteStats(submittedCount.sum(), writtenCount.sum(), retryCount.sum(),
+                failureCount.sum(), rejectedCount.sum(), pending.get());
+    }
+
+    private void write(DataRecord record, int attempt) {
+        BackgroundWriteOutcome outcome;
+        try {
+            writer.accept(record);
+            writtenCount.increment();
+            outcome = BackgroundWriteOutcome.WRITTEN;
+        } catch (RuntimeException e) {
+            if (attempt >= maxAttempts) {
+                LOG.error("Failed to save record for idempotency key {} after {} attempts, it will stay in progress until it expires",
+                        record.getIdempotencyKey(), attempt, e);
+                outcome = BackgroundWriteOutcome.FAILED;
+            } else {
+                retryCount.increment();
+                LOG.warn("Failed to save record for idempotency key {} (attempt {}), retrying", record.getIdempotencyKey(), attempt, e);
+                outcome = retry(record, attempt) ? BackgroundWriteOutcome.RETRIED : BackgroundWriteOutcome.FAILED;
+            }
+            if (outcome == BackgroundWriteOutcome.FAILED) {
+                failureCount.increment();
+            }
+        }
+        try {
+            listener.onBackgroundWrite(outcome, attempt);
+        } finally {
+            if (outcome != BackgroundWriteOutcome.RETRIED) {
+                done();
+            }
+        }
+    }
+
+    /**
+     * Schedule the next attempt after an exponential backoff, without holding the writer thread
+     *
+     * @param attempt number of the attempt that failed
+     * @return false if the writer thread is shut down
+     */
+    private boolean retry(DataRecord record, int attempt) {
+        try {
+            Shared.EXECUTOR.schedule(() -> write(record, attempt + 1), INITIAL_BACKOFF_MILLIS << (attempt - 1), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void done() {
+        if (pending.decrementAndGet() == 0) {
+            synchronized (drained) {
+                drained.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writer thread and shutdown hook, created once for all the writers
+     */
+    private static final class Shared {
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "powertools-idempotency-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private static final Set<BackgroundWriter> WRITERS = Collections.synchronizedSet(
+                Collections.newSetFromMap(new WeakHashMap<>()));
+
+        static {
+            // outside of Lambda (or with an extension registered), give pending writes a chance on shutdown
+            Runtime.getRuntime().addShutdownHook(new Thread(Shared::drainAll, "powertools-idempotency-writer-shutdown"));
+        }
+
+        private static void register(BackgroundWriter writer) {
+            WRITERS.add(writer);
+        }
+
+        private static void drainAll() {
+            List<BackgroundWriter> writers;
+            synchronized (WRITERS) {
+                writers = new ArrayList<>(WRITERS);
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_DRAIN_MILLIS);
+            for (BackgroundWriter writer : writers) {
+                writer.drain(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            }
+        }
+    }
+}
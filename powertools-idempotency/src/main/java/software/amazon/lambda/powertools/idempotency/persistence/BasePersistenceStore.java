@@ -13,33 +13,52 @@
  */
 package software.amazon.lambda.powertools.idempotency.persistence;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import io.burt.jmespath.Expression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.utils.StringUtils;
 import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
+import software.amazon.lambda.powertools.idempotency.ResponseCopyStrategy;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyKeyException;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyValidationException;
+import software.amazon.lambda.powertools.idempotency.hash.HashFunction;
+import software.amazon.lambda.powertools.idempotency.hash.HashFunctions;
+import software.amazon.lambda.powertools.idempotency.hash.Hasher;
+import software.amazon.lambda.powertools.idempotency.internal.CanonicalJsonWriter;
+import software.amazon.lambda.powertools.idempotency.internal.cache.ConcurrentExpiringCache;
 import software.amazon.lambda.powertools.idempotency.internal.cache.LRUCache;
+import software.amazon.lambda.powertools.idempotency.internal.cache.LocalCache;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener;
 import software.amazon.lambda.powertools.utilities.JsonConfig;
 
-import java.math.BigInteger;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -53,18 +72,33 @@ import static software.amazon.lambda.powertools.core.internal.LambdaConstants.LA
 public abstract class BasePersistenceStore implements PersistenceStore {
 
     private static final Logger LOG = LoggerFactory.getLogger(BasePersistenceStore.class);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int MIN_HEX_LENGTH = 32;
+    private static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 1000;
+    // same configuration as the one used by JsonNode.toString(), to keep the same hashes
+    private static final ObjectWriter NODE_WRITER = new ObjectMapper().writer();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
     private String functionName = "";
     private boolean configured = false;
     private long expirationInSeconds = 60 * 60; // 1 hour default
     private boolean useLocalCache = false;
-    private LRUCache<String, DataRecord> cache;
+    private LocalCache<String, DataRecord> cache;
+    private LocalCache<String, DataRecord> inProgressCache;
     private String eventKeyJMESPath;
     private Expression<JsonNode> eventKeyCompiledJMESPath;
     protected boolean payloadValidationEnabled = false;
     private Expression<JsonNode> validationKeyJMESPath;
     private boolean throwOnNoIdempotencyKey = false;
-    private String hashFunctionName;
+    private boolean canonicalHashing = false;
+    private boolean previousCanonicalHashing = false;
+    // Hashers are not thread-safe, and can be costly to create (MessageDigest provider lookup): keep one per thread
+    private ThreadLocal<Hasher> hasher;
+    // only set when migrating from another hash function, to find the records created with it
+    private ThreadLocal<Hasher> previousHasher;
+    private BackgroundWriter backgroundWriter;
+    private IdempotencyListener listener = IdempotencyListener.NONE;
+    private ResponseCopyStrategy responseCopyStrategy;
 
     /**
      * Initialize the base persistence layer from the configuration settings
@@ -93,13 +127,43 @@ public abstract class BasePersistenceStore implements PersistenceStore {
             payloadValidationEnabled = true;
         }
         throwOnNoIdempotencyKey = config.throwOnNoIdempotencyKey();
+        canonicalHashing = config.useCanonicalHashing();
+        listener = config.getListener();
 
         useLocalCache = config.useLocalCache();
         if (useLocalCache) {
-            cache = new LRUCache<>(config.getLocalCacheMaxItems());
+            if (config.getLocalCacheType() == IdempotencyConfig.LocalCacheType.LRU) {
+                if (this instanceof AsyncPersistenceStore) {
+                    // the cache is updated by the completions of the asynchronous requests, on other threads
+                    throw new IllegalArgumentException("The LRU local cache is not thread-safe and cannot be used with an AsyncPersistenceStore, use LocalCacheType.CONCURRENT");
+                }
+                cache = new LRUCache<>(config.getLocalCacheMaxItems());
+            } else {
+                cache = new ConcurrentExpiringCache<>(config.getLocalCacheMaxItems(),
+                        record -> record.getExpiryTimestamp() * 1000);
+            }
+            responseCopyStrategy = config.getResponseCopyStrategy();
+            long inProgressCacheTtl = config.getInProgressCacheTtlInMillis();
+            if (inProgressCacheTtl > 0) {
+                // cached for a short time, and never beyond the in progress expiry
+                inProgressCache = new ConcurrentExpiringCache<>(config.getLocalCacheMaxItems(),
+                        record -> Math.min(Math.min(System.currentTimeMillis() + inProgressCacheTtl,
+                                        record.getInProgressExpiryTimestamp().orElse(Long.MAX_VALUE)),
+                                record.getExpiryTimestamp() * 1000));
+            }
         }
         expirationInSeconds = config.getExpirationInSeconds();
-        hashFunctionName = config.getHashFunction();
+        HashFunction hashFunction = getHashFunction(config.getHashFunction());
+        hasher = ThreadLocal.withInitial(hashFunction::newHasher);
+        if (config.getPreviousHashFunction() != null) {
+            HashFunction previousHashFunction = getHashFunction(config.getPreviousHashFunction());
+            previousHasher = ThreadLocal.withInitial(previousHashFunction::newHasher);
+            previousCanonicalHashing = config.usePreviousCanonicalHashing();
+        }
+        if (config.useBackgroundSaveSuccess()) {
+            backgroundWriter = new BackgroundWriter(this::writeSuccess,
+                    config.getBackgroundSaveSuccessMaxPending(), config.getBackgroundSaveSuccessMaxAttempts(), listener);
+        }
         configured = true;
     }
 
@@ -110,29 +174,178 @@ public abstract class BasePersistenceStore implements PersistenceStore {
      * @param result the response from the function
      */
     public void saveSuccess(JsonNode data, Object result, Instant now) {
-        ObjectWriter writer = JsonConfig.get().getObjectMapper().writer();
+        DataRecord record = getSuccessRecord(data, result, now);
+        if (record == null) {
+            // missing idempotency key => non-idempotent transaction, we do not store the data, simply return
+            return;
+        }
+        LOG.debug("Function successfully executed. Saving record to persistence store with idempotency key: {}", record.getIdempotencyKey());
+        if (backgroundWriter != null && backgroundWriter.submit(record)) {
+            return;
+        }
+        writeSuccess(record);
+    }
+
+    private void writeSuccess(DataRecord record) {
+        updateRecord(record);
+        saveToCache(record);
+    }
+
+    /**
+     * Wait for the records still being saved in the background
+     * (see {@link IdempotencyConfig.Builder#withBackgroundSaveSuccess(boolean)}), typically by a previous invocation
+     * interrupted by the freeze of the execution environment.
+     *
+     * @param remainingTimeInMs remaining time of the current invocation, half of it at most is spent waiting (1 second if empty)
+     * @return true if no record is pending anymore
+     */
+    public boolean drainBackgroundWrites(OptionalInt remainingTimeInMs) {
+        if (backgroundWriter == null) {
+            return true;
+        }
+        long timeout = remainingTimeInMs.isPresent() ? remainingTimeInMs.getAsInt() / 2 : DEFAULT_DRAIN_TIMEOUT_MILLIS;
+        boolean drained = backgroundWriter.drain(timeout);
+        if (!drained) {
+            LOG.warn("Records still being saved in the background after {} ms: {}", timeout, backgroundWriter.stats());
+        }
+        return drained;
+    }
+
+    /**
+     * Save record of function's execution completing successfully, without blocking
+     * when the persistence store is an {@link AsyncPersistenceStore}
+     * (otherwise the record is saved with {@link #saveSuccess(JsonNode, Object, Instant)} before returning).
+     *
+     * @param data   Payload
+     * @param result the response from the function
+     * @param now
+     * @return completed when the record is saved
+     */
+    public CompletableFuture<Void> saveSuccessAsync(JsonNode data, Object result, Instant now) {
+        if (!(this instanceof AsyncPersistenceStore)) {
+            return completed(() -> saveSuccess(data, result, now));
+        }
+        DataRecord record;
         try {
-            String responseJson;
-            if (result instanceof String) {
-                responseJson = (String) result;
-            } else {
-                responseJson = writer.writeValueAsString(result);
-            }
-            Optional<String> hashedIdempotencyKey = getHashedIdempotencyKey(data);
+            record = getSuccessRecord(data, result, now);
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+        if (record == null) {
+            // missing idempotency key => non-idempotent transaction, we do not store the data, simply return
+            return CompletableFuture.completedFuture(null);
+        }
+        LOG.debug("Function successfully executed. Saving record to persistence store with idempotency key: {}", record.getIdempotencyKey());
+        return ((AsyncPersistenceStore) this).updateRecordAsync(record)
+                .thenRun(() -> saveToCache(record));
+    }
+
+    /**
+     * @return the completed record to save, null if the idempotency key is missing
+     */
+    private DataRecord getSuccessRecord(JsonNode data, Object result, Instant now) {
+        String responseJson = serializeResponse(result);
+        Optional<String> hashedIdempotencyKey = getHashedIdempotencyKey(data);
+        if (!hashedIdempotencyKey.isPresent()) {
+            return null;
+        }
+        return withResponse(new DataRecord(
+                hashedIdempotencyKey.get(),
+                DataRecord.Status.COMPLETED,
+                getExpiryEpochSecond(now),
+                responseJson,
+                getHashedPayload(data)
+        ), result);
+    }
+
+    /**
+     * Save records of several functions' executions completing successfully, using {@link #updateRecords(List)}.
+     *
+     * @param data    Payloads
+     * @param results the responses from the function, in the same order as the payloads
+     * @param now
+     * @return the outcome for each payload, in the same order as the payloads
+     */
+    public List<BatchRecordOutcome> saveSuccessBatch(List<JsonNode> data, List<?> results, Instant now) {
+        if (data.size() != results.size()) {
+            throw new IllegalArgumentException("The number of results (" + results.size() + ") does not match the number of payloads (" + data.size() + ")");
+        }
+        List<BatchRecordOutcome> outcomes = new ArrayList<>(data.size());
+        Map<String, DataRecord> records = new LinkedHashMap<>();
+        for (int i = 0; i < data.size(); i++) {
+            JsonNode payload = data.get(i);
+            String responseJson = serializeResponse(results.get(i));
+            Optional<String> hashedIdempotencyKey = getHashedIdempotencyKey(payload);
             if (!hashedIdempotencyKey.isPresent()) {
-                // missing idempotency key => non-idempotent transaction, we do not store the data, simply return
-                return;
+                outcomes.add(new BatchRecordOutcome(payload, null, BatchRecordOutcome.Status.NO_IDEMPOTENCY_KEY, null));
+                continue;
             }
-            DataRecord record = new DataRecord(
+            DataRecord record = withResponse(new DataRecord(
                     hashedIdempotencyKey.get(),
                     DataRecord.Status.COMPLETED,
                     getExpiryEpochSecond(now),
                     responseJson,
-                    getHashedPayload(data)
-            );
-            LOG.debug("Function successfully executed. Saving record to persistence store with idempotency key: {}", record.getIdempotencyKey());
-            updateRecord(record);
-            saveToCache(record);
+                    getHashedPayload(payload)
+            ), results.get(i));
+            records.putIfAbsent(record.getIdempotencyKey(), record);
+            outcomes.add(new BatchRecordOutcome(payload, record.getIdempotencyKey(), BatchRecordOutcome.Status.SAVED, records.get(record.getIdempotencyKey())));
+        }
+        if (!records.isEmpty()) {
+            LOG.debug("Functions successfully executed. Saving {} records to persistence store", records.size());
+            updateRecords(new ArrayList<>(records.values()));
+            records.values().forEach(this::saveToCache);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Keep a copy of the response with the record, to be saved in the local cache
+     * (see {@link IdempotencyConfig.Builder#withResponseCopyStrategy(ResponseCopyStrategy)})
+     */
+    private DataRecord withResponse(DataRecord record, Object response) {
+        if (responseCopyStrategy == null) {
+            return record;
+        }
+        return record.withResponse(ResponseCopyStrategy.copyOf(responseCopyStrategy, response));
+    }
+
+    /**
+     * Get the response kept as an object with a record of the local cache
+     * (see {@link IdempotencyConfig.Builder#withResponseCopyStrategy(ResponseCopyStrategy)}), to replay it without deserializing it.
+     *
+     * @param record the completed record
+     * @param type   the type of response expected
+     * @return a copy of the response, null if the record has no response of this type
+     */
+    public Object getCachedResponse(DataRecord record, Class<?> type) {
+        Object response = record.getResponse();
+        if (responseCopyStrategy == null || !type.isInstance(response)) {
+            return null;
+        }
+        return ResponseCopyStrategy.copyOf(responseCopyStrategy, response);
+    }
+
+    /**
+     * Keep the deserialized response of a record in the local cache, so that the next replays do not deserialize it
+     * (see {@link IdempotencyConfig.Builder#withResponseCopyStrategy(ResponseCopyStrategy)}).
+     *
+     * @param record   the completed record, retrieved from the persistence store
+     * @param response its deserialized response
+     */
+    public void saveResponseToCache(DataRecord record, Object response) {
+        if (responseCopyStrategy == null || response == null || !DataRecord.Status.COMPLETED.equals(record.getStatus())) {
+            return;
+        }
+        cache.put(record.getIdempotencyKey(), withResponse(record, response));
+    }
+
+    private String serializeResponse(Object result) {
+        if (result instanceof String) {
+            return (String) result;
+        }
+        ObjectWriter writer = JsonConfig.get().getObjectMapper().writer();
+        try {
+            return writer.writeValueAsString(result);
         } catch (JsonProcessingException e) {
             // TODO : throw ?
             throw new RuntimeException("Error while serializing the response", e);
@@ -156,13 +369,71 @@ public abstract class BasePersistenceStore implements PersistenceStore {
         if (retrieveFromCache(idempotencyKey, now) != null) {
             throw new IdempotencyItemAlreadyExistsException();
         }
+        if (previousHasher != null && getPreviousRecord(data, now) != null) {
+            LOG.debug("Record found with the previous hash function for idempotency key: {}", idempotencyKey);
+            throw new IdempotencyItemAlreadyExistsException();
+        }
+
+        DataRecord record = getInProgressRecord(data, idempotencyKey, now, remainingTimeInMs);
+        LOG.debug("saving in progress record for idempotency key: {}", record.getIdempotencyKey());
+        putRecord(record, now);
+        saveToCache(record);
+    }
+
+    /**
+     * Save record of function's execution being in progress, without blocking
+     * when the persistence store is an {@link AsyncPersistenceStore}
+     * (otherwise the record is saved with {@link #saveInProgress(JsonNode, Instant, OptionalInt)} before returning).
+     *
+     * @param data              Payload
+     * @param now
+     * @param remainingTimeInMs remaining time of the Lambda invocation, if known
+     * @return completed when the record is saved, or failed with {@link IdempotencyItemAlreadyExistsException}
+     */
+    public CompletableFuture<Void> saveInProgressAsync(JsonNode data, Instant now, OptionalInt remainingTimeInMs) {
+        if (!(this instanceof AsyncPersistenceStore)) {
+            return completed(() -> saveInProgress(data, now, remainingTimeInMs));
+        }
+        Optional<String> hashedIdempotencyKey;
+        try {
+            hashedIdempotencyKey = getHashedIdempotencyKey(data);
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+        if (!hashedIdempotencyKey.isPresent()) {
+            // missing idempotency key => non-idempotent transaction, we do not store the data, simply return
+            return CompletableFuture.completedFuture(null);
+        }
 
+        String idempotencyKey = hashedIdempotencyKey.get();
+        CompletableFuture<DataRecord> previousRecord;
+        try {
+            if (retrieveFromCache(idempotencyKey, now) != null) {
+                return failed(new IdempotencyItemAlreadyExistsException());
+            }
+            previousRecord = previousHasher != null ? getPreviousRecordAsync(data, now) : CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+        return previousRecord.thenCompose(previous -> {
+            if (previous != null) {
+                LOG.debug("Record found with the previous hash function for idempotency key: {}", idempotencyKey);
+                throw new IdempotencyItemAlreadyExistsException();
+            }
+            DataRecord record = getInProgressRecord(data, idempotencyKey, now, remainingTimeInMs);
+            LOG.debug("saving in progress record for idempotency key: {}", record.getIdempotencyKey());
+            return ((AsyncPersistenceStore) this).putRecordAsync(record, now)
+                    .thenRun(() -> saveToCache(record));
+        });
+    }
+
+    private DataRecord getInProgressRecord(JsonNode data, String idempotencyKey, Instant now, OptionalInt remainingTimeInMs) {
         OptionalLong inProgressExpirationMsTimestamp = OptionalLong.empty();
         if (remainingTimeInMs.isPresent()) {
             inProgressExpirationMsTimestamp = OptionalLong.of(now.plus(remainingTimeInMs.getAsInt(), ChronoUnit.MILLIS).toEpochMilli());
         }
 
-        DataRecord record = new DataRecord(
+        return new DataRecord(
                 idempotencyKey,
                 DataRecord.Status.INPROGRESS,
                 getExpiryEpochSecond(now),
@@ -170,8 +441,76 @@ public abstract class BasePersistenceStore implements PersistenceStore {
                 getHashedPayload(data),
                 inProgressExpirationMsTimestamp
         );
-        LOG.debug("saving in progress record for idempotency key: {}", record.getIdempotencyKey());
-        putRecord(record, now);
+    }
+
+    /**
+     * Save records of several functions' executions being in progress, using {@link #putRecords(List, Instant)}.
+     * Payloads whose idempotency key is already in the local cache, or appears earlier in the batch,
+     * are reported as {@link BatchRecordOutcome.Status#ALREADY_EXISTS} without reaching the persistence store.
+     *
+     * @param data              Payloads
+     * @param now
+     * @param remainingTimeInMs remaining time of the Lambda invocation, if known
+     * @return the outcome for each payload, in the same order as the payloads
+     */
+    public List<BatchRecordOutcome> saveInProgressBatch(List<JsonNode> data, Instant now, OptionalInt remainingTimeInMs) {
+        OptionalLong inProgressExpirationMsTimestamp = OptionalLong.empty();
+        if (remainingTimeInMs.isPresent()) {
+            inProgressExpirationMsTimestamp = OptionalLong.of(now.plus(remainingTimeInMs.getAsInt(), ChronoUnit.MILLIS).toEpochMilli());
+        }
+
+        BatchRecordOutcome[] outcomes = new BatchRecordOutcome[data.size()];
+        String[] idempotencyKeys = new String[data.size()];
+        Map<String, DataRecord> records = new LinkedHashMap<>();
+        Map<String, JsonNode> payloads = new HashMap<>();
+        for (int i = 0; i < data.size(); i++) {
+            JsonNode payload = data.get(i);
+            Optional<String> hashedIdempotencyKey = getHashedIdempotencyKey(payload);
+            if (!hashedIdempotencyKey.isPresent()) {
+                outcomes[i] = new BatchRecordOutcome(payload, null, BatchRecordOutcome.Status.NO_IDEMPOTENCY_KEY, null);
+                continue;
+            }
+            String idempotencyKey = hashedIdempotencyKey.get();
+            idempotencyKeys[i] = idempotencyKey;
+            DataRecord cachedRecord = retrieveFromCache(idempotencyKey, now);
+            if (cachedRecord != null || records.containsKey(idempotencyKey)) {
+                outcomes[i] = new BatchRecordOutcome(payload, idempotencyKey, BatchRecordOutcome.Status.ALREADY_EXISTS, cachedRecord);
+                continue;
+            }
+            records.put(idempotencyKey, new DataRecord(
+                    idempotencyKey,
+                    DataRecord.Status.INPROGRESS,
+                    getExpiryEpochSecond(now),
+                    null,
+                    getHashedPayload(payload),
+                    inProgressExpirationMsTimestamp
+            ));
+            payloads.put(idempotencyKey, payload);
+        }
+
+        Map<String, DataRecord> previousRecords = previousHasher != null && !payloads.isEmpty() ? getPreviousRecords(payloads, now) : Collections.emptyMap();
+        records.keySet().removeAll(previousRecords.keySet());
+
+        Set<String> alreadyExisting = records.isEmpty() ? Collections.emptySet() : putRecords(new ArrayList<>(records.values()), now);
+        LOG.debug("saved {} in progress records, {} already existing", records.size() - alreadyExisting.size(), alreadyExisting.size());
+
+        List<BatchRecordOutcome> result = new ArrayList<>(data.size());
+        for (int i = 0; i < data.size(); i++) {
+            if (outcomes[i] != null) {
+                result.add(outcomes[i]);
+                continue;
+            }
+            String idempotencyKey = idempotencyKeys[i];
+            if (previousRecords.containsKey(idempotencyKey)) {
+                result.add(new BatchRecordOutcome(data.get(i), idempotencyKey, BatchRecordOutcome.Status.ALREADY_EXISTS, previousRecords.get(idempotencyKey)));
+            } else if (alreadyExisting.contains(idempotencyKey)) {
+                result.add(new BatchRecordOutcome(data.get(i), idempotencyKey, BatchRecordOutcome.Status.ALREADY_EXISTS, null));
+            } else {
+                result.add(new BatchRecordOutcome(data.get(i), idempotencyKey, BatchRecordOutcome.Status.SAVED, records.get(idempotencyKey)));
+                saveToCache(records.get(idempotencyKey));
+            }
+        }
+        return result;
     }
 
     /**
@@ -197,6 +536,59 @@ public abstract class BasePersistenceStore implements PersistenceStore {
         deleteFromCache(idemPotencyKey);
     }
 
+    /**
+     * Delete record from the persistence store, without blocking
+     * when the persistence store is an {@link AsyncPersistenceStore}
+     * (otherwise the record is deleted with {@link #deleteRecord(JsonNode, Throwable)} before returning).
+     *
+     * @param data      Payload
+     * @param throwable The throwable thrown by the function
+     * @return completed when the record is deleted
+     */
+    public CompletableFuture<Void> deleteRecordAsync(JsonNode data, Throwable throwable) {
+        if (!(this instanceof AsyncPersistenceStore)) {
+            return completed(() -> deleteRecord(data, throwable));
+        }
+        Optional<String> hashedIdempotencyKey;
+        try {
+            hashedIdempotencyKey = getHashedIdempotencyKey(data);
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+        if (!hashedIdempotencyKey.isPresent()) {
+            // missing idempotency key => non-idempotent transaction, we do not delete the data, simply return
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String idemPotencyKey = hashedIdempotencyKey.get();
+        LOG.debug("Function raised an exception {}. " +
+                        "Clearing in progress record in persistence store for idempotency key: {}",
+                throwable.getClass(),
+                idemPotencyKey);
+
+        deleteFromCache(idemPotencyKey);
+        return ((AsyncPersistenceStore) this).deleteRecordAsync(idemPotencyKey);
+    }
+
+    private static CompletableFuture<Void> completed(Runnable operation) {
+        try {
+            operation.run();
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable throwable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
     /**
      * Retrieve idempotency key for data provided, fetch from persistence store, and convert to DataRecord.
      *
@@ -220,12 +612,181 @@ public abstract class BasePersistenceStore implements PersistenceStore {
             return cachedRecord;
         }
 
-        DataRecord record = getRecord(idemPotencyKey);
+        DataRecord record;
+        try {
+            record = getRecord(idemPotencyKey);
+        } catch (IdempotencyItemNotFoundException e) {
+            DataRecord previousRecord = previousHasher != null ? getPreviousRecord(data, now) : null;
+            if (previousRecord == null) {
+                throw e;
+            }
+            LOG.debug("Idempotency record found with the previous hash function for idempotency key: {}", idemPotencyKey);
+            validatePayload(data, previousRecord, previousHasher);
+            return previousRecord;
+        }
         saveToCache(record);
         validatePayload(data, record);
         return record;
     }
 
+    /**
+     * Retrieve the record of a payload, without blocking when the persistence store is an {@link AsyncPersistenceStore}
+     * (otherwise the record is retrieved with {@link #getRecord(JsonNode, Instant)} before returning).
+     *
+     * @param data Payload
+     * @param now
+     * @return the record, or failed with {@link IdempotencyValidationException} or {@link IdempotencyItemNotFoundException}
+     */
+    public CompletableFuture<DataRecord> getRecordAsync(JsonNode data, Instant now) {
+        if (!(this instanceof AsyncPersistenceStore)) {
+            try {
+                return CompletableFuture.completedFuture(getRecord(data, now));
+            } catch (RuntimeException e) {
+                return failed(e);
+            }
+        }
+        Optional<String> hashedIdempotencyKey;
+        try {
+            hashedIdempotencyKey = getHashedIdempotencyKey(data);
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+        if (!hashedIdempotencyKey.isPresent()) {
+            // missing idempotency key => non-idempotent transaction, we do not get the data, simply return nothing
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String idemPotencyKey = hashedIdempotencyKey.get();
+        try {
+            DataRecord cachedRecord = retrieveFromCache(idemPotencyKey, now);
+            if (cachedRecord != null) {
+                LOG.debug("Idempotency record found in cache with idempotency key: {}", idemPotencyKey);
+                validatePayload(data, cachedRecord);
+                return CompletableFuture.completedFuture(cachedRecord);
+            }
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+
+        return ((AsyncPersistenceStore) this).getRecordAsync(idemPotencyKey).handle((record, throwable) -> {
+            if (throwable == null) {
+                saveToCache(record);
+                validatePayload(data, record);
+                return CompletableFuture.completedFuture(record);
+            }
+            Throwable cause = unwrap(throwable);
+            if (!(cause instanceof IdempotencyItemNotFoundException) || previousHasher == null) {
+                return BasePersistenceStore.<DataRecord>failed(cause);
+            }
+            return getPreviousRecordAsync(data, now).thenApply(previousRecord -> {
+                if (previousRecord == null) {
+                    throw (IdempotencyItemNotFoundException) cause;
+                }
+                LOG.debug("Idempotency record found with the previous hash function for idempotency key: {}", idemPotencyKey);
+                validatePayload(data, previousRecord, previousHasher);
+                return previousRecord;
+            });
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Retrieve the records of several payloads, from the local cache or using {@link #getRecords(java.util.Collection)}.
+     *
+     * @param data Payloads
+     * @param now
+     * @return the outcome for each payload, in the same order as the payloads
+     */
+    public List<BatchRecordOutcome> getRecordBatch(List<JsonNode> data, Instant now) {
+        String[] idempotencyKeys = new String[data.size()];
+        Map<String, DataRecord> records = new LinkedHashMap<>();
+        List<String> keysToFetch = new ArrayList<>();
+        for (int i = 0; i < data.size(); i++) {
+            Optional<String> hashedIdempotencyKey = getHashedIdempotencyKey(data.get(i));
+            if (!hashedIdempotencyKey.isPresent()) {
+                continue;
+            }
+            String idempotencyKey = hashedIdempotencyKey.get();
+            idempotencyKeys[i] = idempotencyKey;
+            if (records.containsKey(idempotencyKey)) {
+                continue;
+            }
+            DataRecord cachedRecord = retrieveFromCache(idempotencyKey, now);
+            if (cachedRecord != null) {
+                LOG.debug("Idempotency record found in cache with idempotency key: {}", idempotencyKey);
+            } else {
+                keysToFetch.add(idempotencyKey);
+            }
+            records.put(idempotencyKey, cachedRecord);
+        }
+
+        if (!keysToFetch.isEmpty()) {
+            Map<String, DataRecord> fetchedRecords = getRecords(keysToFetch);
+            fetchedRecords.values().forEach(this::saveToCache);
+            records.putAll(fetchedRecords);
+        }
+
+        Map<String, DataRecord> previousRecords = Collections.emptyMap();
+        if (previousHasher != null) {
+            Map<String, JsonNode> notFound = new HashMap<>();
+            for (int i = 0; i < data.size(); i++) {
+                if (idempotencyKeys[i] != null && records.get(idempotencyKeys[i]) == null) {
+                    notFound.put(idempotencyKeys[i], data.get(i));
+                }
+            }
+            if (!notFound.isEmpty()) {
+                previousRecords = getPreviousRecords(notFound, now);
+            }
+        }
+
+        List<BatchRecordOutcome> outcomes = new ArrayList<>(data.size());
+        for (int i = 0; i < data.size(); i++) {
+            JsonNode payload = data.get(i);
+            String idempotencyKey = idempotencyKeys[i];
+            if (idempotencyKey == null) {
+                outcomes.add(new BatchRecordOutcome(payload, null, BatchRecordOutcome.Status.NO_IDEMPOTENCY_KEY, null));
+                continue;
+            }
+            DataRecord record = records.get(idempotencyKey);
+            ThreadLocal<Hasher> recordHasher = hasher;
+            if (record == null && previousRecords.containsKey(idempotencyKey)) {
+                record = previousRecords.get(idempotencyKey);
+                recordHasher = previousHasher;
+            }
+            if (record == null) {
+                outcomes.add(new BatchRecordOutcome(payload, idempotencyKey, BatchRecordOutcome.Status.NOT_FOUND, null));
+                continue;
+            }
+            try {
+                validatePayload(payload, record, recordHasher);
+                outcomes.add(new BatchRecordOutcome(payload, idempotencyKey, BatchRecordOutcome.Status.FOUND, record));
+            } catch (IdempotencyValidationException e) {
+                outcomes.add(new BatchRecordOutcome(payload, idempotencyKey, BatchRecordOutcome.Status.INVALID_PAYLOAD, record));
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Get the idempotency key of a payload, as saved in the persistence store
+     *
+     * @param data incoming data
+     * @return the hashed idempotency key, prefixed with the function name, or empty if the payload has no key
+     */
+    public Optional<String> getIdempotencyKey(JsonNode data) {
+        return getHashedIdempotencyKey(data);
+    }
+
+    /**
+     * Get the hash of the part of a payload validated against the stored record
+     * (see {@link IdempotencyConfig.Builder#withPayloadValidationJMESPath(String)})
+     *
+     * @param data incoming data
+     * @return the hash of the validated data, empty if payload validation is disabled
+     */
+    public String getPayloadValidationHash(JsonNode data) {
+        return getHashedPayload(data);
+    }
+
     /**
      * Extract idempotency key and return a hashed representation
      *
@@ -233,6 +794,10 @@ public abstract class BasePersistenceStore implements PersistenceStore {
      * @return Hashed representation of the data extracted by the jmespath expression
      */
     private Optional<String> getHashedIdempotencyKey(JsonNode data) {
+        return getHashedIdempotencyKey(data, hasher);
+    }
+
+    private Optional<String> getHashedIdempotencyKey(JsonNode data, ThreadLocal<Hasher> hasher) {
         JsonNode node = data;
 
         if (eventKeyJMESPath != null) {
@@ -248,7 +813,7 @@ public abstract class BasePersistenceStore implements PersistenceStore {
             }
         }
 
-        String hash = generateHash(node);
+        String hash = generateHash(node, hasher.get(), isCanonical(hasher));
         hash = functionName + "#" + hash;
         return Optional.of(hash);
     }
@@ -268,11 +833,22 @@ public abstract class BasePersistenceStore implements PersistenceStore {
      * @return Hashed representation of the data extracted by the jmespath expression
      */
     private String getHashedPayload(JsonNode data) {
+        return getHashedPayload(data, hasher);
+    }
+
+    private String getHashedPayload(JsonNode data, ThreadLocal<Hasher> hasher) {
         if (!payloadValidationEnabled) {
             return "";
         }
         JsonNode object = validationKeyJMESPath.search(data);
-        return generateHash(object);
+        return generateHash(object, hasher.get(), isCanonical(hasher));
+    }
+
+    /**
+     * Records found with the previous hash function were hashed with the previous serialization
+     */
+    private boolean isCanonical(ThreadLocal<Hasher> hasher) {
+        return hasher == previousHasher ? previousCanonicalHashing : canonicalHashing;
     }
 
     /**
@@ -282,46 +858,171 @@ public abstract class BasePersistenceStore implements PersistenceStore {
      * @return Hashed representation of the provided data
      */
     String generateHash(JsonNode data) {
-        Object node;
+        return generateHash(data, hasher.get(), canonicalHashing);
+    }
+
+    private String generateHash(JsonNode data, Hasher digest, boolean canonicalHashing) {
         // if array or object, use the json string representation, otherwise get the real value
         if (data.isContainerNode()) {
-            node = data.toString();
-        } else if (data.isTextual()) {
-            node = data.asText();
-        } else if (data.isInt()) {
-            node = data.asInt();
-        } else if (data.isLong()) {
-            node = data.asLong();
-        } else if (data.isDouble()) {
-            node = data.asDouble();
-        } else if (data.isFloat()) {
-            node = data.floatValue();
-        } else if (data.isBigInteger()) {
-            node = data.bigIntegerValue();
-        } else if (data.isBigDecimal()) {
-            node = data.decimalValue();
-        } else if (data.isBoolean()) {
-            node = data.asBoolean();
-        } else node = data; // anything else
-
-        MessageDigest hashAlgorithm = getHashAlgorithm();
-        byte[] digest = hashAlgorithm.digest(node.toString().getBytes(StandardCharsets.UTF_8));
-        return String.format("%032x", new BigInteger(1, digest));
-    }
-
-    private MessageDigest getHashAlgorithm() {
-        MessageDigest hashAlgorithm;
+            // stream the json representation directly into the hasher, without building the string
+            boolean written = false;
+            try {
+                if (canonicalHashing) {
+                    try (JsonGenerator generator = JSON_FACTORY.createGenerator(new HashingOutputStream(digest))) {
+                        CanonicalJsonWriter.write(data, generator);
+                    }
+                } else {
+                    NODE_WRITER.writeValue(new HashingOutputStream(digest), data);
+                }
+                written = true;
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to serialize data to generate hash", e);
+            } finally {
+                if (!written) {
+                    // reset the hasher on any failure, so that the next hash on this thread is not corrupted
+                    digest.digest();
+                }
+            }
+        } else {
+            Object node;
+            if (data.isTextual()) {
+                node = data.asText();
+            } else if (canonicalHashing && data.isNumber()) {
+                node = CanonicalJsonWriter.canonicalNumber(data);
+            } else if (data.isInt()) {
+                node = data.asInt();
+            } else if (data.isLong()) {
+                node = data.asLong();
+            } else if (data.isDouble()) {
+                node = data.asDouble();
+            } else if (data.isFloat()) {
+                node = data.floatValue();
+            } else if (data.isBigInteger()) {
+                node = data.bigIntegerValue();
+            } else if (data.isBigDecimal()) {
+                node = data.decimalValue();
+            } else if (data.isBoolean()) {
+                node = data.asBoolean();
+            } else node = data; // anything else
+            byte[] bytes = node.toString().getBytes(StandardCharsets.UTF_8);
+            digest.update(bytes, 0, bytes.length);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hexadecimal representation of the digest, identical to <code>String.format("%032x", new BigInteger(1, digest))</code>
+     * (leading zeros are dropped, with a minimum of 32 characters) so that keys remain the same.
+     *
+     * @param digest the digest to encode
+     * @return lowercase hexadecimal representation
+     */
+    static String toHex(byte[] digest) {
+        int length = Math.max(MIN_HEX_LENGTH, digest.length * 2);
+        char[] chars = new char[length];
+        int offset = length - digest.length * 2;
+        for (int i = 0; i < offset; i++) {
+            chars[i] = '0';
+        }
+        for (int i = 0; i < digest.length; i++) {
+            chars[offset + 2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            chars[offset + 2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        int start = 0;
+        while (length - start > MIN_HEX_LENGTH && chars[start] == '0') {
+            start++;
+        }
+        return new String(chars, start, length - start);
+    }
+
+    private HashFunction getHashFunction(String hashFunctionName) {
         try {
-            hashAlgorithm = MessageDigest.getInstance(hashFunctionName);
-        } catch (NoSuchAlgorithmException e) {
+            return HashFunctions.forName(hashFunctionName);
+        } catch (IllegalArgumentException e) {
             LOG.warn("Error instantiating {} hash function, trying with MD5", hashFunctionName);
-            try {
-                hashAlgorithm = MessageDigest.getInstance("MD5");
-            } catch (NoSuchAlgorithmException ex) {
-                throw new RuntimeException("Unable to instantiate MD5 digest", ex);
+            return HashFunctions.forName("MD5");
+        }
+    }
+
+    /**
+     * Retrieve the record created with the previous hash function, if it exists and is not expired
+     *
+     * @param data Payload
+     * @param now
+     * @return the record, or null
+     */
+    private DataRecord getPreviousRecord(JsonNode data, Instant now) {
+        Optional<String> previousIdempotencyKey = getHashedIdempotencyKey(data, previousHasher);
+        if (!previousIdempotencyKey.isPresent()) {
+            return null;
+        }
+        DataRecord cachedRecord = retrieveFromCache(previousIdempotencyKey.get(), now);
+        if (cachedRecord != null) {
+            return cachedRecord;
+        }
+        try {
+            DataRecord record = getRecord(previousIdempotencyKey.get());
+            if (record.isExpired(now)) {
+                return null;
             }
+            saveToCache(record);
+            return record;
+        } catch (IdempotencyItemNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Retrieve the record created with the previous hash function, without blocking
+     * (see {@link #getPreviousRecord(JsonNode, Instant)})
+     */
+    private CompletableFuture<DataRecord> getPreviousRecordAsync(JsonNode data, Instant now) {
+        Optional<String> previousIdempotencyKey = getHashedIdempotencyKey(data, previousHasher);
+        if (!previousIdempotencyKey.isPresent()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        DataRecord cachedRecord = retrieveFromCache(previousIdempotencyKey.get(), now);
+        if (cachedRecord != null) {
+            return CompletableFuture.completedFuture(cachedRecord);
+        }
+        return ((AsyncPersistenceStore) this).getRecordAsync(previousIdempotencyKey.get()).handle((record, throwable) -> {
+            if (throwable != null) {
+                if (unwrap(throwable) instanceof IdempotencyItemNotFoundException) {
+                    return null;
+                }
+                throw new CompletionException(unwrap(throwable));
+            }
+            if (record.isExpired(now)) {
+                return null;
+            }
+            saveToCache(record);
+            return record;
+        });
+    }
+
+    /**
+     * Retrieve the records created with the previous hash function, if they exist and are not expired
+     *
+     * @param payloads payloads indexed by their idempotency key (with the current hash function)
+     * @param now
+     * @return the records found, indexed by their idempotency key with the current hash function
+     */
+    private Map<String, DataRecord> getPreviousRecords(Map<String, JsonNode> payloads, Instant now) {
+        Map<String, String> idempotencyKeys = new HashMap<>();
+        for (Map.Entry<String, JsonNode> entry : payloads.entrySet()) {
+            getHashedIdempotencyKey(entry.getValue(), previousHasher)
+                    .ifPresent(previousKey -> idempotencyKeys.put(previousKey, entry.getKey()));
+        }
+        Map<String, DataRecord> records = new HashMap<>();
+        if (idempotencyKeys.isEmpty()) {
+            return records;
         }
-        return hashAlgorithm;
+        getRecords(idempotencyKeys.keySet()).forEach((previousKey, record) -> {
+            if (!record.isExpired(now)) {
+                records.put(idempotencyKeys.get(previousKey), record);
+            }
+        });
+        return records;
     }
 
     /**
@@ -331,8 +1032,12 @@ public abstract class BasePersistenceStore implements PersistenceStore {
      * @param dataRecord DataRecord instance
      */
     private void validatePayload(JsonNode data, DataRecord dataRecord) throws IdempotencyValidationException {
+        validatePayload(data, dataRecord, hasher);
+    }
+
+    private void validatePayload(JsonNode data, DataRecord dataRecord, ThreadLocal<Hasher> hasher) throws IdempotencyValidationException {
         if (payloadValidationEnabled) {
-            String dataHash = getHashedPayload(data);
+            String dataHash = getHashedPayload(data, hasher);
             if (!StringUtils.equals(dataHash, dataRecord.getPayloadHash())) {
                 throw new IdempotencyValidationException("Payload does not match stored record for this event key");
             }
@@ -348,20 +1053,30 @@ public abstract class BasePersistenceStore implements PersistenceStore {
     }
 
     /**
-     * Save data_record to local cache except when status is "INPROGRESS"
+     * Save data_record to local cache.
      * <br/>
-     * NOTE: We can't cache "INPROGRESS" records as we have no way to reflect updates that can happen outside of the
-     * execution environment
+     * "INPROGRESS" records are only cached when an in progress cache TTL is configured
+     * (see {@link IdempotencyConfig.Builder#withInProgressCacheTtl(java.time.Duration)}), in a separate cache:
+     * as updates can happen outside of the execution environment, they are kept for that short TTL at most, and never
+     * beyond their in progress expiry timestamp (when the execution is considered timed out).
+     * Other records replace the in progress one, if any.
      *
      * @param dataRecord DataRecord to save in cache
      */
     private void saveToCache(DataRecord dataRecord) {
         if (!useLocalCache)
             return;
-        if (dataRecord.getStatus().equals(DataRecord.Status.INPROGRESS))
+        if (dataRecord.getStatus().equals(DataRecord.Status.INPROGRESS)) {
+            if (inProgressCache != null) {
+                inProgressCache.put(dataRecord.getIdempotencyKey(), dataRecord);
+            }
             return;
+        }
 
         cache.put(dataRecord.getIdempotencyKey(), dataRecord);
+        if (inProgressCache != null) {
+            inProgressCache.remove(dataRecord.getIdempotencyKey());
+        }
     }
 
     private DataRecord retrieveFromCache(String idempotencyKey, Instant now) {
@@ -371,25 +1086,84 @@ public abstract class BasePersistenceStore implements PersistenceStore {
         DataRecord record = cache.get(idempotencyKey);
         if (record != null) {
             if (!record.isExpired(now)) {
+                listener.onCacheLookup(true);
                 return record;
             }
             LOG.debug("Removing expired local cache record for idempotency key: {}", idempotencyKey);
             deleteFromCache(idempotencyKey);
         }
-        return null;
+        // expired in progress records are never returned by the cache
+        record = inProgressCache != null ? inProgressCache.get(idempotencyKey) : null;
+        listener.onCacheLookup(record != null);
+        return record;
     }
 
     private void deleteFromCache(String idempotencyKey) {
         if (!useLocalCache)
             return;
         cache.remove(idempotencyKey);
+        if (inProgressCache != null) {
+            inProgressCache.remove(idempotencyKey);
+        }
+    }
+
+    /**
+     * @return hit / miss / eviction counters of the local cache, empty if the local cache is not used
+     */
+    public CacheStats getLocalCacheStats() {
+        if (!useLocalCache || cache == null) {
+            return CacheStats.EMPTY;
+        }
+        return cache.stats();
+    }
+
+    /**
+     * @return hit / miss / eviction counters of the cache of records in progress, empty if they are not cached
+     */
+    public CacheStats getInProgressCacheStats() {
+        if (!useLocalCache || inProgressCache == null) {
+            return CacheStats.EMPTY;
+        }
+        return inProgressCache.stats();
+    }
+
+    /**
+     * @return counters of the records saved in the background, empty if responses are not saved in the background
+     * (each attempt is also notified to {@link IdempotencyListener#onBackgroundWrite})
+     */
+    public BackgroundWriteStats getBackgroundWriteStats() {
+        if (backgroundWriter == null) {
+            return BackgroundWriteStats.EMPTY;
+        }
+        return backgroundWriter.stats();
     }
 
     /**
      * For test purpose only (adding a cache to mock)
      */
-    void configure(IdempotencyConfig config, String functionName, LRUCache<String, DataRecord> cache) {
+    void configure(IdempotencyConfig config, String functionName, LocalCache<String, DataRecord> cache) {
         this.configure(config, functionName);
         this.cache = cache;
     }
+
+    /**
+     * {@link OutputStream} feeding the bytes written directly into a {@link Hasher}
+     */
+    private static final class HashingOutputStream extends OutputStream {
+        private final Hasher digest;
+
+        private HashingOutputStream(Hasher digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b) {
+            digest.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            digest.update(b, off, len);
+        }
+    }
 }
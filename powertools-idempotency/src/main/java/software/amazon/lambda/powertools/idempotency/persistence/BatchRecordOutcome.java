@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Outcome of a batch operation on the persistence store, for one of the payloads of the batch.
+ * See {@link BasePersistenceStore#saveInProgressBatch(java.util.List, java.time.Instant, java.util.OptionalInt)},
+ * {@link BasePersistenceStore#getRecordBatch(java.util.List, java.time.Instant)} and
+ * {@link BasePersistenceStore#saveSuccessBatch(java.util.List, java.util.List, java.time.Instant)}.
+ */
+public class BatchRecordOutcome {
+    private final JsonNode data;
+    private final String idempotencyKey;
+    private final Status status;
+    private final DataRecord record;
+
+    BatchRecordOutcome(JsonNode data, String idempotencyKey, Status status, DataRecord record) {
+        this.data = data;
+        this.idempotencyKey = idempotencyKey;
+        this.status = status;
+        this.record = record;
+    }
+
+    /**
+     * @return the payload this outcome relates to
+     */
+    public JsonNode getData() {
+        return data;
+    }
+
+    /**
+     * @return the hashed idempotency key of the payload, null if no key was found in the payload
+     */
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the record saved or found in the persistence store (or local cache), potentially null
+     * (for example when the record already exists but was not fetched)
+     */
+    public DataRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Status of the outcome:
+     * <ul>
+     *  <li>SAVED: record saved in the persistence store</li>
+     *  <li>ALREADY_EXISTS: record not saved because a non-expired one already exists (or the same key appears earlier in the batch)</li>
+     *  <li>FOUND: record found in the persistence store (or local cache)</li>
+     *  <li>NOT_FOUND: no record found in the persistence store</li>
+     *  <li>INVALID_PAYLOAD: record found but the payload doesn't match the stored one (payload validation)</li>
+     *  <li>NO_IDEMPOTENCY_KEY: no idempotency key found in the payload, nothing stored nor retrieved</li>
+     * </ul>
+     */
+    public enum Status {
+        SAVED, ALREADY_EXISTS, FOUND, NOT_FOUND, INVALID_PAYLOAD, NO_IDEMPOTENCY_KEY
+    }
+}
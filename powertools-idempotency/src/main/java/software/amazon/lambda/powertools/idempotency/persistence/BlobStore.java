@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+/**
+ * Store for the response data too large to be kept in the persistence store itself
+ * (see {@link DynamoDBPersistenceStore.Builder#withBlobStore(BlobStore)}).
+ * See {@link S3BlobStore} for an implementation.
+ */
+public interface BlobStore {
+
+    /**
+     * Store the data, replacing any existing data with the same key
+     *
+     * @param key  key of the data
+     * @param data the data to store
+     */
+    void put(String key, byte[] data);
+
+    /**
+     * @param key key of the data
+     * @return the data stored with this key
+     */
+    byte[] get(String key);
+
+    /**
+     * Delete the data, if it exists
+     *
+     * @param key key of the data
+     */
+    void delete(String key);
+}
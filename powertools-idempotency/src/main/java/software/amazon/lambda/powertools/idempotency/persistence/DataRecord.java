@@ -30,6 +30,8 @@ public class DataRecord {
     private final String responseData;
     private final String payloadHash;
     private final OptionalLong inProgressExpiryTimestamp;
+    // deserialized response, only kept in the local cache (not part of equals/hashCode)
+    private final Object response;
 
     public DataRecord(String idempotencyKey, Status status, long expiryTimestamp, String responseData, String payloadHash) {
         this.idempotencyKey = idempotencyKey;
@@ -38,6 +40,7 @@ public class DataRecord {
         this.responseData = responseData;
         this.payloadHash = payloadHash;
         this.inProgressExpiryTimestamp = OptionalLong.empty();
+        this.response = null;
     }
 
     public DataRecord(String idempotencyKey, Status status, long expiryTimestamp, String responseData, String payloadHash, OptionalLong inProgressExpiryTimestamp) {
@@ -47,6 +50,32 @@ public class DataRecord {
         this.responseData = responseData;
         this.payloadHash = payloadHash;
         this.inProgressExpiryTimestamp = inProgressExpiryTimestamp;
+        this.response = null;
+    }
+
+    private DataRecord(DataRecord record, Object response) {
+        this.idempotencyKey = record.idempotencyKey;
+        this.status = record.status;
+        this.expiryTimestamp = record.expiryTimestamp;
+        this.responseData = record.responseData;
+        this.payloadHash = record.payloadHash;
+        this.inProgressExpiryTimestamp = record.inProgressExpiryTimestamp;
+        this.response = response;
+    }
+
+    /**
+     * @param response deserialized response of the function
+     * @return a copy of this record, holding the response
+     */
+    DataRecord withResponse(Object response) {
+        return new DataRecord(this, response);
+    }
+
+    /**
+     * @return the deserialized response of the function, null unless the record comes from the local cache
+     */
+    Object getResponse() {
+        return response;
     }
 
     public String getIdempotencyKey() {
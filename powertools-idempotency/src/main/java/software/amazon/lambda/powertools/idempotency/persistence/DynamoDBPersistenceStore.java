@@ -15,30 +15,22 @@ package software.amazon.lambda.powertools.idempotency.persistence;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
 import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
-import software.amazon.awssdk.services.dynamodb.DynamoDbClientBuilder;
 import software.amazon.awssdk.services.dynamodb.model.*;
-import software.amazon.awssdk.utils.StringUtils;
-import software.amazon.lambda.powertools.idempotency.Constants;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyPersistenceLayerException;
 
 import java.time.Instant;
-import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.OptionalLong;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-import static software.amazon.lambda.powertools.core.internal.LambdaConstants.AWS_LAMBDA_INITIALIZATION_TYPE;
-import static software.amazon.lambda.powertools.core.internal.LambdaConstants.AWS_REGION_ENV;
-import static software.amazon.lambda.powertools.core.internal.LambdaConstants.LAMBDA_FUNCTION_NAME_ENV;
-import static software.amazon.lambda.powertools.core.internal.LambdaConstants.ON_DEMAND;
-import static software.amazon.lambda.powertools.idempotency.persistence.DataRecord.Status.INPROGRESS;
+import java.util.Set;
 
 /**
  * DynamoDB version of the {@link PersistenceStore}. Will store idempotency data in DynamoDB.<br>
@@ -48,65 +40,25 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
 
     private static final Logger LOG = LoggerFactory.getLogger(DynamoDBPersistenceStore.class);
 
+    // limits of the DynamoDB batch APIs
+    private static final int BATCH_GET_MAX_ITEMS = 100;
+    private static final int TRANSACT_WRITE_MAX_ITEMS = 100;
+    private static final int BATCH_WRITE_MAX_ITEMS = 25;
+    private static final int BATCH_MAX_ATTEMPTS = 5;
+    private static final String CONDITIONAL_CHECK_FAILED = "ConditionalCheckFailed";
+
     private final String tableName;
-    private final String keyAttr;
-    private final String staticPkValue;
-    private final String sortKeyAttr;
-    private final String expiryAttr;
-
-    private final String inProgressExpiryAttr;
-    private final String statusAttr;
-    private final String dataAttr;
-    private final String validationAttr;
+    private final DynamoDBRecordMapper mapper;
     private final DynamoDbClient dynamoDbClient;
 
     /**
      * Private: use the {@link Builder} to instantiate a new {@link DynamoDBPersistenceStore}
      */
-    private DynamoDBPersistenceStore(String tableName,
-                                     String keyAttr,
-                                     String staticPkValue,
-                                     String sortKeyAttr,
-                                     String expiryAttr,
-                                     String inProgressExpiryAttr,
-                                     String statusAttr,
-                                     String dataAttr,
-                                     String validationAttr,
-                                     DynamoDbClient client) {
+    private DynamoDBPersistenceStore(String tableName, DynamoDBRecordMapper mapper, DynamoDbClient client) {
         this.tableName = tableName;
-        this.keyAttr = keyAttr;
-        this.staticPkValue = staticPkValue;
-        this.sortKeyAttr = sortKeyAttr;
-        this.expiryAttr = expiryAttr;
-        this.inProgressExpiryAttr = inProgressExpiryAttr;
-        this.statusAttr = statusAttr;
-        this.dataAttr = dataAttr;
-        this.validationAttr = validationAttr;
-
-        if (client != null) {
-            this.dynamoDbClient = client;
-        } else {
-            String idempotencyDisabledEnv = System.getenv().get(Constants.IDEMPOTENCY_DISABLED_ENV);
-            if (idempotencyDisabledEnv == null || idempotencyDisabledEnv.equalsIgnoreCase("false")) {
-                DynamoDbClientBuilder ddbBuilder = DynamoDbClient.builder()
-                        .httpClient(UrlConnectionHttpClient.builder().build())
-                        .region(Region.of(System.getenv(AWS_REGION_ENV)));
-
-                // AWS_LAMBDA_INITIALIZATION_TYPE has two values on-demand and snap-start
-                // when using snap-start mode, the env var creds provider isn't used and causes a fatal error if set
-                // fall back to the default provider chain if the mode is anything other than on-demand.
-                String initializationType = System.getenv().get(AWS_LAMBDA_INITIALIZATION_TYPE);
-                if (initializationType  != null && initializationType.equals(ON_DEMAND)) {
-                    ddbBuilder.credentialsProvider(EnvironmentVariableCredentialsProvider.create());
-                }
-
-                this.dynamoDbClient = ddbBuilder.build();
-            } else {
-                // we do not want to create a DynamoDbClient if idempotency is disabled
-                // null is ok as idempotency won't be called
-                this.dynamoDbClient = null;
-            }
-        }
+        this.mapper = mapper;
+        this.dynamoDbClient = client != null ? client : DynamoDBTableConfig.defaultClient(() -> DynamoDbClient.builder()
+                .httpClient(UrlConnectionHttpClient.builder().build()));
     }
 
     @Override
@@ -114,7 +66,7 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
         GetItemResponse response = dynamoDbClient.getItem(
                 GetItemRequest.builder()
                         .tableName(tableName)
-                        .key(getKey(idempotencyKey))
+                        .key(mapper.getKey(idempotencyKey))
                         .consistentRead(true)
                         .build()
         );
@@ -123,46 +75,23 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
             throw new IdempotencyItemNotFoundException(idempotencyKey);
         }
 
-        return itemToRecord(response.item());
+        return mapper.itemToRecord(response.item());
     }
 
     @Override
     public void putRecord(DataRecord record, Instant now) throws IdempotencyItemAlreadyExistsException {
-        Map<String, AttributeValue> item = new HashMap<>(getKey(record.getIdempotencyKey()));
-        item.put(this.expiryAttr, AttributeValue.builder().n(String.valueOf(record.getExpiryTimestamp())).build());
-        item.put(this.statusAttr, AttributeValue.builder().s(record.getStatus().toString()).build());
-
-        if (record.getInProgressExpiryTimestamp().isPresent()) {
-            item.put(this.inProgressExpiryAttr, AttributeValue.builder().n(String.valueOf(record.getInProgressExpiryTimestamp().getAsLong())).build());
-        }
-
-        if (this.payloadValidationEnabled) {
-            item.put(this.validationAttr, AttributeValue.builder().s(record.getPayloadHash()).build());
-        }
+        Map<String, AttributeValue> item = mapper.getPutItem(record, payloadValidationEnabled);
 
         try {
             LOG.debug("Putting record for idempotency key: {}", record.getIdempotencyKey());
 
-            Map<String, String> expressionAttributeNames = Stream.of(
-                            new AbstractMap.SimpleEntry<>("#id", this.keyAttr),
-                            new AbstractMap.SimpleEntry<>("#expiry", this.expiryAttr),
-                            new AbstractMap.SimpleEntry<>("#in_progress_expiry", this.inProgressExpiryAttr),
-                            new AbstractMap.SimpleEntry<>("#status", this.statusAttr))
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-            Map<String, AttributeValue> expressionAttributeValues = Stream.of(
-                    new AbstractMap.SimpleEntry<>(":now", AttributeValue.builder().n(String.valueOf(now.getEpochSecond())).build()),
-                    new AbstractMap.SimpleEntry<>(":inprogress", AttributeValue.builder().s(INPROGRESS.toString()).build())
-            ).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-
             dynamoDbClient.putItem(
                     PutItemRequest.builder()
                             .tableName(tableName)
                             .item(item)
-                            .conditionExpression("attribute_not_exists(#id) OR #expiry < :now OR (attribute_exists(#in_progress_expiry) AND #in_progress_expiry < :now AND #status = :inprogress)")
-                            .expressionAttributeNames(expressionAttributeNames)
-                            .expressionAttributeValues(expressionAttributeValues)
+                            .conditionExpression(DynamoDBRecordMapper.PUT_CONDITION_EXPRESSION)
+                            .expressionAttributeNames(mapper.getPutExpressionAttributeNames())
+                            .expressionAttributeValues(mapper.getPutExpressionAttributeValues(now))
                             .build()
             );
         } catch (ConditionalCheckFailedException e) {
@@ -171,82 +100,156 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
         }
     }
 
+    /**
+     * Batch version of {@link #getRecord(String)}, using <code>BatchGetItem</code> (by chunks of 100 keys, with consistent reads).
+     */
     @Override
-    public void updateRecord(DataRecord record) {
-        LOG.debug("Updating record for idempotency key: {}", record.getIdempotencyKey());
-        String updateExpression = "SET #response_data = :response_data, #expiry = :expiry, #status = :status";
-
-        Map<String, String> expressionAttributeNames = Stream.of(
-                        new AbstractMap.SimpleEntry<>("#response_data", this.dataAttr),
-                        new AbstractMap.SimpleEntry<>("#expiry", this.expiryAttr),
-                        new AbstractMap.SimpleEntry<>("#status", this.statusAttr))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-        Map<String, AttributeValue> expressionAttributeValues = Stream.of(
-                        new AbstractMap.SimpleEntry<>(":response_data", AttributeValue.builder().s(record.getResponseData()).build()),
-                        new AbstractMap.SimpleEntry<>(":expiry", AttributeValue.builder().n(String.valueOf(record.getExpiryTimestamp())).build()),
-                        new AbstractMap.SimpleEntry<>(":status", AttributeValue.builder().s(record.getStatus().toString()).build()))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-        if (payloadValidationEnabled) {
-            updateExpression += ", #validation_key = :validation_key";
-            expressionAttributeNames.put("#validation_key", this.validationAttr);
-            expressionAttributeValues.put(":validation_key", AttributeValue.builder().s(record.getPayloadHash()).build());
+    public Map<String, DataRecord> getRecords(Collection<String> idempotencyKeys) {
+        Map<String, DataRecord> records = new HashMap<>();
+        for (List<String> chunk : chunks(new ArrayList<>(idempotencyKeys), BATCH_GET_MAX_ITEMS)) {
+            List<Map<String, AttributeValue>> keys = new ArrayList<>(chunk.size());
+            for (String idempotencyKey : chunk) {
+                keys.add(mapper.getKey(idempotencyKey));
+            }
+            Map<String, KeysAndAttributes> requestItems = Collections.singletonMap(tableName,
+                    KeysAndAttributes.builder().keys(keys).consistentRead(true).build());
+
+            for (int attempt = 0; !requestItems.isEmpty(); attempt++) {
+                checkAttempts(attempt, "BatchGetItem");
+                BatchGetItemResponse response = dynamoDbClient.batchGetItem(BatchGetItemRequest.builder()
+                        .requestItems(requestItems)
+                        .build());
+                if (response.hasResponses() && response.responses().containsKey(tableName)) {
+                    for (Map<String, AttributeValue> item : response.responses().get(tableName)) {
+                        DataRecord record = mapper.itemToRecord(item);
+                        records.put(record.getIdempotencyKey(), record);
+                    }
+                }
+                requestItems = response.hasUnprocessedKeys() ? response.unprocessedKeys() : Collections.emptyMap();
+            }
         }
+        return records;
+    }
 
-        dynamoDbClient.updateItem(UpdateItemRequest.builder()
-                .tableName(tableName)
-                .key(getKey(record.getIdempotencyKey()))
-                .updateExpression(updateExpression)
-                .expressionAttributeNames(expressionAttributeNames)
-                .expressionAttributeValues(expressionAttributeValues)
-                .build()
-        );
+    /**
+     * Batch version of {@link #putRecord(DataRecord, Instant)}, using <code>TransactWriteItems</code> (by chunks of 100 records).
+     * When some of the records already exist, the transaction is cancelled: these records are reported as already existing
+     * and the other ones are written with a new transaction.
+     */
+    @Override
+    public Set<String> putRecords(List<DataRecord> records, Instant now) {
+        Set<String> alreadyExisting = new HashSet<>();
+        Map<String, String> expressionAttributeNames = mapper.getPutExpressionAttributeNames();
+        Map<String, AttributeValue> expressionAttributeValues = mapper.getPutExpressionAttributeValues(now);
+
+        for (List<DataRecord> chunk : chunks(records, TRANSACT_WRITE_MAX_ITEMS)) {
+            List<DataRecord> pending = chunk;
+            for (int attempt = 0; !pending.isEmpty(); attempt++) {
+                checkAttempts(attempt, "TransactWriteItems");
+                List<TransactWriteItem> items = new ArrayList<>(pending.size());
+                for (DataRecord record : pending) {
+                    items.add(TransactWriteItem.builder().put(Put.builder()
+                            .tableName(tableName)
+                            .item(mapper.getPutItem(record, payloadValidationEnabled))
+                            .conditionExpression(DynamoDBRecordMapper.PUT_CONDITION_EXPRESSION)
+                            .expressionAttributeNames(expressionAttributeNames)
+                            .expressionAttributeValues(expressionAttributeValues)
+                            .build()).build());
+                }
+                try {
+                    LOG.debug("Putting {} records", pending.size());
+                    dynamoDbClient.transactWriteItems(TransactWriteItemsRequest.builder()
+                            .transactItems(items)
+                            .build());
+                    pending = Collections.emptyList();
+                } catch (TransactionCanceledException e) {
+                    if (!e.hasCancellationReasons()) {
+                        throw e;
+                    }
+                    List<DataRecord> retry = new ArrayList<>(pending.size());
+                    List<CancellationReason> reasons = e.cancellationReasons();
+                    for (int i = 0; i < pending.size(); i++) {
+                        DataRecord record = pending.get(i);
+                        if (i < reasons.size() && CONDITIONAL_CHECK_FAILED.equals(reasons.get(i).code())) {
+                            LOG.debug("Failed to put record for already existing idempotency key: {}", record.getIdempotencyKey());
+                            alreadyExisting.add(record.getIdempotencyKey());
+                        } else {
+                            retry.add(record);
+                        }
+                    }
+                    pending = retry;
+                }
+            }
+        }
+        return alreadyExisting;
+    }
+
+    /**
+     * Batch version of {@link #updateRecord(DataRecord)}, using <code>BatchWriteItem</code> (by chunks of 25 records).
+     * Records are written entirely (put), which is equivalent to the update for completed records.
+     */
+    @Override
+    public void updateRecords(List<DataRecord> records) {
+        for (List<DataRecord> chunk : chunks(records, BATCH_WRITE_MAX_ITEMS)) {
+            List<WriteRequest> writeRequests = new ArrayList<>(chunk.size());
+            for (DataRecord record : chunk) {
+                Map<String, AttributeValue> item = mapper.getPutItem(record, payloadValidationEnabled);
+                if (record.getResponseData() != null) {
+                    item.putAll(mapper.getResponseDataAttributes(record));
+                }
+                writeRequests.add(WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build());
+            }
+            Map<String, List<WriteRequest>> requestItems = Collections.singletonMap(tableName, writeRequests);
+
+            for (int attempt = 0; !requestItems.isEmpty(); attempt++) {
+                checkAttempts(attempt, "BatchWriteItem");
+                LOG.debug("Updating {} records", chunk.size());
+                BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(requestItems)
+                        .build());
+                requestItems = response.hasUnprocessedItems() ? response.unprocessedItems() : Collections.emptyMap();
+            }
+        }
+    }
+
+    @Override
+    public void updateRecord(DataRecord record) {
+        LOG.debug("Updating record for idempotency key: {}", record.getIdempotencyKey());
+        dynamoDbClient.updateItem(mapper.getUpdateItemRequest(tableName, record, payloadValidationEnabled));
     }
 
     @Override
     public void deleteRecord(String idempotencyKey) {
         LOG.debug("Deleting record for idempotency key: {}", idempotencyKey);
-        dynamoDbClient.deleteItem(DeleteItemRequest.builder()
-                .tableName(tableName)
-                .key(getKey(idempotencyKey))
-                .build()
-        );
+        DeleteItemResponse response = dynamoDbClient.deleteItem(mapper.getDeleteItemRequest(tableName, idempotencyKey));
+        mapper.deleteResponseData(response.attributes());
     }
 
     /**
-     * Get the key to use for requests (depending on if we have a sort key or not)
-     *
-     * @param idempotencyKey
-     * @return
+     * Fail a batch operation that still has unprocessed items after {@link #BATCH_MAX_ATTEMPTS} attempts,
+     * and wait a bit (exponential backoff) before retrying otherwise.
      */
-    private Map<String, AttributeValue> getKey(String idempotencyKey) {
-        Map<String, AttributeValue> key = new HashMap<>();
-        if (this.sortKeyAttr != null) {
-            key.put(this.keyAttr, AttributeValue.builder().s(this.staticPkValue).build());
-            key.put(this.sortKeyAttr, AttributeValue.builder().s(idempotencyKey).build());
-        } else {
-            key.put(this.keyAttr, AttributeValue.builder().s(idempotencyKey).build());
+    private static void checkAttempts(int attempt, String operation) {
+        if (attempt == 0) {
+            return;
+        }
+        if (attempt >= BATCH_MAX_ATTEMPTS) {
+            throw new IdempotencyPersistenceLayerException("Unable to process all items with " + operation + " after " + BATCH_MAX_ATTEMPTS + " attempts", null);
+        }
+        try {
+            Thread.sleep(25L << attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyPersistenceLayerException("Interrupted while retrying " + operation, e);
         }
-        return key;
     }
 
-    /**
-     * Translate raw item records from DynamoDB to DataRecord
-     *
-     * @param item Item from dynamodb response
-     * @return DataRecord instance
-     */
-    private DataRecord itemToRecord(Map<String, AttributeValue> item) {
-        // data and validation payload may be null
-        AttributeValue data = item.get(this.dataAttr);
-        AttributeValue validation = item.get(this.validationAttr);
-        return new DataRecord(item.get(sortKeyAttr != null ? sortKeyAttr: keyAttr).s(),
-                DataRecord.Status.valueOf(item.get(this.statusAttr).s()),
-                Long.parseLong(item.get(this.expiryAttr).n()),
-                data != null ? data.s() : null,
-                validation != null ? validation.s() : null,
-                item.get(this.inProgressExpiryAttr) != null ? OptionalLong.of(Long.parseLong(item.get(this.inProgressExpiryAttr).n())) : OptionalLong.empty());
+    private static <T> List<List<T>> chunks(List<T> list, int size) {
+        List<List<T>> chunks = new ArrayList<>((list.size() + size - 1) / size);
+        for (int i = 0; i < list.size(); i += size) {
+            chunks.add(list.subList(i, Math.min(i + size, list.size())));
+        }
+        return chunks;
     }
 
     public static Builder builder() {
@@ -260,18 +263,10 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
      * You can also set a custom {@link DynamoDbClient} for further tuning.
      */
     public static class Builder {
-        private static final String funcEnv = System.getenv(LAMBDA_FUNCTION_NAME_ENV);
-
-        private String tableName;
-        private String keyAttr = "id";
-        private String staticPkValue = String.format("idempotency#%s", funcEnv != null ? funcEnv : "");
-        private String sortKeyAttr;
-        private String expiryAttr = "expiration";
-
-        private String inProgressExpiryAttr = "in_progress_expiration";
-        private String statusAttr = "status";
-        private String dataAttr = "data";
-        private String validationAttr = "validation";
+        private final DynamoDBTableConfig table = new DynamoDBTableConfig();
+        private String dataRefAttr = "data_ref";
+        private BlobStore blobStore;
+        private int blobStoreThreshold = 300 * 1024;
         private DynamoDbClient dynamoDbClient;
 
         /**
@@ -284,10 +279,7 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
          * @return an instance of the {@link DynamoDBPersistenceStore}
          */
         public DynamoDBPersistenceStore build() {
-            if (StringUtils.isEmpty(tableName)) {
-                throw new IllegalArgumentException("Table name is not specified");
-            }
-            return new DynamoDBPersistenceStore(tableName, keyAttr, staticPkValue, sortKeyAttr, expiryAttr, inProgressExpiryAttr, statusAttr, dataAttr, validationAttr, dynamoDbClient);
+            return new DynamoDBPersistenceStore(table.tableName, table.buildMapper(dataRefAttr, blobStore, blobStoreThreshold), dynamoDbClient);
         }
 
         /**
@@ -297,7 +289,7 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
          * @return the builder instance (to chain operations)
          */
         public Builder withTableName(String tableName) {
-            this.tableName = tableName;
+            table.tableName = tableName;
             return this;
         }
 
@@ -308,19 +300,19 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
          * @return the builder instance (to chain operations)
          */
         public Builder withKeyAttr(String keyAttr) {
-            this.keyAttr = keyAttr;
+            table.keyAttr = keyAttr;
             return this;
         }
 
         /**
          * DynamoDB attribute value for partition key (optional), by default "idempotency#[function-name]".
-         * This will be used if the {@link #sortKeyAttr} is set.
+         * This will be used if the {@link #withSortKeyAttr(String) sort key} is set.
          *
          * @param staticPkValue name of the partition key attribute in the table
          * @return the builder instance (to chain operations)
          */
         public Builder withStaticPkValue(String staticPkValue) {
-            this.staticPkValue = staticPkValue;
+            table.staticPkValue = staticPkValue;
             return this;
         }
 
@@ -331,7 +323,7 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
          * @return the builder instance (to chain operations)
          */
         public Builder withSortKeyAttr(String sortKeyAttr) {
-            this.sortKeyAttr = sortKeyAttr;
+            table.sortKeyAttr = sortKeyAttr;
             return this;
         }
 
@@ -342,7 +334,7 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
          * @return the builder instance (to chain operations)
          */
         public Builder withExpiryAttr(String expiryAttr) {
-            this.expiryAttr = expiryAttr;
+            table.expiryAttr = expiryAttr;
             return this;
         }
 
@@ -353,7 +345,7 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
          * @return the builder instance (to chain operations)
          */
         public Builder withInProgressExpiryAttr(String inProgressExpiryAttr) {
-            this.inProgressExpiryAttr = inProgressExpiryAttr;
+            table.inProgressExpiryAttr = inProgressExpiryAttr;
             return this;
         }
 
@@ -364,7 +356,7 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
          * @return the builder instance (to chain operations)
          */
         public Builder withStatusAttr(String statusAttr) {
-            this.statusAttr = statusAttr;
+            table.statusAttr = statusAttr;
             return this;
         }
 
@@ -375,7 +367,7 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
          * @return the builder instance (to chain operations)
          */
         public Builder withDataAttr(String dataAttr) {
-            this.dataAttr = dataAttr;
+            table.dataAttr = dataAttr;
             return this;
         }
 
@@ -386,7 +378,81 @@ public class DynamoDBPersistenceStore extends BasePersistenceStore implements Pe
          * @return the builder instance (to chain operations)
          */
         public Builder withValidationAttr(String validationAttr) {
-            this.validationAttr = validationAttr;
+            table.validationAttr = validationAttr;
+            return this;
+        }
+
+        /**
+         * DynamoDB attribute name for the name of the {@link ResponseCodec} used to encode the response data (optional), by default "data_encoding"
+         *
+         * @param dataEncodingAttr name of the data encoding attribute in the table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withDataEncodingAttr(String dataEncodingAttr) {
+            table.dataEncodingAttr = dataEncodingAttr;
+            return this;
+        }
+
+        /**
+         * DynamoDB attribute name for the key of the response data in the {@link BlobStore} (optional), by default "data_ref"
+         *
+         * @param dataRefAttr name of the data reference attribute in the table
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withDataRefAttr(String dataRefAttr) {
+            this.dataRefAttr = dataRefAttr;
+            return this;
+        }
+
+        /**
+         * Compress the response data larger than the threshold (optional), by default response data is not compressed.<br/>
+         * Compressed data is stored as a binary attribute, reducing the write capacity units consumed
+         * and the size of the items (limited to 400 KB).
+         *
+         * @param responseCodec        the codec to use, for example {@link GzipResponseCodec}
+         * @param compressionThreshold minimum size (in bytes) of the response data to compress, by default 1024
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withResponseCodec(ResponseCodec responseCodec, int compressionThreshold) {
+            table.responseCodec = responseCodec;
+            table.compressionThreshold = compressionThreshold;
+            return this;
+        }
+
+        /**
+         * Compress the response data larger than 1 KB (optional), see {@link #withResponseCodec(ResponseCodec, int)}
+         *
+         * @param responseCodec the codec to use, for example {@link GzipResponseCodec}
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withResponseCodec(ResponseCodec responseCodec) {
+            table.responseCodec = responseCodec;
+            return this;
+        }
+
+        /**
+         * Store the response data larger than the threshold (after compression) in a {@link BlobStore} (optional),
+         * only a reference is kept in the DynamoDB item, so that items stay below the 400 KB limit.
+         *
+         * @param blobStore          the blob store to use, for example {@link S3BlobStore}
+         * @param blobStoreThreshold minimum size (in bytes) of the response data to store in the blob store, by default 300 KB
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withBlobStore(BlobStore blobStore, int blobStoreThreshold) {
+            this.blobStore = blobStore;
+            this.blobStoreThreshold = blobStoreThreshold;
+            return this;
+        }
+
+        /**
+         * Store the response data larger than 300 KB (after compression) in a {@link BlobStore} (optional),
+         * see {@link #withBlobStore(BlobStore, int)}
+         *
+         * @param blobStore the blob store to use, for example {@link S3BlobStore}
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withBlobStore(BlobStore blobStore) {
+            this.blobStore = blobStore;
             return this;
         }
 
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyPersistenceLayerException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static software.amazon.lambda.powertools.idempotency.persistence.DataRecord.Status.INPROGRESS;
+
+/**
+ * Mapping between {@link DataRecord}s and DynamoDB items, shared by {@link DynamoDBPersistenceStore}
+ * and {@link AsyncDynamoDBPersistenceStore}.
+ * <br/>
+ * Everything that does not depend on the record (expressions, attribute names, static values) is computed once
+ * when the mapper is created, so that only the values of the record are built on each request.
+ */
+final class DynamoDBRecordMapper {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DynamoDBRecordMapper.class);
+
+    static final String PUT_CONDITION_EXPRESSION = "attribute_not_exists(#id) OR #expiry < :now OR (attribute_exists(#in_progress_expiry) AND #in_progress_expiry < :now AND #status = :inprogress)";
+
+    private static final String UPDATE_EXPRESSION = "SET #expiry = :expiry, #status = :status";
+    private static final String UPDATE_RESPONSE_DATA = ", #response_data = :response_data";
+    private static final String UPDATE_VALIDATION = ", #validation_key = :validation_key";
+    // always available to decode, so that records stay readable when compression is disabled
+    private static final ResponseCodec GZIP_CODEC = new GzipResponseCodec();
+
+    private final String keyAttr;
+    private final String sortKeyAttr;
+    private final String expiryAttr;
+    private final String inProgressExpiryAttr;
+    private final String statusAttr;
+    private final String dataAttr;
+    private final String validationAttr;
+    private final String dataEncodingAttr;
+    private final String dataRefAttr;
+    private final ResponseCodec responseCodec;
+    private final int compressionThreshold;
+    private final BlobStore blobStore;
+    private final int blobStoreThreshold;
+
+    private final AttributeValue staticPkAttributeValue;
+    private final Map<DataRecord.Status, AttributeValue> statusAttributeValues;
+    private final Map<String, String> putExpressionAttributeNames;
+    private final Map<String, String> updateExpressionAttributeNames;
+    private final Map<String, String> updateExpressionAttributeNamesWithValidation;
+    // only used without codec nor blob store, otherwise the expression depends on the size of the response
+    private final String updateExpression;
+    private final String updateExpressionWithValidation;
+    private final Map<String, String> responseDataPlaceholders;
+    private volatile PutExpressionAttributeValues putExpressionAttributeValues;
+
+    DynamoDBRecordMapper(String keyAttr,
+                         String staticPkValue,
+                         String sortKeyAttr,
+                         String expiryAttr,
+                         String inProgressExpiryAttr,
+                         String statusAttr,
+                         String dataAttr,
+                         String validationAttr,
+                         String dataEncodingAttr,
+                         String dataRefAttr,
+                         ResponseCodec responseCodec,
+                         int compressionThreshold,
+                         BlobStore blobStore,
+                         int blobStoreThreshold) {
+        this.keyAttr = keyAttr;
+        this.sortKeyAttr = sortKeyAttr;
+        this.expiryAttr = expiryAttr;
+        this.inProgressExpiryAttr = inProgressExpiryAttr;
+        this.statusAttr = statusAttr;
+        this.dataAttr = dataAttr;
+        this.validationAttr = validationAttr;
+        this.dataEncodingAttr = dataEncodingAttr;
+        this.dataRefAttr = dataRefAttr;
+        this.responseCodec = responseCodec;
+        this.compressionThreshold = compressionThreshold;
+        this.blobStore = blobStore;
+        this.blobStoreThreshold = blobStoreThreshold;
+
+        this.staticPkAttributeValue = sortKeyAttr != null ? AttributeValue.builder().s(staticPkValue).build() : null;
+        this.statusAttributeValues = new EnumMap<>(DataRecord.Status.class);
+        for (DataRecord.Status status : DataRecord.Status.values()) {
+            statusAttributeValues.put(status, AttributeValue.builder().s(status.toString()).build());
+        }
+
+        Map<String, String> putNames = new HashMap<>();
+        putNames.put("#id", keyAttr);
+        putNames.put("#expiry", expiryAttr);
+        putNames.put("#in_progress_expiry", inProgressExpiryAttr);
+        putNames.put("#status", statusAttr);
+        this.putExpressionAttributeNames = Collections.unmodifiableMap(putNames);
+
+        Map<String, String> updateNames = new HashMap<>();
+        updateNames.put("#expiry", expiryAttr);
+        updateNames.put("#status", statusAttr);
+        Map<String, String> updateNamesWithValidation = new HashMap<>(updateNames);
+        updateNamesWithValidation.put("#validation_key", validationAttr);
+        if (responseCodec == null && blobStore == null) {
+            updateNames.put("#response_data", dataAttr);
+            updateNamesWithValidation.put("#response_data", dataAttr);
+        }
+        this.updateExpressionAttributeNames = Collections.unmodifiableMap(updateNames);
+        this.updateExpressionAttributeNamesWithValidation = Collections.unmodifiableMap(updateNamesWithValidation);
+        this.updateExpression = UPDATE_EXPRESSION + UPDATE_RESPONSE_DATA;
+        this.updateExpressionWithValidation = UPDATE_EXPRESSION + UPDATE_RESPONSE_DATA + UPDATE_VALIDATION;
+
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put(dataAttr, "response_data");
+        placeholders.put(dataEncodingAttr, "response_encoding");
+        placeholders.put(dataRefAttr, "response_ref");
+        this.responseDataPlaceholders = Collections.unmodifiableMap(placeholders);
+    }
+
+    /**
+     * Build the request updating the record with its response data, expiry, status and validation
+     *
+     * @param tableName                name of the table
+     * @param record                   the record to update
+     * @param payloadValidationEnabled whether to write the validation attribute
+     * @return the request
+     */
+    UpdateItemRequest getUpdateItemRequest(String tableName, DataRecord record, boolean payloadValidationEnabled) {
+        Map<String, AttributeValue> expressionAttributeValues = new HashMap<>(8);
+        expressionAttributeValues.put(":expiry", AttributeValue.builder().n(String.valueOf(record.getExpiryTimestamp())).build());
+        expressionAttributeValues.put(":status", statusAttributeValues.get(record.getStatus()));
+        if (payloadValidationEnabled) {
+            expressionAttributeValues.put(":validation_key", AttributeValue.builder().s(record.getPayloadHash()).build());
+        }
+
+        Map<String, String> expressionAttributeNames = payloadValidationEnabled ? updateExpressionAttributeNamesWithValidation : updateExpressionAttributeNames;
+        String expression;
+        if (responseCodec == null && blobStore == null) {
+            expression = payloadValidationEnabled ? updateExpressionWithValidation : updateExpression;
+            expressionAttributeValues.put(":response_data", AttributeValue.builder().s(record.getResponseData()).build());
+        } else {
+            // attributes depend on the size of the response (plain, compressed or stored in the blob store)
+            StringBuilder updateExpression = new StringBuilder(UPDATE_EXPRESSION);
+            expressionAttributeNames = new HashMap<>(expressionAttributeNames);
+            for (Map.Entry<String, AttributeValue> attribute : getResponseDataAttributes(record).entrySet()) {
+                String placeholder = responseDataPlaceholders.get(attribute.getKey());
+                updateExpression.append(", #").append(placeholder).append(" = :").append(placeholder);
+                expressionAttributeNames.put("#" + placeholder, attribute.getKey());
+                expressionAttributeValues.put(":" + placeholder, attribute.getValue());
+            }
+            if (payloadValidationEnabled) {
+                updateExpression.append(UPDATE_VALIDATION);
+            }
+            expression = updateExpression.toString();
+        }
+
+        return UpdateItemRequest.builder()
+                .tableName(tableName)
+                .key(getKey(record.getIdempotencyKey()))
+                .updateExpression(expression)
+                .expressionAttributeNames(expressionAttributeNames)
+                .expressionAttributeValues(expressionAttributeValues)
+                .build();
+    }
+
+    /**
+     * Build the request deleting the item of a record. The deleted item is returned when a blob store is configured,
+     * to know whether its response data has to be deleted from the blob store.
+     *
+     * @param tableName      name of the table
+     * @param idempotencyKey the key of the record
+     * @return the request deleting the item
+     */
+    DeleteItemRequest getDeleteItemRequest(String tableName, String idempotencyKey) {
+        DeleteItemRequest.Builder request = DeleteItemRequest.builder()
+                .tableName(tableName)
+                .key(getKey(idempotencyKey));
+        if (blobStore != null) {
+            request.returnValues(ReturnValue.ALL_OLD);
+        }
+        return request.build();
+    }
+
+    /**
+     * Delete the response data of a deleted item from the blob store, when it was stored there.
+     * The item is already deleted, so a failure is only logged: the data left behind is removed by the
+     * lifecycle rule of the blob store, like the data of the records expired by DynamoDB.
+     *
+     * @param deletedItem the item returned by the deletion, may be null or empty
+     */
+    void deleteResponseData(Map<String, AttributeValue> deletedItem) {
+        AttributeValue dataRef = deletedItem != null ? deletedItem.get(this.dataRefAttr) : null;
+        if (blobStore == null || dataRef == null) {
+            return;
+        }
+        try {
+            blobStore.delete(dataRef.s());
+        } catch (RuntimeException e) {
+            LOG.warn("Failed deleting response data from blob store for idempotency key: {}", dataRef.s(), e);
+        }
+    }
+
+    /**
+     * Build the attributes holding the response data: compressed (binary) when larger than the compression threshold,
+     * and stored in the {@link BlobStore} (only the reference is kept in the item) when larger than the blob store threshold.
+     *
+     * @param record the record with response data
+     * @return a mutable map of attributes
+     */
+    Map<String, AttributeValue> getResponseDataAttributes(DataRecord record) {
+        Map<String, AttributeValue> attributes = new HashMap<>();
+        String responseData = record.getResponseData();
+        if (responseData == null || (responseCodec == null && blobStore == null)) {
+            attributes.put(this.dataAttr, AttributeValue.builder().s(responseData).build());
+            return attributes;
+        }
+
+        byte[] data = responseData.getBytes(StandardCharsets.UTF_8);
+        boolean encoded = responseCodec != null && data.length >= compressionThreshold;
+        if (encoded) {
+            data = responseCodec.encode(data);
+            attributes.put(this.dataEncodingAttr, AttributeValue.builder().s(responseCodec.getName()).build());
+        }
+
+        if (blobStore != null && data.length >= blobStoreThreshold) {
+            LOG.debug("Storing response data of {} bytes in blob store for idempotency key: {}", data.length, record.getIdempotencyKey());
+            blobStore.put(record.getIdempotencyKey(), data);
+            attributes.put(this.dataRefAttr, AttributeValue.builder().s(record.getIdempotencyKey()).build());
+        } else if (encoded) {
+            attributes.put(this.dataAttr, AttributeValue.builder().b(SdkBytes.fromByteArrayUnsafe(data)).build());
+        } else {
+            attributes.put(this.dataAttr, AttributeValue.builder().s(responseData).build());
+        }
+        return attributes;
+    }
+
+    /**
+     * Read the response data of an item, from the blob store if needed, and decode it
+     *
+     * @param item Item from dynamodb response
+     * @return the response data, null if the item has none
+     */
+    String getResponseData(Map<String, AttributeValue> item) {
+        AttributeValue data = item.get(this.dataAttr);
+        AttributeValue dataRef = item.get(this.dataRefAttr);
+        AttributeValue dataEncoding = item.get(this.dataEncodingAttr);
+        if (dataRef == null && dataEncoding == null) {
+            return data != null ? data.s() : null;
+        }
+
+        byte[] bytes;
+        if (dataRef != null) {
+            if (blobStore == null) {
+                throw new IdempotencyPersistenceLayerException("Response data is stored in a blob store, but no BlobStore is configured", null);
+            }
+            bytes = blobStore.get(dataRef.s());
+        } else if (data == null) {
+            return null;
+        } else {
+            bytes = data.b().asByteArrayUnsafe();
+        }
+
+        if (dataEncoding != null) {
+            bytes = getResponseCodec(dataEncoding.s()).decode(bytes);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param name name of the codec stored with the response data
+     * @return the configured codec with this name, or the built-in gzip codec
+     */
+    private ResponseCodec getResponseCodec(String name) {
+        if (responseCodec != null && responseCodec.getName().equalsIgnoreCase(name)) {
+            return responseCodec;
+        }
+        if (GZIP_CODEC.getName().equalsIgnoreCase(name)) {
+            return GZIP_CODEC;
+        }
+        throw new IdempotencyPersistenceLayerException("Response data is encoded with " + name + ", but the configured ResponseCodec is " + (responseCodec != null ? responseCodec.getName() : null), null);
+    }
+
+    /**
+     * Build the item written by <code>putRecord</code> (key, expiry, status, in progress expiry and validation)
+     *
+     * @param record                   the record to write
+     * @param payloadValidationEnabled whether to write the validation attribute
+     * @return a mutable map of attributes
+     */
+    Map<String, AttributeValue> getPutItem(DataRecord record, boolean payloadValidationEnabled) {
+        Map<String, AttributeValue> item = new HashMap<>(getKey(record.getIdempotencyKey()));
+        item.put(this.expiryAttr, AttributeValue.builder().n(String.valueOf(record.getExpiryTimestamp())).build());
+        item.put(this.statusAttr, statusAttributeValues.get(record.getStatus()));
+
+        if (record.getInProgressExpiryTimestamp().isPresent()) {
+            item.put(this.inProgressExpiryAttr, AttributeValue.builder().n(String.valueOf(record.getInProgressExpiryTimestamp().getAsLong())).build());
+        }
+
+        if (payloadValidationEnabled) {
+            item.put(this.validationAttr, AttributeValue.builder().s(record.getPayloadHash()).build());
+        }
+        return item;
+    }
+
+    /**
+     * @return the (immutable) names used in {@link #PUT_CONDITION_EXPRESSION}
+     */
+    Map<String, String> getPutExpressionAttributeNames() {
+        return putExpressionAttributeNames;
+    }
+
+    /**
+     * Values used in {@link #PUT_CONDITION_EXPRESSION}. They only change every second,
+     * the last ones are kept and reused by the following requests.
+     *
+     * @param now current time
+     * @return the (immutable) values
+     */
+    Map<String, AttributeValue> getPutExpressionAttributeValues(Instant now) {
+        long epochSecond = now.getEpochSecond();
+        PutExpressionAttributeValues values = this.putExpressionAttributeValues;
+        if (values == null || values.epochSecond != epochSecond) {
+            Map<String, AttributeValue> map = new HashMap<>();
+            map.put(":now", AttributeValue.builder().n(String.valueOf(epochSecond)).build());
+            map.put(":inprogress", statusAttributeValues.get(INPROGRESS));
+            values = new PutExpressionAttributeValues(epochSecond, Collections.unmodifiableMap(map));
+            this.putExpressionAttributeValues = values;
+        }
+        return values.values;
+    }
+
+    /**
+     * Get the key to use for requests (depending on if we have a sort key or not)
+     *
+     * @param idempotencyKey
+     * @return an immutable map
+     */
+    Map<String, AttributeValue> getKey(String idempotencyKey) {
+        AttributeValue key = AttributeValue.builder().s(idempotencyKey).build();
+        if (this.sortKeyAttr == null) {
+            return Collections.singletonMap(this.keyAttr, key);
+        }
+        Map<String, AttributeValue> keys = new HashMap<>(4);
+        keys.put(this.keyAttr, staticPkAttributeValue);
+        keys.put(this.sortKeyAttr, key);
+        return Collections.unmodifiableMap(keys);
+    }
+
+    /**
+     * Translate raw item records from DynamoDB to DataRecord
+     *
+     * @param item Item from dynamodb response
+     * @return DataRecord instance
+     */
+    DataRecord itemToRecord(Map<String, AttributeValue> item) {
+        // data and validation payload may be null
+        AttributeValue validation = item.get(this.validationAttr);
+        return new DataRecord(item.get(sortKeyAttr != null ? sortKeyAttr: keyAttr).s(),
+                DataRecord.Status.valueOf(item.get(this.statusAttr).s()),
+                Long.parseLong(item.get(this.expiryAttr).n()),
+                getResponseData(item),
+                validation != null ? validation.s() : null,
+                item.get(this.inProgressExpiryAttr) != null ? OptionalLong.of(Long.parseLong(item.get(this.inProgressExpiryAttr).n())) : OptionalLong.empty());
+    }
+
+    private static final class PutExpressionAttributeValues {
+        private final long epochSecond;
+        private final Map<String, AttributeValue> values;
+
+        private PutExpressionAttributeValues(long epochSecond, Map<String, AttributeValue> values) {
+            this.epochSecond = epochSecond;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2023 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.utils.StringUtils;
+import software.amazon.lambda.powertools.idempotency.Constants;
+
+import java.util.function.Supplier;
+
+import static software.amazon.lambda.powertools.core.internal.LambdaConstants.AWS_LAMBDA_INITIALIZATION_TYPE;
+import static software.amazon.lambda.powertools.core.internal.LambdaConstants.AWS_REGION_ENV;
+import static software.amazon.lambda.powertools.core.internal.LambdaConstants.LAMBDA_FUNCTION_NAME_ENV;
+import static software.amazon.lambda.powertools.core.internal.LambdaConstants.ON_DEMAND;
+
+/**
+ * Configuration of the DynamoDB table shared by the builders of {@link DynamoDBPersistenceStore}
+ * and {@link AsyncDynamoDBPersistenceStore}, which use the same table layout.
+ * The builders keep their own <code>withXxx</code> methods and set the fields of this class.
+ */
+final class DynamoDBTableConfig {
+    private static final String funcEnv = System.getenv(LAMBDA_FUNCTION_NAME_ENV);
+
+    String tableName;
+    String keyAttr = "id";
+    String staticPkValue = String.format("idempotency#%s", funcEnv != null ? funcEnv : "");
+    String sortKeyAttr;
+    String expiryAttr = "expiration";
+    String inProgressExpiryAttr = "in_progress_expiration";
+    String statusAttr = "status";
+    String dataAttr = "data";
+    String validationAttr = "validation";
+    String dataEncodingAttr = "data_encoding";
+    ResponseCodec responseCodec;
+    int compressionThreshold = 1024;
+
+    /**
+     * @return the mapper of the records to the items of the table, with the response data in the given blob store, if any
+     * @throws IllegalArgumentException if the table name is not specified
+     */
+    DynamoDBRecordMapper buildMapper(String dataRefAttr, BlobStore blobStore, int blobStoreThreshold) {
+        if (StringUtils.isEmpty(tableName)) {
+            throw new IllegalArgumentException("Table name is not specified");
+        }
+        return new DynamoDBRecordMapper(keyAttr, staticPkValue, sortKeyAttr, expiryAttr, inProgressExpiryAttr, statusAttr,
+                dataAttr, validationAttr, dataEncodingAttr, dataRefAttr, responseCodec, compressionThreshold, blobStore, blobStoreThreshold);
+    }
+
+    /**
+     * Create the DynamoDB client used when none is provided, in the region of the function
+     *
+     * @param clientBuilder creates the builder of the client
+     * @return the client, or null if idempotency is disabled
+     */
+    static <C> C defaultClient(Supplier<? extends AwsClientBuilder<?, C>> clientBuilder) {
+        String idempotencyDisabledEnv = System.getenv().get(Constants.IDEMPOTENCY_DISABLED_ENV);
+        if (idempotencyDisabledEnv != null && !idempotencyDisabledEnv.equalsIgnoreCase("false")) {
+            // we do not want to create a client if idempotency is disabled
+            // null is ok as idempotency won't be called
+            return null;
+        }
+
+        AwsClientBuilder<?, C> ddbBuilder = clientBuilder.get();
+        ddbBuilder.region(Region.of(System.getenv(AWS_REGION_ENV)));
+
+        // AWS_LAMBDA_INITIALIZATION_TYPE has two values on-demand and snap-start
+        // when using snap-start mode, the env var creds provider isn't used and causes a fatal error if set
+        // fall back to the default provider chain if the mode is anything other than on-demand.
+        String initializationType = System.getenv().get(AWS_LAMBDA_INITIALIZATION_TYPE);
+        if (initializationType != null && initializationType.equals(ON_DEMAND)) {
+            ddbBuilder.credentialsProvider(EnvironmentVariableCredentialsProvider.create());
+        }
+        return ddbBuilder.build();
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyPersistenceLayerException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * File version of the {@link PersistenceStore}, for workloads running outside of Lambda (eg. containers) with a persistent volume.<br>
+ * Records are kept in memory (see {@link InMemoryPersistenceStore}) and every change is appended to a memory-mapped file,
+ * replayed when the store is created. The file is compacted (only the records not expired are kept) when it is opened and when it is full.<br>
+ * The file must not be shared by several processes: use one file per instance.<br>
+ * Use the {@link Builder} to create a new instance.
+ */
+public class FilePersistenceStore extends InMemoryPersistenceStore implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FilePersistenceStore.class);
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int LENGTH_BYTES = Integer.BYTES;
+
+    private final Path path;
+    private final int initialSize;
+    private final Object fileLock = new Object();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Private: use the {@link Builder} to instantiate a new {@link FilePersistenceStore}
+     */
+    private FilePersistenceStore(Path path, int initialSize, int lockStripes) {
+        super(lockStripes);
+        this.path = path;
+        this.initialSize = initialSize;
+        try {
+            if (Files.exists(path)) {
+                replay();
+            }
+            synchronized (fileLock) {
+                compact(0);
+            }
+        } catch (IOException e) {
+            throw new IdempotencyPersistenceLayerException("Unable to open the idempotency file " + path, e);
+        }
+    }
+
+    @Override
+    protected void recordSaved(DataRecord record) {
+        append(encode(OP_PUT, record.getIdempotencyKey(), record));
+    }
+
+    @Override
+    protected void recordDeleted(String idempotencyKey) {
+        append(encode(OP_DELETE, idempotencyKey, null));
+    }
+
+    /**
+     * Flush the file and release it, the store must not be used afterwards
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (fileLock) {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    private void append(byte[] entry) {
+        synchronized (fileLock) {
+            try {
+                if (buffer.remaining() < LENGTH_BYTES + entry.length + LENGTH_BYTES) {
+                    compact(entry.length);
+                }
+                writeEntry(buffer, entry);
+            } catch (IOException e) {
+                throw new IdempotencyPersistenceLayerException("Unable to write to the idempotency file " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Content is written before its length, so that an interrupted write is not replayed.
+     * The file is zero-filled: a zero length marks the end of the entries.
+     */
+    private static void writeEntry(MappedByteBuffer buffer, byte[] entry) {
+        int position = buffer.position();
+        buffer.position(position + LENGTH_BYTES);
+        buffer.put(entry);
+        buffer.putInt(position, entry.length);
+    }
+
+    /**
+     * Rewrite the records not expired in a new file, with enough room for the new entries. Called with the file lock held.
+     *
+     * @param additionalBytes size of the entry to write after the compaction
+     */
+    private void compact(int additionalBytes) throws IOException {
+        Instant now = Instant.now();
+        List<byte[]> entries = new ArrayList<>();
+        long size = 0;
+        for (DataRecord record : snapshot()) {
+            if (!record.isExpired(now)) {
+                byte[] entry = encode(OP_PUT, record.getIdempotencyKey(), record);
+                entries.add(entry);
+                size += LENGTH_BYTES + entry.length;
+            }
+        }
+        long required = size + LENGTH_BYTES + additionalBytes + LENGTH_BYTES;
+        long fileSize = Math.max(initialSize, 2 * required);
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IdempotencyPersistenceLayerException("The idempotency file " + path + " is too large", null);
+        }
+
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(compacted);
+        try (FileChannel compactedChannel = FileChannel.open(compacted, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer compactedBuffer = compactedChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            for (byte[] entry : entries) {
+                writeEntry(compactedBuffer, entry);
+            }
+            compactedBuffer.force();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.debug("Compacted idempotency file {}: {} records, {} bytes", path, entries.size(), fileSize);
+
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        buffer.position((int) size);
+    }
+
+    /**
+     * Load the records from the file: the last entry of each key wins, expired records are ignored
+     */
+    private void replay() throws IOException {
+        Map<String, DataRecord> records = new LinkedHashMap<>();
+        try (FileChannel replayChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = replayChannel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IdempotencyPersistenceLayerException("The idempotency file " + path + " is too large", null);
+            }
+            MappedByteBuffer replayBuffer = replayChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            while (replayBuffer.remaining() >= LENGTH_BYTES) {
+                int length = replayBuffer.getInt();
+                if (length <= 0 || length > replayBuffer.remaining()) {
+                    break;
+                }
+                byte op = replayBuffer.get();
+                String idempotencyKey = readString(replayBuffer);
+                if (op == OP_PUT) {
+                    records.put(idempotencyKey, readRecord(idempotencyKey, replayBuffer));
+                } else {
+                    records.remove(idempotencyKey);
+                }
+            }
+        }
+        Instant now = Instant.now();
+        for (DataRecord record : records.values()) {
+            if (!record.isExpired(now)) {
+                restore(record);
+            }
+        }
+        LOG.debug("Loaded {} records from idempotency file {}", records.size(), path);
+    }
+
+    private static byte[] encode(byte op, String idempotencyKey, DataRecord record) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(op);
+            writeString(out, idempotencyKey);
+            if (record != null) {
+                out.writeLong(record.getExpiryTimestamp());
+                writeString(out, record.getStatus().name());
+                out.writeLong(record.getInProgressExpiryTimestamp().orElse(-1));
+                writeString(out, record.getResponseData());
+                writeString(out, record.getPayloadHash());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static DataRecord readRecord(String idempotencyKey, MappedByteBuffer buffer) {
+        long expiryTimestamp = buffer.getLong();
+        DataRecord.Status status = DataRecord.Status.valueOf(readString(buffer));
+        long inProgressExpiryTimestamp = buffer.getLong();
+        String responseData = readString(buffer);
+        String payloadHash = readString(buffer);
+        return new DataRecord(idempotencyKey, status, expiryTimestamp, responseData, payloadHash,
+                inProgressExpiryTimestamp >= 0 ? OptionalLong.of(inProgressExpiryTimestamp) : OptionalLong.empty());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Use this builder to get an instance of {@link FilePersistenceStore}.
+     */
+    public static class Builder extends InMemoryPersistenceStore.Builder {
+        private Path path;
+        private int initialSize = 1024 * 1024;
+
+        /**
+         * Initialize and return a new instance of {@link FilePersistenceStore}, loading the records of the file if it exists.<br/>
+         * Example:<br>
+         * <pre>
+         *     FilePersistenceStore.builder().withPath("/data/idempotency.log").build();
+         * </pre>
+         *
+         * @return an instance of the {@link FilePersistenceStore}
+         */
+        @Override
+        public FilePersistenceStore build() {
+            if (path == null) {
+                throw new IllegalArgumentException("Path is not specified");
+            }
+            return new FilePersistenceStore(path, initialSize, lockStripes);
+        }
+
+        /**
+         * Path of the file storing the records (mandatory), created if it does not exist
+         *
+         * @param path path of the file
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withPath(Path path) {
+            this.path = path;
+            return this;
+        }
+
+        /**
+         * Path of the file storing the records (mandatory), created if it does not exist
+         *
+         * @param path path of the file
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withPath(String path) {
+            return withPath(Paths.get(path));
+        }
+
+        /**
+         * Initial size of the file (optional), by default 1 MB. The file grows when it is full.
+         *
+         * @param initialSize size in bytes
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withInitialSize(int initialSize) {
+            this.initialSize = initialSize;
+            return this;
+        }
+
+        @Override
+        public Builder withLockStripes(int lockStripes) {
+            super.withLockStripes(lockStripes);
+            return this;
+        }
+    }
+}
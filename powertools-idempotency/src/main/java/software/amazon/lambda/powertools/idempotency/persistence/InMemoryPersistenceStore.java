@@ -0,0 +1,227 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory version of the {@link PersistenceStore}, with the same conditional semantics as the {@link DynamoDBPersistenceStore}:
+ * a record is only put if there is no record with the same key, or if it is expired, or if it is in progress and its
+ * in progress expiry is passed.<br>
+ * Records are local to the JVM and lost when it stops: use it for tests, benchmarks, or single-instance workloads.
+ * Reads are lock-free, writes are serialized by key using a fixed number of locks (lock striping).<br>
+ * Use the {@link Builder} to create a new instance.
+ */
+public class InMemoryPersistenceStore extends BasePersistenceStore implements PersistenceStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InMemoryPersistenceStore.class);
+
+    private final Map<String, DataRecord> records = new ConcurrentHashMap<>();
+    private final Object[] locks;
+
+    /**
+     * Use the {@link Builder} to instantiate a new {@link InMemoryPersistenceStore}
+     *
+     * @param lockStripes number of locks used to serialize the writes
+     */
+    protected InMemoryPersistenceStore(int lockStripes) {
+        locks = new Object[Math.max(1, lockStripes)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public DataRecord getRecord(String idempotencyKey) throws IdempotencyItemNotFoundException {
+        DataRecord record = records.get(idempotencyKey);
+        if (record == null) {
+            throw new IdempotencyItemNotFoundException(idempotencyKey);
+        }
+        if (record.isExpired(Instant.now())) {
+            // expired records are removed lazily, like the DynamoDB TTL does
+            synchronized (lockFor(idempotencyKey)) {
+                if (records.remove(idempotencyKey, record)) {
+                    recordDeleted(idempotencyKey);
+                }
+            }
+            throw new IdempotencyItemNotFoundException(idempotencyKey);
+        }
+        return record;
+    }
+
+    @Override
+    public void putRecord(DataRecord record, Instant now) throws IdempotencyItemAlreadyExistsException {
+        String idempotencyKey = record.getIdempotencyKey();
+        synchronized (lockFor(idempotencyKey)) {
+            DataRecord existing = records.get(idempotencyKey);
+            if (existing != null && !canOverwrite(existing, now)) {
+                LOG.debug("Failed to put record for already existing idempotency key: {}", idempotencyKey);
+                throw new IdempotencyItemAlreadyExistsException("Failed to put record for already existing idempotency key: " + idempotencyKey, null);
+            }
+            LOG.debug("Putting record for idempotency key: {}", idempotencyKey);
+            records.put(idempotencyKey, record);
+            recordSaved(record);
+        }
+    }
+
+    @Override
+    public void updateRecord(DataRecord record) {
+        LOG.debug("Updating record for idempotency key: {}", record.getIdempotencyKey());
+        synchronized (lockFor(record.getIdempotencyKey())) {
+            records.put(record.getIdempotencyKey(), record);
+            recordSaved(record);
+        }
+    }
+
+    @Override
+    public void deleteRecord(String idempotencyKey) {
+        LOG.debug("Deleting record for idempotency key: {}", idempotencyKey);
+        synchronized (lockFor(idempotencyKey)) {
+            if (records.remove(idempotencyKey) != null) {
+                recordDeleted(idempotencyKey);
+            }
+        }
+    }
+
+    /**
+     * @return the number of records currently stored, including the expired ones not removed yet
+     */
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * Remove the expired records
+     *
+     * @param now
+     * @return the number of records removed
+     */
+    public int removeExpired(Instant now) {
+        int removed = 0;
+        for (DataRecord record : snapshot()) {
+            if (record.isExpired(now)) {
+                synchronized (lockFor(record.getIdempotencyKey())) {
+                    if (records.remove(record.getIdempotencyKey(), record)) {
+                        recordDeleted(record.getIdempotencyKey());
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all the records
+     */
+    public void clear() {
+        for (DataRecord record : snapshot()) {
+            deleteRecord(record.getIdempotencyKey());
+        }
+    }
+
+    /**
+     * Called with the lock of the record held, after a record is put or updated
+     *
+     * @param record the record saved
+     */
+    protected void recordSaved(DataRecord record) {
+    }
+
+    /**
+     * Called with the lock of the record held, after a record is deleted (or removed because it expired)
+     *
+     * @param idempotencyKey the key of the record deleted
+     */
+    protected void recordDeleted(String idempotencyKey) {
+    }
+
+    /**
+     * Restore a record without any check, to load records from another storage
+     *
+     * @param record the record to restore
+     */
+    protected void restore(DataRecord record) {
+        records.put(record.getIdempotencyKey(), record);
+    }
+
+    /**
+     * @return the records currently stored
+     */
+    protected List<DataRecord> snapshot() {
+        return new ArrayList<>(records.values());
+    }
+
+    /**
+     * Same condition as the one of the {@link DynamoDBPersistenceStore}: the existing record is expired,
+     * or is in progress and its in progress expiry is passed (the function timed out).
+     */
+    private static boolean canOverwrite(DataRecord existing, Instant now) {
+        if (existing.isExpired(now)) {
+            return true;
+        }
+        return DataRecord.Status.INPROGRESS.equals(existing.getStatus())
+                && existing.getInProgressExpiryTimestamp().isPresent()
+                && existing.getInProgressExpiryTimestamp().getAsLong() < now.toEpochMilli();
+    }
+
+    private Object lockFor(String idempotencyKey) {
+        return locks[(idempotencyKey.hashCode() & 0x7fffffff) % locks.length];
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Use this builder to get an instance of {@link InMemoryPersistenceStore}.
+     */
+    public static class Builder {
+        protected int lockStripes = 64;
+
+        /**
+         * Initialize and return a new instance of {@link InMemoryPersistenceStore}.<br/>
+         * Example:<br>
+         * <pre>
+         *     InMemoryPersistenceStore.builder().build();
+         * </pre>
+         *
+         * @return an instance of the {@link InMemoryPersistenceStore}
+         */
+        public InMemoryPersistenceStore build() {
+            return new InMemoryPersistenceStore(lockStripes);
+        }
+
+        /**
+         * Number of locks used to serialize the writes (optional), by default 64.
+         * Writes to records whose keys use different locks do not wait for each other.
+         *
+         * @param lockStripes number of locks
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withLockStripes(int lockStripes) {
+            this.lockStripes = lockStripes;
+            return this;
+        }
+    }
+}
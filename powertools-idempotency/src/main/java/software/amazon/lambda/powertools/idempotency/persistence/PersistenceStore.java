@@ -17,6 +17,12 @@ import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemA
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Persistence layer that will store the idempotency result.
@@ -51,4 +57,55 @@ public interface PersistenceStore {
      * @param idempotencyKey the key of the record
      */
     void deleteRecord(String idempotencyKey);
+
+    /**
+     * Retrieve several items from persistence store at once.
+     * Default implementation calls {@link #getRecord(String)} for each key,
+     * implementations should override it to use a batch API when available.
+     * @param idempotencyKeys the keys of the records
+     * @return DataRecords found in the persistence store, by idempotency key. Absent keys are not part of the map.
+     */
+    default Map<String, DataRecord> getRecords(Collection<String> idempotencyKeys) {
+        Map<String, DataRecord> records = new HashMap<>();
+        for (String idempotencyKey : idempotencyKeys) {
+            try {
+                records.put(idempotencyKey, getRecord(idempotencyKey));
+            } catch (IdempotencyItemNotFoundException e) {
+                // absent keys are not part of the result
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Add several DataRecords to persistence store, each one only if it does not already exist with that key.
+     * Default implementation calls {@link #putRecord(DataRecord, Instant)} for each record,
+     * implementations should override it to use a batch API when available.
+     * @param records DataRecord instances, with distinct idempotency keys
+     * @param now
+     * @return the idempotency keys of the records that were not saved because a non-expired entry already exists
+     */
+    default Set<String> putRecords(List<DataRecord> records, Instant now) {
+        Set<String> alreadyExisting = new HashSet<>();
+        for (DataRecord record : records) {
+            try {
+                putRecord(record, now);
+            } catch (IdempotencyItemAlreadyExistsException e) {
+                alreadyExisting.add(record.getIdempotencyKey());
+            }
+        }
+        return alreadyExisting;
+    }
+
+    /**
+     * Update several items in persistence store.
+     * Default implementation calls {@link #updateRecord(DataRecord)} for each record,
+     * implementations should override it to use a batch API when available.
+     * @param records DataRecord instances, with distinct idempotency keys
+     */
+    default void updateRecords(List<DataRecord> records) {
+        for (DataRecord record : records) {
+            updateRecord(record);
+        }
+    }
 }
@@ -0,0 +1,443 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.UnifiedJedis;
+import redis.clients.jedis.commands.PipelineCommands;
+import software.amazon.lambda.powertools.idempotency.Constants;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyPersistenceLayerException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Function;
+
+import static software.amazon.lambda.powertools.core.internal.LambdaConstants.LAMBDA_FUNCTION_NAME_ENV;
+import static software.amazon.lambda.powertools.idempotency.persistence.DataRecord.Status.INPROGRESS;
+
+/**
+ * Redis version of the {@link PersistenceStore}. Will store idempotency data in Redis (or any server compatible with
+ * the Redis protocol and Lua scripting, like Amazon ElastiCache or Amazon MemoryDB).<br>
+ * Each record is a hash, expiring with the record. The conditional put (the record does not exist, or is expired,
+ * or is in progress and its in progress expiry is passed) is done atomically by a Lua script, in a single round trip.
+ * Batch operations are pipelined.<br>
+ * Use the {@link Builder} to create a new instance.
+ */
+public class RedisPersistenceStore extends BasePersistenceStore implements PersistenceStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RedisPersistenceStore.class);
+
+    /**
+     * KEYS[1]: record key<br>
+     * ARGV[1]: now (seconds), ARGV[2]: now (milliseconds), ARGV[3..5]: expiry, status and in progress expiry fields,
+     * ARGV[6]: in progress status, ARGV[7]: record expiry (seconds), ARGV[8..]: fields and values of the record
+     */
+    static final String PUT_SCRIPT = "if redis.call('EXISTS', KEYS[1]) == 1 then\n" +
+            "  local existing = redis.call('HMGET', KEYS[1], ARGV[3], ARGV[4], ARGV[5])\n" +
+            "  local expiry = tonumber(existing[1])\n" +
+            "  local inProgressExpiry = tonumber(existing[3])\n" +
+            "  local expired = expiry ~= nil and expiry < tonumber(ARGV[1])\n" +
+            "  local inProgressExpired = existing[2] == ARGV[6] and inProgressExpiry ~= nil and inProgressExpiry < tonumber(ARGV[2])\n" +
+            "  if not expired and not inProgressExpired then\n" +
+            "    return 0\n" +
+            "  end\n" +
+            "  redis.call('DEL', KEYS[1])\n" +
+            "end\n" +
+            "for i = 8, #ARGV, 2 do\n" +
+            "  redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+            "end\n" +
+            "redis.call('EXPIREAT', KEYS[1], ARGV[7])\n" +
+            "return 1";
+
+    /**
+     * KEYS[1]: record key<br>
+     * ARGV[1]: record expiry (seconds), ARGV[2..]: fields and values of the record
+     */
+    static final String UPDATE_SCRIPT = "for i = 2, #ARGV, 2 do\n" +
+            "  redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+            "end\n" +
+            "redis.call('EXPIREAT', KEYS[1], ARGV[1])\n" +
+            "return 1";
+
+    private final String keyPrefixName;
+    private final String expiryAttr;
+    private final String inProgressExpiryAttr;
+    private final String statusAttr;
+    private final String dataAttr;
+    private final String validationAttr;
+    private final UnifiedJedis jedisClient;
+
+    /**
+     * Private: use the {@link Builder} to instantiate a new {@link RedisPersistenceStore}
+     */
+    private RedisPersistenceStore(String keyPrefixName,
+                                  String expiryAttr,
+                                  String inProgressExpiryAttr,
+                                  String statusAttr,
+                                  String dataAttr,
+                                  String validationAttr,
+                                  UnifiedJedis jedisClient) {
+        this.keyPrefixName = keyPrefixName;
+        this.expiryAttr = expiryAttr;
+        this.inProgressExpiryAttr = inProgressExpiryAttr;
+        this.statusAttr = statusAttr;
+        this.dataAttr = dataAttr;
+        this.validationAttr = validationAttr;
+
+        if (jedisClient != null) {
+            this.jedisClient = jedisClient;
+        } else {
+            String idempotencyDisabledEnv = System.getenv().get(Constants.IDEMPOTENCY_DISABLED_ENV);
+            if (idempotencyDisabledEnv == null || idempotencyDisabledEnv.equalsIgnoreCase("false")) {
+                String host = System.getenv(Constants.REDIS_HOST_ENV);
+                if (host == null || host.isEmpty()) {
+                    throw new IllegalArgumentException("Redis host is not specified: set the " + Constants.REDIS_HOST_ENV + " environment variable or provide a client");
+                }
+                String port = System.getenv(Constants.REDIS_PORT_ENV);
+                this.jedisClient = new JedisPooled(host, port != null ? Integer.parseInt(port) : 6379,
+                        System.getenv(Constants.REDIS_USER_ENV), System.getenv(Constants.REDIS_SECRET_ENV));
+            } else {
+                // we do not want to create a client if idempotency is disabled
+                // null is ok as idempotency won't be called
+                this.jedisClient = null;
+            }
+        }
+    }
+
+    @Override
+    public DataRecord getRecord(String idempotencyKey) throws IdempotencyItemNotFoundException {
+        Map<String, String> item = jedisClient.hgetAll(getKey(idempotencyKey));
+        if (item.isEmpty()) {
+            throw new IdempotencyItemNotFoundException(idempotencyKey);
+        }
+        return itemToRecord(idempotencyKey, item);
+    }
+
+    @Override
+    public void putRecord(DataRecord record, Instant now) throws IdempotencyItemAlreadyExistsException {
+        LOG.debug("Putting record for idempotency key: {}", record.getIdempotencyKey());
+        Object claimed = jedisClient.eval(PUT_SCRIPT, Collections.singletonList(getKey(record.getIdempotencyKey())), getPutArgs(record, now));
+        if (!isClaimed(claimed)) {
+            LOG.debug("Failed to put record for already existing idempotency key: {}", record.getIdempotencyKey());
+            throw new IdempotencyItemAlreadyExistsException("Failed to put record for already existing idempotency key: " + record.getIdempotencyKey(), null);
+        }
+    }
+
+    @Override
+    public void updateRecord(DataRecord record) {
+        LOG.debug("Updating record for idempotency key: {}", record.getIdempotencyKey());
+        jedisClient.eval(UPDATE_SCRIPT, Collections.singletonList(getKey(record.getIdempotencyKey())), getUpdateArgs(record));
+    }
+
+    @Override
+    public void deleteRecord(String idempotencyKey) {
+        LOG.debug("Deleting record for idempotency key: {}", idempotencyKey);
+        jedisClient.del(getKey(idempotencyKey));
+    }
+
+    /**
+     * Batch version of {@link #getRecord(String)}, pipelining <code>HGETALL</code> commands.
+     */
+    @Override
+    public Map<String, DataRecord> getRecords(Collection<String> idempotencyKeys) {
+        List<String> keys = new ArrayList<>(idempotencyKeys);
+        List<Map<String, String>> items = pipelined(pipeline -> {
+            List<Response<Map<String, String>>> responses = new ArrayList<>(keys.size());
+            for (String idempotencyKey : keys) {
+                responses.add(pipeline.hgetAll(getKey(idempotencyKey)));
+            }
+            return responses;
+        });
+
+        Map<String, DataRecord> records = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (!items.get(i).isEmpty()) {
+                records.put(keys.get(i), itemToRecord(keys.get(i), items.get(i)));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Batch version of {@link #putRecord(DataRecord, Instant)}, pipelining the conditional put scripts.
+     * Each record is put atomically, independently of the other ones.
+     */
+    @Override
+    public Set<String> putRecords(List<DataRecord> records, Instant now) {
+        LOG.debug("Putting {} records", records.size());
+        List<Object> claimed = pipelined(pipeline -> {
+            List<Response<Object>> responses = new ArrayList<>(records.size());
+            for (DataRecord record : records) {
+                responses.add(pipeline.eval(PUT_SCRIPT, Collections.singletonList(getKey(record.getIdempotencyKey())), getPutArgs(record, now)));
+            }
+            return responses;
+        });
+
+        Set<String> alreadyExisting = new HashSet<>();
+        for (int i = 0; i < records.size(); i++) {
+            if (!isClaimed(claimed.get(i))) {
+                alreadyExisting.add(records.get(i).getIdempotencyKey());
+            }
+        }
+        return alreadyExisting;
+    }
+
+    /**
+     * Batch version of {@link #updateRecord(DataRecord)}, pipelining the update scripts.
+     */
+    @Override
+    public void updateRecords(List<DataRecord> records) {
+        LOG.debug("Updating {} records", records.size());
+        pipelined(pipeline -> {
+            List<Response<Object>> responses = new ArrayList<>(records.size());
+            for (DataRecord record : records) {
+                responses.add(pipeline.eval(UPDATE_SCRIPT, Collections.singletonList(getKey(record.getIdempotencyKey())), getUpdateArgs(record)));
+            }
+            return responses;
+        });
+    }
+
+    /**
+     * Get the key of the record in Redis
+     *
+     * @param idempotencyKey the key of the record
+     * @return the prefixed key
+     */
+    private String getKey(String idempotencyKey) {
+        return keyPrefixName + ":" + idempotencyKey;
+    }
+
+    private List<String> getPutArgs(DataRecord record, Instant now) {
+        List<String> args = new ArrayList<>(16);
+        args.add(String.valueOf(now.getEpochSecond()));
+        args.add(String.valueOf(now.toEpochMilli()));
+        args.add(expiryAttr);
+        args.add(statusAttr);
+        args.add(inProgressExpiryAttr);
+        args.add(INPROGRESS.toString());
+        args.add(String.valueOf(record.getExpiryTimestamp()));
+
+        addField(args, expiryAttr, String.valueOf(record.getExpiryTimestamp()));
+        addField(args, statusAttr, record.getStatus().toString());
+        if (record.getInProgressExpiryTimestamp().isPresent()) {
+            addField(args, inProgressExpiryAttr, String.valueOf(record.getInProgressExpiryTimestamp().getAsLong()));
+        }
+        if (payloadValidationEnabled) {
+            addField(args, validationAttr, record.getPayloadHash());
+        }
+        return args;
+    }
+
+    private List<String> getUpdateArgs(DataRecord record) {
+        List<String> args = new ArrayList<>(9);
+        args.add(String.valueOf(record.getExpiryTimestamp()));
+
+        addField(args, expiryAttr, String.valueOf(record.getExpiryTimestamp()));
+        addField(args, statusAttr, record.getStatus().toString());
+        addField(args, dataAttr, record.getResponseData());
+        if (payloadValidationEnabled) {
+            addField(args, validationAttr, record.getPayloadHash());
+        }
+        return args;
+    }
+
+    private static void addField(List<String> args, String field, String value) {
+        // hash fields cannot be null: absent fields are read as null
+        if (value != null) {
+            args.add(field);
+            args.add(value);
+        }
+    }
+
+    private static boolean isClaimed(Object result) {
+        return result instanceof Long && (Long) result == 1L;
+    }
+
+    /**
+     * Send the commands in a pipeline (single round trip) and wait for their responses
+     *
+     * @param commands function adding the commands to the pipeline
+     * @return the responses, in the order of the commands
+     */
+    private <T> List<T> pipelined(Function<PipelineCommands, List<Response<T>>> commands) {
+        // Pipeline (standalone) and ClusterPipeline (cluster) only share these interfaces
+        Object pipeline = jedisClient.pipelined();
+        List<Response<T>> responses;
+        try {
+            responses = commands.apply((PipelineCommands) pipeline);
+        } finally {
+            try {
+                // closing the pipeline sends the commands and reads the responses
+                ((Closeable) pipeline).close();
+            } catch (IOException e) {
+                throw new IdempotencyPersistenceLayerException("Failed to send pipelined commands to Redis", e);
+            }
+        }
+
+        List<T> results = new ArrayList<>(responses.size());
+        for (Response<T> response : responses) {
+            results.add(response.get());
+        }
+        return results;
+    }
+
+    /**
+     * Translate a Redis hash to DataRecord
+     *
+     * @param idempotencyKey the key of the record
+     * @param item           fields of the hash
+     * @return DataRecord instance
+     */
+    private DataRecord itemToRecord(String idempotencyKey, Map<String, String> item) {
+        String inProgressExpiry = item.get(this.inProgressExpiryAttr);
+        return new DataRecord(idempotencyKey,
+                DataRecord.Status.valueOf(item.get(this.statusAttr)),
+                Long.parseLong(item.get(this.expiryAttr)),
+                item.get(this.dataAttr),
+                item.get(this.validationAttr),
+                inProgressExpiry != null ? OptionalLong.of(Long.parseLong(inProgressExpiry)) : OptionalLong.empty());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Use this builder to get an instance of {@link RedisPersistenceStore}.<br/>
+     * With this builder you can configure the characteristics of the Redis records.<br/>
+     * You can also set a custom {@link UnifiedJedis} client ({@link JedisPooled} or {@link redis.clients.jedis.JedisCluster}),
+     * by default it connects to the server configured with the <code>REDIS_HOST</code>, <code>REDIS_PORT</code>,
+     * <code>REDIS_USER</code> and <code>REDIS_SECRET</code> environment variables.
+     */
+    public static class Builder {
+        private static final String funcEnv = System.getenv(LAMBDA_FUNCTION_NAME_ENV);
+
+        private String keyPrefixName = String.format("idempotency#%s", funcEnv != null ? funcEnv : "");
+        private String expiryAttr = "expiration";
+        private String inProgressExpiryAttr = "in_progress_expiration";
+        private String statusAttr = "status";
+        private String dataAttr = "data";
+        private String validationAttr = "validation";
+        private UnifiedJedis jedisClient;
+
+        /**
+         * Initialize and return a new instance of {@link RedisPersistenceStore}.<br/>
+         * Example:<br>
+         * <pre>
+         *     RedisPersistenceStore.builder().withJedisClient(new JedisPooled("localhost", 6379)).build();
+         * </pre>
+         *
+         * @return an instance of the {@link RedisPersistenceStore}
+         */
+        public RedisPersistenceStore build() {
+            if (keyPrefixName == null || keyPrefixName.isEmpty()) {
+                throw new IllegalArgumentException("Key prefix name is not specified");
+            }
+            return new RedisPersistenceStore(keyPrefixName, expiryAttr, inProgressExpiryAttr, statusAttr, dataAttr, validationAttr, jedisClient);
+        }
+
+        /**
+         * Prefix of the Redis keys (optional), by default "idempotency#[function-name]"
+         *
+         * @param keyPrefixName prefix of the keys
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withKeyPrefixName(String keyPrefixName) {
+            this.keyPrefixName = keyPrefixName;
+            return this;
+        }
+
+        /**
+         * Hash field name for expiry timestamp (optional), by default "expiration"
+         *
+         * @param expiryAttr name of the expiry field in the hash
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withExpiryAttr(String expiryAttr) {
+            this.expiryAttr = expiryAttr;
+            return this;
+        }
+
+        /**
+         * Hash field name for in progress expiry timestamp (optional), by default "in_progress_expiration"
+         *
+         * @param inProgressExpiryAttr name of the field in the hash
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withInProgressExpiryAttr(String inProgressExpiryAttr) {
+            this.inProgressExpiryAttr = inProgressExpiryAttr;
+            return this;
+        }
+
+        /**
+         * Hash field name for status (optional), by default "status"
+         *
+         * @param statusAttr name of the status field in the hash
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withStatusAttr(String statusAttr) {
+            this.statusAttr = statusAttr;
+            return this;
+        }
+
+        /**
+         * Hash field name for response data (optional), by default "data"
+         *
+         * @param dataAttr name of the data field in the hash
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withDataAttr(String dataAttr) {
+            this.dataAttr = dataAttr;
+            return this;
+        }
+
+        /**
+         * Hash field name for validation (optional), by default "validation"
+         *
+         * @param validationAttr name of the validation field in the hash
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withValidationAttr(String validationAttr) {
+            this.validationAttr = validationAttr;
+            return this;
+        }
+
+        /**
+         * Custom {@link UnifiedJedis} client used to query Redis (optional).<br/>
+         * Use a {@link JedisPooled} for a standalone server, or a {@link redis.clients.jedis.JedisCluster} for a cluster.
+         *
+         * @param jedisClient the client instance to use
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withJedisClient(UnifiedJedis jedisClient) {
+            this.jedisClient = jedisClient;
+            return this;
+        }
+    }
+}
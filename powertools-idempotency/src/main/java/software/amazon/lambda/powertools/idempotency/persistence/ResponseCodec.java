@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+/**
+ * Encoding (compression) of the response data stored in the persistence store.
+ * See {@link GzipResponseCodec} for the default implementation.
+ */
+public interface ResponseCodec {
+
+    /**
+     * @return name of the codec, stored with the encoded data to decode it later
+     */
+    String getName();
+
+    /**
+     * @param data the data to encode
+     * @return the encoded data
+     */
+    byte[] encode(byte[] data);
+
+    /**
+     * @param data data previously encoded with {@link #encode(byte[])}
+     * @return the decoded data
+     */
+    byte[] decode(byte[] data);
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.utils.StringUtils;
+
+import static software.amazon.lambda.powertools.core.internal.LambdaConstants.AWS_REGION_ENV;
+
+/**
+ * {@link BlobStore} backed by Amazon S3 (or any S3-compatible storage). Requires the <code>software.amazon.awssdk:s3</code> dependency.<br/>
+ * Objects are not deleted when idempotency records expire: configure a lifecycle rule on the bucket (or prefix)
+ * with an expiration greater than the idempotency expiration.
+ */
+public class S3BlobStore implements BlobStore {
+
+    private final String bucket;
+    private final String prefix;
+    private final S3Client s3Client;
+
+    private S3BlobStore(String bucket, String prefix, S3Client s3Client) {
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.s3Client = s3Client != null ? s3Client : S3Client.builder()
+                .httpClient(UrlConnectionHttpClient.builder().build())
+                .region(Region.of(System.getenv(AWS_REGION_ENV)))
+                .build();
+    }
+
+    @Override
+    public void put(String key, byte[] data) {
+        s3Client.putObject(PutObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(prefix + key)
+                        .build(),
+                RequestBody.fromBytes(data));
+    }
+
+    @Override
+    public byte[] get(String key) {
+        return s3Client.getObjectAsBytes(GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(prefix + key)
+                .build()).asByteArrayUnsafe();
+    }
+
+    @Override
+    public void delete(String key) {
+        s3Client.deleteObject(DeleteObjectRequest.builder()
+                .bucket(bucket)
+                .key(prefix + key)
+                .build());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private String bucket;
+        private String prefix = "idempotency/";
+        private S3Client s3Client;
+
+        /**
+         * Initialize and return a new instance of {@link S3BlobStore}.<br/>
+         * Example:<br>
+         * <pre>
+         *     S3BlobStore.builder().withBucket("idempotency-responses").build();
+         * </pre>
+         *
+         * @return an instance of the {@link S3BlobStore}
+         */
+        public S3BlobStore build() {
+            if (StringUtils.isEmpty(bucket)) {
+                throw new IllegalArgumentException("Bucket is not specified");
+            }
+            return new S3BlobStore(bucket, prefix, s3Client);
+        }
+
+        /**
+         * Name of the bucket to store the data into (mandatory)
+         *
+         * @param bucket name of the S3 bucket
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withBucket(String bucket) {
+            this.bucket = bucket;
+            return this;
+        }
+
+        /**
+         * Prefix of the object keys (optional), by default "idempotency/"
+         *
+         * @param prefix prefix of the object keys
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withPrefix(String prefix) {
+            this.prefix = prefix;
+            return this;
+        }
+
+        /**
+         * Custom {@link S3Client} (optional), for example to use an S3-compatible endpoint.<br/>
+         * The default one uses {@link UrlConnectionHttpClient} as a http client.
+         *
+         * @param s3Client the {@link S3Client} instance to use
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withS3Client(S3Client s3Client) {
+            this.s3Client = s3Client;
+            return this;
+        }
+    }
+}
@@ -19,6 +19,7 @@ public class DynamoDBConfig {
     protected static final String TABLE_NAME = "idempotency_table";
     protected static DynamoDBProxyServer dynamoProxy;
     protected static DynamoDbClient client;
+    protected static URI endpoint;
 
     @BeforeAll
     public static void setupDynamo() {
@@ -34,10 +35,11 @@ public class DynamoDBConfig {
             throw new RuntimeException();
         }
 
+        endpoint = URI.create("http://localhost:" + port);
         client = DynamoDbClient.builder()
                 .httpClient(UrlConnectionHttpClient.builder().build())
                 .region(Region.EU_WEST_1)
-                .endpointOverride(URI.create("http://localhost:" + port))
+                .endpointOverride(endpoint)
                 .credentialsProvider(StaticCredentialsProvider.create(
                         AwsBasicCredentials.create("FAKE", "FAKE")))
                 .build();
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.handlers;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import software.amazon.lambda.powertools.idempotency.Idempotency;
+import software.amazon.lambda.powertools.idempotency.IdempotencyKey;
+import software.amazon.lambda.powertools.idempotency.Idempotent;
+import software.amazon.lambda.powertools.idempotency.model.Basket;
+import software.amazon.lambda.powertools.idempotency.model.Product;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Simple Lambda function with @{@link Idempotent} annotation on a sub method returning a {@link CompletableFuture},
+ * completed when the <code>processing</code> future completes
+ */
+public class IdempotencyAsyncFunction implements RequestHandler<Product, CompletableFuture<Basket>> {
+
+    private final CompletableFuture<Void> processing;
+    private boolean called = false;
+
+    public IdempotencyAsyncFunction(CompletableFuture<Void> processing) {
+        this.processing = processing;
+    }
+
+    @Override
+    public CompletableFuture<Basket> handleRequest(Product input, Context context) {
+        Idempotency.registerLambdaContext(context);
+        return createBasket("fake", input);
+    }
+
+    @Idempotent
+    private CompletableFuture<Basket> createBasket(@IdempotencyKey String magicProduct, Product p) {
+        called = true;
+        return processing.thenApply(v -> {
+            Basket b = new Basket(p);
+            b.add(new Product(0, magicProduct, 0));
+            return b;
+        });
+    }
+
+    public boolean subMethodCalled() {
+        return called;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.hash;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HashFunctionsTest {
+
+    @Test
+    public void forName_murmur3_shouldBeCaseInsensitive() {
+        assertThat(HashFunctions.forName("murmur3_128")).isInstanceOf(Murmur3HashFunction.class);
+    }
+
+    @Test
+    public void forName_messageDigestAlgorithm_shouldUseMessageDigest() {
+        HashFunction hashFunction = HashFunctions.forName("MD5");
+        assertThat(hashFunction).isInstanceOf(MessageDigestHashFunction.class);
+
+        Hasher hasher = hashFunction.newHasher();
+        byte[] bytes = "Lambda rocks".getBytes(StandardCharsets.UTF_8);
+        hasher.update(bytes, 0, bytes.length);
+        assertThat(hex(hasher.digest())).isEqualTo("70c24d88041893f7fbab4105b76fd9e1");
+    }
+
+    @Test
+    public void forName_unknown_shouldThrowException() {
+        assertThatThrownBy(() -> HashFunctions.forName("HASH"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("HASH");
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.hash;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static software.amazon.lambda.powertools.idempotency.hash.HashFunctionsTest.hex;
+
+public class Murmur3HashFunctionTest {
+
+    private final HashFunction hashFunction = new Murmur3HashFunction();
+
+    @Test
+    public void digest_shouldMatchReferenceImplementation() {
+        assertThat(hash("")).isEqualTo("00000000000000000000000000000000");
+        assertThat(hash("The quick brown fox jumps over the lazy dog")).isEqualTo("6c1b07bc7bbc4be347939ac4a93c437a");
+        assertThat(hash("Lambda rocks")).isEqualTo("2c8071319410995e71208f4d8ec9b6c4");
+    }
+
+    @Test
+    public void digest_inChunks_shouldMatchSingleUpdate() {
+        byte[] bytes = new byte[1000];
+        new Random(42).nextBytes(bytes);
+        Hasher hasher = hashFunction.newHasher();
+        Random random = new Random(7);
+
+        for (int length = 0; length < bytes.length; length += 37) {
+            hasher.update(bytes, 0, length);
+            byte[] expected = hasher.digest();
+
+            int position = 0;
+            while (position < length) {
+                if (random.nextBoolean()) {
+                    hasher.update(bytes[position++]);
+                } else {
+                    int chunk = Math.min(random.nextInt(40), length - position);
+                    hasher.update(bytes, position, chunk);
+                    position += chunk;
+                }
+            }
+            assertThat(hasher.digest()).isEqualTo(expected);
+        }
+    }
+
+    private String hash(String input) {
+        Hasher hasher = hashFunction.newHasher();
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        hasher.update(bytes, 0, bytes.length);
+        return hex(hasher.digest());
+    }
+}
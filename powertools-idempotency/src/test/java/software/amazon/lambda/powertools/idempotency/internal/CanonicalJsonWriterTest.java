@@ -0,0 +1,59 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.internal;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import org.junit.jupiter.api.Test;
+import software.amazon.lambda.powertools.utilities.JsonConfig;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CanonicalJsonWriterTest {
+
+    @Test
+    public void write_shouldSortFieldsAndNormalizeNumbers() throws IOException {
+        JsonNode node = JsonConfig.get().getObjectMapper().readTree(
+                "{\"b\": [3.50, {\"z\": 1, \"a\": 1.2E1}], \"a\": \"text\", \"c\": null, \"B\": true}");
+
+        assertThat(write(node)).isEqualTo("{\"B\":true,\"a\":\"text\",\"b\":[3.5,{\"a\":12,\"z\":1}],\"c\":null}");
+    }
+
+    @Test
+    public void canonicalNumber_shouldBePlainWithoutTrailingZeros() {
+        assertThat(CanonicalJsonWriter.canonicalNumber(new IntNode(12))).isEqualTo("12");
+        assertThat(CanonicalJsonWriter.canonicalNumber(new LongNode(12L))).isEqualTo("12");
+        assertThat(CanonicalJsonWriter.canonicalNumber(new DoubleNode(12.0))).isEqualTo("12");
+        assertThat(CanonicalJsonWriter.canonicalNumber(new DecimalNode(new BigDecimal("1.2E1")))).isEqualTo("12");
+        assertThat(CanonicalJsonWriter.canonicalNumber(new DecimalNode(new BigDecimal("0.00")))).isEqualTo("0");
+        assertThat(CanonicalJsonWriter.canonicalNumber(new DoubleNode(0.1))).isEqualTo("0.1");
+        assertThat(CanonicalJsonWriter.canonicalNumber(new DoubleNode(-1.5E-7))).isEqualTo("-0.00000015");
+    }
+
+    private String write(JsonNode node) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = JsonConfig.get().getObjectMapper().getFactory().createGenerator(writer)) {
+            CanonicalJsonWriter.write(node, generator);
+        }
+        return writer.toString();
+    }
+}
@@ -25,25 +25,40 @@ import org.mockito.MockitoAnnotations;
 import software.amazon.lambda.powertools.idempotency.Constants;
 import software.amazon.lambda.powertools.idempotency.Idempotency;
 import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
+import software.amazon.lambda.powertools.idempotency.ResponseCopyStrategy;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyAlreadyInProgressException;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyConfigurationException;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyInconsistentStateException;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyValidationException;
 import software.amazon.lambda.powertools.idempotency.handlers.*;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener.Outcome;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener.Phase;
 import software.amazon.lambda.powertools.idempotency.model.Basket;
 import software.amazon.lambda.powertools.idempotency.model.Product;
 import software.amazon.lambda.powertools.idempotency.persistence.BasePersistenceStore;
 import software.amazon.lambda.powertools.idempotency.persistence.DataRecord;
+import software.amazon.lambda.powertools.idempotency.persistence.InMemoryPersistenceStore;
 import software.amazon.lambda.powertools.utilities.JsonConfig;
 
 import java.time.Instant;
+import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.time.temporal.ChronoUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 public class IdempotencyAspectTest {
@@ -81,8 +96,9 @@ public class IdempotencyAspectTest {
         ArgumentCaptor<OptionalInt> expiryCaptor = ArgumentCaptor.forClass(OptionalInt.class);
         verify(store).saveInProgress(nodeCaptor.capture(), any(), expiryCaptor.capture());
         assertThat(nodeCaptor.getValue().get("id").asLong()).isEqualTo(p.getId());
-        assertThat(nodeCaptor.getValue().get("name").asText()).isEqualTo(p.getName());
-        assertThat(nodeCaptor.getValue().get("price").asDouble()).isEqualTo(p.getPrice());
+        // only the fields reached by the JMESPath expression are extracted
+        assertThat(nodeCaptor.getValue().has("name")).isFalse();
+        assertThat(nodeCaptor.getValue().has("price")).isFalse();
 
         assertThat(expiryCaptor.getValue().orElse(-1)).isEqualTo(30000);
 
@@ -122,6 +138,31 @@ public class IdempotencyAspectTest {
         assertThat(function.handlerCalled()).isFalse();
     }
 
+    @Test
+    public void secondCall_withResponseCopyStrategy_shouldReplayCachedResponse() {
+        // GIVEN
+        Idempotency.config()
+                .withPersistenceStore(InMemoryPersistenceStore.builder().build())
+                .withConfig(IdempotencyConfig.builder()
+                        .withEventKeyJMESPath("id")
+                        .withUseLocalCache(true)
+                        .withResponseCopyStrategy(ResponseCopyStrategy.IMMUTABLE)
+                        .build()
+                ).configure();
+        when(context.getRemainingTimeInMillis()).thenReturn(30000);
+
+        Product p = new Product(42, "fake product", 12);
+        Basket first = new IdempotencyEnabledFunction().handleRequest(p, context);
+
+        // WHEN
+        IdempotencyEnabledFunction function = new IdempotencyEnabledFunction();
+        Basket second = function.handleRequest(p, context);
+
+        // THEN
+        assertThat(function.handlerCalled()).isFalse();
+        assertThat(second).isSameAs(first);
+    }
+
     @Test
     public void secondCall_notExpired_shouldGetStringFromStore() {
         // GIVEN
@@ -357,6 +398,110 @@ public class IdempotencyAspectTest {
         assertThat(recordCaptor.getValue().getIdempotencyKey()).isEqualTo("testFunction.createBasket#a1d0c6e83f027327d8461063f4ac58a6");
     }
 
+    @Test
+    public void idempotencyOnAsyncSubMethod_firstCall_shouldSaveSuccessWhenCompleted() {
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .configure();
+        when(store.saveInProgressAsync(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(store.saveSuccessAsync(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // WHEN
+        CompletableFuture<Void> processing = new CompletableFuture<>();
+        IdempotencyAsyncFunction function = new IdempotencyAsyncFunction(processing);
+        Product p = new Product(42, "fake product", 12);
+        CompletableFuture<Basket> basket = function.handleRequest(p, context);
+
+        // THEN: the record is not updated until the function completes
+        assertThat(function.subMethodCalled()).isTrue();
+        assertThat(basket).isNotDone();
+        verify(store).saveInProgressAsync(any(), any(), any());
+        verify(store, never()).saveSuccessAsync(any(), any(), any());
+
+        processing.complete(null);
+
+        assertThat(basket).isCompleted();
+        ArgumentCaptor<Basket> resultCaptor = ArgumentCaptor.forClass(Basket.class);
+        verify(store).saveSuccessAsync(any(), resultCaptor.capture(), any());
+        assertThat(resultCaptor.getValue()).isEqualTo(basket.join());
+        verify(store, never()).saveSuccess(any(), any(), any());
+    }
+
+    @Test
+    public void idempotencyOnAsyncSubMethod_shouldNotCallFunctionBeforeInProgressRecordIsSaved() {
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .configure();
+        CompletableFuture<Void> inProgressSaved = new CompletableFuture<>();
+        when(store.saveInProgressAsync(any(), any(), any())).thenReturn(inProgressSaved);
+        when(store.saveSuccessAsync(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // WHEN
+        IdempotencyAsyncFunction function = new IdempotencyAsyncFunction(CompletableFuture.completedFuture(null));
+        CompletableFuture<Basket> basket = function.handleRequest(new Product(42, "fake product", 12), context);
+
+        // THEN: the caller is not blocked while the in progress record is saved
+        assertThat(basket).isNotDone();
+        assertThat(function.subMethodCalled()).isFalse();
+
+        inProgressSaved.complete(null);
+
+        assertThat(basket).isCompleted();
+        assertThat(function.subMethodCalled()).isTrue();
+        verify(store, never()).saveInProgress(any(), any(), any());
+    }
+
+    @Test
+    public void idempotencyOnAsyncSubMethod_failure_shouldDeleteRecordAndFail() {
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .configure();
+        when(store.saveInProgressAsync(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        when(store.deleteRecordAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        // WHEN
+        CompletableFuture<Void> processing = new CompletableFuture<>();
+        IdempotencyAsyncFunction function = new IdempotencyAsyncFunction(processing);
+        CompletableFuture<Basket> basket = function.handleRequest(new Product(42, "fake product", 12), context);
+        IllegalStateException failure = new IllegalStateException("failure");
+        processing.completeExceptionally(failure);
+
+        // THEN
+        assertThatThrownBy(basket::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCause(failure);
+        verify(store).deleteRecordAsync(any(), any());
+        verify(store, never()).saveSuccessAsync(any(), any(), any());
+    }
+
+    @Test
+    public void idempotencyOnAsyncSubMethod_secondCall_shouldGetCompletedFutureFromStore() throws JsonProcessingException {
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .configure();
+        CompletableFuture<Void> alreadyExists = new CompletableFuture<>();
+        alreadyExists.completeExceptionally(new IdempotencyItemAlreadyExistsException());
+        when(store.saveInProgressAsync(any(), any(), any())).thenReturn(alreadyExists);
+
+        Product p = new Product(42, "fake product", 12);
+        Basket b = new Basket(p);
+        DataRecord record = new DataRecord(
+                "fake",
+                DataRecord.Status.COMPLETED,
+                Instant.now().plus(356, SECONDS).getEpochSecond(),
+                JsonConfig.get().getObjectMapper().writer().writeValueAsString(b),
+                null);
+        when(store.getRecordAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(record));
+
+        // WHEN
+        IdempotencyAsyncFunction function = new IdempotencyAsyncFunction(new CompletableFuture<>());
+        CompletableFuture<Basket> basket = function.handleRequest(p, context);
+
+        // THEN
+        assertThat(basket).isCompletedWithValue(b);
+        assertThat(function.subMethodCalled()).isFalse();
+    }
+
     @Test
     public void idempotencyOnSubMethodNotAnnotated_shouldThrowException() {
         Idempotency.config()
@@ -387,4 +532,283 @@ public class IdempotencyAspectTest {
         assertThatThrownBy(() -> function.handleRequest(p, context)).isInstanceOf(IdempotencyConfigurationException.class);
     }
 
+    @Test
+    public void firstCall_shouldNotifyListener() {
+        IdempotencyListener listener = mock(IdempotencyListener.class);
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .withConfig(IdempotencyConfig.builder()
+                        .withEventKeyJMESPath("id")
+                        .withListener(listener)
+                        .build()
+                ).configure();
+
+        IdempotencyEnabledFunction function = new IdempotencyEnabledFunction();
+        function.handleRequest(new Product(42, "fake product", 12), context);
+
+        verify(listener).onPhase(eq(Phase.SAVE_IN_PROGRESS), anyLong());
+        verify(listener).onPhase(eq(Phase.FUNCTION), anyLong());
+        verify(listener).onPhase(eq(Phase.SAVE_SUCCESS), anyLong());
+        verify(listener).onOutcome(Outcome.EXECUTED);
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void secondCall_shouldNotifyListenerOfReplay() throws JsonProcessingException {
+        IdempotencyListener listener = mock(IdempotencyListener.class);
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .withConfig(IdempotencyConfig.builder()
+                        .withEventKeyJMESPath("id")
+                        .withListener(listener)
+                        .build()
+                ).configure();
+
+        doThrow(IdempotencyItemAlreadyExistsException.class).when(store).saveInProgress(any(), any(), any());
+        Product p = new Product(42, "fake product", 12);
+        DataRecord record = new DataRecord(
+                "42",
+                DataRecord.Status.COMPLETED,
+                Instant.now().plus(356, SECONDS).getEpochSecond(),
+                JsonConfig.get().getObjectMapper().writer().writeValueAsString(new Basket(p)),
+                null);
+        doReturn(record).when(store).getRecord(any(), any());
+
+        IdempotencyEnabledFunction function = new IdempotencyEnabledFunction();
+        function.handleRequest(p, context);
+
+        verify(listener).onPhase(eq(Phase.SAVE_IN_PROGRESS), anyLong());
+        verify(listener).onPhase(eq(Phase.GET_RECORD), anyLong());
+        verify(listener).onOutcome(Outcome.REPLAYED);
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    public void functionThrowException_shouldNotifyListenerOfFailure() {
+        IdempotencyListener listener = mock(IdempotencyListener.class);
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .withConfig(IdempotencyConfig.builder()
+                        .withEventKeyJMESPath("id")
+                        .withListener(listener)
+                        .build()
+                ).configure();
+
+        IdempotencyWithErrorFunction function = new IdempotencyWithErrorFunction();
+        assertThatThrownBy(() -> function.handleRequest(new Product(42, "fake product", 12), context))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+
+        verify(listener).onPhase(eq(Phase.FUNCTION), anyLong());
+        verify(listener).onPhase(eq(Phase.DELETE_RECORD), anyLong());
+        verify(listener).onOutcome(Outcome.FAILED);
+        verify(listener, never()).onPhase(eq(Phase.SAVE_SUCCESS), anyLong());
+    }
+
+    @Test
+    public void inconsistentState_shouldNotifyListenerOfRetriesAndInProgress() {
+        IdempotencyListener listener = mock(IdempotencyListener.class);
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .withConfig(IdempotencyConfig.builder()
+                        .withEventKeyJMESPath("id")
+                        .withListener(listener)
+                        .build()
+                ).configure();
+
+        doThrow(IdempotencyItemAlreadyExistsException.class).when(store).saveInProgress(any(), any(), any());
+        DataRecord timedOut = new DataRecord("42", DataRecord.Status.INPROGRESS, Instant.now().plus(356, SECONDS).getEpochSecond(),
+                null, null, OptionalLong.of(Instant.now().toEpochMilli() - 100));
+        DataRecord inProgress = new DataRecord("42", DataRecord.Status.INPROGRESS, Instant.now().plus(356, SECONDS).getEpochSecond(),
+                null, null, OptionalLong.of(Instant.now().toEpochMilli() + 30000));
+        doReturn(timedOut, inProgress).when(store).getRecord(any(), any());
+
+        IdempotencyEnabledFunction function = new IdempotencyEnabledFunction();
+        assertThatThrownBy(() -> function.handleRequest(new Product(42, "fake product", 12), context))
+                .isInstanceOf(IdempotencyAlreadyInProgressException.class);
+
+        verify(listener).onRetry(1);
+        verify(listener, times(2)).onPhase(eq(Phase.GET_RECORD), anyLong());
+        verify(listener).onOutcome(Outcome.IN_PROGRESS);
+    }
+
+    @Test
+    public void concurrentCalls_withInFlightCoalescing_shouldShareFirstCallResponse() throws Exception {
+        IdempotencyListener listener = mock(IdempotencyListener.class);
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .withConfig(IdempotencyConfig.builder()
+                        .withEventKeyJMESPath("id")
+                        .withInFlightCoalescing(true)
+                        .withListener(listener)
+                        .build()
+                ).configure();
+
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doReturn(Optional.of("42")).when(store).getIdempotencyKey(any());
+        when(context.getRemainingTimeInMillis()).thenReturn(30000);
+        doAnswer(invocation -> {
+            saving.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(store).saveInProgress(any(), any(), any());
+
+        Product p = new Product(42, "fake product", 12);
+        IdempotencyEnabledFunction firstFunction = new IdempotencyEnabledFunction();
+        IdempotencyEnabledFunction secondFunction = new IdempotencyEnabledFunction();
+        AtomicReference<Object> firstResult = new AtomicReference<>();
+        AtomicReference<Object> secondResult = new AtomicReference<>();
+
+        Thread first = start(() -> firstFunction.handleRequest(p, context), firstResult);
+        assertThat(saving.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread second = start(() -> secondFunction.handleRequest(p, context), secondResult);
+        awaitWaiting(second);
+        release.countDown();
+        first.join(5000);
+        second.join(5000);
+
+        assertThat(firstResult.get()).isInstanceOf(Basket.class);
+        assertThat(secondResult.get()).isSameAs(firstResult.get());
+        assertThat(firstFunction.handlerCalled()).isTrue();
+        assertThat(secondFunction.handlerCalled()).isFalse();
+        verify(store, times(1)).saveInProgress(any(), any(), any());
+        verify(store, times(1)).saveSuccess(any(), any(), any());
+        verify(listener).onOutcome(Outcome.EXECUTED);
+        verify(listener).onOutcome(Outcome.COALESCED);
+    }
+
+    @Test
+    public void concurrentCalls_withInFlightCoalescing_firstCallFails_shouldThrowSameException() throws Exception {
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .withConfig(IdempotencyConfig.builder()
+                        .withEventKeyJMESPath("id")
+                        .withInFlightCoalescing(true)
+                        .build()
+                ).configure();
+
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doReturn(Optional.of("42")).when(store).getIdempotencyKey(any());
+        when(context.getRemainingTimeInMillis()).thenReturn(30000);
+        doAnswer(invocation -> {
+            saving.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(store).saveInProgress(any(), any(), any());
+
+        Product p = new Product(42, "fake product", 12);
+        AtomicReference<Object> firstResult = new AtomicReference<>();
+        AtomicReference<Object> secondResult = new AtomicReference<>();
+
+        Thread first = start(() -> new IdempotencyWithErrorFunction().handleRequest(p, context), firstResult);
+        assertThat(saving.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread second = start(() -> new IdempotencyWithErrorFunction().handleRequest(p, context), secondResult);
+        awaitWaiting(second);
+        release.countDown();
+        first.join(5000);
+        second.join(5000);
+
+        assertThat(firstResult.get()).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThat(secondResult.get()).isSameAs(firstResult.get());
+        verify(store, times(1)).saveInProgress(any(), any(), any());
+        verify(store, times(1)).deleteRecord(any(), any());
+    }
+
+    @Test
+    public void concurrentCalls_withInFlightCoalescing_differentValidatedPayload_shouldThrowValidationException() throws Exception {
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .withConfig(IdempotencyConfig.builder()
+                        .withEventKeyJMESPath("id")
+                        .withPayloadValidationJMESPath("price")
+                        .withInFlightCoalescing(true)
+                        .build()
+                ).configure();
+
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doReturn(Optional.of("42")).when(store).getIdempotencyKey(any());
+        doReturn("hash1", "hash2").when(store).getPayloadValidationHash(any());
+        when(context.getRemainingTimeInMillis()).thenReturn(30000);
+        doAnswer(invocation -> {
+            saving.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(store).saveInProgress(any(), any(), any());
+
+        AtomicReference<Object> firstResult = new AtomicReference<>();
+        Thread first = start(() -> new IdempotencyEnabledFunction().handleRequest(new Product(42, "fake product", 12), context), firstResult);
+        assertThat(saving.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            assertThatThrownBy(() -> new IdempotencyEnabledFunction().handleRequest(new Product(42, "fake product", 13), context))
+                    .isInstanceOf(IdempotencyValidationException.class);
+        } finally {
+            release.countDown();
+            first.join(5000);
+        }
+        assertThat(firstResult.get()).isInstanceOf(Basket.class);
+        verify(store, times(1)).saveInProgress(any(), any(), any());
+    }
+
+    @Test
+    public void concurrentCalls_withInFlightCoalescing_firstCallTooLong_shouldThrowAlreadyInProgress() throws Exception {
+        IdempotencyListener listener = mock(IdempotencyListener.class);
+        Idempotency.config()
+                .withPersistenceStore(store)
+                .withConfig(IdempotencyConfig.builder()
+                        .withEventKeyJMESPath("id")
+                        .withInFlightCoalescing(true)
+                        .withListener(listener)
+                        .build()
+                ).configure();
+
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doReturn(Optional.of("42")).when(store).getIdempotencyKey(any());
+        when(context.getRemainingTimeInMillis()).thenReturn(100);
+        doAnswer(invocation -> {
+            saving.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(store).saveInProgress(any(), any(), any());
+
+        Product p = new Product(42, "fake product", 12);
+        AtomicReference<Object> firstResult = new AtomicReference<>();
+        Thread first = start(() -> new IdempotencyEnabledFunction().handleRequest(p, context), firstResult);
+        assertThat(saving.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            assertThatThrownBy(() -> new IdempotencyEnabledFunction().handleRequest(p, context))
+                    .isInstanceOf(IdempotencyAlreadyInProgressException.class);
+        } finally {
+            release.countDown();
+            first.join(5000);
+        }
+        assertThat(firstResult.get()).isInstanceOf(Basket.class);
+        verify(listener).onOutcome(Outcome.IN_PROGRESS);
+        verify(listener, never()).onOutcome(Outcome.COALESCED);
+    }
+
+    private static Thread start(Callable<?> call, AtomicReference<Object> result) {
+        Thread thread = new Thread(() -> {
+            try {
+                result.set(call.call());
+            } catch (Throwable t) {
+                result.set(t);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        // waiting for the first call, at most the remaining time of the invocation
+        assertThat(thread.getState()).isEqualTo(Thread.State.TIMED_WAITING);
+    }
 }
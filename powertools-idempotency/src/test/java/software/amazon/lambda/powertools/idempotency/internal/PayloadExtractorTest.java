@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.internal;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.tests.EventLoader;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
+import software.amazon.lambda.powertools.idempotency.model.Product;
+import software.amazon.lambda.powertools.utilities.JsonConfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PayloadExtractorTest {
+
+    @Test
+    public void extract_simplePath_shouldKeepOnlyReachedFields() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        PayloadExtractor extractor = PayloadExtractor.of(IdempotencyConfig.builder()
+                .withEventKeyJMESPath("requestContext.requestId")
+                .build());
+
+        JsonNode payload = extractor.extract(event);
+
+        assertThat(payload.size()).isEqualTo(1);
+        assertThat(payload.get("requestContext").size()).isEqualTo(1);
+        assertThat(payload.get("requestContext").get("requestId").asText()).isEqualTo(event.getRequestContext().getRequestId());
+    }
+
+    @Test
+    public void extract_jsonFunction_shouldKeepWholeString() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        PayloadExtractor extractor = PayloadExtractor.of(IdempotencyConfig.builder()
+                .withEventKeyJMESPath("powertools_json(body).id")
+                .withPayloadValidationJMESPath("powertools_json(body).message")
+                .build());
+
+        JsonNode payload = extractor.extract(event);
+
+        assertThat(payload.size()).isEqualTo(1);
+        assertThat(payload.get("body").asText()).isEqualTo(event.getBody());
+    }
+
+    @Test
+    public void extract_shouldGiveSameJMESPathResultsAsWholePayload() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        JsonNode wholePayload = JsonConfig.get().getObjectMapper().valueToTree(event);
+
+        for (String expression : new String[]{
+                "powertools_json(body).id",
+                "powertools_json(body)",
+                "requestContext.identity",
+                "requestContext.identity.sourceIp",
+                "headers.Host",
+                "unknown.field",
+                "body.id",
+                "httpMethod"}) {
+            JsonNode payload = PayloadExtractor.of(IdempotencyConfig.builder()
+                    .withEventKeyJMESPath(expression)
+                    .build()).extract(event);
+            assertThat(payload.size()).isLessThan(wholePayload.size());
+            assertThat(search(expression, payload)).as(expression).isEqualTo(search(expression, wholePayload));
+        }
+    }
+
+    @Test
+    public void extract_complexExpression_shouldKeepWholePayload() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        JsonNode wholePayload = JsonConfig.get().getObjectMapper().valueToTree(event);
+
+        for (String expression : new String[]{
+                "[requestContext.requestId, httpMethod]",
+                "powertools_json(body).[id, message]",
+                "multiValueHeaders.Accept[0]",
+                "\"httpMethod\""}) {
+            JsonNode payload = PayloadExtractor.of(IdempotencyConfig.builder()
+                    .withEventKeyJMESPath(expression)
+                    .build()).extract(event);
+            assertThat(payload).as(expression).isEqualTo(wholePayload);
+        }
+    }
+
+    @Test
+    public void extract_complexValidationExpression_shouldKeepWholePayload() {
+        Product product = new Product(42, "fake product", 12);
+        PayloadExtractor extractor = PayloadExtractor.of(IdempotencyConfig.builder()
+                .withEventKeyJMESPath("id")
+                .withPayloadValidationJMESPath("[name, price]")
+                .build());
+
+        assertThat(extractor.extract(product)).isEqualTo(JsonConfig.get().getObjectMapper().valueToTree(product));
+    }
+
+    @Test
+    public void extract_noExpression_shouldKeepWholePayload() {
+        Product product = new Product(42, "fake product", 12);
+        PayloadExtractor extractor = PayloadExtractor.of(IdempotencyConfig.builder().build());
+
+        assertThat(extractor.extract(product)).isEqualTo(JsonConfig.get().getObjectMapper().valueToTree(product));
+    }
+
+    @Test
+    public void extract_scalarArgument_shouldKeepValue() {
+        PayloadExtractor extractor = PayloadExtractor.of(IdempotencyConfig.builder()
+                .withEventKeyJMESPath("id")
+                .build());
+
+        assertThat(extractor.extract("fake").asText()).isEqualTo("fake");
+        assertThat(extractor.extract(null)).isEqualTo(JsonConfig.get().getObjectMapper().valueToTree(null));
+    }
+
+    private JsonNode search(String expression, JsonNode payload) {
+        return JsonConfig.get().getJmesPath().compile(expression).search(payload);
+    }
+}
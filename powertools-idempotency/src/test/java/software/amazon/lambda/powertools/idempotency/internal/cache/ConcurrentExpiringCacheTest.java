@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.internal.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrentExpiringCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    @Test
+    public void testCache_shouldRemoveLeastRecentlyUsedEntry() throws InterruptedException {
+        ConcurrentExpiringCache<String, String> cache = new ConcurrentExpiringCache<>(3, v -> 0, now::get);
+        cache.put("key1", "value1");
+        Thread.sleep(1);
+        cache.put("key2", "value2");
+        Thread.sleep(1);
+        cache.put("key3", "value3");
+        Thread.sleep(1);
+        cache.get("key1");
+        cache.put("key4", "value4");
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.get("key2")).isNull();
+        assertThat(cache.get("key1")).isEqualTo("value1");
+        assertThat(cache.get("key4")).isEqualTo("value4");
+    }
+
+    @Test
+    public void testCache_shouldNotReturnExpiredEntry() {
+        ConcurrentExpiringCache<String, Long> cache = new ConcurrentExpiringCache<>(3, v -> v, now::get);
+        cache.put("key1", 2000L);
+
+        assertThat(cache.get("key1")).isEqualTo(2000L);
+        now.set(2001);
+        assertThat(cache.get("key1")).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.stats().getHitCount()).isEqualTo(1);
+        assertThat(cache.stats().getMissCount()).isEqualTo(1);
+        assertThat(cache.stats().getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCache_shouldEvictExpiredEntriesFirst() {
+        ConcurrentExpiringCache<String, Long> cache = new ConcurrentExpiringCache<>(3, v -> v, now::get);
+        cache.put("key1", 5000L);
+        cache.put("key2", 1500L);
+        cache.put("key3", 5000L);
+        now.set(2000);
+        cache.put("key4", 5000L);
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.get("key2")).isNull();
+        assertThat(cache.get("key1")).isEqualTo(5000L);
+        assertThat(cache.stats().getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testCache_shouldPurgeExpiredEntriesOnPut() {
+        ConcurrentExpiringCache<String, Long> cache = new ConcurrentExpiringCache<>(10, v -> v, now::get);
+        cache.put("key1", 1500L);
+        cache.put("key2", 2500L);
+        cache.put("key3", 1800L);
+        now.set(2000);
+        cache.put("key4", 5000L);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.stats().getEvictionCount()).isEqualTo(2);
+        assertThat(cache.get("key2")).isEqualTo(2500L);
+    }
+
+    @Test
+    public void testCache_shouldEvictBatchOfLeastRecentlyUsedEntries() throws InterruptedException {
+        ConcurrentExpiringCache<Integer, Integer> cache = new ConcurrentExpiringCache<>(32, v -> 0, now::get);
+        for (int i = 0; i < 32; i++) {
+            cache.put(i, i);
+            if (i < 4) {
+                Thread.sleep(1);
+            }
+        }
+        Thread.sleep(1);
+        cache.get(0);
+        cache.put(32, 32);
+
+        assertThat(cache.size()).isEqualTo(30);
+        assertThat(cache.get(0)).isZero();
+        assertThat(cache.get(1)).isNull();
+        assertThat(cache.get(3)).isNull();
+        assertThat(cache.get(4)).isEqualTo(4);
+    }
+
+    @Test
+    public void testCache_withSegments_shouldStayBounded() {
+        ConcurrentExpiringCache<Integer, Integer> cache = new ConcurrentExpiringCache<>(1024, v -> 0, now::get);
+        for (int i = 0; i < 4096; i++) {
+            cache.put(i, i);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(1024).isGreaterThan(900);
+        assertThat(cache.get(4095)).isEqualTo(4095);
+        assertThat(cache.stats().getEvictionCount()).isEqualTo(4096 - cache.size());
+    }
+
+    @Test
+    public void testCache_shouldNotReturnRemovedEntry() {
+        ConcurrentExpiringCache<String, Long> cache = new ConcurrentExpiringCache<>(3, v -> v, now::get);
+        cache.put("key1", 5000L);
+        cache.put("key2", 5000L);
+
+        assertThat(cache.remove("key1")).isEqualTo(5000L);
+        assertThat(cache.get("key1")).isNull();
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.stats().getEvictionCount()).isZero();
+    }
+
+    @Test
+    public void testCache_concurrentAccess_shouldStayBounded() throws InterruptedException {
+        ConcurrentExpiringCache<Integer, Integer> cache = new ConcurrentExpiringCache<>(64, v -> 0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            int offset = t * 1000;
+            executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    cache.put(offset + i, i);
+                    cache.get(offset + i / 2);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(cache.size()).isLessThanOrEqualTo(64);
+        assertThat(cache.stats().getHitCount() + cache.stats().getMissCount()).isEqualTo(8000);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.metrics;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.cloudwatchlogs.emf.logger.MetricsLogger;
+import software.amazon.cloudwatchlogs.emf.model.Unit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class EmfIdempotencyListenerTest {
+
+    private final MetricsLogger metricsLogger = mock(MetricsLogger.class);
+    private final EmfIdempotencyListener listener = new EmfIdempotencyListener(metricsLogger);
+
+    @Test
+    public void onPhase_shouldPutDurationInMilliseconds() {
+        listener.onPhase(IdempotencyListener.Phase.SAVE_IN_PROGRESS, 2_500_000);
+
+        verify(metricsLogger).putMetric("IdempotencySaveInProgressTime", 2.5, Unit.MILLISECONDS);
+    }
+
+    @Test
+    public void onOutcome_shouldCountOutcome() {
+        listener.onOutcome(IdempotencyListener.Outcome.REPLAYED);
+        listener.onOutcome(IdempotencyListener.Outcome.IN_PROGRESS);
+
+        verify(metricsLogger).putMetric("IdempotencyReplayed", 1, Unit.COUNT);
+        verify(metricsLogger).putMetric("IdempotencyInProgress", 1, Unit.COUNT);
+    }
+
+    @Test
+    public void onCacheLookupAndRetry_shouldCountThem() {
+        listener.onCacheLookup(true);
+        listener.onCacheLookup(false);
+        listener.onRetry(1);
+
+        verify(metricsLogger).putMetric("IdempotencyCacheHit", 1, Unit.COUNT);
+        verify(metricsLogger).putMetric("IdempotencyCacheMiss", 1, Unit.COUNT);
+        verify(metricsLogger).putMetric("IdempotencyRetry", 1, Unit.COUNT);
+    }
+
+    @Test
+    public void onBackgroundWrite_shouldCountOutcome() {
+        listener.onBackgroundWrite(IdempotencyListener.BackgroundWriteOutcome.RETRIED, 1);
+        listener.onBackgroundWrite(IdempotencyListener.BackgroundWriteOutcome.WRITTEN, 2);
+        listener.onBackgroundWrite(IdempotencyListener.BackgroundWriteOutcome.REJECTED, 0);
+
+        verify(metricsLogger).putMetric("IdempotencyBackgroundRetry", 1, Unit.COUNT);
+        verify(metricsLogger).putMetric("IdempotencyBackgroundWritten", 1, Unit.COUNT);
+        verify(metricsLogger).putMetric("IdempotencyBackgroundRejected", 1, Unit.COUNT);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.lambda.powertools.idempotency.DynamoDBConfig;
+import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
+import software.amazon.lambda.powertools.utilities.JsonConfig;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AsyncDynamoDBPersistenceStoreTest extends DynamoDBConfig {
+    private static DynamoDbAsyncClient asyncClient;
+    private Map<String, AttributeValue> key;
+    private AsyncDynamoDBPersistenceStore persistenceStore;
+
+    // =================================================================
+    //<editor-fold desc="putRecord">
+    @Test
+    public void putRecordAsync_shouldCreateRecordInDynamoDB() {
+        Instant now = Instant.now();
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        persistenceStore.putRecordAsync(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null), now).join();
+
+        key = Collections.singletonMap("id", AttributeValue.builder().s("key").build());
+        Map<String, AttributeValue> item = client.getItem(GetItemRequest.builder().tableName(TABLE_NAME).key(key).build()).item();
+        assertThat(item.get("status").s()).isEqualTo("INPROGRESS");
+        assertThat(item.get("expiration").n()).isEqualTo(String.valueOf(expiry));
+    }
+
+    @Test
+    public void putRecordAsync_shouldFailWithAlreadyExists_IfRecordAlreadyExist() {
+        key = Collections.singletonMap("id", AttributeValue.builder().s("key").build());
+        Instant now = Instant.now();
+        long expiry = now.plus(30, ChronoUnit.SECONDS).getEpochSecond();
+        insertItem(DataRecord.Status.COMPLETED, expiry, "Fake Data");
+
+        CompletableFuture<Void> future = persistenceStore.putRecordAsync(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null), now);
+
+        assertThatThrownBy(future::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IdempotencyItemAlreadyExistsException.class);
+        // the blocking version throws the same exception as the DynamoDBPersistenceStore
+        assertThatThrownBy(() -> persistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null), now))
+                .isInstanceOf(IdempotencyItemAlreadyExistsException.class);
+    }
+
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="getRecord">
+    @Test
+    public void getRecordAsync_shouldReturnExistingRecord() {
+        key = Collections.singletonMap("id", AttributeValue.builder().s("key").build());
+        long expiry = Instant.now().plus(30, ChronoUnit.SECONDS).getEpochSecond();
+        insertItem(DataRecord.Status.COMPLETED, expiry, "Fake Data");
+
+        DataRecord record = persistenceStore.getRecordAsync("key").join();
+
+        assertThat(record.getIdempotencyKey()).isEqualTo("key");
+        assertThat(record.getStatus()).isEqualTo(DataRecord.Status.COMPLETED);
+        assertThat(record.getResponseData()).isEqualTo("Fake Data");
+        assertThat(record.getExpiryTimestamp()).isEqualTo(expiry);
+    }
+
+    @Test
+    public void getRecord_shouldThrowException_whenRecordIsAbsent() {
+        assertThatThrownBy(() -> persistenceStore.getRecordAsync("key").join())
+                .hasCauseInstanceOf(IdempotencyItemNotFoundException.class);
+        assertThatThrownBy(() -> persistenceStore.getRecord("key")).isInstanceOf(IdempotencyItemNotFoundException.class);
+    }
+
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="updateRecord / deleteRecord">
+    @Test
+    public void updateRecordAsync_shouldUpdateRecord() {
+        key = Collections.singletonMap("id", AttributeValue.builder().s("key").build());
+        Instant now = Instant.now();
+        insertItem(DataRecord.Status.INPROGRESS, now.plus(360, ChronoUnit.SECONDS).getEpochSecond(), null);
+        // enable payload validation
+        persistenceStore.configure(IdempotencyConfig.builder().withPayloadValidationJMESPath("path").build(), null);
+
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        persistenceStore.updateRecordAsync(new DataRecord("key", DataRecord.Status.COMPLETED, expiry, "Fake result", "hash")).join();
+
+        Map<String, AttributeValue> itemInDb = client.getItem(GetItemRequest.builder().tableName(TABLE_NAME).key(key).build()).item();
+        assertThat(itemInDb.get("status").s()).isEqualTo("COMPLETED");
+        assertThat(itemInDb.get("expiration").n()).isEqualTo(String.valueOf(expiry));
+        assertThat(itemInDb.get("data").s()).isEqualTo("Fake result");
+        assertThat(itemInDb.get("validation").s()).isEqualTo("hash");
+    }
+
+    @Test
+    public void deleteRecordAsync_shouldDeleteRecord() {
+        key = Collections.singletonMap("id", AttributeValue.builder().s("key").build());
+        insertItem(DataRecord.Status.INPROGRESS, Instant.now().plus(360, ChronoUnit.SECONDS).getEpochSecond(), null);
+
+        persistenceStore.deleteRecordAsync("key").join();
+
+        Map<String, AttributeValue> items = client.getItem(GetItemRequest.builder().tableName(TABLE_NAME).key(key).build()).item();
+        assertThat(items).isEmpty();
+    }
+
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="saveSuccessAsync">
+    @Test
+    public void saveSuccessAsync_shouldUpdateRecordAndBeReadByTheBlockingStore() throws Exception {
+        persistenceStore = AsyncDynamoDBPersistenceStore.builder()
+                .withTableName(TABLE_NAME)
+                .withDynamoDbAsyncClient(asyncClient)
+                .withResponseCodec(new GzipResponseCodec(), 0)
+                .build();
+        persistenceStore.configure(IdempotencyConfig.builder().build(), "testFunction");
+        JsonNode data = JsonConfig.get().getObjectMapper().readTree("{\"id\":42}");
+        Instant now = Instant.now();
+        persistenceStore.saveInProgress(data, now, OptionalInt.empty());
+
+        persistenceStore.saveSuccessAsync(data, "result", now).join();
+
+        DataRecord record = persistenceStore.getRecord(data, now);
+        key = Collections.singletonMap("id", AttributeValue.builder().s(record.getIdempotencyKey()).build());
+        assertThat(record.getStatus()).isEqualTo(DataRecord.Status.COMPLETED);
+        assertThat(record.getResponseData()).isEqualTo("result");
+        // same table layout and codec as the blocking store
+        DynamoDBPersistenceStore blockingStore = DynamoDBPersistenceStore.builder()
+                .withTableName(TABLE_NAME)
+                .withDynamoDbClient(client)
+                .withResponseCodec(new GzipResponseCodec())
+                .build();
+        assertThat(blockingStore.getRecord(record.getIdempotencyKey()).getResponseData()).isEqualTo("result");
+    }
+
+    @Test
+    public void configure_withLruCache_shouldBeRejected() {
+        persistenceStore = AsyncDynamoDBPersistenceStore.builder()
+                .withTableName(TABLE_NAME)
+                .withDynamoDbAsyncClient(asyncClient)
+                .build();
+
+        assertThatThrownBy(() -> persistenceStore.configure(IdempotencyConfig.builder()
+                .withUseLocalCache(true)
+                .withLocalCacheType(IdempotencyConfig.LocalCacheType.LRU)
+                .build(), "testFunction"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    //</editor-fold>
+    // =================================================================
+
+    private void insertItem(DataRecord.Status status, long expiry, String data) {
+        Map<String, AttributeValue> item = new HashMap<>(key);
+        item.put("expiration", AttributeValue.builder().n(String.valueOf(expiry)).build());
+        item.put("status", AttributeValue.builder().s(status.toString()).build());
+        if (data != null) {
+            item.put("data", AttributeValue.builder().s(data).build());
+        }
+        client.putItem(PutItemRequest.builder().tableName(TABLE_NAME).item(item).build());
+    }
+
+    @BeforeAll
+    public static void setupAsyncClient() {
+        asyncClient = DynamoDbAsyncClient.builder()
+                .httpClient(NettyNioAsyncHttpClient.builder().build())
+                .region(Region.EU_WEST_1)
+                .endpointOverride(endpoint)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create("FAKE", "FAKE")))
+                .build();
+    }
+
+    @AfterAll
+    public static void closeAsyncClient() {
+        asyncClient.close();
+    }
+
+    @BeforeEach
+    public void setup() {
+        persistenceStore = AsyncDynamoDBPersistenceStore.builder()
+                .withTableName(TABLE_NAME)
+                .withDynamoDbAsyncClient(asyncClient)
+                .build();
+    }
+
+    @AfterEach
+    public void emptyDB() {
+        if (key != null) {
+            client.deleteItem(DeleteItemRequest.builder().tableName(TABLE_NAME).key(key).build());
+            key = null;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BackgroundWriterTest {
+
+    @Test
+    public void submit_shouldWriteInBackground() {
+        List<DataRecord> written = new CopyOnWriteArrayList<>();
+        BackgroundWriter writer = new BackgroundWriter(written::add, 10, 3, IdempotencyListener.NONE);
+
+        assertThat(writer.submit(record("key1"))).isTrue();
+        assertThat(writer.submit(record("key2"))).isTrue();
+
+        assertThat(writer.drain(10000)).isTrue();
+        assertThat(written).extracting(DataRecord::getIdempotencyKey).containsExactly("key1", "key2");
+        assertThat(writer.stats().getWrittenCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void submit_whenWriteFails_shouldRetry() {
+        AtomicInteger attempts = new AtomicInteger();
+        BackgroundWriter writer = new BackgroundWriter(record -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IllegalStateException("throttled");
+            }
+        }, 10, 3, IdempotencyListener.NONE);
+
+        writer.submit(record("key"));
+
+        assertThat(writer.drain(10000)).isTrue();
+        assertThat(attempts).hasValue(3);
+        BackgroundWriteStats stats = writer.stats();
+        assertThat(stats.getRetryCount()).isEqualTo(2);
+        assertThat(stats.getWrittenCount()).isEqualTo(1);
+        assertThat(stats.getFailureCount()).isZero();
+    }
+
+    @Test
+    public void submit_whenWriteFailsEveryAttempt_shouldCountFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+        BackgroundWriter writer = new BackgroundWriter(record -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("unavailable");
+        }, 10, 2, IdempotencyListener.NONE);
+
+        writer.submit(record("key"));
+
+        assertThat(writer.drain(10000)).isTrue();
+        assertThat(attempts).hasValue(2);
+        BackgroundWriteStats stats = writer.stats();
+        assertThat(stats.getWrittenCount()).isZero();
+        assertThat(stats.getFailureCount()).isEqualTo(1);
+        assertThat(stats.getPendingCount()).isZero();
+    }
+
+    @Test
+    public void submit_whenTooManyPending_shouldReject() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BackgroundWriter writer = new BackgroundWriter(record -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 1, 1, IdempotencyListener.NONE);
+
+        assertThat(writer.submit(record("key1"))).isTrue();
+        writing.await();
+        assertThat(writer.submit(record("key2"))).isTrue(); // queued
+        assertThat(writer.submit(record("key3"))).isFalse();
+        assertThat(writer.drain(50)).isFalse();
+
+        release.countDown();
+        assertThat(writer.drain(10000)).isTrue();
+        BackgroundWriteStats stats = writer.stats();
+        assertThat(stats.getWrittenCount()).isEqualTo(2);
+        assertThat(stats.getRejectedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void submit_fromSeveralWriters_shouldShareWriterThread() {
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        BackgroundWriter writer1 = new BackgroundWriter(record -> threads.add(Thread.currentThread()), 10, 1, IdempotencyListener.NONE);
+        BackgroundWriter writer2 = new BackgroundWriter(record -> threads.add(Thread.currentThread()), 10, 1, IdempotencyListener.NONE);
+
+        writer1.submit(record("key1"));
+        writer2.submit(record("key2"));
+
+        assertThat(writer1.drain(10000)).isTrue();
+        assertThat(writer2.drain(10000)).isTrue();
+        assertThat(threads).hasSize(2);
+        assertThat(threads.get(0)).isSameAs(threads.get(1));
+        assertThat(threads.get(0).getName()).isEqualTo("powertools-idempotency-writer");
+    }
+
+    @Test
+    public void submit_whenWriteIsRetried_shouldNotDelayOtherWriters() {
+        BackgroundWriter failingWriter = new BackgroundWriter(record -> {
+            throw new IllegalStateException("unavailable");
+        }, 10, 5, IdempotencyListener.NONE);
+        List<DataRecord> written = new CopyOnWriteArrayList<>();
+        BackgroundWriter writer = new BackgroundWriter(written::add, 10, 1, IdempotencyListener.NONE);
+
+        failingWriter.submit(record("key1"));
+        writer.submit(record("key2"));
+
+        // written while the first record waits for its next attempt (50 + 100 + 200 + 400 ms of backoff)
+        assertThat(writer.drain(10000)).isTrue();
+        assertThat(written).hasSize(1);
+        assertThat(failingWriter.stats().getPendingCount()).isEqualTo(1);
+
+        assertThat(failingWriter.drain(10000)).isTrue();
+        assertThat(failingWriter.stats().getFailureCount()).isEqualTo(1);
+        assertThat(failingWriter.stats().getRetryCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void submit_shouldNotifyListenerOfEachAttempt() {
+        List<String> notifications = new CopyOnWriteArrayList<>();
+        IdempotencyListener listener = new IdempotencyListener() {
+            @Override
+            public void onBackgroundWrite(BackgroundWriteOutcome outcome, int attempts) {
+                notifications.add(outcome + "#" + attempts);
+            }
+        };
+        AtomicInteger attempts = new AtomicInteger();
+        BackgroundWriter writer = new BackgroundWriter(record -> {
+            if (record.getIdempotencyKey().equals("failing") || attempts.incrementAndGet() < 2) {
+                throw new IllegalStateException("throttled");
+            }
+        }, 10, 2, listener);
+
+        writer.submit(record("key"));
+        assertThat(writer.drain(10000)).isTrue();
+        writer.submit(record("failing"));
+        assertThat(writer.drain(10000)).isTrue();
+
+        assertThat(notifications).containsExactly("RETRIED#1", "WRITTEN#2", "RETRIED#1", "FAILED#2");
+    }
+
+    private static DataRecord record(String key) {
+        return new DataRecord(key, DataRecord.Status.COMPLETED, Instant.now().getEpochSecond() + 3600, "response", null);
+    }
+}
@@ -16,26 +16,42 @@ package software.amazon.lambda.powertools.idempotency.persistence;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.tests.EventLoader;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
 import com.fasterxml.jackson.databind.node.TextNode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
+import software.amazon.lambda.powertools.idempotency.ResponseCopyStrategy;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyKeyException;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyValidationException;
+import software.amazon.lambda.powertools.idempotency.internal.cache.ConcurrentExpiringCache;
 import software.amazon.lambda.powertools.idempotency.internal.cache.LRUCache;
+import software.amazon.lambda.powertools.idempotency.metrics.IdempotencyListener;
+import software.amazon.lambda.powertools.idempotency.model.Basket;
 import software.amazon.lambda.powertools.idempotency.model.Product;
 import software.amazon.lambda.powertools.utilities.JsonConfig;
 
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.OptionalInt;
+import java.util.Random;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class BasePersistenceStoreTest {
 
@@ -243,6 +259,106 @@ public class BasePersistenceStoreTest {
         assertThat(record.getPayloadHash()).isEqualTo("");
     }
 
+    @Test
+    public void saveSuccess_withResponseCopyStrategy_shouldKeepCopyOfResponseInCache() throws IdempotencyItemNotFoundException, IdempotencyValidationException {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        LRUCache<String, DataRecord> cache = new LRUCache<>(2);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withUseLocalCache(true)
+                .withResponseCopyStrategy(response -> {
+                    Product product = (Product) response;
+                    return new Product(product.getId(), product.getName(), product.getPrice());
+                }).build(), null, cache);
+
+        Product product = new Product(34543, "product", 42);
+        Instant now = Instant.now();
+        persistenceStore.saveSuccess(JsonConfig.get().getObjectMapper().valueToTree(event), product, now);
+
+        DataRecord record = persistenceStore.getRecord(JsonConfig.get().getObjectMapper().valueToTree(event), now);
+        assertThat(status).isEqualTo(2); // getRecord must not be called (retrieve from cache)
+        Object response = persistenceStore.getCachedResponse(record, Product.class);
+        assertThat(response).isEqualTo(product).isNotSameAs(product);
+        assertThat(persistenceStore.getCachedResponse(record, Basket.class)).isNull();
+    }
+
+    @Test
+    public void saveSuccess_withoutResponseCopyStrategy_shouldNotKeepResponseInCache() throws IdempotencyItemNotFoundException, IdempotencyValidationException {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        LRUCache<String, DataRecord> cache = new LRUCache<>(2);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withUseLocalCache(true).build(), null, cache);
+
+        Instant now = Instant.now();
+        persistenceStore.saveSuccess(JsonConfig.get().getObjectMapper().valueToTree(event), new Product(34543, "product", 42), now);
+
+        DataRecord record = persistenceStore.getRecord(JsonConfig.get().getObjectMapper().valueToTree(event), now);
+        assertThat(persistenceStore.getCachedResponse(record, Product.class)).isNull();
+    }
+
+    @Test
+    public void getRecord_afterSaveResponseToCache_shouldReturnCachedResponse() throws IdempotencyItemNotFoundException, IdempotencyValidationException {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        LRUCache<String, DataRecord> cache = new LRUCache<>(2);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withUseLocalCache(true)
+                .withResponseCopyStrategy(ResponseCopyStrategy.IMMUTABLE).build(), "myfunc", cache);
+
+        Instant now = Instant.now();
+        DataRecord dr = new DataRecord(
+                "testFunction.myfunc#7b40f56c086de5aa91dc467456329ed2",
+                DataRecord.Status.COMPLETED,
+                now.plus(3600, ChronoUnit.SECONDS).getEpochSecond(),
+                "{}",
+                null);
+        Product product = new Product(34543, "product", 42);
+        persistenceStore.saveResponseToCache(dr, product);
+
+        DataRecord record = persistenceStore.getRecord(JsonConfig.get().getObjectMapper().valueToTree(event), now);
+        assertThat(status).isEqualTo(-1); // getRecord must not be called (retrieve from cache)
+        assertThat(persistenceStore.getCachedResponse(record, Product.class)).isSameAs(product);
+    }
+
+    @Test
+    public void saveSuccess_inBackground_shouldUpdateRecordWhenDrained() throws JsonProcessingException {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        ConcurrentExpiringCache<String, DataRecord> cache = new ConcurrentExpiringCache<>(2, record -> record.getExpiryTimestamp() * 1000);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withUseLocalCache(true)
+                .withBackgroundSaveSuccess(true)
+                .build(), null, cache);
+
+        Product product = new Product(34543, "product", 42);
+        persistenceStore.saveSuccess(JsonConfig.get().getObjectMapper().valueToTree(event), product, Instant.now());
+
+        assertThat(persistenceStore.drainBackgroundWrites(OptionalInt.of(10000))).isTrue();
+        assertThat(status).isEqualTo(2);
+        assertThat(dr.getStatus()).isEqualTo(DataRecord.Status.COMPLETED);
+        assertThat(dr.getResponseData()).isEqualTo(JsonConfig.get().getObjectMapper().writeValueAsString(product));
+        assertThat(cache.size()).isEqualTo(1);
+        BackgroundWriteStats stats = persistenceStore.getBackgroundWriteStats();
+        assertThat(stats.getSubmittedCount()).isEqualTo(1);
+        assertThat(stats.getWrittenCount()).isEqualTo(1);
+        assertThat(stats.getPendingCount()).isZero();
+    }
+
+    @Test
+    public void saveSuccess_inBackground_withLruCache_shouldBeRejected() {
+        assertThatThrownBy(() -> IdempotencyConfig.builder()
+                .withUseLocalCache(true)
+                .withLocalCacheType(IdempotencyConfig.LocalCacheType.LRU)
+                .withBackgroundSaveSuccess(true)
+                .build())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void saveSuccess_notInBackground_shouldHaveEmptyStats() {
+        persistenceStore.configure(IdempotencyConfig.builder().build(), null);
+
+        assertThat(persistenceStore.drainBackgroundWrites(OptionalInt.empty())).isTrue();
+        assertThat(persistenceStore.getBackgroundWriteStats()).isSameAs(BackgroundWriteStats.EMPTY);
+    }
+
     //</editor-fold>
     // =================================================================
 
@@ -310,6 +426,31 @@ public class BasePersistenceStoreTest {
         assertThat(cache).isEmpty();
     }
 
+    @Test
+    public void getRecord_cacheEnabled_shouldNotifyListenerOfCacheLookups() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        LRUCache<String, DataRecord> cache = new LRUCache<>(2);
+        IdempotencyListener listener = mock(IdempotencyListener.class);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withUseLocalCache(true)
+                .withListener(listener).build(), "myfunc", cache);
+
+        Instant now = Instant.now();
+        cache.put("testFunction.myfunc#7b40f56c086de5aa91dc467456329ed2", new DataRecord(
+                "testFunction.myfunc#7b40f56c086de5aa91dc467456329ed2",
+                DataRecord.Status.COMPLETED,
+                now.plus(3600, ChronoUnit.SECONDS).getEpochSecond(),
+                "result of the function",
+                null));
+
+        persistenceStore.getRecord(JsonConfig.get().getObjectMapper().valueToTree(event), now);
+        verify(listener).onCacheLookup(true);
+
+        cache.clear();
+        persistenceStore.getRecord(JsonConfig.get().getObjectMapper().valueToTree(event), now);
+        verify(listener).onCacheLookup(false);
+    }
+
     @Test
     public void getRecord_invalidPayload_shouldThrowValidationException() {
         APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
@@ -325,6 +466,68 @@ public class BasePersistenceStoreTest {
                 .isInstanceOf(IdempotencyValidationException.class);
     }
 
+    @Test
+    public void getRecord_inProgressCacheEnabled_shouldReturnInProgressRecordFromCache() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        JsonNode data = JsonConfig.get().getObjectMapper().valueToTree(event);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withUseLocalCache(true)
+                .withInProgressCacheTtl(Duration.ofSeconds(5))
+                .build(), "myfunc");
+
+        Instant now = Instant.now();
+        assertThat(persistenceStore.getRecord(data, now).getStatus()).isEqualTo(DataRecord.Status.INPROGRESS);
+        assertThat(status).isEqualTo(0);
+
+        // WHEN: the same payload is received again while in progress
+        status = -1;
+        DataRecord record = persistenceStore.getRecord(data, now);
+
+        // THEN: neither getRecord nor putRecord are called
+        assertThat(record.getStatus()).isEqualTo(DataRecord.Status.INPROGRESS);
+        assertThatThrownBy(() -> persistenceStore.saveInProgress(data, now, OptionalInt.empty()))
+                .isInstanceOf(IdempotencyItemAlreadyExistsException.class);
+        assertThat(status).isEqualTo(-1);
+        assertThat(persistenceStore.getInProgressCacheStats().getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void saveInProgress_inProgressCacheEnabled_shouldNotCacheBeyondInProgressExpiry() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        JsonNode data = JsonConfig.get().getObjectMapper().valueToTree(event);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withUseLocalCache(true)
+                .withInProgressCacheTtl(Duration.ofSeconds(5))
+                .build(), null);
+
+        // in progress expiry already passed (the Lambda timed out)
+        Instant now = Instant.now();
+        persistenceStore.saveInProgress(data, now, OptionalInt.of(-1000));
+        status = -1;
+        persistenceStore.saveInProgress(data, now, OptionalInt.of(30000));
+
+        assertThat(status).isEqualTo(1);
+    }
+
+    @Test
+    public void saveSuccess_inProgressCacheEnabled_shouldReplaceInProgressRecord() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        JsonNode data = JsonConfig.get().getObjectMapper().valueToTree(event);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withUseLocalCache(true)
+                .withInProgressCacheTtl(Duration.ofSeconds(5))
+                .build(), null);
+
+        Instant now = Instant.now();
+        persistenceStore.saveInProgress(data, now, OptionalInt.of(30000));
+        persistenceStore.saveSuccess(data, "result", now);
+        status = -1;
+
+        DataRecord record = persistenceStore.getRecord(data, now);
+        assertThat(record.getStatus()).isEqualTo(DataRecord.Status.COMPLETED);
+        assertThat(status).isEqualTo(-1);
+    }
+
     //</editor-fold>
     // =================================================================
 
@@ -357,6 +560,289 @@ public class BasePersistenceStoreTest {
     //</editor-fold>
     // =================================================================
 
+    // =================================================================
+    //<editor-fold desc="batch">
+
+    @Test
+    public void saveInProgressBatch_shouldReportDuplicatesAndMissingKeys() {
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withEventKeyJMESPath("id")
+                .build(), null);
+
+        Instant now = Instant.now();
+        List<BatchRecordOutcome> outcomes = persistenceStore.saveInProgressBatch(Arrays.asList(
+                json("{\"id\":1}"),
+                json("{\"id\":2}"),
+                json("{\"id\":1}"),
+                json("{\"other\":3}")), now, OptionalInt.empty());
+
+        assertThat(outcomes).extracting(BatchRecordOutcome::getStatus).containsExactly(
+                BatchRecordOutcome.Status.SAVED,
+                BatchRecordOutcome.Status.SAVED,
+                BatchRecordOutcome.Status.ALREADY_EXISTS,
+                BatchRecordOutcome.Status.NO_IDEMPOTENCY_KEY);
+        assertThat(outcomes.get(0).getIdempotencyKey()).isEqualTo(outcomes.get(2).getIdempotencyKey());
+        assertThat(outcomes.get(0).getRecord().getStatus()).isEqualTo(DataRecord.Status.INPROGRESS);
+        assertThat(outcomes.get(3).getIdempotencyKey()).isNull();
+        assertThat(status).isEqualTo(1);
+    }
+
+    @Test
+    public void saveInProgressBatch_withLocalCache_shouldReportCachedRecordAsExisting() {
+        LRUCache<String, DataRecord> cache = new LRUCache<>(2);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withEventKeyJMESPath("id")
+                .withUseLocalCache(true)
+                .build(), null, cache);
+        Instant now = Instant.now();
+        String cachedKey = "testFunction#" + persistenceStore.generateHash(json("1"));
+        DataRecord cachedRecord = new DataRecord(cachedKey, DataRecord.Status.COMPLETED, now.plus(3600, ChronoUnit.SECONDS).getEpochSecond(), "result", null);
+        cache.put(cachedKey, cachedRecord);
+
+        List<BatchRecordOutcome> outcomes = persistenceStore.saveInProgressBatch(Arrays.asList(
+                json("{\"id\":1}"),
+                json("{\"id\":2}")), now, OptionalInt.empty());
+
+        assertThat(outcomes).extracting(BatchRecordOutcome::getStatus).containsExactly(
+                BatchRecordOutcome.Status.ALREADY_EXISTS,
+                BatchRecordOutcome.Status.SAVED);
+        assertThat(outcomes.get(0).getRecord()).isEqualTo(cachedRecord);
+        assertThat(dr.getIdempotencyKey()).isEqualTo(outcomes.get(1).getIdempotencyKey());
+    }
+
+    @Test
+    public void getRecordBatch_shouldValidatePayloadOfEachRecord() {
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withEventKeyJMESPath("id")
+                .withPayloadValidationJMESPath("amount")
+                .build(), null);
+        validationHash = persistenceStore.generateHash(json("10"));
+
+        List<BatchRecordOutcome> outcomes = persistenceStore.getRecordBatch(Arrays.asList(
+                json("{\"id\":1,\"amount\":10}"),
+                json("{\"id\":2,\"amount\":20}"),
+                json("{\"other\":3}")), Instant.now());
+
+        assertThat(outcomes).extracting(BatchRecordOutcome::getStatus).containsExactly(
+                BatchRecordOutcome.Status.FOUND,
+                BatchRecordOutcome.Status.INVALID_PAYLOAD,
+                BatchRecordOutcome.Status.NO_IDEMPOTENCY_KEY);
+        assertThat(outcomes.get(0).getRecord().getResponseData()).isEqualTo("Response");
+        assertThat(status).isEqualTo(0);
+    }
+
+    @Test
+    public void saveSuccessBatch_withCacheEnabled_shouldSaveInCache() {
+        LRUCache<String, DataRecord> cache = new LRUCache<>(2);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withEventKeyJMESPath("id")
+                .withUseLocalCache(true)
+                .build(), null, cache);
+
+        Instant now = Instant.now();
+        List<BatchRecordOutcome> outcomes = persistenceStore.saveSuccessBatch(Arrays.asList(
+                json("{\"id\":1}"),
+                json("{\"id\":2}")), Arrays.asList("result1", "result2"), now);
+
+        assertThat(outcomes).extracting(BatchRecordOutcome::getStatus).containsOnly(BatchRecordOutcome.Status.SAVED);
+        assertThat(status).isEqualTo(2);
+        assertThat(cache).hasSize(2);
+        assertThat(cache.get(outcomes.get(1).getIdempotencyKey()).getResponseData()).isEqualTo("result2");
+    }
+
+    @Test
+    public void saveSuccessBatch_withResponseCopyStrategy_shouldKeepResponsesInCache() {
+        LRUCache<String, DataRecord> cache = new LRUCache<>(2);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withEventKeyJMESPath("id")
+                .withUseLocalCache(true)
+                .withResponseCopyStrategy(ResponseCopyStrategy.IMMUTABLE)
+                .build(), null, cache);
+
+        Product product1 = new Product(1, "product1", 1);
+        Product product2 = new Product(2, "product2", 2);
+        List<BatchRecordOutcome> outcomes = persistenceStore.saveSuccessBatch(Arrays.asList(
+                json("{\"id\":1}"),
+                json("{\"id\":2}")), Arrays.asList(product1, product2), Instant.now());
+
+        assertThat(persistenceStore.getCachedResponse(cache.get(outcomes.get(0).getIdempotencyKey()), Product.class)).isSameAs(product1);
+        assertThat(persistenceStore.getCachedResponse(cache.get(outcomes.get(1).getIdempotencyKey()), Product.class)).isSameAs(product2);
+    }
+
+    @Test
+    public void saveSuccessBatch_withMismatchingResults_shouldThrowException() {
+        persistenceStore.configure(IdempotencyConfig.builder().build(), null);
+
+        assertThatThrownBy(() -> persistenceStore.saveSuccessBatch(Arrays.asList(json("1"), json("2")), Collections.singletonList("result"), Instant.now()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static JsonNode json(String json) {
+        try {
+            return JsonConfig.get().getObjectMapper().readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="previousHashFunction">
+
+    private static final String MD5_KEY = "testFunction#7b40f56c086de5aa91dc467456329ed2";
+
+    @Test
+    public void saveInProgress_recordWithPreviousHashFunction_shouldThrowException() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        persistenceStore = storeWithRecord(MD5_KEY);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withHashFunction("MURMUR3_128")
+                .withPreviousHashFunction("MD5")
+                .build(), null);
+
+        assertThatThrownBy(() -> persistenceStore.saveInProgress(JsonConfig.get().getObjectMapper().valueToTree(event), Instant.now(), OptionalInt.empty()))
+                .isInstanceOf(IdempotencyItemAlreadyExistsException.class);
+        assertThat(dr).isNull();
+    }
+
+    @Test
+    public void saveInProgress_noRecordWithPreviousHashFunction_shouldSaveWithNewHash() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        persistenceStore = storeWithRecord("anotherKey");
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withHashFunction("MURMUR3_128")
+                .withPreviousHashFunction("MD5")
+                .build(), null);
+
+        persistenceStore.saveInProgress(JsonConfig.get().getObjectMapper().valueToTree(event), Instant.now(), OptionalInt.empty());
+        assertThat(status).isEqualTo(1);
+        assertThat(dr.getIdempotencyKey())
+                .startsWith("testFunction#")
+                .hasSize(MD5_KEY.length())
+                .isNotEqualTo(MD5_KEY);
+    }
+
+    @Test
+    public void getRecord_recordWithPreviousHashFunction_shouldReturnPreviousRecord() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        persistenceStore = storeWithRecord(MD5_KEY);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withHashFunction("MURMUR3_128")
+                .withPreviousHashFunction("MD5")
+                .withPayloadValidationJMESPath("powertools_json(body).message")
+                .build(), null);
+        JsonNode payload = JsonConfig.get().getObjectMapper().valueToTree(event);
+        // payload hash stored with the previous hash function (MD5)
+        BasePersistenceStore md5Store = storeWithRecord(MD5_KEY);
+        md5Store.configure(IdempotencyConfig.builder().build(), null);
+        validationHash = md5Store.generateHash(JsonConfig.get().getJmesPath().compile("powertools_json(body).message").search(payload));
+
+        DataRecord record = persistenceStore.getRecord(payload, Instant.now());
+        assertThat(record.getIdempotencyKey()).isEqualTo(MD5_KEY);
+        assertThat(record.getResponseData()).isEqualTo("Response");
+    }
+
+    @Test
+    public void getRecord_noRecordWithPreviousHashFunction_shouldThrowNotFound() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        persistenceStore = storeWithRecord("anotherKey");
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withHashFunction("MURMUR3_128")
+                .withPreviousHashFunction("MD5")
+                .build(), null);
+
+        assertThatThrownBy(() -> persistenceStore.getRecord(JsonConfig.get().getObjectMapper().valueToTree(event), Instant.now()))
+                .isInstanceOf(IdempotencyItemNotFoundException.class);
+    }
+
+    @Test
+    public void getRecordBatch_recordWithPreviousHashFunction_shouldReturnPreviousRecord() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        persistenceStore = storeWithRecord(MD5_KEY);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withHashFunction("MURMUR3_128")
+                .withPreviousHashFunction("MD5")
+                .build(), null);
+
+        List<BatchRecordOutcome> outcomes = persistenceStore.getRecordBatch(Arrays.asList(
+                JsonConfig.get().getObjectMapper().valueToTree(event),
+                json("{\"id\":\"unknown\"}")), Instant.now());
+
+        assertThat(outcomes).extracting(BatchRecordOutcome::getStatus)
+                .containsExactly(BatchRecordOutcome.Status.FOUND, BatchRecordOutcome.Status.NOT_FOUND);
+        assertThat(outcomes.get(0).getRecord().getIdempotencyKey()).isEqualTo(MD5_KEY);
+    }
+
+    @Test
+    public void getRecord_enablingCanonicalHashing_shouldReturnRecordHashedWithPreviousSerialization() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        persistenceStore = storeWithRecord(MD5_KEY);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withCanonicalHashing(true)
+                .withHashFunction("MURMUR3_128")
+                .withPreviousHashFunction("MD5", false)
+                .withPayloadValidationJMESPath("powertools_json(body)")
+                .build(), null);
+        JsonNode payload = JsonConfig.get().getObjectMapper().valueToTree(event);
+        // payload hash stored with the previous hash function and serialization (non canonical MD5)
+        BasePersistenceStore md5Store = storeWithRecord(MD5_KEY);
+        md5Store.configure(IdempotencyConfig.builder().build(), null);
+        validationHash = md5Store.generateHash(JsonConfig.get().getJmesPath().compile("powertools_json(body)").search(payload));
+
+        DataRecord record = persistenceStore.getRecord(payload, Instant.now());
+        assertThat(record.getIdempotencyKey()).isEqualTo(MD5_KEY);
+    }
+
+    @Test
+    public void getRecord_canonicalHashingWithPreviousHashFunction_shouldHashPreviousKeyCanonically() {
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        persistenceStore = storeWithRecord(MD5_KEY);
+        persistenceStore.configure(IdempotencyConfig.builder()
+                .withCanonicalHashing(true)
+                .withHashFunction("MURMUR3_128")
+                .withPreviousHashFunction("MD5")
+                .build(), null);
+
+        // MD5_KEY was not hashed canonically
+        assertThatThrownBy(() -> persistenceStore.getRecord(JsonConfig.get().getObjectMapper().valueToTree(event), Instant.now()))
+                .isInstanceOf(IdempotencyItemNotFoundException.class);
+    }
+
+    private BasePersistenceStore storeWithRecord(String existingKey) {
+        return new BasePersistenceStore() {
+            @Override
+            public DataRecord getRecord(String idempotencyKey) throws IdempotencyItemNotFoundException {
+                if (!idempotencyKey.equals(existingKey)) {
+                    throw new IdempotencyItemNotFoundException(idempotencyKey);
+                }
+                return new DataRecord(idempotencyKey, DataRecord.Status.COMPLETED, Instant.now().plus(3600, ChronoUnit.SECONDS).getEpochSecond(), "Response", validationHash);
+            }
+
+            @Override
+            public void putRecord(DataRecord record, Instant now) throws IdempotencyItemAlreadyExistsException {
+                dr = record;
+                status = 1;
+            }
+
+            @Override
+            public void updateRecord(DataRecord record) {
+                dr = record;
+                status = 2;
+            }
+
+            @Override
+            public void deleteRecord(String idempotencyKey) {
+                dr = null;
+                status = 3;
+            }
+        };
+    }
+
+    //</editor-fold>
+    // =================================================================
+
     @Test
     public void generateHashString_shouldGenerateMd5ofString() {
         persistenceStore.configure(IdempotencyConfig.builder().build(), null);
@@ -397,4 +883,82 @@ public class BasePersistenceStoreTest {
         String generatedHash = persistenceStore.generateHash(new TextNode("Lambda rocks"));
         assertThat(generatedHash).isEqualTo(expectedHash);
     }
+
+    @Test
+    public void generateHashString_withMurmur3_shouldGenerateMurmur3ofString() {
+        persistenceStore.configure(IdempotencyConfig.builder().withHashFunction("MURMUR3_128").build(), null);
+        String expectedHash = "2c8071319410995e71208f4d8ec9b6c4"; // MURMUR3_128(Lambda rocks)
+        String generatedHash = persistenceStore.generateHash(new TextNode("Lambda rocks"));
+        assertThat(generatedHash).isEqualTo(expectedHash);
+    }
+
+    @Test
+    public void generateHashObject_withMurmur3_shouldGenerateMurmur3ofJsonObject() {
+        persistenceStore.configure(IdempotencyConfig.builder().withHashFunction("murmur3_128").build(), null);
+        Product product = new Product(42, "Product", 12);
+        String expectedHash = "ac4e6bda50ae3c369dc9e5d1023175f9"; // MURMUR3_128({"id":42,"name":"Product","price":12.0})
+        String generatedHash = persistenceStore.generateHash(JsonConfig.get().getObjectMapper().valueToTree(product));
+        assertThat(generatedHash).isEqualTo(expectedHash);
+    }
+
+    @Test
+    public void generateHash_afterSerializationFailure_shouldNotReuseWrittenBytes() {
+        persistenceStore.configure(IdempotencyConfig.builder().withCanonicalHashing(true).build(), null);
+        ArrayNode node = JsonConfig.get().getObjectMapper().createArrayNode();
+        node.add("Lambda rocks");
+        node.addPOJO(new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("Failed");
+            }
+        });
+
+        assertThatThrownBy(() -> persistenceStore.generateHash(node)).isInstanceOf(IllegalStateException.class);
+
+        String expectedHash = "70c24d88041893f7fbab4105b76fd9e1"; // MD5(Lambda rocks)
+        assertThat(persistenceStore.generateHash(new TextNode("Lambda rocks"))).isEqualTo(expectedHash);
+    }
+
+    @Test
+    public void generateHashObject_withCanonicalHashing_shouldIgnoreFieldOrderAndNumberFormat() throws JsonProcessingException {
+        persistenceStore.configure(IdempotencyConfig.builder().withCanonicalHashing(true).build(), null);
+        JsonNode node = JsonConfig.get().getObjectMapper().readTree("{\"id\":42,\"name\":\"Product\",\"price\":12.0}");
+        JsonNode reordered = JsonConfig.get().getObjectMapper().readTree("{\"price\":12,\"name\":\"Product\",\"id\":42}");
+
+        String expectedHash = "5bd6f630c6548ecfccb1bb2b76a1c90f"; // MD5({"id":42,"name":"Product","price":12})
+        assertThat(persistenceStore.generateHash(node)).isEqualTo(expectedHash);
+        assertThat(persistenceStore.generateHash(reordered)).isEqualTo(expectedHash);
+        assertThat(persistenceStore.generateHash(new DoubleNode(12.0))).isEqualTo(persistenceStore.generateHash(new IntNode(12)));
+    }
+
+    @Test
+    public void generateHashObject_shouldGenerateSameHashAsJsonString() throws Exception {
+        persistenceStore.configure(IdempotencyConfig.builder().withHashFunction("SHA-256").build(), null);
+        APIGatewayProxyRequestEvent event = EventLoader.loadApiGatewayRestEvent("apigw_event.json");
+        event.setBody("{\"message\":\"héllo wörld ✓\",\"values\":[1,2.5,null,true]}");
+        JsonNode node = JsonConfig.get().getObjectMapper().valueToTree(event);
+
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(node.toString().getBytes(StandardCharsets.UTF_8));
+        String expectedHash = String.format("%032x", new BigInteger(1, digest));
+        assertThat(persistenceStore.generateHash(node)).isEqualTo(expectedHash);
+    }
+
+    @Test
+    public void toHex_shouldMatchBigIntegerFormat() {
+        Random random = new Random(42);
+        for (int length : new int[]{8, 16, 20, 32}) {
+            for (int i = 0; i < 200; i++) {
+                byte[] digest = new byte[length];
+                random.nextBytes(digest);
+                // force leading zeros from time to time
+                if (i % 3 == 0) {
+                    digest[0] = 0;
+                }
+                if (i % 9 == 0) {
+                    digest[1] = 0x0F;
+                }
+                assertThat(BasePersistenceStore.toHex(digest)).isEqualTo(String.format("%032x", new BigInteger(1, digest)));
+            }
+        }
+    }
 }
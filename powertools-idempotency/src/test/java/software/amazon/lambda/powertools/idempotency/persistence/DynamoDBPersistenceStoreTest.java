@@ -23,12 +23,15 @@ import software.amazon.lambda.powertools.idempotency.DynamoDBConfig;
 import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
 import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyPersistenceLayerException;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -255,6 +258,232 @@ public class DynamoDBPersistenceStoreTest extends DynamoDBConfig {
     //</editor-fold>
     // =================================================================
 
+    // =================================================================
+    //<editor-fold desc="batch">
+
+    @Test
+    public void putRecords_shouldCreateRecordsInDynamoDB_andReportExistingOnes() {
+        // GIVEN: Insert a fake item with the id of one of the records
+        Map<String, AttributeValue> item = new HashMap<>(idKey("key1"));
+        Instant now = Instant.now();
+        long expiry = now.plus(30, ChronoUnit.SECONDS).getEpochSecond();
+        item.put("expiration", AttributeValue.builder().n(String.valueOf(expiry)).build()); // not expired
+        item.put("status", AttributeValue.builder().s(DataRecord.Status.COMPLETED.toString()).build());
+        item.put("data", AttributeValue.builder().s("Fake Data").build());
+        client.putItem(PutItemRequest.builder().tableName(TABLE_NAME).item(item).build());
+
+        try {
+            // WHEN
+            long expiry2 = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+            Set<String> alreadyExisting = dynamoDBPersistenceStore.putRecords(Arrays.asList(
+                    new DataRecord("key1", DataRecord.Status.INPROGRESS, expiry2, null, null),
+                    new DataRecord("key2", DataRecord.Status.INPROGRESS, expiry2, null, null),
+                    new DataRecord("key3", DataRecord.Status.INPROGRESS, expiry2, null, null)), now);
+
+            // THEN
+            assertThat(alreadyExisting).containsExactly("key1");
+            assertThat(client.getItem(GetItemRequest.builder().tableName(TABLE_NAME).key(idKey("key1")).build()).item().get("status").s()).isEqualTo("COMPLETED");
+            assertThat(client.getItem(GetItemRequest.builder().tableName(TABLE_NAME).key(idKey("key2")).build()).item().get("status").s()).isEqualTo("INPROGRESS");
+            assertThat(client.getItem(GetItemRequest.builder().tableName(TABLE_NAME).key(idKey("key3")).build()).item().get("expiration").n()).isEqualTo(String.valueOf(expiry2));
+        } finally {
+            deleteItems("key1", "key2", "key3");
+        }
+    }
+
+    @Test
+    public void getRecords_shouldReturnExistingRecords() {
+        Instant now = Instant.now();
+        long expiry = now.plus(30, ChronoUnit.SECONDS).getEpochSecond();
+        for (String id : Arrays.asList("key1", "key2")) {
+            Map<String, AttributeValue> item = new HashMap<>(idKey(id));
+            item.put("expiration", AttributeValue.builder().n(String.valueOf(expiry)).build());
+            item.put("status", AttributeValue.builder().s(DataRecord.Status.COMPLETED.toString()).build());
+            item.put("data", AttributeValue.builder().s("Data " + id).build());
+            client.putItem(PutItemRequest.builder().tableName(TABLE_NAME).item(item).build());
+        }
+
+        try {
+            // WHEN
+            Map<String, DataRecord> records = dynamoDBPersistenceStore.getRecords(Arrays.asList("key1", "key2", "absent"));
+
+            // THEN
+            assertThat(records).containsOnlyKeys("key1", "key2");
+            assertThat(records.get("key2").getResponseData()).isEqualTo("Data key2");
+            assertThat(records.get("key1").getStatus()).isEqualTo(DataRecord.Status.COMPLETED);
+            assertThat(records.get("key1").getExpiryTimestamp()).isEqualTo(expiry);
+        } finally {
+            deleteItems("key1", "key2");
+        }
+    }
+
+    @Test
+    public void updateRecords_shouldUpdateRecords() {
+        Instant now = Instant.now();
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        dynamoDBPersistenceStore.putRecords(Arrays.asList(
+                new DataRecord("key1", DataRecord.Status.INPROGRESS, expiry, null, null),
+                new DataRecord("key2", DataRecord.Status.INPROGRESS, expiry, null, null)), now);
+
+        try {
+            // WHEN
+            dynamoDBPersistenceStore.updateRecords(Arrays.asList(
+                    new DataRecord("key1", DataRecord.Status.COMPLETED, expiry, "Fake result 1", null),
+                    new DataRecord("key2", DataRecord.Status.COMPLETED, expiry, "Fake result 2", null)));
+
+            // THEN
+            Map<String, AttributeValue> itemInDb = client.getItem(GetItemRequest.builder().tableName(TABLE_NAME).key(idKey("key2")).build()).item();
+            assertThat(itemInDb.get("status").s()).isEqualTo("COMPLETED");
+            assertThat(itemInDb.get("expiration").n()).isEqualTo(String.valueOf(expiry));
+            assertThat(itemInDb.get("data").s()).isEqualTo("Fake result 2");
+        } finally {
+            deleteItems("key1", "key2");
+        }
+    }
+
+    private static Map<String, AttributeValue> idKey(String id) {
+        return Collections.singletonMap("id", AttributeValue.builder().s(id).build());
+    }
+
+    private static void deleteItems(String... ids) {
+        for (String id : ids) {
+            client.deleteItem(DeleteItemRequest.builder().tableName(TABLE_NAME).key(idKey(id)).build());
+        }
+    }
+
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="compression">
+
+    @Test
+    public void updateRecord_withCodec_largeResponse_shouldStoreCompressedData() {
+        key = idKey("key");
+        DynamoDBPersistenceStore store = DynamoDBPersistenceStore.builder()
+                .withTableName(TABLE_NAME)
+                .withDynamoDbClient(client)
+                .withResponseCodec(new GzipResponseCodec(), 100)
+                .build();
+        String response = largeResponse(10_000);
+
+        store.updateRecord(new DataRecord("key", DataRecord.Status.COMPLETED, Instant.now().plus(3600, ChronoUnit.SECONDS).getEpochSecond(), response, null));
+
+        Map<String, AttributeValue> itemInDb = client.getItem(GetItemRequest.builder().tableName(TABLE_NAME).key(key).build()).item();
+        assertThat(itemInDb.get("data").s()).isNull();
+        assertThat(itemInDb.get("data").b().asByteArray().length).isLessThan(response.length() / 5);
+        assertThat(itemInDb.get("data_encoding").s()).isEqualTo("gzip");
+        assertThat(store.getRecord("key").getResponseData()).isEqualTo(response);
+    }
+
+    @Test
+    public void updateRecord_withCodec_smallResponse_shouldStoreString() {
+        key = idKey("key");
+        DynamoDBPersistenceStore store = DynamoDBPersistenceStore.builder()
+                .withTableName(TABLE_NAME)
+                .withDynamoDbClient(client)
+                .withResponseCodec(new GzipResponseCodec())
+                .build();
+
+        store.updateRecord(new DataRecord("key", DataRecord.Status.COMPLETED, Instant.now().plus(3600, ChronoUnit.SECONDS).getEpochSecond(), "Fake result", null));
+
+        Map<String, AttributeValue> itemInDb = client.getItem(GetItemRequest.builder().tableName(TABLE_NAME).key(key).build()).item();
+        assertThat(itemInDb.get("data").s()).isEqualTo("Fake result");
+        assertThat(itemInDb).doesNotContainKey("data_encoding");
+        assertThat(store.getRecord("key").getResponseData()).isEqualTo("Fake result");
+    }
+
+    @Test
+    public void updateRecord_withBlobStore_largeResponse_shouldStoreReference() {
+        key = idKey("key");
+        Map<String, byte[]> blobs = new HashMap<>();
+        DynamoDBPersistenceStore store = DynamoDBPersistenceStore.builder()
+                .withTableName(TABLE_NAME)
+                .withDynamoDbClient(client)
+                .withResponseCodec(new GzipResponseCodec())
+                .withBlobStore(inMemoryBlobStore(blobs), 200)
+                .build();
+        String response = largeResponse(10_000);
+
+        store.updateRecord(new DataRecord("key", DataRecord.Status.COMPLETED, Instant.now().plus(3600, ChronoUnit.SECONDS).getEpochSecond(), response, null));
+
+        Map<String, AttributeValue> itemInDb = client.getItem(GetItemRequest.builder().tableName(TABLE_NAME).key(key).build()).item();
+        assertThat(itemInDb).doesNotContainKey("data");
+        assertThat(itemInDb.get("data_ref").s()).isEqualTo("key");
+        assertThat(itemInDb.get("data_encoding").s()).isEqualTo("gzip");
+        assertThat(blobs).containsKey("key");
+        assertThat(store.getRecord("key").getResponseData()).isEqualTo(response);
+
+        store.deleteRecord("key");
+        assertThat(blobs).isEmpty();
+    }
+
+    @Test
+    public void updateRecords_withCodec_shouldStoreCompressedData() {
+        DynamoDBPersistenceStore store = DynamoDBPersistenceStore.builder()
+                .withTableName(TABLE_NAME)
+                .withDynamoDbClient(client)
+                .withResponseCodec(new GzipResponseCodec(), 100)
+                .build();
+        long expiry = Instant.now().plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        String response = largeResponse(5_000);
+
+        store.updateRecords(Arrays.asList(
+                new DataRecord("key1", DataRecord.Status.COMPLETED, expiry, response, null),
+                new DataRecord("key2", DataRecord.Status.COMPLETED, expiry, "small", null)));
+
+        Map<String, DataRecord> records = store.getRecords(Arrays.asList("key1", "key2"));
+        assertThat(records.get("key1").getResponseData()).isEqualTo(response);
+        assertThat(records.get("key2").getResponseData()).isEqualTo("small");
+        assertThat(client.getItem(GetItemRequest.builder().tableName(TABLE_NAME).key(idKey("key1")).build()).item().get("data").b()).isNotNull();
+        deleteItems("key1", "key2");
+    }
+
+    @Test
+    public void getRecord_compressedData_withoutCodec_shouldThrowException() {
+        key = idKey("key");
+        DynamoDBPersistenceStore.builder()
+                .withTableName(TABLE_NAME)
+                .withDynamoDbClient(client)
+                .withResponseCodec(new GzipResponseCodec(), 0)
+                .build()
+                .updateRecord(new DataRecord("key", DataRecord.Status.COMPLETED, Instant.now().plus(3600, ChronoUnit.SECONDS).getEpochSecond(), "Fake result", null));
+
+        assertThatThrownBy(() -> dynamoDBPersistenceStore.getRecord("key"))
+                .isInstanceOf(IdempotencyPersistenceLayerException.class)
+                .hasMessageContaining("gzip");
+    }
+
+    private static String largeResponse(int size) {
+        StringBuilder response = new StringBuilder("{\"products\":[");
+        for (int i = 0; response.length() < size; i++) {
+            response.append("{\"id\":").append(i).append(",\"name\":\"product ").append(i).append("\",\"price\":12.5},");
+        }
+        response.setLength(response.length() - 1);
+        return response.append("]}").toString();
+    }
+
+    private static BlobStore inMemoryBlobStore(Map<String, byte[]> blobs) {
+        return new BlobStore() {
+            @Override
+            public void put(String key, byte[] data) {
+                blobs.put(key, data);
+            }
+
+            @Override
+            public byte[] get(String key) {
+                return blobs.get(key);
+            }
+
+            @Override
+            public void delete(String key) {
+                blobs.remove(key);
+            }
+        };
+    }
+
+    //</editor-fold>
+    // =================================================================
+
     // =================================================================
     //<editor-fold desc="deleteRecord">
 
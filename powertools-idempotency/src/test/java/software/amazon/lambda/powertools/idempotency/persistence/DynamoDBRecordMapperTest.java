@@ -0,0 +1,231 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyPersistenceLayerException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DynamoDBRecordMapperTest {
+
+    private static DynamoDBRecordMapper mapper(String sortKeyAttr, ResponseCodec codec) {
+        return mapper(sortKeyAttr, codec, null);
+    }
+
+    private static DynamoDBRecordMapper mapper(String sortKeyAttr, ResponseCodec codec, BlobStore blobStore) {
+        return new DynamoDBRecordMapper("id", "idempotency#test", sortKeyAttr, "expiration", "in_progress_expiration",
+                "status", "data", "validation", "data_encoding", "data_ref", codec, 10, blobStore, 0);
+    }
+
+    private static final long EXPIRY = Instant.now().plusSeconds(3600).getEpochSecond();
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    // =================================================================
+    //<editor-fold desc="putRecord">
+    @Test
+    public void putExpressionAttributes_shouldBeReused() {
+        DynamoDBRecordMapper mapper = mapper(null, null);
+        Instant now = Instant.ofEpochSecond(1000);
+
+        Map<String, String> names = mapper.getPutExpressionAttributeNames();
+        Map<String, AttributeValue> values = mapper.getPutExpressionAttributeValues(now);
+
+        assertThat(mapper.getPutExpressionAttributeNames()).isSameAs(names);
+        assertThat(names).containsEntry("#id", "id").containsEntry("#in_progress_expiry", "in_progress_expiration");
+        assertThatThrownBy(() -> names.put("#other", "other")).isInstanceOf(UnsupportedOperationException.class);
+
+        assertThat(mapper.getPutExpressionAttributeValues(now.plusMillis(500))).isSameAs(values);
+        assertThat(values.get(":now").n()).isEqualTo("1000");
+        assertThat(values.get(":inprogress").s()).isEqualTo("INPROGRESS");
+
+        Map<String, AttributeValue> later = mapper.getPutExpressionAttributeValues(now.plusSeconds(1));
+        assertThat(later).isNotSameAs(values);
+        assertThat(later.get(":now").n()).isEqualTo("1001");
+    }
+
+    @Test
+    public void getKey_withSortKey_shouldUseStaticPartitionKey() {
+        DynamoDBRecordMapper mapper = mapper("sk", null);
+
+        Map<String, AttributeValue> key = mapper.getKey("key");
+
+        assertThat(key).hasSize(2);
+        assertThat(key.get("id").s()).isEqualTo("idempotency#test");
+        assertThat(key.get("sk").s()).isEqualTo("key");
+        assertThat(mapper.getKey("other").get("id")).isSameAs(key.get("id"));
+    }
+
+    @Test
+    public void getPutItem_shouldContainRecordAttributes() {
+        DynamoDBRecordMapper mapper = mapper(null, null);
+        DataRecord record = new DataRecord("key", DataRecord.Status.INPROGRESS, EXPIRY, null, "hash", OptionalLong.of(EXPIRY * 1000));
+
+        Map<String, AttributeValue> item = mapper.getPutItem(record, true);
+
+        assertThat(item).containsOnlyKeys("id", "expiration", "status", "in_progress_expiration", "validation");
+        assertThat(item.get("status").s()).isEqualTo("INPROGRESS");
+        assertThat(item.get("in_progress_expiration").n()).isEqualTo(String.valueOf(EXPIRY * 1000));
+    }
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="updateRecord">
+    @Test
+    public void getUpdateItemRequest_shouldSetResponseData() {
+        DynamoDBRecordMapper mapper = mapper(null, null);
+        DataRecord record = new DataRecord("key", DataRecord.Status.COMPLETED, EXPIRY, "response", "hash");
+
+        UpdateItemRequest request = mapper.getUpdateItemRequest("table", record, false);
+
+        assertThat(request.tableName()).isEqualTo("table");
+        assertThat(request.updateExpression()).isEqualTo("SET #expiry = :expiry, #status = :status, #response_data = :response_data");
+        assertThat(request.expressionAttributeNames()).containsOnlyKeys("#expiry", "#status", "#response_data");
+        assertThat(request.expressionAttributeValues()).containsOnlyKeys(":expiry", ":status", ":response_data");
+        assertThat(request.expressionAttributeValues().get(":response_data").s()).isEqualTo("response");
+        assertThat(request.expressionAttributeValues().get(":status").s()).isEqualTo("COMPLETED");
+    }
+
+    @Test
+    public void getUpdateItemRequest_withValidation_shouldSetValidationKey() {
+        DynamoDBRecordMapper mapper = mapper(null, null);
+        DataRecord record = new DataRecord("key", DataRecord.Status.COMPLETED, EXPIRY, "response", "hash");
+
+        UpdateItemRequest request = mapper.getUpdateItemRequest("table", record, true);
+
+        assertThat(request.updateExpression()).isEqualTo("SET #expiry = :expiry, #status = :status, #response_data = :response_data, #validation_key = :validation_key");
+        assertThat(request.expressionAttributeNames()).containsOnlyKeys("#expiry", "#status", "#response_data", "#validation_key");
+        assertThat(request.expressionAttributeValues().get(":validation_key").s()).isEqualTo("hash");
+    }
+
+    @Test
+    public void getUpdateItemRequest_withCompression_shouldOnlyNameWrittenAttributes() {
+        DynamoDBRecordMapper mapper = mapper(null, new GzipResponseCodec());
+
+        UpdateItemRequest small = mapper.getUpdateItemRequest("table",
+                new DataRecord("key", DataRecord.Status.COMPLETED, EXPIRY, "ok", null), false);
+        UpdateItemRequest large = mapper.getUpdateItemRequest("table",
+                new DataRecord("key", DataRecord.Status.COMPLETED, EXPIRY, repeat('a', 100), null), false);
+
+        assertThat(small.expressionAttributeNames()).containsOnlyKeys("#expiry", "#status", "#response_data");
+        assertThat(small.expressionAttributeValues().get(":response_data").s()).isEqualTo("ok");
+        assertThat(large.expressionAttributeNames()).containsOnlyKeys("#expiry", "#status", "#response_data", "#response_encoding");
+        assertThat(large.updateExpression()).contains("#response_encoding = :response_encoding");
+        assertThat(large.expressionAttributeValues().get(":response_data").b()).isNotNull();
+    }
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="getRecord">
+
+    @Test
+    public void getResponseData_gzipWithoutCodec_shouldDecodeWithBuiltInGzip() {
+        // written while compression was enabled, read after disabling it
+        byte[] compressed = new GzipResponseCodec().encode(repeat('a', 100).getBytes(StandardCharsets.UTF_8));
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("data", AttributeValue.builder().b(SdkBytes.fromByteArray(compressed)).build());
+        item.put("data_encoding", AttributeValue.builder().s(GzipResponseCodec.NAME).build());
+
+        assertThat(mapper(null, null).getResponseData(item)).isEqualTo(repeat('a', 100));
+    }
+
+    @Test
+    public void getResponseData_unknownEncoding_shouldThrow() {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("data", AttributeValue.builder().b(SdkBytes.fromByteArray(new byte[]{1, 2, 3})).build());
+        item.put("data_encoding", AttributeValue.builder().s("zstd").build());
+
+        assertThatThrownBy(() -> mapper(null, new GzipResponseCodec()).getResponseData(item))
+                .isInstanceOf(IdempotencyPersistenceLayerException.class);
+    }
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="deleteRecord">
+
+    @Test
+    public void getDeleteItemRequest_withBlobStore_shouldReturnDeletedItem() {
+        DynamoDBRecordMapper mapper = mapper(null, null, new FailingBlobStore());
+
+        assertThat(mapper(null, null).getDeleteItemRequest("table", "key").returnValues()).isNull();
+        assertThat(mapper.getDeleteItemRequest("table", "key").returnValues()).isEqualTo(ReturnValue.ALL_OLD);
+    }
+
+    @Test
+    public void deleteResponseData_withoutReference_shouldNotCallBlobStore() {
+        FailingBlobStore blobStore = new FailingBlobStore();
+        DynamoDBRecordMapper mapper = mapper(null, null, blobStore);
+
+        mapper.deleteResponseData(Collections.singletonMap("status", AttributeValue.builder().s("INPROGRESS").build()));
+        mapper.deleteResponseData(null);
+
+        assertThat(blobStore.deleted).isEmpty();
+    }
+
+    @Test
+    public void deleteResponseData_whenBlobStoreFails_shouldNotThrow() {
+        FailingBlobStore blobStore = new FailingBlobStore();
+        DynamoDBRecordMapper mapper = mapper(null, null, blobStore);
+
+        mapper.deleteResponseData(Collections.singletonMap("data_ref", AttributeValue.builder().s("key").build()));
+
+        assertThat(blobStore.deleted).containsExactly("key");
+    }
+
+    private static class FailingBlobStore implements BlobStore {
+        private final List<String> deleted = new ArrayList<>();
+
+        @Override
+        public void put(String key, byte[] data) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] get(String key) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(String key) {
+            deleted.add(key);
+            throw new IllegalStateException("Access denied");
+        }
+    }
+    //</editor-fold>
+    // =================================================================
+}
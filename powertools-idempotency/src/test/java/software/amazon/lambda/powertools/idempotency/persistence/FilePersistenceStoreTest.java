@@ -0,0 +1,114 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FilePersistenceStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void build_shouldReloadRecordsFromFile() throws IOException {
+        Path path = directory.resolve("idempotency.log");
+        Instant now = Instant.now();
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        long progressExpiry = now.plus(30, ChronoUnit.SECONDS).toEpochMilli();
+
+        try (FilePersistenceStore store = FilePersistenceStore.builder().withPath(path).build()) {
+            store.putRecord(new DataRecord("inprogress", DataRecord.Status.INPROGRESS, expiry, null, "hash", OptionalLong.of(progressExpiry)), now);
+            store.putRecord(new DataRecord("completed", DataRecord.Status.INPROGRESS, expiry, null, null), now);
+            store.updateRecord(new DataRecord("completed", DataRecord.Status.COMPLETED, expiry, "{\"message\":\"héllo\"}", null));
+            store.putRecord(new DataRecord("deleted", DataRecord.Status.INPROGRESS, expiry, null, null), now);
+            store.deleteRecord("deleted");
+        }
+
+        try (FilePersistenceStore store = FilePersistenceStore.builder().withPath(path).build()) {
+            assertThat(store.size()).isEqualTo(2);
+            DataRecord inProgress = store.getRecord("inprogress");
+            assertThat(inProgress.getStatus()).isEqualTo(DataRecord.Status.INPROGRESS);
+            assertThat(inProgress.getPayloadHash()).isEqualTo("hash");
+            assertThat(inProgress.getInProgressExpiryTimestamp()).hasValue(progressExpiry);
+            DataRecord completed = store.getRecord("completed");
+            assertThat(completed.getStatus()).isEqualTo(DataRecord.Status.COMPLETED);
+            assertThat(completed.getResponseData()).isEqualTo("{\"message\":\"héllo\"}");
+            assertThat(completed.getExpiryTimestamp()).isEqualTo(expiry);
+            assertThat(completed.getInProgressExpiryTimestamp()).isEmpty();
+            assertThatThrownBy(() -> store.getRecord("deleted")).isInstanceOf(IdempotencyItemNotFoundException.class);
+            // conditional put still applies to the reloaded records
+            assertThatThrownBy(() -> store.putRecord(new DataRecord("completed", DataRecord.Status.INPROGRESS, expiry, null, null), now))
+                    .isInstanceOf(IdempotencyItemAlreadyExistsException.class);
+        }
+    }
+
+    @Test
+    public void append_whenFileIsFull_shouldCompactAndGrow() throws IOException {
+        Path path = directory.resolve("idempotency.log");
+        Instant now = Instant.now();
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        char[] chars = new char[200];
+        Arrays.fill(chars, 'x');
+        String response = new String(chars);
+
+        try (FilePersistenceStore store = FilePersistenceStore.builder().withPath(path).withInitialSize(512).build()) {
+            for (int i = 0; i < 100; i++) {
+                store.updateRecord(new DataRecord("key" + i, DataRecord.Status.COMPLETED, expiry, response, null));
+                // overwritten records are dropped by the compaction
+                store.updateRecord(new DataRecord("key" + i, DataRecord.Status.COMPLETED, expiry, response + i, null));
+            }
+        }
+
+        assertThat(Files.size(path)).isGreaterThan(100 * 200);
+        try (FilePersistenceStore store = FilePersistenceStore.builder().withPath(path).withInitialSize(512).build()) {
+            assertThat(store.size()).isEqualTo(100);
+            assertThat(store.getRecord("key42").getResponseData()).isEqualTo(response + 42);
+        }
+    }
+
+    @Test
+    public void build_shouldIgnoreExpiredRecords() throws IOException {
+        Path path = directory.resolve("idempotency.log");
+        Instant now = Instant.now();
+
+        try (FilePersistenceStore store = FilePersistenceStore.builder().withPath(path).build()) {
+            store.updateRecord(new DataRecord("expired", DataRecord.Status.COMPLETED, now.minus(30, ChronoUnit.SECONDS).getEpochSecond(), "result", null));
+            store.updateRecord(new DataRecord("valid", DataRecord.Status.COMPLETED, now.plus(30, ChronoUnit.SECONDS).getEpochSecond(), "result", null));
+        }
+
+        try (FilePersistenceStore store = FilePersistenceStore.builder().withPath(path).build()) {
+            assertThat(store.size()).isEqualTo(1);
+            assertThat(store.getRecord("valid").getResponseData()).isEqualTo("result");
+        }
+    }
+
+    @Test
+    public void build_withoutPath_shouldThrowException() {
+        assertThatThrownBy(() -> FilePersistenceStore.builder().build()).isInstanceOf(IllegalArgumentException.class);
+    }
+}
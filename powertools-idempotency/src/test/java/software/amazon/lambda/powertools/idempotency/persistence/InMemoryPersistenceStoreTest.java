@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class InMemoryPersistenceStoreTest {
+
+    private InMemoryPersistenceStore persistenceStore;
+
+    // =================================================================
+    //<editor-fold desc="putRecord">
+    @Test
+    public void putRecord_shouldCreateRecord() {
+        Instant now = Instant.now();
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        persistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null), now);
+
+        DataRecord record = persistenceStore.getRecord("key");
+        assertThat(record.getStatus()).isEqualTo(DataRecord.Status.INPROGRESS);
+        assertThat(record.getExpiryTimestamp()).isEqualTo(expiry);
+    }
+
+    @Test
+    public void putRecord_shouldThrowIdempotencyItemAlreadyExistsException_IfRecordAlreadyExist() {
+        Instant now = Instant.now();
+        long expiry = now.plus(30, ChronoUnit.SECONDS).getEpochSecond();
+        persistenceStore.putRecord(new DataRecord("key", DataRecord.Status.COMPLETED, expiry, "Fake Data", null), now);
+
+        assertThatThrownBy(() -> persistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null), now))
+                .isInstanceOf(IdempotencyItemAlreadyExistsException.class);
+        assertThat(persistenceStore.getRecord("key").getResponseData()).isEqualTo("Fake Data");
+    }
+
+    @Test
+    public void putRecord_shouldCreateRecord_IfPreviousExpired() {
+        Instant now = Instant.now();
+        persistenceStore.restore(new DataRecord("key", DataRecord.Status.COMPLETED, now.minus(30, ChronoUnit.SECONDS).getEpochSecond(), "Fake Data", null));
+
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        persistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null), now);
+
+        assertThat(persistenceStore.getRecord("key").getStatus()).isEqualTo(DataRecord.Status.INPROGRESS);
+    }
+
+    @Test
+    public void putRecord_shouldCreateRecord_IfLambdaWasInProgressAndTimedOut() {
+        Instant now = Instant.now();
+        long expiry = now.plus(30, ChronoUnit.SECONDS).getEpochSecond();
+        long progressExpiry = now.minus(30, ChronoUnit.SECONDS).toEpochMilli();
+        persistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null, OptionalLong.of(progressExpiry)), now);
+
+        persistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, "new"), now);
+
+        assertThat(persistenceStore.getRecord("key").getPayloadHash()).isEqualTo("new");
+    }
+
+    @Test
+    public void putRecord_concurrently_shouldSaveOnlyOneRecord() throws InterruptedException {
+        Instant now = Instant.now();
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        AtomicInteger saved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    persistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null), now);
+                    saved.incrementAndGet();
+                } catch (IdempotencyItemAlreadyExistsException e) {
+                    rejected.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(saved).hasValue(1);
+        assertThat(rejected).hasValue(7);
+    }
+
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="getRecord / updateRecord / deleteRecord">
+    @Test
+    public void getRecord_shouldThrowException_whenRecordIsAbsent() {
+        assertThatThrownBy(() -> persistenceStore.getRecord("key")).isInstanceOf(IdempotencyItemNotFoundException.class);
+    }
+
+    @Test
+    public void getRecord_shouldThrowException_whenRecordIsExpired() {
+        persistenceStore.restore(new DataRecord("key", DataRecord.Status.COMPLETED, Instant.now().minus(30, ChronoUnit.SECONDS).getEpochSecond(), "Fake Data", null));
+
+        assertThatThrownBy(() -> persistenceStore.getRecord("key")).isInstanceOf(IdempotencyItemNotFoundException.class);
+        assertThat(persistenceStore.size()).isZero();
+    }
+
+    @Test
+    public void updateRecord_shouldUpdateRecord() {
+        Instant now = Instant.now();
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        persistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null), now);
+
+        persistenceStore.updateRecord(new DataRecord("key", DataRecord.Status.COMPLETED, expiry, "Fake result", "hash"));
+
+        DataRecord record = persistenceStore.getRecord("key");
+        assertThat(record.getStatus()).isEqualTo(DataRecord.Status.COMPLETED);
+        assertThat(record.getResponseData()).isEqualTo("Fake result");
+        assertThat(record.getPayloadHash()).isEqualTo("hash");
+    }
+
+    @Test
+    public void deleteRecord_shouldDeleteRecord() {
+        Instant now = Instant.now();
+        persistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, now.plus(3600, ChronoUnit.SECONDS).getEpochSecond(), null, null), now);
+
+        persistenceStore.deleteRecord("key");
+
+        assertThatThrownBy(() -> persistenceStore.getRecord("key")).isInstanceOf(IdempotencyItemNotFoundException.class);
+    }
+
+    @Test
+    public void removeExpired_shouldRemoveOnlyExpiredRecords() {
+        Instant now = Instant.now();
+        persistenceStore.restore(new DataRecord("expired", DataRecord.Status.COMPLETED, now.minus(30, ChronoUnit.SECONDS).getEpochSecond(), null, null));
+        persistenceStore.restore(new DataRecord("valid", DataRecord.Status.COMPLETED, now.plus(30, ChronoUnit.SECONDS).getEpochSecond(), null, null));
+
+        assertThat(persistenceStore.removeExpired(now)).isEqualTo(1);
+        assertThat(persistenceStore.size()).isEqualTo(1);
+        assertThat(persistenceStore.getRecord("valid")).isNotNull();
+    }
+
+    //</editor-fold>
+    // =================================================================
+
+    @BeforeEach
+    public void setup() {
+        persistenceStore = InMemoryPersistenceStore.builder().withLockStripes(4).build();
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2022 Amazon.com, Inc. or its affiliates.
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package software.amazon.lambda.powertools.idempotency.persistence;
+
+import com.github.fppt.jedismock.RedisServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junitpioneer.jupiter.SetEnvironmentVariable;
+import redis.clients.jedis.JedisPooled;
+import software.amazon.lambda.powertools.idempotency.Constants;
+import software.amazon.lambda.powertools.idempotency.IdempotencyConfig;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemAlreadyExistsException;
+import software.amazon.lambda.powertools.idempotency.exceptions.IdempotencyItemNotFoundException;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * These tests are using jedis-mock, an in-memory Redis server supporting Lua scripts
+ */
+public class RedisPersistenceStoreTest {
+
+    private static RedisServer redisServer;
+    private static JedisPooled jedis;
+    private RedisPersistenceStore redisPersistenceStore;
+
+    @BeforeAll
+    public static void startRedis() throws IOException {
+        redisServer = RedisServer.newRedisServer().start();
+        jedis = new JedisPooled(redisServer.getHost(), redisServer.getBindPort());
+    }
+
+    @AfterAll
+    public static void stopRedis() throws IOException {
+        jedis.close();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    public void setup() {
+        redisPersistenceStore = RedisPersistenceStore.builder()
+                .withKeyPrefixName("idempotency")
+                .withJedisClient(jedis)
+                .build();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        jedis.flushAll();
+    }
+
+    // =================================================================
+    //<editor-fold desc="putRecord">
+    @Test
+    public void putRecord_shouldCreateRecordInRedis() {
+        Instant now = Instant.now();
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        long progressExpiry = now.plus(30, ChronoUnit.SECONDS).toEpochMilli();
+        redisPersistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null, OptionalLong.of(progressExpiry)), now);
+
+        Map<String, String> item = jedis.hgetAll("idempotency:key");
+        assertThat(item).containsEntry("status", "INPROGRESS")
+                .containsEntry("expiration", String.valueOf(expiry))
+                .containsEntry("in_progress_expiration", String.valueOf(progressExpiry))
+                .doesNotContainKey("data");
+        assertThat(jedis.ttl("idempotency:key")).isBetween(3590L, 3600L);
+    }
+
+    @Test
+    public void putRecord_shouldCreateRecordInRedis_IfPreviousExpired() {
+        // GIVEN: an expired record with the same key (not yet evicted by Redis)
+        Instant now = Instant.now();
+        insertItem("COMPLETED", now.minus(30, ChronoUnit.SECONDS).getEpochSecond(), null);
+
+        // WHEN: call putRecord
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        redisPersistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null), now);
+
+        // THEN: the record is replaced
+        Map<String, String> item = jedis.hgetAll("idempotency:key");
+        assertThat(item).containsEntry("status", "INPROGRESS")
+                .containsEntry("expiration", String.valueOf(expiry))
+                .doesNotContainKey("data");
+    }
+
+    @Test
+    public void putRecord_shouldCreateRecordInRedis_IfLambdaWasInProgressAndTimedOut() {
+        // GIVEN: a record in progress, which in progress expiry is passed (Lambda timed out)
+        Instant now = Instant.now();
+        insertItem("INPROGRESS", now.plus(30, ChronoUnit.SECONDS).getEpochSecond(), now.minus(30, ChronoUnit.SECONDS).toEpochMilli());
+
+        // WHEN: call putRecord
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        redisPersistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null), now);
+
+        // THEN: the record is replaced
+        assertThat(jedis.hget("idempotency:key", "expiration")).isEqualTo(String.valueOf(expiry));
+    }
+
+    @Test
+    public void putRecord_shouldThrowIdempotencyItemAlreadyExistsException_IfRecordAlreadyExist() {
+        // GIVEN: a completed record, not expired
+        Instant now = Instant.now();
+        long expiry = now.plus(30, ChronoUnit.SECONDS).getEpochSecond();
+        insertItem("COMPLETED", expiry, null);
+
+        // WHEN / THEN
+        long expiry2 = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        assertThatThrownBy(() -> redisPersistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry2, null, null), now))
+                .isInstanceOf(IdempotencyItemAlreadyExistsException.class);
+
+        // the record is untouched
+        assertThat(jedis.hgetAll("idempotency:key")).containsEntry("status", "COMPLETED")
+                .containsEntry("expiration", String.valueOf(expiry))
+                .containsEntry("data", "Fake Data");
+    }
+
+    @Test
+    public void putRecord_shouldThrowIdempotencyItemAlreadyExistsException_IfRecordAlreadyInProgress() {
+        // GIVEN: a record in progress, which in progress expiry is not passed
+        Instant now = Instant.now();
+        insertItem("INPROGRESS", now.plus(30, ChronoUnit.SECONDS).getEpochSecond(), now.plus(30, ChronoUnit.SECONDS).toEpochMilli());
+
+        // WHEN / THEN
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        assertThatThrownBy(() -> redisPersistenceStore.putRecord(new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null), now))
+                .isInstanceOf(IdempotencyItemAlreadyExistsException.class);
+    }
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="getRecord">
+    @Test
+    public void getRecord_shouldReturnExistingRecord() {
+        Instant now = Instant.now();
+        long expiry = now.plus(30, ChronoUnit.SECONDS).getEpochSecond();
+        insertItem("COMPLETED", expiry, null);
+
+        DataRecord record = redisPersistenceStore.getRecord("key");
+
+        assertThat(record.getIdempotencyKey()).isEqualTo("key");
+        assertThat(record.getStatus()).isEqualTo(DataRecord.Status.COMPLETED);
+        assertThat(record.getResponseData()).isEqualTo("Fake Data");
+        assertThat(record.getExpiryTimestamp()).isEqualTo(expiry);
+        assertThat(record.getInProgressExpiryTimestamp()).isEmpty();
+    }
+
+    @Test
+    public void getRecord_shouldThrowException_whenRecordIsAbsent() {
+        assertThatThrownBy(() -> redisPersistenceStore.getRecord("key"))
+                .isInstanceOf(IdempotencyItemNotFoundException.class);
+    }
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="updateRecord">
+    @Test
+    public void updateRecord_shouldUpdateRecord() {
+        Instant now = Instant.now();
+        redisPersistenceStore.configure(IdempotencyConfig.builder().withPayloadValidationJMESPath("path").build(), null);
+        insertItem("INPROGRESS", now.plus(30, ChronoUnit.SECONDS).getEpochSecond(), now.plus(30, ChronoUnit.SECONDS).toEpochMilli());
+
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        redisPersistenceStore.updateRecord(new DataRecord("key", DataRecord.Status.COMPLETED, expiry, "Response Data", "hash"));
+
+        Map<String, String> item = jedis.hgetAll("idempotency:key");
+        assertThat(item).containsEntry("status", "COMPLETED")
+                .containsEntry("expiration", String.valueOf(expiry))
+                .containsEntry("data", "Response Data")
+                .containsEntry("validation", "hash");
+        assertThat(jedis.ttl("idempotency:key")).isGreaterThan(30L);
+    }
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="deleteRecord">
+    @Test
+    public void deleteRecord_shouldDeleteRecord() {
+        insertItem("INPROGRESS", Instant.now().plus(30, ChronoUnit.SECONDS).getEpochSecond(), null);
+
+        redisPersistenceStore.deleteRecord("key");
+
+        assertThat(jedis.exists("idempotency:key")).isFalse();
+    }
+    //</editor-fold>
+    // =================================================================
+
+    // =================================================================
+    //<editor-fold desc="batch">
+    @Test
+    public void putRecords_shouldReturnAlreadyExistingKeys() {
+        Instant now = Instant.now();
+        insertItem("COMPLETED", now.plus(30, ChronoUnit.SECONDS).getEpochSecond(), null);
+
+        long expiry = now.plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+        Set<String> alreadyExisting = redisPersistenceStore.putRecords(Arrays.asList(
+                new DataRecord("key", DataRecord.Status.INPROGRESS, expiry, null, null),
+                new DataRecord("key2", DataRecord.Status.INPROGRESS, expiry, null, null),
+                new DataRecord("key3", DataRecord.Status.INPROGRESS, expiry, null, null)), now);
+
+        assertThat(alreadyExisting).containsExactly("key");
+        assertThat(jedis.hget("idempotency:key", "status")).isEqualTo("COMPLETED");
+        assertThat(jedis.hget("idempotency:key2", "status")).isEqualTo("INPROGRESS");
+        assertThat(jedis.hget("idempotency:key3", "status")).isEqualTo("INPROGRESS");
+    }
+
+    @Test
+    public void getRecords_shouldReturnExistingRecords() {
+        Instant now = Instant.now();
+        insertItem("COMPLETED", now.plus(30, ChronoUnit.SECONDS).getEpochSecond(), null);
+
+        Map<String, DataRecord> records = redisPersistenceStore.getRecords(Arrays.asList("key", "key2"));
+
+        assertThat(records).containsOnlyKeys("key");
+        assertThat(records.get("key").getResponseData()).isEqualTo("Fake Data");
+    }
+
+    @Test
+    public void updateRecords_shouldUpdateAllRecords() {
+        long expiry = Instant.now().plus(3600, ChronoUnit.SECONDS).getEpochSecond();
+
+        redisPersistenceStore.updateRecords(Arrays.asList(
+                new DataRecord("key", DataRecord.Status.COMPLETED, expiry, "Response 1", null),
+                new DataRecord("key2", DataRecord.Status.COMPLETED, expiry, "Response 2", null)));
+
+        assertThat(jedis.hget("idempotency:key", "data")).isEqualTo("Response 1");
+        assertThat(jedis.hget("idempotency:key2", "data")).isEqualTo("Response 2");
+    }
+    //</editor-fold>
+    // =================================================================
+
+    @Test
+    @SetEnvironmentVariable(key = Constants.IDEMPOTENCY_DISABLED_ENV, value = "false")
+    public void builder_shouldFailWithoutRedisHost() {
+        assertThatThrownBy(() -> RedisPersistenceStore.builder().build())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(Constants.REDIS_HOST_ENV);
+    }
+
+    @Test
+    @SetEnvironmentVariable(key = Constants.IDEMPOTENCY_DISABLED_ENV, value = "true")
+    public void builder_shouldNotCreateClient_whenIdempotencyIsDisabled() {
+        assertThat(RedisPersistenceStore.builder().build()).isNotNull();
+    }
+
+    private void insertItem(String status, long expiry, Long inProgressExpiry) {
+        Map<String, String> item = new HashMap<>();
+        item.put("status", status);
+        item.put("expiration", String.valueOf(expiry));
+        item.put("data", "Fake Data");
+        if (inProgressExpiry != null) {
+            item.put("in_progress_expiration", String.valueOf(inProgressExpiry));
+        }
+        jedis.hset("idempotency:key", item);
+    }
+}
@@ -5,6 +5,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 
 import static com.amazonaws.services.lambda.runtime.events.SQSEvent.*;
@@ -82,4 +83,27 @@ public @interface SqsBatch {
     Class<? extends Exception>[] nonRetryableExceptions() default {};
 
     boolean deleteNonRetryableMessageFromQueue() default false;
+
+    /**
+     * Process the messages concurrently instead of one after the other, by default false.
+     * The {@link SqsMessageHandler} must then be thread-safe.
+     *
+     * @see SqsUtils#parallelBatchProcessor(SQSEvent, boolean, Class, int, boolean, Class[])
+     */
+    boolean parallel() default false;
+
+    /**
+     * Maximum number of messages processed at the same time when {@link #parallel()} is true, by default 32.
+     */
+    int maxConcurrency() default 32;
+
+    /**
+     * Report the failed messages in a {@link SQSBatchResponse} instead of deleting the successful ones from the queue
+     * and failing with {@link SQSBatchProcessingException}, by default false.
+     * The annotated method must return a {@link SQSBatchResponse}: the value it returns is replaced by the response
+     * built by the utility. Requires <code>ReportBatchItemFailures</code> on the event source mapping.
+     *
+     * @see SqsUtils#partialBatchProcessor(SQSEvent, SqsMessageHandler)
+     */
+    boolean partialBatchResponse() default false;
 }
@@ -59,10 +59,22 @@ import java.lang.annotation.Target;
  * <p>To disable deletion of payloads setting the following annotation parameter
  * {@code @SqsLargeMessage(deletePayloads=false)}</p>
  *
+ * <p>Payloads are deleted with one {@code deleteObjects(bucket, keys)} request per bucket. To let the handler
+ * return without waiting for the deletion, set {@code @SqsLargeMessage(deferPayloadDeletion=true)}: the deletion
+ * then completes in the background, at the latest before the next event is handled.</p>
+ *
+ * <p>Payloads are downloaded concurrently. To only download them when the handler reads them, set
+ * {@code @SqsLargeMessage(lazyPayloads=true)}: message bodies then keep the S3 pointer, and
+ * {@code SqsUtils.largeMessageBody(message)} streams the payload on first read.</p>
+ *
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface SqsLargeMessage {
 
     boolean deletePayloads() default true;
+
+    boolean deferPayloadDeletion() default false;
+
+    boolean lazyPayloads() default false;
 }
@@ -0,0 +1,547 @@
+package software.amazon.lambda.powertools.sqs;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.lambda.powertools.core.internal.ConcurrentLanes;
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+import software.amazon.payloadoffloading.Util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Sends messages to SQS in batches, offloading the bodies too large for SQS to S3 the same way as the
+ * {@code amazon-sqs-java-extended-client-lib} does. The messages can then be received with {@link SqsLargeMessage}
+ * or by any consumer using the extended client library.
+ *
+ * <p>Payloads are uploaded to S3 concurrently, with a multipart upload for the very large ones, and the batch
+ * requests are sent concurrently too. Entries that could not be sent are returned in the failed entries of the
+ * response, like the entries rejected by SQS.</p>
+ *
+ * <pre>
+ * SqsLargeMessageSender sender = SqsLargeMessageSender.builder()
+ *         .withS3BucketName("my-payloads-bucket")
+ *         .build();
+ *
+ * SendMessageBatchResponse response = sender.sendMessageBatch(queueUrl, entries);
+ * </pre>
+ */
+public final class SqsLargeMessageSender {
+    private static final Logger LOG = LoggerFactory.getLogger(SqsLargeMessageSender.class);
+
+    /**
+     * Message attribute holding the size of the offloaded payload, as written by the extended client library.
+     */
+    public static final String PAYLOAD_SIZE_ATTRIBUTE = "ExtendedPayloadSize";
+    public static final int DEFAULT_PAYLOAD_SIZE_THRESHOLD = 262_144;
+    public static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    public static final long DEFAULT_MULTIPART_THRESHOLD = 16L * 1024 * 1024;
+
+    private static final int MAX_BATCH_SIZE = 10;
+    private static final int MAX_BATCH_PAYLOAD_SIZE = 262_144;
+    private static final int MAX_IN_FLIGHT_REQUESTS = 8;
+
+    private final SqsClient sqsClient;
+    private final S3Client s3Client;
+    private final String s3BucketName;
+    private final int payloadSizeThreshold;
+    private final boolean alwaysThroughS3;
+    private final long multipartThreshold;
+    private final long partSize;
+    private final Executor executor;
+
+    private SqsLargeMessageSender(Builder builder) {
+        this.sqsClient = builder.sqsClient != null ? builder.sqsClient : SqsUtils.sqsClient();
+        this.s3Client = builder.s3Client != null ? builder.s3Client : SqsUtils.s3Client();
+        this.s3BucketName = builder.s3BucketName;
+        this.payloadSizeThreshold = builder.payloadSizeThreshold;
+        this.alwaysThroughS3 = builder.alwaysThroughS3;
+        this.multipartThreshold = builder.multipartThreshold;
+        this.partSize = builder.partSize;
+        this.executor = builder.executor != null ? builder.executor : SqsUtils.batchExecutor();
+    }
+
+    /**
+     * Offload the large bodies of the entries to S3, then send them in batches of 10 entries and 256 KB at most.
+     *
+     * <p>An entry whose payload could not be uploaded, or whose batch request failed, is returned in the failed
+     * entries of the response while the others are still sent. The payloads of the entries that were not sent are
+     * deleted from S3.</p>
+     *
+     * @param queueUrl url of the queue to send the messages to
+     * @param entries  messages to send
+     * @return the successful and failed entries of all the batch requests
+     */
+    public SendMessageBatchResponse sendMessageBatch(final String queueUrl,
+                                                     final List<SendMessageBatchRequestEntry> entries) {
+        List<BatchResultErrorEntry> failed = new ArrayList<>();
+        Map<SendMessageBatchRequestEntry, PayloadS3Pointer> s3Pointers = new IdentityHashMap<>();
+        List<SendMessageBatchRequestEntry> offloaded = offloaded(entries, s3Pointers, failed);
+
+        List<List<SendMessageBatchRequestEntry>> batches = batches(offloaded);
+        List<SendMessageBatchResponse> responses = concurrently(batches, batch -> () -> send(queueUrl, batch));
+
+        List<PayloadS3Pointer> unsent = new ArrayList<>();
+        for (int i = 0; i < batches.size(); i++) {
+            if (responses.get(i).hasFailed()) {
+                Set<String> failedIds = responses.get(i).failed().stream()
+                        .map(BatchResultErrorEntry::id)
+                        .collect(toSet());
+                batches.get(i).stream()
+                        .filter(entry -> s3Pointers.containsKey(entry) && failedIds.contains(entry.id()))
+                        .forEach(entry -> unsent.add(s3Pointers.get(entry)));
+            }
+        }
+        concurrently(unsent, s3Pointer -> () -> {
+            delete(s3Pointer);
+            return null;
+        });
+
+        responses.stream()
+                .filter(SendMessageBatchResponse::hasFailed)
+                .forEach(batchResponse -> failed.addAll(batchResponse.failed()));
+
+        return SendMessageBatchResponse.builder()
+                .successful(responses.stream()
+                        .filter(SendMessageBatchResponse::hasSuccessful)
+                        .flatMap(batchResponse -> batchResponse.successful().stream())
+                        .collect(toList()))
+                .failed(failed)
+                .build();
+    }
+
+    private SendMessageBatchResponse send(final String queueUrl, final List<SendMessageBatchRequestEntry> batch) {
+        try {
+            return sqsClient.sendMessageBatch(SendMessageBatchRequest.builder()
+                    .queueUrl(queueUrl)
+                    .entries(batch)
+                    .build());
+        } catch (RuntimeException e) {
+            LOG.error("Failed sending batch of {} messages", batch.size(), e);
+            return SendMessageBatchResponse.builder()
+                    .failed(batch.stream()
+                            .map(entry -> failedEntry(entry.id(), e))
+                            .collect(toList()))
+                    .build();
+        }
+    }
+
+    /**
+     * Upload the payloads to offload in three steps: the single uploads and the creation of the multipart uploads,
+     * then the parts of all the multipart uploads, then their completion. Each step only runs S3 requests on the
+     * executor, so that no task ever waits for other tasks of the same executor.
+     */
+    private List<SendMessageBatchRequestEntry> offloaded(final List<SendMessageBatchRequestEntry> entries,
+                                                         final Map<SendMessageBatchRequestEntry, PayloadS3Pointer> s3Pointers,
+                                                         final List<BatchResultErrorEntry> failed) {
+        List<Upload> uploads = new ArrayList<>();
+        for (SendMessageBatchRequestEntry entry : entries) {
+            if (alwaysThroughS3 || messageSize(entry) > payloadSizeThreshold) {
+                uploads.add(new Upload(entry));
+            }
+        }
+        if (uploads.isEmpty()) {
+            return entries;
+        }
+
+        concurrently(uploads, upload -> () -> upload.attempt(upload::start));
+
+        List<Upload> multipartUploads = uploads.stream()
+                .filter(Upload::isMultipart)
+                .collect(toList());
+        List<Runnable> partUploads = new ArrayList<>();
+        for (Upload upload : multipartUploads) {
+            for (int i = 0; upload.failure == null && i < upload.parts.length; i++) {
+                int part = i;
+                partUploads.add(() -> upload.attempt(() -> upload.uploadPart(part)));
+            }
+        }
+        concurrently(partUploads, partUpload -> () -> {
+            partUpload.run();
+            return null;
+        });
+        concurrently(multipartUploads, upload -> () -> {
+            upload.finish();
+            return null;
+        });
+
+        Iterator<Upload> pending = uploads.iterator();
+        Upload upload = pending.next();
+        List<SendMessageBatchRequestEntry> offloaded = new ArrayList<>();
+        for (SendMessageBatchRequestEntry entry : entries) {
+            if (upload == null || upload.entry != entry) {
+                offloaded.add(entry);
+                continue;
+            }
+            if (upload.failure != null) {
+                LOG.error("Failed offloading payload to S3 [Bucket Name: {} Bucket Key: {}]", upload.s3Pointer.getS3BucketName(), upload.s3Pointer.getS3Key(), upload.failure);
+                failed.add(failedEntry(entry.id(), upload.failure));
+            } else {
+                LOG.debug("Payload of {} bytes uploaded with key: {}", upload.payload.length, upload.s3Pointer.getS3Key());
+                SendMessageBatchRequestEntry offloadedEntry = upload.offloadedEntry();
+                s3Pointers.put(offloadedEntry, upload.s3Pointer);
+                offloaded.add(offloadedEntry);
+            }
+            upload = pending.hasNext() ? pending.next() : null;
+        }
+        return offloaded;
+    }
+
+    private void delete(final PayloadS3Pointer s3Pointer) {
+        try {
+            s3Client.deleteObject(DeleteObjectRequest.builder()
+                    .bucket(s3Pointer.getS3BucketName())
+                    .key(s3Pointer.getS3Key())
+                    .build());
+            LOG.debug("Payload of unsent message deleted with key: {}", s3Pointer.getS3Key());
+        } catch (RuntimeException e) {
+            LOG.warn("Failed deleting payload of unsent message [Bucket Name: {} Bucket Key: {}]", s3Pointer.getS3BucketName(), s3Pointer.getS3Key(), e);
+        }
+    }
+
+    private static BatchResultErrorEntry failedEntry(final String id, final RuntimeException e) {
+        BatchResultErrorEntry.Builder failedEntry = BatchResultErrorEntry.builder()
+                .id(id)
+                .senderFault(false)
+                .code(e.getClass().getSimpleName())
+                .message(e.getMessage());
+        if (e instanceof AwsServiceException && ((AwsServiceException) e).awsErrorDetails() != null) {
+            AwsServiceException serviceException = (AwsServiceException) e;
+            if (serviceException.awsErrorDetails().errorCode() != null) {
+                failedEntry.code(serviceException.awsErrorDetails().errorCode());
+            }
+            failedEntry.senderFault(serviceException.statusCode() >= 400 && serviceException.statusCode() < 500);
+        }
+        return failedEntry.build();
+    }
+
+    /**
+     * Upload of the payload of an entry, either with a single request or in parts. The first failure of any of its
+     * requests is kept and reported for the entry.
+     */
+    private final class Upload {
+        private final SendMessageBatchRequestEntry entry;
+        private final byte[] payload;
+        private final PayloadS3Pointer s3Pointer;
+        private final CompletedPart[] parts;
+        private String uploadId;
+        private volatile RuntimeException failure;
+
+        private Upload(final SendMessageBatchRequestEntry entry) {
+            this.entry = entry;
+            this.payload = entry.messageBody().getBytes(UTF_8);
+            this.s3Pointer = new PayloadS3Pointer(s3BucketName, UUID.randomUUID().toString());
+            this.parts = payload.length > multipartThreshold
+                    ? new CompletedPart[(int) ((payload.length + partSize - 1) / partSize)]
+                    : new CompletedPart[0];
+        }
+
+        private boolean isMultipart() {
+            return parts.length > 0;
+        }
+
+        private Void attempt(final Runnable request) {
+            if (failure != null) {
+                return null;
+            }
+            try {
+                request.run();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void start() {
+            if (isMultipart()) {
+                uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(s3Pointer.getS3BucketName())
+                        .key(s3Pointer.getS3Key())
+                        .build()).uploadId();
+            } else {
+                s3Client.putObject(PutObjectRequest.builder()
+                        .bucket(s3Pointer.getS3BucketName())
+                        .key(s3Pointer.getS3Key())
+                        .build(), RequestBody.fromBytes(payload));
+            }
+        }
+
+        private void uploadPart(final int part) {
+            int partNumber = part + 1;
+            int offset = (int) (part * partSize);
+            int length = (int) Math.min(partSize, payload.length - offset);
+            String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                            .bucket(s3Pointer.getS3BucketName())
+                            .key(s3Pointer.getS3Key())
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .build(),
+                    RequestBody.fromContentProvider(() -> new ByteArrayInputStream(payload, offset, length), length, "application/octet-stream")).eTag();
+            parts[part] = CompletedPart.builder()
+                    .partNumber(partNumber)
+                    .eTag(eTag)
+                    .build();
+        }
+
+        /**
+         * Complete the multipart upload once all its parts are uploaded, or abort it so that S3 does not keep them.
+         */
+        private void finish() {
+            attempt(() -> s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(s3Pointer.getS3BucketName())
+                    .key(s3Pointer.getS3Key())
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build()));
+
+            if (failure != null && uploadId != null) {
+                try {
+                    s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                            .bucket(s3Pointer.getS3BucketName())
+                            .key(s3Pointer.getS3Key())
+                            .uploadId(uploadId)
+                            .build());
+                } catch (RuntimeException e) {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        private SendMessageBatchRequestEntry offloadedEntry() {
+            Map<String, MessageAttributeValue> attributes = new HashMap<>(entry.hasMessageAttributes()
+                    ? entry.messageAttributes()
+                    : Collections.emptyMap());
+            attributes.put(PAYLOAD_SIZE_ATTRIBUTE, MessageAttributeValue.builder()
+                    .dataType("Number")
+                    .stringValue(String.valueOf(payload.length))
+                    .build());
+
+            return entry.toBuilder()
+                    .messageBody(s3Pointer.toJson())
+                    .messageAttributes(attributes)
+                    .build();
+        }
+    }
+
+    private static long messageSize(final SendMessageBatchRequestEntry entry) {
+        long size = Util.getStringSizeInBytes(entry.messageBody());
+        if (entry.hasMessageAttributes()) {
+            for (Map.Entry<String, MessageAttributeValue> attribute : entry.messageAttributes().entrySet()) {
+                MessageAttributeValue value = attribute.getValue();
+                size += Util.getStringSizeInBytes(attribute.getKey());
+                size += Util.getStringSizeInBytes(value.dataType());
+                if (value.stringValue() != null) {
+                    size += Util.getStringSizeInBytes(value.stringValue());
+                }
+                if (value.binaryValue() != null) {
+                    size += value.binaryValue().asByteArray().length;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Split the entries in batches of {@value #MAX_BATCH_SIZE} entries and {@value #MAX_BATCH_PAYLOAD_SIZE} bytes.
+     */
+    private static List<List<SendMessageBatchRequestEntry>> batches(final List<SendMessageBatchRequestEntry> entries) {
+        List<List<SendMessageBatchRequestEntry>> batches = new ArrayList<>();
+        List<SendMessageBatchRequestEntry> batch = new ArrayList<>();
+        long batchSize = 0;
+
+        for (SendMessageBatchRequestEntry entry : entries) {
+            long size = messageSize(entry);
+            if (!batch.isEmpty() && (batch.size() == MAX_BATCH_SIZE || batchSize + size > MAX_BATCH_PAYLOAD_SIZE)) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchSize = 0;
+            }
+            batch.add(entry);
+            batchSize += size;
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Run the tasks on the executor, with at most {@value #MAX_IN_FLIGHT_REQUESTS} at the same time,
+     * and return their results in order.
+     */
+    private <T, R> List<R> concurrently(final List<T> items,
+                                        final Function<T, Supplier<R>> task) {
+        if (items.size() <= 1) {
+            List<R> results = new ArrayList<>();
+            items.forEach(item -> results.add(task.apply(item).get()));
+            return results;
+        }
+
+        return ConcurrentLanes.dispatch(items,
+                item -> CompletableFuture.supplyAsync(task.apply(item), executor),
+                MAX_IN_FLIGHT_REQUESTS);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private SqsClient sqsClient;
+        private S3Client s3Client;
+        private String s3BucketName;
+        private int payloadSizeThreshold = DEFAULT_PAYLOAD_SIZE_THRESHOLD;
+        private boolean alwaysThroughS3;
+        private long multipartThreshold = DEFAULT_MULTIPART_THRESHOLD;
+        private long partSize = MIN_PART_SIZE;
+        private Executor executor;
+
+        /**
+         * Initialize and return an instance of {@link SqsLargeMessageSender}.<br>
+         * Example:<br>
+         * <pre>
+         * SqsLargeMessageSender sender = SqsLargeMessageSender.builder()
+         *         .withS3BucketName("my-payloads-bucket")
+         *         .build();
+         * </pre>
+         *
+         * @return an instance of the {@link SqsLargeMessageSender}
+         */
+        public SqsLargeMessageSender build() {
+            if (s3BucketName == null || s3BucketName.isEmpty()) {
+                throw new IllegalArgumentException("S3 bucket name is not specified");
+            }
+            if (partSize < MIN_PART_SIZE) {
+                throw new IllegalArgumentException("Part size must be at least " + MIN_PART_SIZE + " bytes");
+            }
+            return new SqsLargeMessageSender(this);
+        }
+
+        /**
+         * SQS client used to send the messages (optional). By default, it is the client of {@link SqsUtils#sqsClient()}
+         *
+         * @param sqsClient the {@link SqsClient} sending the messages
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withSqsClient(SqsClient sqsClient) {
+            this.sqsClient = sqsClient;
+            return this;
+        }
+
+        /**
+         * S3 client used to upload the payloads (optional). By default, it is the client of {@link SqsUtils#s3Client()}
+         *
+         * @param s3Client the {@link S3Client} uploading the payloads
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withS3Client(S3Client s3Client) {
+            this.s3Client = s3Client;
+            return this;
+        }
+
+        /**
+         * Name of the bucket the payloads are uploaded to (mandatory)
+         *
+         * @param s3BucketName name of the bucket
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withS3BucketName(String s3BucketName) {
+            this.s3BucketName = s3BucketName;
+            return this;
+        }
+
+        /**
+         * Size in bytes of the message, body and attributes, above which the body is offloaded to S3
+         * (optional, default 256 KB, the maximum size of a SQS message)
+         *
+         * @param payloadSizeThreshold size in bytes
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withPayloadSizeThreshold(int payloadSizeThreshold) {
+            this.payloadSizeThreshold = payloadSizeThreshold;
+            return this;
+        }
+
+        /**
+         * Whether to offload every body to S3, whatever its size (optional, default false)
+         *
+         * @param alwaysThroughS3 true to offload every body
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withAlwaysThroughS3(boolean alwaysThroughS3) {
+            this.alwaysThroughS3 = alwaysThroughS3;
+            return this;
+        }
+
+        /**
+         * Size in bytes of the payload above which it is uploaded in parts (optional, default 16 MB)
+         *
+         * @param multipartThreshold size in bytes
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withMultipartThreshold(long multipartThreshold) {
+            this.multipartThreshold = multipartThreshold;
+            return this;
+        }
+
+        /**
+         * Size in bytes of the parts of a multipart upload (optional, default and minimum 5 MB)
+         *
+         * @param partSize size in bytes
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withPartSize(long partSize) {
+            this.partSize = partSize;
+            return this;
+        }
+
+        /**
+         * Executor running the uploads and batch requests concurrently (optional).
+         * By default, it is the executor of {@link SqsUtils#batchExecutor()}
+         *
+         * @param executor the {@link Executor} running the requests
+         * @return the builder instance (to chain operations)
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package software.amazon.lambda.powertools.sqs;
+
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+
+import static com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
+
+/**
+ * <p>
+ * This interface can be implemented instead of {@link SqsMessageHandler} to process the JSON body of each
+ * {@link SQSMessage} inside {@link SQSEvent}, already deserialized by the utility.
+ * </p>
+ *
+ * <p>
+ * It is used by utilities:
+ * <ul>
+ *   <li>{@link SqsUtils#batchProcessor(SQSEvent, Class, SqsTypedMessageHandler)}</li>
+ *   <li>{@link SqsUtils#batchProcessor(SQSEvent, boolean, Class, SqsTypedMessageHandler)}</li>
+ *   <li>{@link SqsUtils#parallelBatchProcessor(SQSEvent, Class, SqsTypedMessageHandler)}</li>
+ * </ul>
+ * </p>
+ * @param <T> Type the body of the messages is deserialized to
+ * @param <R> Return value type from {@link SqsTypedMessageHandler#process(Object, SQSMessage)}
+ */
+@FunctionalInterface
+public interface SqsTypedMessageHandler<T, R> {
+
+    R process(T body, SQSMessage message);
+}
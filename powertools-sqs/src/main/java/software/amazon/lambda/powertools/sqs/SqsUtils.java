@@ -13,20 +13,32 @@
  */
 package software.amazon.lambda.powertools.sqs;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.lambda.powertools.core.internal.ConcurrentLanes;
 import software.amazon.lambda.powertools.sqs.internal.BatchContext;
+import software.amazon.lambda.powertools.sqs.internal.ParallelBatchProcessor;
 import software.amazon.payloadoffloading.PayloadS3Pointer;
 import software.amazon.lambda.powertools.sqs.internal.SqsLargeMessageAspect;
 
@@ -40,8 +52,12 @@ public final class SqsUtils {
     private static final Logger LOG = LoggerFactory.getLogger(SqsUtils.class);
 
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ConcurrentMap<Class<?>, ObjectReader> bodyReaders = new ConcurrentHashMap<>();
     private static SqsClient client;
+    private static SqsAsyncClient asyncClient;
     private static S3Client s3Client;
+    private static S3AsyncClient s3AsyncClient;
+    private static Executor batchExecutor;
 
     private SqsUtils() {
     }
@@ -74,7 +90,7 @@ public final class SqsUtils {
                                               final Function<List<SQSMessage>, R> messageFunction) {
 
         List<SQSMessage> sqsMessages = sqsEvent.getRecords().stream()
-                .map(SqsUtils::clonedMessage)
+                .map(SqsUtils::copiedLargeMessage)
                 .collect(Collectors.toList());
 
         List<PayloadS3Pointer> s3Pointers = processMessages(sqsMessages);
@@ -82,7 +98,7 @@ public final class SqsUtils {
         R returnValue = messageFunction.apply(sqsMessages);
 
         if (deleteS3Payload) {
-            s3Pointers.forEach(SqsLargeMessageAspect::deleteMessage);
+            SqsLargeMessageAspect.deleteMessages(s3Pointers);
         }
 
         return returnValue;
@@ -98,6 +114,18 @@ public final class SqsUtils {
         SqsUtils.client = client;
     }
 
+    /**
+     * Provides ability to set a {@link SqsAsyncClient} to be used by utility, to delete messages and move them to
+     * the DLQ with non-blocking requests. When provided, it is used instead of the {@link SqsClient}.
+     * No {@link SqsAsyncClient} is ever created by default: batch requests are then sent with the {@link SqsClient},
+     * dispatched concurrently on the batch executor.
+     *
+     * @param asyncClient {@link SqsAsyncClient} to be used by utility
+     */
+    public static void overrideSqsAsyncClient(SqsAsyncClient asyncClient) {
+        SqsUtils.asyncClient = asyncClient;
+    }
+
     /**
      * By default, the S3Client is instantiated via {@link S3Client#create()}.
      * This method provides the ability to override the S3Client with your own custom version.
@@ -108,6 +136,39 @@ public final class SqsUtils {
         SqsUtils.s3Client = s3Client;
     }
 
+    /**
+     * Provides ability to set a {@link S3AsyncClient} to be used by utility to download large message payloads.
+     * If none is provided, payloads are downloaded concurrently with the {@link S3Client} on the batch executor.
+     *
+     * @param s3AsyncClient {@link S3AsyncClient} to be used by utility
+     */
+    public static void overrideS3AsyncClient(S3AsyncClient s3AsyncClient) {
+        SqsUtils.s3AsyncClient = s3AsyncClient;
+    }
+
+    /**
+     * Stream the body of a message received with {@code @SqsLargeMessage(lazyPayloads = true)}.
+     * When the body points to a payload offloaded to S3, the payload is only downloaded when the stream is first read.
+     * Otherwise, the body of the message is streamed.
+     *
+     * @param message message received from SQS Extended client library
+     * @return the payload of the message
+     */
+    public static InputStream largeMessageBody(final SQSMessage message) {
+        return SqsLargeMessageAspect.payloadStream(message);
+    }
+
+    /**
+     * Provides ability to set the {@link Executor} used to process messages concurrently
+     * (see {@link SqsUtils#parallelBatchProcessor(SQSEvent, SqsMessageHandler)}).
+     * If no executor is provided, messages are processed on virtual threads on Java 21+, or on a fork-join pool otherwise.
+     *
+     * @param executor {@link Executor} to be used by utility
+     */
+    public static void overrideBatchExecutor(Executor executor) {
+        SqsUtils.batchExecutor = executor;
+    }
+
     /**
      * This utility method is used to process each {@link SQSMessage} inside the received {@link SQSEvent}
      *
@@ -485,11 +546,7 @@ public final class SqsUtils {
                                              final Class<? extends Exception>... nonRetryableExceptions) {
         final List<R> handlerReturn = new ArrayList<>();
 
-        if(client == null) {
-            client = SqsClient.create();
-        }
-
-        BatchContext batchContext = new BatchContext(client);
+        BatchContext batchContext = batchContext(event, deleteNonRetryableMessageFromQueue, nonRetryableExceptions);
 
         for (SQSMessage message : event.getRecords()) {
             try {
@@ -506,6 +563,403 @@ public final class SqsUtils {
         return handlerReturn;
     }
 
+    /**
+     * This utility method is used to process the JSON body of each {@link SQSMessage} inside the received
+     * {@link SQSEvent}, deserialized to <code>bodyType</code>.
+     *
+     * @param event     {@link SQSEvent} received by lambda function.
+     * @param bodyType  Type the body of the messages is deserialized to.
+     * @param handler   Instance of class implementing {@link SqsTypedMessageHandler} which will be called for each message in event.
+     * @return List of values returned by {@link SqsTypedMessageHandler#process(Object, SQSMessage)} while processing each message.
+     * @throws SQSBatchProcessingException if some messages fail during processing.
+     * @see SqsUtils#batchProcessor(SQSEvent, boolean, Class, SqsTypedMessageHandler)
+     */
+    public static <T, R> List<R> batchProcessor(final SQSEvent event,
+                                                final Class<T> bodyType,
+                                                final SqsTypedMessageHandler<T, R> handler) {
+        return batchProcessor(event, false, bodyType, handler);
+    }
+
+    /**
+     * This utility method is used to process the JSON body of each {@link SQSMessage} inside the received
+     * {@link SQSEvent}, deserialized to <code>bodyType</code>. Messages are processed one after the other, in the
+     * calling thread, and each body is deserialized right before its message is processed.
+     * A message whose body cannot be deserialized fails with an {@link UncheckedIOException}, unknown properties are
+     * ignored.
+     *
+     * @param event             {@link SQSEvent} received by lambda function.
+     * @param suppressException if this is set to true, No {@link SQSBatchProcessingException} is thrown even on failed
+     *                          messages.
+     * @param bodyType          Type the body of the messages is deserialized to.
+     * @param handler           Instance of class implementing {@link SqsTypedMessageHandler} which will be called for each message in event.
+     * @return List of values returned by {@link SqsTypedMessageHandler#process(Object, SQSMessage)} while processing each message.
+     * @throws SQSBatchProcessingException if some messages fail during processing and no suppression enabled.
+     */
+    public static <T, R> List<R> batchProcessor(final SQSEvent event,
+                                                final boolean suppressException,
+                                                final Class<T> bodyType,
+                                                final SqsTypedMessageHandler<T, R> handler) {
+        ObjectReader reader = bodyReader(bodyType);
+        return batchProcessor(event, suppressException, message -> handler.process(deserializedBody(reader, message), message), false);
+    }
+
+    /**
+     * This utility method is used to process each {@link SQSMessage} inside the received {@link SQSEvent} concurrently
+     *
+     * <p>
+     * Behaves like {@link SqsUtils#batchProcessor(SQSEvent, SqsMessageHandler)}, except that
+     * {@link SqsMessageHandler#process(SQSMessage)} is called for up to 32 messages at the same time.
+     * The handler must therefore be thread-safe. Messages of the same message group (FIFO queues) are still
+     * processed one after the other, in the order of the batch.
+     * </p>
+     *
+     * @param event   {@link SQSEvent} received by lambda function.
+     * @param handler Instance of class implementing {@link SqsMessageHandler} which will be called for each message in event.
+     * @return List of values returned by {@link SqsMessageHandler#process(SQSMessage)} while processing each message,
+     * in the order of the messages.
+     * @throws SQSBatchProcessingException if some messages fail during processing.
+     * @see SqsUtils#overrideBatchExecutor(Executor)
+     */
+    public static <R> List<R> parallelBatchProcessor(final SQSEvent event,
+                                                     final SqsMessageHandler<R> handler) {
+        return parallelBatchProcessor(event, false, handler);
+    }
+
+    /**
+     * This utility method is used to process the JSON body of each {@link SQSMessage} inside the received
+     * {@link SQSEvent} concurrently, deserialized to <code>bodyType</code> on the thread processing the message.
+     *
+     * @param event    {@link SQSEvent} received by lambda function.
+     * @param bodyType Type the body of the messages is deserialized to.
+     * @param handler  Instance of class implementing {@link SqsTypedMessageHandler} which will be called for each message in event.
+     * @return List of values returned by {@link SqsTypedMessageHandler#process(Object, SQSMessage)} while processing each message,
+     * in the order of the messages.
+     * @throws SQSBatchProcessingException if some messages fail during processing.
+     * @see SqsUtils#parallelBatchProcessor(SQSEvent, boolean, Class, SqsTypedMessageHandler)
+     */
+    public static <T, R> List<R> parallelBatchProcessor(final SQSEvent event,
+                                                        final Class<T> bodyType,
+                                                        final SqsTypedMessageHandler<T, R> handler) {
+        return parallelBatchProcessor(event, false, bodyType, handler);
+    }
+
+    /**
+     * This utility method is used to process the JSON body of each {@link SQSMessage} inside the received
+     * {@link SQSEvent} concurrently, deserialized to <code>bodyType</code> on the thread processing the message.
+     *
+     * @param event             {@link SQSEvent} received by lambda function.
+     * @param suppressException if this is set to true, No {@link SQSBatchProcessingException} is thrown even on failed
+     *                          messages.
+     * @param bodyType          Type the body of the messages is deserialized to.
+     * @param handler           Instance of class implementing {@link SqsTypedMessageHandler} which will be called for each message in event.
+     * @return List of values returned by {@link SqsTypedMessageHandler#process(Object, SQSMessage)} while processing each message,
+     * in the order of the messages.
+     * @throws SQSBatchProcessingException if some messages fail during processing and no suppression enabled.
+     * @see SqsUtils#parallelBatchProcessor(SQSEvent, boolean, Class, SqsTypedMessageHandler, int, boolean, Class[])
+     */
+    public static <T, R> List<R> parallelBatchProcessor(final SQSEvent event,
+                                                        final boolean suppressException,
+                                                        final Class<T> bodyType,
+                                                        final SqsTypedMessageHandler<T, R> handler) {
+        return parallelBatchProcessor(event, suppressException, bodyType, handler, ParallelBatchProcessor.DEFAULT_MAX_CONCURRENCY, false);
+    }
+
+    /**
+     * This utility method is used to process the JSON body of each {@link SQSMessage} inside the received
+     * {@link SQSEvent} concurrently, deserialized to <code>bodyType</code> on the thread processing the message.
+     *
+     * <p>
+     * Behaves like {@link SqsUtils#parallelBatchProcessor(SQSEvent, boolean, SqsMessageHandler, int, boolean, Class[])},
+     * with the deserialized body passed to the handler. A message whose body cannot be deserialized fails with an
+     * {@link UncheckedIOException}, unknown properties are ignored.
+     * </p>
+     *
+     * @param event             {@link SQSEvent} received by lambda function.
+     * @param suppressException if this is set to true, No {@link SQSBatchProcessingException} is thrown even on failed
+     *                          messages.
+     * @param bodyType          Type the body of the messages is deserialized to.
+     * @param handler           Instance of class implementing {@link SqsTypedMessageHandler} which will be called for each message in event.
+     * @param maxConcurrency    maximum number of messages processed at the same time.
+     * @param deleteNonRetryableMessageFromQueue If messages with nonRetryableExceptions are to be deleted from SQS queue.
+     * @param nonRetryableExceptions exception classes that are to be treated as permanent exceptions and to be moved
+     *                               to DLQ.
+     * @return List of values returned by {@link SqsTypedMessageHandler#process(Object, SQSMessage)} while processing each message,
+     * in the order of the messages.
+     * @throws SQSBatchProcessingException if some messages fail during processing and no suppression enabled.
+     * @see SqsUtils#overrideBatchExecutor(Executor)
+     */
+    @SafeVarargs
+    public static <T, R> List<R> parallelBatchProcessor(final SQSEvent event,
+                                                        final boolean suppressException,
+                                                        final Class<T> bodyType,
+                                                        final SqsTypedMessageHandler<T, R> handler,
+                                                        final int maxConcurrency,
+                                                        final boolean deleteNonRetryableMessageFromQueue,
+                                                        final Class<? extends Exception>... nonRetryableExceptions) {
+        ObjectReader reader = bodyReader(bodyType);
+        return parallelBatchProcessor(event,
+                suppressException,
+                (SqsMessageHandler<R>) message -> handler.process(deserializedBody(reader, message), message),
+                maxConcurrency,
+                deleteNonRetryableMessageFromQueue,
+                nonRetryableExceptions);
+    }
+
+    /**
+     * This utility method is used to process each {@link SQSMessage} inside the received {@link SQSEvent} concurrently
+     *
+     * <p>
+     * Behaves like {@link SqsUtils#batchProcessor(SQSEvent, boolean, SqsMessageHandler)}, except that
+     * {@link SqsMessageHandler#process(SQSMessage)} is called for up to 32 messages at the same time.
+     * The handler must therefore be thread-safe. Messages of the same message group (FIFO queues) are still
+     * processed one after the other, in the order of the batch.
+     * </p>
+     *
+     * @param event             {@link SQSEvent} received by lambda function.
+     * @param suppressException if this is set to true, No {@link SQSBatchProcessingException} is thrown even on failed
+     *                          messages.
+     * @param handler           Instance of class implementing {@link SqsMessageHandler} which will be called for each message in event.
+     * @return List of values returned by {@link SqsMessageHandler#process(SQSMessage)} while processing each message,
+     * in the order of the messages.
+     * @throws SQSBatchProcessingException if some messages fail during processing and no suppression enabled.
+     * @see SqsUtils#overrideBatchExecutor(Executor)
+     */
+    public static <R> List<R> parallelBatchProcessor(final SQSEvent event,
+                                                     final boolean suppressException,
+                                                     final SqsMessageHandler<R> handler) {
+        return parallelBatchProcessor(event, suppressException, handler, ParallelBatchProcessor.DEFAULT_MAX_CONCURRENCY, false);
+    }
+
+    /**
+     * This utility method is used to process each {@link SQSMessage} inside the received {@link SQSEvent} concurrently
+     *
+     * <p>
+     * Behaves like {@link SqsUtils#batchProcessor(SQSEvent, boolean, Class, boolean, Class[])}, except that
+     * {@link SqsMessageHandler#process(SQSMessage)} is called for up to maxConcurrency messages at the same time.
+     * The handler must therefore be thread-safe. Messages of the same message group (FIFO queues) are still
+     * processed one after the other, in the order of the batch.
+     * </p>
+     *
+     * @param event   {@link SQSEvent} received by lambda function.
+     * @param suppressException if this is set to true, No {@link SQSBatchProcessingException} is thrown even on failed
+     *                          messages.
+     * @param handler Class implementing {@link SqsMessageHandler} which will be called for each message in event.
+     * @param maxConcurrency maximum number of messages processed at the same time.
+     * @param deleteNonRetryableMessageFromQueue If messages with nonRetryableExceptions are to be deleted from SQS queue.
+     * @param nonRetryableExceptions exception classes that are to be treated as permanent exceptions and to be moved
+     *                               to DLQ.
+     * @return List of values returned by {@link SqsMessageHandler#process(SQSMessage)} while processing each message,
+     * in the order of the messages.
+     * @throws SQSBatchProcessingException if some messages fail during processing and no suppression enabled.
+     * @see SqsUtils#overrideBatchExecutor(Executor)
+     */
+    @SafeVarargs
+    public static <R> List<R> parallelBatchProcessor(final SQSEvent event,
+                                                     final boolean suppressException,
+                                                     final Class<? extends SqsMessageHandler<R>> handler,
+                                                     final int maxConcurrency,
+                                                     final boolean deleteNonRetryableMessageFromQueue,
+                                                     final Class<? extends Exception>... nonRetryableExceptions) {
+
+        SqsMessageHandler<R> handlerInstance = instantiatedHandler(handler);
+        return parallelBatchProcessor(event, suppressException, handlerInstance, maxConcurrency, deleteNonRetryableMessageFromQueue, nonRetryableExceptions);
+    }
+
+    /**
+     * This utility method is used to process each {@link SQSMessage} inside the received {@link SQSEvent} concurrently
+     *
+     * <p>
+     * Behaves like {@link SqsUtils#batchProcessor(SQSEvent, boolean, SqsMessageHandler, boolean, Class[])}, except that
+     * {@link SqsMessageHandler#process(SQSMessage)} is called for up to maxConcurrency messages at the same time.
+     * The handler must therefore be thread-safe. Messages of the same message group (FIFO queues) are still
+     * processed one after the other, in the order of the batch.
+     * </p>
+     *
+     * @param event   {@link SQSEvent} received by lambda function.
+     * @param suppressException if this is set to true, No {@link SQSBatchProcessingException} is thrown even on failed
+     *                          messages.
+     * @param handler Instance of class implementing {@link SqsMessageHandler} which will be called for each message in event.
+     * @param maxConcurrency maximum number of messages processed at the same time.
+     * @param deleteNonRetryableMessageFromQueue If messages with nonRetryableExceptions are to be deleted from SQS queue.
+     * @param nonRetryableExceptions exception classes that are to be treated as permanent exceptions and to be moved
+     *                               to DLQ.
+     * @return List of values returned by {@link SqsMessageHandler#process(SQSMessage)} while processing each message,
+     * in the order of the messages.
+     * @throws SQSBatchProcessingException if some messages fail during processing and no suppression enabled.
+     * @see SqsUtils#overrideBatchExecutor(Executor)
+     */
+    @SafeVarargs
+    public static <R> List<R> parallelBatchProcessor(final SQSEvent event,
+                                                     final boolean suppressException,
+                                                     final SqsMessageHandler<R> handler,
+                                                     final int maxConcurrency,
+                                                     final boolean deleteNonRetryableMessageFromQueue,
+                                                     final Class<? extends Exception>... nonRetryableExceptions) {
+        BatchContext batchContext = batchContext(event, deleteNonRetryableMessageFromQueue, nonRetryableExceptions);
+
+        List<R> handlerReturn = ParallelBatchProcessor.process(event.getRecords(),
+                handler,
+                batchContext,
+                batchExecutor(),
+                maxConcurrency);
+
+        batchContext.processSuccessAndHandleFailed(handlerReturn, suppressException, deleteNonRetryableMessageFromQueue, nonRetryableExceptions);
+
+        return handlerReturn;
+    }
+
+    /**
+     * This utility method is used to process each {@link SQSMessage} inside the received {@link SQSEvent}, and report
+     * the failed ones to Lambda in a {@link SQSBatchResponse}
+     *
+     * <p>
+     * The Utility will call {@link SqsMessageHandler#process(SQSMessage)} method for each {@link SQSMessage}
+     * in the received {@link SQSEvent}. Messages for which an exception is thrown are listed in the
+     * batchItemFailures of the returned response: Lambda deletes the other ones from the queue, without any call to
+     * SQS from the function. No {@link SQSBatchProcessingException} is thrown.
+     * </p>
+     *
+     * <p>
+     * The function must return this response, and <code>ReportBatchItemFailures</code> must be enabled on the event
+     * source mapping (otherwise the whole batch is considered successful). For FIFO queues, the messages following
+     * a failed one in the same message group are not processed and are reported as failed, to keep their order.
+     * </p>
+     * @see <a href="https://docs.aws.amazon.com/lambda/latest/dg/with-sqs.html#services-sqs-batchfailurereporting">Reporting batch item failures</a>
+     * @param event   {@link SQSEvent} received by lambda function.
+     * @param handler Instance of class implementing {@link SqsMessageHandler} which will be called for each message in event.
+     * @return {@link SQSBatchResponse} listing the failed messages, to be returned by the function.
+     */
+    public static <R> SQSBatchResponse partialBatchProcessor(final SQSEvent event,
+                                                             final SqsMessageHandler<R> handler) {
+        return partialBatchProcessor(event, handler, 1, false);
+    }
+
+    /**
+     * This utility method is used to process each {@link SQSMessage} inside the received {@link SQSEvent}, and report
+     * the failed ones to Lambda in a {@link SQSBatchResponse}
+     *
+     * <p>
+     * Behaves like {@link SqsUtils#partialBatchProcessor(SQSEvent, SqsMessageHandler)}, with the handler instantiated
+     * from its class.
+     * </p>
+     *
+     * @param event   {@link SQSEvent} received by lambda function.
+     * @param handler Class implementing {@link SqsMessageHandler} which will be called for each message in event.
+     * @return {@link SQSBatchResponse} listing the failed messages, to be returned by the function.
+     */
+    public static <R> SQSBatchResponse partialBatchProcessor(final SQSEvent event,
+                                                             final Class<? extends SqsMessageHandler<R>> handler) {
+        return partialBatchProcessor(event, instantiatedHandler(handler), 1, false);
+    }
+
+    /**
+     * This utility method is used to process each {@link SQSMessage} inside the received {@link SQSEvent}, and report
+     * the failed ones to Lambda in a {@link SQSBatchResponse}
+     *
+     * <p>
+     * Behaves like {@link SqsUtils#partialBatchProcessor(SQSEvent, SqsMessageHandler)}, with the handler instantiated
+     * from its class.
+     * </p>
+     *
+     * @param event   {@link SQSEvent} received by lambda function.
+     * @param handler Class implementing {@link SqsMessageHandler} which will be called for each message in event.
+     * @param maxConcurrency maximum number of messages processed at the same time, 1 to process them one after the other.
+     * @param deleteNonRetryableMessageFromQueue If messages with nonRetryableExceptions are to be deleted from SQS queue.
+     * @param nonRetryableExceptions exception classes that are to be treated as permanent exceptions and to be moved
+     *                               to DLQ.
+     * @return {@link SQSBatchResponse} listing the failed messages, to be returned by the function.
+     */
+    @SafeVarargs
+    public static <R> SQSBatchResponse partialBatchProcessor(final SQSEvent event,
+                                                             final Class<? extends SqsMessageHandler<R>> handler,
+                                                             final int maxConcurrency,
+                                                             final boolean deleteNonRetryableMessageFromQueue,
+                                                             final Class<? extends Exception>... nonRetryableExceptions) {
+        return partialBatchProcessor(event, instantiatedHandler(handler), maxConcurrency, deleteNonRetryableMessageFromQueue, nonRetryableExceptions);
+    }
+
+    /**
+     * This utility method is used to process each {@link SQSMessage} inside the received {@link SQSEvent}, and report
+     * the failed ones to Lambda in a {@link SQSBatchResponse}
+     *
+     * <p>
+     * Behaves like {@link SqsUtils#partialBatchProcessor(SQSEvent, SqsMessageHandler)}. Messages can be processed
+     * concurrently (see {@link SqsUtils#parallelBatchProcessor(SQSEvent, SqsMessageHandler)}).
+     * </p>
+     *
+     * <p>
+     * Messages failing with one of the nonRetryableExceptions are moved to the dead letter queue associated to the
+     * source SQS queue, or not reported as failed (and then deleted by Lambda) if deleteNonRetryableMessageFromQueue
+     * is true. They are reported as failed if they cannot be moved to the DLQ.
+     * </p>
+     *
+     * @param event   {@link SQSEvent} received by lambda function.
+     * @param handler Instance of class implementing {@link SqsMessageHandler} which will be called for each message in event.
+     * @param maxConcurrency maximum number of messages processed at the same time, 1 to process them one after the other.
+     * @param deleteNonRetryableMessageFromQueue If messages with nonRetryableExceptions are to be deleted from SQS queue.
+     * @param nonRetryableExceptions exception classes that are to be treated as permanent exceptions and to be moved
+     *                               to DLQ.
+     * @return {@link SQSBatchResponse} listing the failed messages, to be returned by the function.
+     */
+    @SafeVarargs
+    public static <R> SQSBatchResponse partialBatchProcessor(final SQSEvent event,
+                                                             final SqsMessageHandler<R> handler,
+                                                             final int maxConcurrency,
+                                                             final boolean deleteNonRetryableMessageFromQueue,
+                                                             final Class<? extends Exception>... nonRetryableExceptions) {
+        // the client is only needed to move messages to the DLQ
+        BatchContext batchContext = nonRetryableExceptions.length > 0 && !deleteNonRetryableMessageFromQueue
+                ? batchContext(event, false, nonRetryableExceptions)
+                : new BatchContext();
+
+        ParallelBatchProcessor.process(event.getRecords(),
+                handler,
+                batchContext,
+                maxConcurrency > 1 ? batchExecutor() : null,
+                maxConcurrency,
+                true);
+
+        return batchContext.batchResponse(deleteNonRetryableMessageFromQueue, nonRetryableExceptions);
+    }
+
+    /**
+     * Start resolving the DLQ url of a queue in the background, typically from the static initialization of the
+     * function, so that the first batch with non retryable messages to move to the DLQ does not wait for it.
+     * DLQ urls are cached for 5 minutes.
+     *
+     * @param queueArn arn of the queue the function receives messages from
+     */
+    public static void prewarmDlqUrl(final String queueArn) {
+        batchContext().prewarmDlqUrl(queueArn);
+    }
+
+    /**
+     * Context of the batch, which starts resolving the DLQ url while the messages are processed when the non retryable
+     * messages may have to be moved to the DLQ.
+     */
+    private static BatchContext batchContext(final SQSEvent event,
+                                             final boolean deleteNonRetryableMessageFromQueue,
+                                             final Class<? extends Exception>[] nonRetryableExceptions) {
+        BatchContext batchContext = batchContext();
+        if (nonRetryableExceptions.length > 0
+                && !deleteNonRetryableMessageFromQueue
+                && !event.getRecords().isEmpty()) {
+            batchContext.prewarmDlqUrl(event.getRecords().get(0).getEventSourceArn());
+        }
+        return batchContext;
+    }
+
+    private static BatchContext batchContext() {
+        if (asyncClient != null) {
+            return new BatchContext(asyncClient);
+        }
+        return new BatchContext(sqsClient(), batchExecutor());
+    }
+
+    public static Executor batchExecutor() {
+        return batchExecutor != null ? batchExecutor : ConcurrentLanes.defaultExecutor();
+    }
+
     private static <R> SqsMessageHandler<R> instantiatedHandler(final Class<? extends SqsMessageHandler<R>> handler) {
 
         try {
@@ -523,12 +977,39 @@ public final class SqsUtils {
         }
     }
 
-    private static SQSMessage clonedMessage(final SQSMessage sqsMessage) {
+    /**
+     * Shallow copy of the messages pointing to a payload offloaded to S3, so that their body can be replaced without
+     * mutating the event. Other messages are returned as they are.
+     */
+    private static SQSMessage copiedLargeMessage(final SQSMessage sqsMessage) {
+        if (!SqsLargeMessageAspect.isLargeMessage(sqsMessage)) {
+            return sqsMessage;
+        }
+
+        SQSMessage copy = new SQSMessage();
+        copy.setMessageId(sqsMessage.getMessageId());
+        copy.setReceiptHandle(sqsMessage.getReceiptHandle());
+        copy.setBody(sqsMessage.getBody());
+        copy.setMd5OfBody(sqsMessage.getMd5OfBody());
+        copy.setMd5OfMessageAttributes(sqsMessage.getMd5OfMessageAttributes());
+        copy.setEventSourceArn(sqsMessage.getEventSourceArn());
+        copy.setEventSource(sqsMessage.getEventSource());
+        copy.setAwsRegion(sqsMessage.getAwsRegion());
+        copy.setAttributes(sqsMessage.getAttributes());
+        copy.setMessageAttributes(sqsMessage.getMessageAttributes());
+        return copy;
+    }
+
+    private static ObjectReader bodyReader(final Class<?> bodyType) {
+        return bodyReaders.computeIfAbsent(bodyType, type -> objectMapper.readerFor(type)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+    }
+
+    private static <T> T deserializedBody(final ObjectReader reader, final SQSMessage message) {
         try {
-            return objectMapper
-                    .readValue(objectMapper.writeValueAsString(sqsMessage), SQSMessage.class);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(e);
+            return reader.readValue(message.getBody());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed deserializing body of message " + message.getMessageId(), e);
         }
     }
 
@@ -536,6 +1017,18 @@ public final class SqsUtils {
         return objectMapper;
     }
 
+    public static S3AsyncClient s3AsyncClient() {
+        return s3AsyncClient;
+    }
+
+    public static SqsClient sqsClient() {
+        if(null == client) {
+            SqsUtils.client = SqsClient.create();
+        }
+
+        return client;
+    }
+
     public static S3Client s3Client() {
         if(null == s3Client) {
             SqsUtils.s3Client = S3Client.create();
@@ -2,19 +2,25 @@ package software.amazon.lambda.powertools.sqs.internal;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
 import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
 import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
 import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
@@ -25,6 +31,7 @@ import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
 import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
 import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
 import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.lambda.powertools.core.internal.ConcurrentLanes;
 import software.amazon.lambda.powertools.sqs.SQSBatchProcessingException;
 import software.amazon.lambda.powertools.sqs.SqsUtils;
 
@@ -35,27 +42,105 @@ import static java.util.stream.Collectors.toList;
 
 public final class BatchContext {
     private static final Logger LOG = LoggerFactory.getLogger(BatchContext.class);
-    private static final Map<String, String> QUEUE_ARN_TO_DLQ_URL_MAPPING = new HashMap<>();
+    private static final DlqUrlCache QUEUE_ARN_TO_DLQ_URL_MAPPING = new DlqUrlCache();
 
     private final Map<SQSMessage, Exception> messageToException = new HashMap<>();
     private final List<SQSMessage> success = new ArrayList<>();
+    private final List<SQSMessage> skipped = new ArrayList<>();
+
+    private static final int MAX_BATCH_SIZE = 10;
+    private static final int MAX_IN_FLIGHT_REQUESTS = 8;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BACKOFF_BASE_MILLIS = 50;
 
     private final SqsClient client;
+    private final SqsAsyncClient asyncClient;
+    private final Executor executor;
+
+    /**
+     * Context without client: failed messages can only be reported in a {@link #batchResponse(boolean, Class[])},
+     * without moving non retryable ones to the DLQ
+     */
+    public BatchContext() {
+        this(null, null, null);
+    }
 
     public BatchContext(SqsClient client) {
+        this(client, null, null);
+    }
+
+    /**
+     * @param client   client used to delete and move messages
+     * @param executor executor sending the batch requests concurrently with the synchronous client
+     *                 (by default {@link ConcurrentLanes#defaultExecutor()})
+     */
+    public BatchContext(SqsClient client, Executor executor) {
+        this(client, null, executor);
+    }
+
+    public BatchContext(SqsAsyncClient asyncClient) {
+        this(null, asyncClient, null);
+    }
+
+    private BatchContext(SqsClient client, SqsAsyncClient asyncClient, Executor executor) {
         this.client = client;
+        this.asyncClient = asyncClient;
+        this.executor = executor;
     }
 
-    public void addSuccess(SQSMessage event) {
+    // synchronized: messages can be processed concurrently (see ParallelBatchProcessor)
+    public synchronized void addSuccess(SQSMessage event) {
         success.add(event);
     }
 
-    public void addFailure(SQSMessage event, Exception e) {
+    public synchronized void addFailure(SQSMessage event, Exception e) {
         messageToException.put(event, e);
     }
 
+    /**
+     * Message not processed because a previous message of its group failed, reported as failed in the batch response
+     */
+    public synchronized void addSkipped(SQSMessage event) {
+        skipped.add(event);
+    }
+
+    /**
+     * Build the response reporting the failed messages to Lambda, which deletes the other ones from the queue.
+     * Messages failing with a non retryable exception are moved to the DLQ (or deleted), and reported as failed only
+     * if they could not be moved.
+     */
     @SafeVarargs
-    public final <T> void processSuccessAndHandleFailed(final List<T> successReturns,
+    public final synchronized SQSBatchResponse batchResponse(final boolean deleteNonRetryableMessageFromQueue,
+                                                             final Class<? extends Exception>... nonRetryableExceptions) {
+        List<SQSMessage> failedMessages = new ArrayList<>();
+        Map<SQSMessage, Exception> nonRetryableMessageToException = new HashMap<>();
+
+        messageToException.forEach((sqsMessage, exception) -> {
+            if (isNonRetryableException(exception, nonRetryableExceptions)) {
+                nonRetryableMessageToException.put(sqsMessage, exception);
+            } else {
+                failedMessages.add(sqsMessage);
+            }
+        });
+
+        if (!nonRetryableMessageToException.isEmpty()
+                && !deleteNonRetryableMessageFromQueue
+                && !moveNonRetryableMessagesToDlqIfConfigured(nonRetryableMessageToException)) {
+            failedMessages.addAll(nonRetryableMessageToException.keySet());
+        }
+        failedMessages.addAll(skipped);
+
+        if (!failedMessages.isEmpty()) {
+            LOG.debug(format("[%d] records failed processing, reported in the batch response", failedMessages.size()));
+        }
+
+        return new SQSBatchResponse(failedMessages.stream()
+                .map(sqsMessage -> new SQSBatchResponse.BatchItemFailure(sqsMessage.getMessageId()))
+                .collect(toList()));
+    }
+
+    @SafeVarargs
+    public final synchronized <T> void processSuccessAndHandleFailed(final List<T> successReturns,
                                                         final boolean suppressException,
                                                         final boolean deleteNonRetryableMessageFromQueue,
                                                         final Class<? extends Exception>... nonRetryableExceptions) {
@@ -159,51 +244,70 @@ public final class BatchContext {
                 })
                 .collect(toList());
 
-        List<SendMessageBatchResponse> sendMessageBatchResponses = batchRequest(dlqMessages, 10, entriesToSend -> {
-
-            SendMessageBatchResponse sendMessageBatchResponse = client.sendMessageBatch(SendMessageBatchRequest.builder()
-                    .entries(entriesToSend)
-                    .queueUrl(dlqUrl.get())
-                    .build());
-
-
-            LOG.debug("Response from send batch message to DLQ request {}", sendMessageBatchResponse);
+        List<BatchResultErrorEntry> failed = batchRequest(dlqMessages, SendMessageBatchRequestEntry::id, entriesToSend ->
+                sendMessageBatch(SendMessageBatchRequest.builder()
+                        .entries(entriesToSend)
+                        .queueUrl(dlqUrl.get())
+                        .build())
+                        .thenApply(sendMessageBatchResponse -> {
+                            LOG.debug("Response from send batch message to DLQ request {}", sendMessageBatchResponse);
+                            return sendMessageBatchResponse != null && sendMessageBatchResponse.hasFailed()
+                                    ? sendMessageBatchResponse.failed()
+                                    : Collections.<BatchResultErrorEntry>emptyList();
+                        }));
+
+        if (!failed.isEmpty()) {
+            LOG.error("Failed sending message to the DLQ. Entire batch will be re processed. Check if needed permissions are configured for the function. Failed entries: {}", failed);
+        }
+        return failed.isEmpty();
+    }
 
-            return sendMessageBatchResponse;
-        });
 
-        return sendMessageBatchResponses.stream()
-                .filter(response -> null != response && response.hasFailed())
-                .peek(sendMessageBatchResponse -> LOG.error("Failed sending message to the DLQ. Entire batch will be re processed. Check if needed permissions are configured for the function. Response: {}", sendMessageBatchResponse))
-                .count()  == 0;
+    /**
+     * Start resolving the DLQ url of the queue in the background, so that it is cached when messages fail.
+     *
+     * @param queueArn arn of the queue the messages are received from
+     */
+    public void prewarmDlqUrl(String queueArn) {
+        if (queueArn != null && (client != null || asyncClient != null)) {
+            QUEUE_ARN_TO_DLQ_URL_MAPPING.get(queueArn, this::lookupDlqUrl)
+                    .whenComplete((dlqUrl, e) -> {
+                        if (e != null) {
+                            LOG.debug("Unable to prewarm DLQ url of queue {}", queueArn, e);
+                        }
+                    });
+        }
     }
 
-
     private Optional<String> fetchDlqUrl(Map<SQSMessage, Exception> nonRetryableMessageToException) {
         return nonRetryableMessageToException.keySet().stream()
                 .findFirst()
-                .map(sqsMessage -> QUEUE_ARN_TO_DLQ_URL_MAPPING.computeIfAbsent(sqsMessage.getEventSourceArn(), sourceArn -> {
-                    String queueUrl = url(sourceArn);
+                .flatMap(sqsMessage -> ConcurrentLanes.join(QUEUE_ARN_TO_DLQ_URL_MAPPING.get(sqsMessage.getEventSourceArn(), this::lookupDlqUrl)));
+    }
 
-                    GetQueueAttributesResponse queueAttributes = client.getQueueAttributes(GetQueueAttributesRequest.builder()
-                            .attributeNames(QueueAttributeName.REDRIVE_POLICY)
-                            .queueUrl(queueUrl)
-                            .build());
-
-                    return ofNullable(queueAttributes.attributes().get(QueueAttributeName.REDRIVE_POLICY))
-                            .map(policy -> {
-                                try {
-                                    return SqsUtils.objectMapper().readTree(policy);
-                                } catch (JsonProcessingException e) {
-                                    LOG.debug("Unable to parse Re drive policy for queue {}. Even if DLQ exists, failed messages will be send back to main queue.", queueUrl, e);
-                                    return null;
-                                }
-                            })
-                            .map(node -> node.get("deadLetterTargetArn"))
-                            .map(JsonNode::asText)
-                            .map(this::url)
-                            .orElse(null);
-                }));
+    private CompletableFuture<Optional<String>> lookupDlqUrl(String sourceArn) {
+        String queueUrl = url(sourceArn);
+
+        GetQueueAttributesRequest request = GetQueueAttributesRequest.builder()
+                .attributeNames(QueueAttributeName.REDRIVE_POLICY)
+                .queueUrl(queueUrl)
+                .build();
+        CompletableFuture<GetQueueAttributesResponse> queueAttributes = asyncClient != null
+                ? asyncClient.getQueueAttributes(request)
+                : CompletableFuture.supplyAsync(() -> client.getQueueAttributes(request), executor());
+
+        return queueAttributes.thenApply(response -> ofNullable(response.attributes().get(QueueAttributeName.REDRIVE_POLICY))
+                .map(policy -> {
+                    try {
+                        return SqsUtils.objectMapper().readTree(policy);
+                    } catch (JsonProcessingException e) {
+                        LOG.debug("Unable to parse Re drive policy for queue {}. Even if DLQ exists, failed messages will be send back to main queue.", queueUrl, e);
+                        return null;
+                    }
+                })
+                .map(node -> node.get("deadLetterTargetArn"))
+                .map(JsonNode::asText)
+                .map(this::url));
     }
 
     private boolean hasFailures() {
@@ -218,30 +322,93 @@ public final class BatchContext {
                     .receiptHandle(m.getReceiptHandle())
                     .build()).collect(toList());
 
-            batchRequest(entries, 10, entriesToDelete -> {
-                DeleteMessageBatchRequest request = DeleteMessageBatchRequest.builder()
-                        .queueUrl(url(messages.get(0).getEventSourceArn()))
-                        .entries(entriesToDelete)
-                        .build();
+            String queueUrl = url(messages.get(0).getEventSourceArn());
+            List<BatchResultErrorEntry> failed = batchRequest(entries, DeleteMessageBatchRequestEntry::id, entriesToDelete ->
+                    deleteMessageBatch(DeleteMessageBatchRequest.builder()
+                            .queueUrl(queueUrl)
+                            .entries(entriesToDelete)
+                            .build())
+                            .thenApply(deleteMessageBatchResponse -> {
+                                LOG.debug("Response from delete request {}", deleteMessageBatchResponse);
+                                return deleteMessageBatchResponse != null && deleteMessageBatchResponse.hasFailed()
+                                        ? deleteMessageBatchResponse.failed()
+                                        : Collections.<BatchResultErrorEntry>emptyList();
+                            }));
+
+            if (!failed.isEmpty()) {
+                LOG.warn("Failed deleting {} successfully processed messages from the queue, they will be processed again. Failed entries: {}", failed.size(), failed);
+            }
+        }
+    }
+
+    /**
+     * Send the entries in chunks of 10, with at most {@value #MAX_IN_FLIGHT_REQUESTS} requests at the same time.
+     * Entries failing because of SQS (not the sender) are retried in new chunks, after an exponential backoff.
+     *
+     * @return the entries still failing after {@value #MAX_ATTEMPTS} attempts, or failing because of the sender
+     */
+    private <T> List<BatchResultErrorEntry> batchRequest(final List<T> entries,
+                                                         final Function<T, String> idOf,
+                                                         final Function<List<T>, CompletableFuture<List<BatchResultErrorEntry>>> batchLogic) {
+        List<BatchResultErrorEntry> failures = new ArrayList<>();
+        List<T> pending = entries;
+
+        for (int attempt = 1; ; attempt++) {
+            Set<String> retryableIds = new HashSet<>();
+            for (BatchResultErrorEntry entry : dispatch(pending, batchLogic)) {
+                if (attempt < MAX_ATTEMPTS && !Boolean.TRUE.equals(entry.senderFault())) {
+                    retryableIds.add(entry.id());
+                } else {
+                    failures.add(entry);
+                }
+            }
+            if (retryableIds.isEmpty()) {
+                return failures;
+            }
 
-                DeleteMessageBatchResponse deleteMessageBatchResponse = client.deleteMessageBatch(request);
+            pending = pending.stream()
+                    .filter(entry -> retryableIds.contains(idOf.apply(entry)))
+                    .collect(toList());
+            LOG.debug("Retrying {} failed entries (attempt {})", pending.size(), attempt + 1);
+            try {
+                Thread.sleep(BACKOFF_BASE_MILLIS << (attempt - 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while retrying failed entries", e);
+            }
+        }
+    }
 
-                LOG.debug("Response from delete request {}", deleteMessageBatchResponse);
+    private <T> List<BatchResultErrorEntry> dispatch(final List<T> entries,
+                                                     final Function<List<T>, CompletableFuture<List<BatchResultErrorEntry>>> batchLogic) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int index = 0; index < entries.size(); index += MAX_BATCH_SIZE) {
+            chunks.add(entries.subList(index, Math.min(index + MAX_BATCH_SIZE, entries.size())));
+        }
+
+        List<BatchResultErrorEntry> failed = new ArrayList<>();
+        for (List<BatchResultErrorEntry> chunkFailures : ConcurrentLanes.dispatch(chunks, batchLogic, MAX_IN_FLIGHT_REQUESTS)) {
+            failed.addAll(chunkFailures);
+        }
+        return failed;
+    }
 
-                return deleteMessageBatchResponse;
-            });
+    private CompletableFuture<DeleteMessageBatchResponse> deleteMessageBatch(DeleteMessageBatchRequest request) {
+        if (asyncClient != null) {
+            return asyncClient.deleteMessageBatch(request);
         }
+        return CompletableFuture.supplyAsync(() -> client.deleteMessageBatch(request), executor());
     }
 
-    private <T, R> List<R> batchRequest(final List<T> listOFEntries,
-                                        final int size,
-                                        final Function<List<T>, R> batchLogic) {
+    private CompletableFuture<SendMessageBatchResponse> sendMessageBatch(SendMessageBatchRequest request) {
+        if (asyncClient != null) {
+            return asyncClient.sendMessageBatch(request);
+        }
+        return CompletableFuture.supplyAsync(() -> client.sendMessageBatch(request), executor());
+    }
 
-        return IntStream.range(0, listOFEntries.size())
-                .filter(index -> index % size == 0)
-                .mapToObj(index -> listOFEntries.subList(index, Math.min(index + size, listOFEntries.size())))
-                .map(batchLogic)
-                .collect(Collectors.toList());
+    private Executor executor() {
+        return executor != null ? executor : ConcurrentLanes.defaultExecutor();
     }
 
     private String url(String queueArn) {
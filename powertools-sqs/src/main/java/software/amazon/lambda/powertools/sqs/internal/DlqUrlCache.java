@@ -0,0 +1,116 @@
+package software.amazon.lambda.powertools.sqs.internal;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe cache of the DLQ urls of the queues, with a time to live so that a change of redrive policy is seen.
+ * Queues without DLQ are cached too. Lookups are cached while in flight, so concurrent callers share the same
+ * request, and a lookup can be started ahead of time. Failed lookups are not cached.
+ */
+final class DlqUrlCache {
+    static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+    static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoClock;
+
+    DlqUrlCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES, System::nanoTime);
+    }
+
+    DlqUrlCache(Duration ttl, int maxEntries, LongSupplier nanoClock) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @param queueArn arn of the queue
+     * @param lookup   asynchronous lookup of the DLQ url of the queue, called when it is missing or expired
+     * @return the DLQ url of the queue, empty when it has none
+     */
+    CompletableFuture<Optional<String>> get(String queueArn,
+                                            Function<String, CompletableFuture<Optional<String>>> lookup) {
+        long now = nanoClock.getAsLong();
+        Entry cached = entries.get(queueArn);
+        if (cached != null && !cached.isExpired(now)) {
+            return cached.dlqUrl;
+        }
+
+        Entry created = new Entry(new CompletableFuture<>(), now + ttlNanos);
+        Entry entry = entries.compute(queueArn, (arn, current) -> {
+            if (current != null && !current.isExpired(now)) {
+                return current;
+            }
+            // the future of a new entry is not complete yet, so the callback never runs within compute
+            created.dlqUrl.whenComplete((dlqUrl, e) -> {
+                if (e != null) {
+                    entries.remove(arn, created);
+                }
+            });
+            return created;
+        });
+
+        if (entry == created) {
+            try {
+                lookup.apply(queueArn).whenComplete((dlqUrl, e) -> {
+                    if (e != null) {
+                        created.dlqUrl.completeExceptionally(e);
+                    } else {
+                        created.dlqUrl.complete(dlqUrl);
+                    }
+                });
+            } catch (RuntimeException e) {
+                created.dlqUrl.completeExceptionally(e);
+            }
+        }
+
+        if (entries.size() > maxEntries) {
+            evict(now);
+        }
+        return entry.dlqUrl;
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void evict(long now) {
+        entries.values().removeIf(entry -> entry.isExpired(now));
+
+        while (entries.size() > maxEntries) {
+            entries.entrySet().stream()
+                    .min(Comparator.comparingLong(oldest -> oldest.getValue().expiresAt))
+                    .map(Map.Entry::getKey)
+                    .ifPresent(entries::remove);
+        }
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<Optional<String>> dlqUrl;
+        private final long expiresAt;
+
+        private Entry(CompletableFuture<Optional<String>> dlqUrl, long expiresAt) {
+            this.dlqUrl = dlqUrl;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package software.amazon.lambda.powertools.sqs.internal;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.lambda.powertools.core.internal.ConcurrentLanes;
+import software.amazon.lambda.powertools.sqs.SqsMessageHandler;
+
+import static com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Processes the messages of a batch concurrently, on an {@link Executor}.
+ * <ul>
+ *     <li>at most <code>maxConcurrency</code> messages are processed at the same time</li>
+ *     <li>messages of the same message group (FIFO queues) are processed one after the other, in order</li>
+ *     <li>values returned by the handler are in the order of the messages in the batch</li>
+ * </ul>
+ * With a <code>maxConcurrency</code> of 1, messages are processed in the calling thread, in the order of the batch.
+ */
+public final class ParallelBatchProcessor {
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelBatchProcessor.class);
+    public static final int DEFAULT_MAX_CONCURRENCY = 32;
+    private static final String MESSAGE_GROUP_ID = "MessageGroupId";
+
+    private ParallelBatchProcessor() {
+    }
+
+    public static <R> List<R> process(final List<SQSMessage> messages,
+                                      final SqsMessageHandler<R> handler,
+                                      final BatchContext batchContext,
+                                      final Executor executor,
+                                      final int maxConcurrency) {
+        return process(messages, handler, batchContext, executor, maxConcurrency, false);
+    }
+
+    /**
+     * @param skipGroupAfterFailure if true, the messages following a failed one in the same message group are not
+     *                              processed, and are reported as failed to {@link BatchContext#addSkipped(SQSMessage)}
+     *                              (to keep the order of the group when they are retried)
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> List<R> process(final List<SQSMessage> messages,
+                                      final SqsMessageHandler<R> handler,
+                                      final BatchContext batchContext,
+                                      final Executor executor,
+                                      final int maxConcurrency,
+                                      final boolean skipGroupAfterFailure) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be greater than 0, got " + maxConcurrency);
+        }
+
+        Object[] returns = new Object[messages.size()];
+        boolean[] succeeded = new boolean[messages.size()];
+
+        if (maxConcurrency == 1) {
+            // one message at a time, in the calling thread
+            Set<String> failedGroups = new HashSet<>();
+            for (int i = 0; i < messages.size(); i++) {
+                String groupId = groupId(messages.get(i));
+                if (skipGroupAfterFailure && groupId != null && failedGroups.contains(groupId)) {
+                    batchContext.addSkipped(messages.get(i));
+                } else if (!process(messages.get(i), i, handler, batchContext, returns, succeeded) && groupId != null) {
+                    failedGroups.add(groupId);
+                }
+            }
+        } else {
+            // one lane per message group for FIFO queues, one lane per message otherwise
+            List<Integer> indexes = IntStream.range(0, messages.size()).boxed().collect(toList());
+            List<List<Integer>> lanes = ConcurrentLanes.lanes(indexes, index -> groupId(messages.get(index)));
+
+            ConcurrentLanes.process(lanes, lane -> {
+                boolean failed = false;
+                for (int index : lane) {
+                    if (failed && skipGroupAfterFailure) {
+                        batchContext.addSkipped(messages.get(index));
+                    } else {
+                        failed |= !process(messages.get(index), index, handler, batchContext, returns, succeeded);
+                    }
+                }
+            }, executor, maxConcurrency);
+        }
+
+        List<R> handlerReturn = new ArrayList<>();
+        for (int i = 0; i < returns.length; i++) {
+            if (succeeded[i]) {
+                handlerReturn.add((R) returns[i]);
+            }
+        }
+        return handlerReturn;
+    }
+
+    private static <R> boolean process(final SQSMessage message,
+                                       final int index,
+                                       final SqsMessageHandler<R> handler,
+                                       final BatchContext batchContext,
+                                       final Object[] returns,
+                                       final boolean[] succeeded) {
+        try {
+            returns[index] = handler.process(message);
+            succeeded[index] = true;
+            batchContext.addSuccess(message);
+            return true;
+        } catch (Exception e) {
+            batchContext.addFailure(message, e);
+            LOG.error("Encountered issue processing message: {}", message.getMessageId(), e);
+            return false;
+        }
+    }
+
+    private static String groupId(final SQSMessage message) {
+        Map<String, String> attributes = message.getAttributes();
+        return attributes != null ? attributes.get(MESSAGE_GROUP_ID) : null;
+    }
+}
@@ -1,9 +1,18 @@
 package software.amazon.lambda.powertools.sqs.internal;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 import com.amazonaws.services.lambda.runtime.Context;
@@ -15,24 +24,39 @@ import org.aspectj.lang.annotation.Pointcut;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.utils.IoUtils;
+import software.amazon.lambda.powertools.core.internal.ConcurrentLanes;
 import software.amazon.lambda.powertools.sqs.SqsLargeMessage;
 import software.amazon.payloadoffloading.PayloadS3Pointer;
 
 import static com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 import static software.amazon.lambda.powertools.core.internal.LambdaHandlerProcessor.isHandlerMethod;
+import static software.amazon.lambda.powertools.sqs.SqsUtils.batchExecutor;
+import static software.amazon.lambda.powertools.sqs.SqsUtils.s3AsyncClient;
 import static software.amazon.lambda.powertools.sqs.SqsUtils.s3Client;
 
 @Aspect
 public class SqsLargeMessageAspect {
 
     private static final Logger LOG = LoggerFactory.getLogger(SqsLargeMessageAspect.class);
+    private static final int MAX_CONCURRENT_DOWNLOADS = 8;
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+    private static final Queue<CompletableFuture<Void>> PENDING_DELETIONS = new ConcurrentLinkedQueue<>();
 
     @SuppressWarnings({"EmptyMethod"})
     @Pointcut("@annotation(sqsLargeMessage)")
@@ -46,12 +70,21 @@ public class SqsLargeMessageAspect {
 
         if (isHandlerMethod(pjp)
                 && placedOnSqsEventRequestHandler(pjp)) {
-            List<PayloadS3Pointer> pointersToDelete = rewriteMessages((SQSEvent) proceedArgs[0]);
+            awaitPendingDeletions();
+
+            SQSEvent sqsEvent = (SQSEvent) proceedArgs[0];
+            List<PayloadS3Pointer> pointersToDelete = sqsLargeMessage.lazyPayloads()
+                    ? s3Pointers(sqsEvent.getRecords())
+                    : rewriteMessages(sqsEvent);
 
             Object proceed = pjp.proceed(proceedArgs);
 
             if (sqsLargeMessage.deletePayloads()) {
-                pointersToDelete.forEach(SqsLargeMessageAspect::deleteMessage);
+                if (sqsLargeMessage.deferPayloadDeletion()) {
+                    deleteMessagesAfterResponse(pointersToDelete);
+                } else {
+                    deleteMessages(pointersToDelete);
+                }
             }
             return proceed;
         }
@@ -65,29 +98,112 @@ public class SqsLargeMessageAspect {
     }
 
     public static List<PayloadS3Pointer> processMessages(final List<SQSMessage> records) {
+        List<SQSMessage> largeMessages = new ArrayList<>();
         List<PayloadS3Pointer> s3Pointers = new ArrayList<>();
         for (SQSMessage sqsMessage : records) {
-            if (isBodyLargeMessagePointer(sqsMessage.getBody())) {
+            s3Pointer(sqsMessage).ifPresent(s3Pointer -> {
+                largeMessages.add(sqsMessage);
+                s3Pointers.add(s3Pointer);
+            });
+        }
 
-                PayloadS3Pointer s3Pointer = Optional.ofNullable(PayloadS3Pointer.fromJson(sqsMessage.getBody()))
-                        .orElseThrow(() -> new FailedProcessingLargePayloadException(format("Failed processing SQS body to extract S3 details. [ %s ].", sqsMessage.getBody())));
+        List<String> payloads = downloadPayloads(s3Pointers);
+        for (int i = 0; i < largeMessages.size(); i++) {
+            largeMessages.get(i).setBody(payloads.get(i));
+        }
 
-                ResponseInputStream<GetObjectResponse> s3Object = callS3Gracefully(s3Pointer, pointer -> {
-                    ResponseInputStream<GetObjectResponse> response = s3Client().getObject(GetObjectRequest.builder()
-                            .bucket(pointer.getS3BucketName())
-                            .key(pointer.getS3Key())
-                            .build());
+        return s3Pointers;
+    }
 
-                    LOG.debug("Object downloaded with key: " + s3Pointer.getS3Key());
-                    return response;
-                });
+    /**
+     * Extract the S3 pointers of the large messages, without downloading the payloads.
+     */
+    public static List<PayloadS3Pointer> s3Pointers(final List<SQSMessage> records) {
+        List<PayloadS3Pointer> s3Pointers = new ArrayList<>();
+        for (SQSMessage sqsMessage : records) {
+            s3Pointer(sqsMessage).ifPresent(s3Pointers::add);
+        }
+        return s3Pointers;
+    }
 
-                sqsMessage.setBody(readStringFromS3Object(s3Object, s3Pointer));
-                s3Pointers.add(s3Pointer);
-            }
+    /**
+     * Stream the body of a message. When it points to a payload offloaded to S3, the payload is only downloaded
+     * when the stream is first read.
+     */
+    public static InputStream payloadStream(final SQSMessage sqsMessage) {
+        return s3Pointer(sqsMessage)
+                .<InputStream>map(LazyPayloadInputStream::new)
+                .orElseGet(() -> new ByteArrayInputStream(sqsMessage.getBody().getBytes(UTF_8)));
+    }
+
+    public static boolean isLargeMessage(final SQSMessage sqsMessage) {
+        return isBodyLargeMessagePointer(sqsMessage.getBody());
+    }
+
+    private static Optional<PayloadS3Pointer> s3Pointer(final SQSMessage sqsMessage) {
+        if (!isLargeMessage(sqsMessage)) {
+            return Optional.empty();
         }
 
-        return s3Pointers;
+        return Optional.of(Optional.ofNullable(PayloadS3Pointer.fromJson(sqsMessage.getBody()))
+                .orElseThrow(() -> new FailedProcessingLargePayloadException(format("Failed processing SQS body to extract S3 details. [ %s ].", sqsMessage.getBody()))));
+    }
+
+    /**
+     * Download the payloads concurrently, with at most {@value #MAX_CONCURRENT_DOWNLOADS} downloads at the same time.
+     * The {@link S3AsyncClient} is used when one is provided, the {@link software.amazon.awssdk.services.s3.S3Client}
+     * on the batch executor otherwise.
+     */
+    private static List<String> downloadPayloads(final List<PayloadS3Pointer> s3Pointers) {
+        if (s3Pointers.size() <= 1) {
+            return s3Pointers.stream()
+                    .map(SqsLargeMessageAspect::downloadPayload)
+                    .collect(toList());
+        }
+
+        S3AsyncClient asyncClient = s3AsyncClient();
+        Executor executor = batchExecutor();
+        return ConcurrentLanes.dispatch(s3Pointers,
+                s3Pointer -> asyncClient != null
+                        ? downloadPayload(asyncClient, s3Pointer)
+                        : CompletableFuture.supplyAsync(() -> downloadPayload(s3Pointer), executor),
+                MAX_CONCURRENT_DOWNLOADS);
+    }
+
+    private static String downloadPayload(final PayloadS3Pointer s3Pointer) {
+        ResponseInputStream<GetObjectResponse> s3Object = callS3Gracefully(s3Pointer, pointer -> {
+            ResponseInputStream<GetObjectResponse> response = s3Client().getObject(getObjectRequest(pointer));
+
+            LOG.debug("Object downloaded with key: " + s3Pointer.getS3Key());
+            return response;
+        });
+
+        return readStringFromS3Object(s3Object, s3Pointer);
+    }
+
+    private static CompletableFuture<String> downloadPayload(final S3AsyncClient asyncClient,
+                                                             final PayloadS3Pointer s3Pointer) {
+        return asyncClient.getObject(getObjectRequest(s3Pointer), AsyncResponseTransformer.toBytes())
+                .handle((response, e) -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof S3Exception || cause instanceof SdkClientException) {
+                        LOG.error("A service or client exception", cause);
+                        throw new FailedProcessingLargePayloadException(format("Failed processing S3 record with [Bucket Name: %s Bucket Key: %s]", s3Pointer.getS3BucketName(), s3Pointer.getS3Key()), cause);
+                    }
+                    if (cause != null) {
+                        throw new CompletionException(cause);
+                    }
+
+                    LOG.debug("Object downloaded with key: " + s3Pointer.getS3Key());
+                    return response.asUtf8String();
+                });
+    }
+
+    private static GetObjectRequest getObjectRequest(final PayloadS3Pointer s3Pointer) {
+        return GetObjectRequest.builder()
+                .bucket(s3Pointer.getS3BucketName())
+                .key(s3Pointer.getS3Key())
+                .build();
     }
 
     private static boolean isBodyLargeMessagePointer(String record) {
@@ -104,6 +220,91 @@ public class SqsLargeMessageAspect {
         }
     }
 
+    /**
+     * Delete the payloads, with one {@code DeleteObjects} request per bucket and {@value #MAX_KEYS_PER_DELETE} keys,
+     * sent concurrently.
+     */
+    public static void deleteMessages(final List<PayloadS3Pointer> s3Pointers) {
+        if (s3Pointers.size() == 1) {
+            deleteMessage(s3Pointers.get(0));
+        } else if (!s3Pointers.isEmpty()) {
+            ConcurrentLanes.join(deletePayloads(s3Pointers));
+        }
+    }
+
+    /**
+     * Start deleting the payloads without waiting for the deletion, so that the handler can return first.
+     * The pending deletions are completed before the next event is handled, failures are only logged.
+     */
+    public static void deleteMessagesAfterResponse(final List<PayloadS3Pointer> s3Pointers) {
+        if (!s3Pointers.isEmpty()) {
+            PENDING_DELETIONS.add(deletePayloads(s3Pointers)
+                    .exceptionally(e -> {
+                        LOG.error("Failed deleting payloads from S3", e);
+                        return null;
+                    }));
+        }
+    }
+
+    /**
+     * Wait for the deletions started by {@link #deleteMessagesAfterResponse(List)}.
+     */
+    public static void awaitPendingDeletions() {
+        CompletableFuture<Void> deletion;
+        while ((deletion = PENDING_DELETIONS.poll()) != null) {
+            deletion.join();
+        }
+    }
+
+    private static CompletableFuture<Void> deletePayloads(final List<PayloadS3Pointer> s3Pointers) {
+        Map<String, List<PayloadS3Pointer>> pointersByBucket = s3Pointers.stream()
+                .collect(groupingBy(PayloadS3Pointer::getS3BucketName, LinkedHashMap::new, toList()));
+
+        List<CompletableFuture<Void>> deletions = new ArrayList<>();
+        pointersByBucket.forEach((bucket, pointers) -> {
+            for (int index = 0; index < pointers.size(); index += MAX_KEYS_PER_DELETE) {
+                deletions.add(deletePayloads(bucket, pointers.subList(index, Math.min(index + MAX_KEYS_PER_DELETE, pointers.size()))));
+            }
+        });
+
+        return CompletableFuture.allOf(deletions.toArray(new CompletableFuture[0]));
+    }
+
+    private static CompletableFuture<Void> deletePayloads(final String bucket,
+                                                          final List<PayloadS3Pointer> s3Pointers) {
+        DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+                .bucket(bucket)
+                .delete(Delete.builder()
+                        .quiet(true)
+                        .objects(s3Pointers.stream()
+                                .map(pointer -> ObjectIdentifier.builder().key(pointer.getS3Key()).build())
+                                .collect(toList()))
+                        .build())
+                .build();
+
+        S3AsyncClient asyncClient = s3AsyncClient();
+        CompletableFuture<DeleteObjectsResponse> response = asyncClient != null
+                ? asyncClient.deleteObjects(request)
+                : CompletableFuture.supplyAsync(() -> s3Client().deleteObjects(request), batchExecutor());
+
+        return response.handle((deleted, e) -> {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause instanceof S3Exception || cause instanceof SdkClientException) {
+                LOG.error("A service or client exception", cause);
+                throw new FailedProcessingLargePayloadException(format("Failed deleting S3 records of [Bucket Name: %s]", bucket), cause);
+            }
+            if (cause != null) {
+                throw new CompletionException(cause);
+            }
+            if (deleted != null && deleted.hasErrors() && !deleted.errors().isEmpty()) {
+                throw new FailedProcessingLargePayloadException(format("Failed deleting S3 records of [Bucket Name: %s]: %s", bucket, deleted.errors()));
+            }
+
+            LOG.info("{} messages deleted from S3 bucket {}", s3Pointers.size(), bucket);
+            return null;
+        });
+    }
+
     public static void deleteMessage(PayloadS3Pointer s3Pointer) {
         callS3Gracefully(s3Pointer, pointer -> {
             s3Client().deleteObject(DeleteObjectRequest.builder()
@@ -134,6 +335,62 @@ public class SqsLargeMessageAspect {
                 && pjp.getArgs()[1] instanceof Context;
     }
 
+    /**
+     * Stream of a payload offloaded to S3, which is only downloaded when first read.
+     */
+    private static final class LazyPayloadInputStream extends InputStream {
+        private final PayloadS3Pointer s3Pointer;
+        private InputStream content;
+        private boolean closed;
+
+        private LazyPayloadInputStream(final PayloadS3Pointer s3Pointer) {
+            this.s3Pointer = s3Pointer;
+        }
+
+        private InputStream content() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (content == null) {
+                content = callS3Gracefully(s3Pointer, pointer -> {
+                    ResponseInputStream<GetObjectResponse> response = s3Client().getObject(getObjectRequest(pointer));
+
+                    LOG.debug("Object opened with key: " + pointer.getS3Key());
+                    return response;
+                });
+            }
+            return content;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return content().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return content().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return content().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return content == null || closed ? 0 : content.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (content != null) {
+                content.close();
+            }
+        }
+    }
+
     public static class FailedProcessingLargePayloadException extends RuntimeException {
         public FailedProcessingLargePayloadException(String message, Throwable cause) {
             super(message, cause);
@@ -1,14 +1,18 @@
 package software.amazon.lambda.powertools.sqs.internal;
 
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import software.amazon.lambda.powertools.sqs.SqsBatch;
 
 import static software.amazon.lambda.powertools.core.internal.LambdaHandlerProcessor.isHandlerMethod;
 import static software.amazon.lambda.powertools.sqs.SqsUtils.batchProcessor;
+import static software.amazon.lambda.powertools.sqs.SqsUtils.parallelBatchProcessor;
+import static software.amazon.lambda.powertools.sqs.SqsUtils.partialBatchProcessor;
 import static software.amazon.lambda.powertools.sqs.internal.SqsLargeMessageAspect.placedOnSqsEventRequestHandler;
 
 @Aspect
@@ -29,11 +33,36 @@ public class SqsMessageBatchProcessorAspect {
 
             SQSEvent sqsEvent = (SQSEvent) proceedArgs[0];
 
-            batchProcessor(sqsEvent,
-                    sqsBatch.suppressException(),
-                    sqsBatch.value(),
-                    sqsBatch.deleteNonRetryableMessageFromQueue(),
-                    sqsBatch.nonRetryableExceptions());
+            if (sqsBatch.partialBatchResponse()) {
+                Class<?> returnType = ((MethodSignature) pjp.getSignature()).getReturnType();
+                if (!returnType.isAssignableFrom(SQSBatchResponse.class)) {
+                    throw new IllegalStateException("Handler annotated with @SqsBatch(partialBatchResponse = true) must return "
+                            + SQSBatchResponse.class.getSimpleName() + ", found " + returnType.getName());
+                }
+
+                SQSBatchResponse response = partialBatchProcessor(sqsEvent,
+                        sqsBatch.value(),
+                        sqsBatch.parallel() ? sqsBatch.maxConcurrency() : 1,
+                        sqsBatch.deleteNonRetryableMessageFromQueue(),
+                        sqsBatch.nonRetryableExceptions());
+                pjp.proceed(proceedArgs);
+                return response;
+            }
+
+            if (sqsBatch.parallel()) {
+                parallelBatchProcessor(sqsEvent,
+                        sqsBatch.suppressException(),
+                        sqsBatch.value(),
+                        sqsBatch.maxConcurrency(),
+                        sqsBatch.deleteNonRetryableMessageFromQueue(),
+                        sqsBatch.nonRetryableExceptions());
+            } else {
+                batchProcessor(sqsEvent,
+                        sqsBatch.suppressException(),
+                        sqsBatch.value(),
+                        sqsBatch.deleteNonRetryableMessageFromQueue(),
+                        sqsBatch.nonRetryableExceptions());
+            }
         }
 
         return pjp.proceed(proceedArgs);
@@ -0,0 +1,320 @@
+package software.amazon.lambda.powertools.sqs;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+import software.amazon.lambda.powertools.sqs.internal.SqsLargeMessageAspect;
+import software.amazon.payloadoffloading.PayloadS3Pointer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+class SqsLargeMessageSenderTest {
+
+    private static final String QUEUE_URL = "https://sqs.eu-central-1.amazonaws.com/123456789012/queue";
+    private static final String BUCKET_NAME = "ms-extended-sqs-client";
+
+    @Mock
+    private SqsClient sqsClient;
+
+    @Mock
+    private S3Client s3Client;
+
+    private SqsLargeMessageSender sender;
+
+    @BeforeEach
+    void setUp() {
+        openMocks(this);
+        when(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            return SendMessageBatchResponse.builder()
+                    .successful(request.entries().stream()
+                            .map(entry -> SendMessageBatchResultEntry.builder().id(entry.id()).build())
+                            .collect(Collectors.toList()))
+                    .build();
+        });
+        sender = SqsLargeMessageSender.builder()
+                .withSqsClient(sqsClient)
+                .withS3Client(s3Client)
+                .withS3BucketName(BUCKET_NAME)
+                .build();
+    }
+
+    @Test
+    void shouldSendSmallMessagesInBatchesOfTen() {
+        SendMessageBatchResponse response = sender.sendMessageBatch(QUEUE_URL, entries(25, "A small message"));
+
+        ArgumentCaptor<SendMessageBatchRequest> captor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+
+        verify(sqsClient, times(3)).sendMessageBatch(captor.capture());
+        verifyNoInteractions(s3Client);
+
+        assertThat(captor.getAllValues())
+                .allSatisfy(request -> assertThat(request.queueUrl()).isEqualTo(QUEUE_URL))
+                .flatMap(SendMessageBatchRequest::entries)
+                .hasSize(25)
+                .extracting(SendMessageBatchRequestEntry::messageBody)
+                .containsOnly("A small message");
+
+        assertThat(response.successful()).hasSize(25);
+        assertThat(response.failed()).isEmpty();
+    }
+
+    @Test
+    void shouldSplitBatchesAboveMaximumPayloadSize() {
+        sender.sendMessageBatch(QUEUE_URL, entries(10, StringUtils.repeat("a", 100_000)));
+
+        ArgumentCaptor<SendMessageBatchRequest> captor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+
+        verify(sqsClient, times(5)).sendMessageBatch(captor.capture());
+        verifyNoInteractions(s3Client);
+
+        assertThat(captor.getAllValues())
+                .allSatisfy(request -> assertThat(request.entries()).hasSize(2));
+    }
+
+    @Test
+    void shouldOffloadLargeMessagesToS3() {
+        String largeBody = StringUtils.repeat("a", 300_000);
+
+        sender.sendMessageBatch(QUEUE_URL, Collections.singletonList(SendMessageBatchRequestEntry.builder()
+                .id("0")
+                .messageBody(largeBody)
+                .build()));
+
+        ArgumentCaptor<PutObjectRequest> put = ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<SendMessageBatchRequest> send = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+
+        verify(s3Client).putObject(put.capture(), any(RequestBody.class));
+        verify(sqsClient).sendMessageBatch(send.capture());
+
+        SendMessageBatchRequestEntry entry = send.getValue().entries().get(0);
+        PayloadS3Pointer s3Pointer = PayloadS3Pointer.fromJson(entry.messageBody());
+
+        assertThat(s3Pointer.getS3BucketName()).isEqualTo(BUCKET_NAME);
+        assertThat(s3Pointer.getS3Key()).isEqualTo(put.getValue().key());
+        assertThat(entry.messageAttributes().get(SqsLargeMessageSender.PAYLOAD_SIZE_ATTRIBUTE).stringValue())
+                .isEqualTo("300000");
+
+        SQSEvent.SQSMessage received = new SQSEvent.SQSMessage();
+        received.setBody(entry.messageBody());
+        assertThat(SqsLargeMessageAspect.isLargeMessage(received)).isTrue();
+    }
+
+    @Test
+    void shouldUploadVeryLargeMessagesInParts() {
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            return UploadPartResponse.builder().eTag("etag" + request.partNumber()).build();
+        });
+
+        sender = SqsLargeMessageSender.builder()
+                .withSqsClient(sqsClient)
+                .withS3Client(s3Client)
+                .withS3BucketName(BUCKET_NAME)
+                .withMultipartThreshold(SqsLargeMessageSender.MIN_PART_SIZE)
+                .build();
+
+        sender.sendMessageBatch(QUEUE_URL, entries(1, StringUtils.repeat("a", (int) (2 * SqsLargeMessageSender.MIN_PART_SIZE + 10))));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+
+        verify(s3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+
+        assertThat(complete.getValue().multipartUpload().parts())
+                .extracting(part -> part.partNumber() + ":" + part.eTag())
+                .containsExactly("1:etag1", "2:etag2", "3:etag3");
+    }
+
+    @Test
+    void shouldAbortMultipartUploadOnFailure() {
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("Service Exception").build());
+
+        sender = SqsLargeMessageSender.builder()
+                .withSqsClient(sqsClient)
+                .withS3Client(s3Client)
+                .withS3BucketName(BUCKET_NAME)
+                .withMultipartThreshold(SqsLargeMessageSender.MIN_PART_SIZE)
+                .build();
+
+        SendMessageBatchResponse response = sender.sendMessageBatch(QUEUE_URL, entries(1, StringUtils.repeat("a", (int) (SqsLargeMessageSender.MIN_PART_SIZE + 10))));
+
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        verifyNoInteractions(sqsClient);
+
+        assertThat(response.failed())
+                .extracting(BatchResultErrorEntry::id, BatchResultErrorEntry::message)
+                .containsExactly(tuple("0", "Service Exception"));
+    }
+
+    @Test
+    void shouldReportOriginalFailureWhenAbortFails() {
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("Service Exception").build());
+        when(s3Client.abortMultipartUpload(any(AbortMultipartUploadRequest.class)))
+                .thenThrow(S3Exception.builder().message("Abort Exception").build());
+
+        sender = SqsLargeMessageSender.builder()
+                .withSqsClient(sqsClient)
+                .withS3Client(s3Client)
+                .withS3BucketName(BUCKET_NAME)
+                .withMultipartThreshold(SqsLargeMessageSender.MIN_PART_SIZE)
+                .build();
+
+        SendMessageBatchResponse response = sender.sendMessageBatch(QUEUE_URL, entries(1, StringUtils.repeat("a", (int) (SqsLargeMessageSender.MIN_PART_SIZE + 10))));
+
+        assertThat(response.failed())
+                .extracting(BatchResultErrorEntry::message)
+                .containsExactly("Service Exception");
+    }
+
+    @Test
+    void shouldUploadPartsOfSeveralMessagesWithSmallExecutor() {
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            sender = SqsLargeMessageSender.builder()
+                    .withSqsClient(sqsClient)
+                    .withS3Client(s3Client)
+                    .withS3BucketName(BUCKET_NAME)
+                    .withMultipartThreshold(SqsLargeMessageSender.MIN_PART_SIZE)
+                    .withExecutor(executor)
+                    .build();
+
+            SendMessageBatchResponse response = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> sender.sendMessageBatch(QUEUE_URL, entries(2, StringUtils.repeat("a", (int) (SqsLargeMessageSender.MIN_PART_SIZE + 10)))));
+
+            verify(s3Client, times(4)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+            verify(s3Client, times(2)).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+            assertThat(response.successful()).hasSize(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldSendOtherMessagesWhenUploadFails() {
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("Service Exception").build());
+
+        List<SendMessageBatchRequestEntry> entries = new ArrayList<>(entries(2, "A small message"));
+        entries.add(SendMessageBatchRequestEntry.builder()
+                .id("2")
+                .messageBody(StringUtils.repeat("a", 300_000))
+                .build());
+
+        SendMessageBatchResponse response = sender.sendMessageBatch(QUEUE_URL, entries);
+
+        assertThat(response.successful())
+                .extracting(SendMessageBatchResultEntry::id)
+                .containsExactly("0", "1");
+        assertThat(response.failed())
+                .extracting(BatchResultErrorEntry::id)
+                .containsExactly("2");
+    }
+
+    @Test
+    void shouldDeletePayloadsWhenBatchRequestFails() {
+        when(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class)))
+                .thenThrow(SqsException.builder().message("Service Exception").build());
+
+        SendMessageBatchResponse response = sender.sendMessageBatch(QUEUE_URL, entries(2, StringUtils.repeat("a", 300_000)));
+
+        ArgumentCaptor<PutObjectRequest> put = ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<DeleteObjectRequest> delete = ArgumentCaptor.forClass(DeleteObjectRequest.class);
+
+        verify(s3Client, times(2)).putObject(put.capture(), any(RequestBody.class));
+        verify(s3Client, times(2)).deleteObject(delete.capture());
+
+        assertThat(delete.getAllValues())
+                .extracting(DeleteObjectRequest::key)
+                .containsExactlyInAnyOrderElementsOf(put.getAllValues().stream()
+                        .map(PutObjectRequest::key)
+                        .collect(Collectors.toList()));
+        assertThat(response.successful()).isEmpty();
+        assertThat(response.failed())
+                .extracting(BatchResultErrorEntry::id)
+                .containsExactly("0", "1");
+    }
+
+    @Test
+    void shouldReturnFailedEntries() {
+        when(sqsClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(SendMessageBatchResponse.builder()
+                .failed(BatchResultErrorEntry.builder().id("0").senderFault(true).build())
+                .build());
+
+        SendMessageBatchResponse response = sender.sendMessageBatch(QUEUE_URL, entries(1, "A small message"));
+
+        assertThat(response.failed())
+                .extracting(BatchResultErrorEntry::id)
+                .containsExactly("0");
+    }
+
+    @Test
+    void shouldRequireBucketName() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> SqsLargeMessageSender.builder().withSqsClient(sqsClient).build());
+    }
+
+    private static List<SendMessageBatchRequestEntry> entries(int count, String body) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> SendMessageBatchRequestEntry.builder()
+                        .id(String.valueOf(i))
+                        .messageBody(body)
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
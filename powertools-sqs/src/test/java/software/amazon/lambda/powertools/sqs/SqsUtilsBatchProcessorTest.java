@@ -1,11 +1,23 @@
 package software.amazon.lambda.powertools.sqs;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.assertj.core.api.Assertions;
@@ -14,8 +26,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
 import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
 import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
 import software.amazon.awssdk.services.sqs.model.GetQueueAttributesResponse;
 import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
@@ -34,7 +50,11 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static software.amazon.lambda.powertools.sqs.SqsUtils.batchProcessor;
+import static software.amazon.lambda.powertools.sqs.SqsUtils.overrideBatchExecutor;
+import static software.amazon.lambda.powertools.sqs.SqsUtils.overrideSqsAsyncClient;
 import static software.amazon.lambda.powertools.sqs.SqsUtils.overrideSqsClient;
+import static software.amazon.lambda.powertools.sqs.SqsUtils.parallelBatchProcessor;
+import static software.amazon.lambda.powertools.sqs.SqsUtils.partialBatchProcessor;
 
 class SqsUtilsBatchProcessorTest {
 
@@ -48,6 +68,7 @@ class SqsUtilsBatchProcessorTest {
         reset(sqsClient, interactionClient);
         event = MAPPER.readValue(this.getClass().getResource("/sampleSqsBatchEvent.json"), SQSEvent.class);
         overrideSqsClient(sqsClient);
+        overrideBatchExecutor(null);
     }
 
     @Test
@@ -309,6 +330,60 @@ class SqsUtilsBatchProcessorTest {
                 .hasSize(24);
     }
 
+    @Test
+    void shouldDeleteSuccessfulMessageInConcurrentBatchesWithAsyncClient() throws IOException {
+        SQSEvent batch25Message =  MAPPER.readValue(this.getClass().getResource("/sampleSqsBatchEventBatchSize25.json"), SQSEvent.class);
+        SqsAsyncClient asyncClient = mock(SqsAsyncClient.class);
+        when(asyncClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(DeleteMessageBatchResponse.builder().build()));
+
+        overrideSqsClient(null);
+        overrideSqsAsyncClient(asyncClient);
+
+        try {
+            assertThatExceptionOfType(SQSBatchProcessingException.class)
+                    .isThrownBy(() -> batchProcessor(batch25Message, FailureSampleInnerSqsHandler.class))
+                    .satisfies(e -> assertThat(e.getFailures()).hasSize(1));
+        } finally {
+            overrideSqsAsyncClient(null);
+        }
+
+        ArgumentCaptor<DeleteMessageBatchRequest> captor = ArgumentCaptor.forClass(DeleteMessageBatchRequest.class);
+
+        verify(asyncClient, times(3)).deleteMessageBatch(captor.capture());
+        verifyNoInteractions(sqsClient);
+
+        assertThat(captor.getAllValues())
+                .hasSize(3)
+                .flatMap(DeleteMessageBatchRequest::entries)
+                .hasSize(24);
+    }
+
+    @Test
+    void shouldRetryOnlyFailedEntriesOfDeleteMessageBatch() {
+        when(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class)))
+                .thenReturn(DeleteMessageBatchResponse.builder()
+                        .failed(BatchResultErrorEntry.builder()
+                                .id("059f36b4-87a3-44ab-83d2-661975830a7d")
+                                .code("InternalError")
+                                .senderFault(false)
+                                .build())
+                        .build())
+                .thenReturn(DeleteMessageBatchResponse.builder().build());
+
+        assertThatExceptionOfType(SQSBatchProcessingException.class)
+                .isThrownBy(() -> batchProcessor(event, FailureSampleInnerSqsHandler.class));
+
+        ArgumentCaptor<DeleteMessageBatchRequest> captor = ArgumentCaptor.forClass(DeleteMessageBatchRequest.class);
+
+        verify(sqsClient, times(2)).deleteMessageBatch(captor.capture());
+
+        assertThat(captor.getAllValues())
+                .allSatisfy(request -> assertThat(request.entries())
+                        .extracting(DeleteMessageBatchRequestEntry::id)
+                        .containsExactly("059f36b4-87a3-44ab-83d2-661975830a7d"));
+    }
+
     @Test
     void shouldBatchProcessAndMoveNonRetryableExceptionToDlqInBatchesOfT10orLess() throws IOException {
         SQSEvent batch25Message =  MAPPER.readValue(this.getClass().getResource("/sampleSqsBatchEventBatchSize25.json"), SQSEvent.class);
@@ -347,6 +422,232 @@ class SqsUtilsBatchProcessorTest {
                 .hasSize(24);
     }
 
+    @Test
+    void shouldParallelBatchProcessMessagesConcurrently() {
+        CountDownLatch bothInFlight = new CountDownLatch(2);
+
+        List<String> returnValues = parallelBatchProcessor(event, (message) -> {
+            bothInFlight.countDown();
+            try {
+                if (!bothInFlight.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Messages not processed concurrently");
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return message.getMessageId();
+        });
+
+        assertThat(returnValues)
+                .containsExactly("059f36b4-87a3-44ab-83d2-661975830a7d",
+                        "2e1424d4-f796-459a-8184-9c92662be6da");
+
+        verifyNoInteractions(sqsClient);
+    }
+
+    @Test
+    void shouldParallelBatchProcessAndDeleteSuccessMessageOnPartialFailures() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        overrideBatchExecutor(executor);
+
+        try {
+            assertThatExceptionOfType(SQSBatchProcessingException.class)
+                    .isThrownBy(() -> parallelBatchProcessor(event, new FailureSampleInnerSqsHandler()))
+                    .satisfies(e -> {
+                        assertThat(e.successMessageReturnValues())
+                                .containsExactly("Success");
+
+                        assertThat(e.getFailures())
+                                .extracting("messageId")
+                                .containsExactly("2e1424d4-f796-459a-8184-9c92662be6da");
+                    });
+        } finally {
+            executor.shutdown();
+        }
+
+        verify(interactionClient).listQueues();
+        verify(sqsClient).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    @Test
+    void shouldParallelBatchProcessFifoMessagesOfSameGroupInOrder() {
+        SQSEvent fifoEvent = new SQSEvent();
+        List<SQSMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            SQSMessage message = new SQSMessage();
+            message.setMessageId(String.valueOf(i));
+            message.setAttributes(Collections.singletonMap("MessageGroupId", "group" + (i % 3)));
+            messages.add(message);
+        }
+        fifoEvent.setRecords(messages);
+
+        Map<String, List<Integer>> processedByGroup = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        List<Integer> returnValues = parallelBatchProcessor(fifoEvent, false, (message) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            int id = Integer.parseInt(message.getMessageId());
+            processedByGroup.computeIfAbsent(message.getAttributes().get("MessageGroupId"), group -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(id);
+            inFlight.decrementAndGet();
+            return id;
+        }, 2, false);
+
+        assertThat(returnValues)
+                .hasSize(20)
+                .isSorted();
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(2);
+        assertThat(processedByGroup).hasSize(3);
+        processedByGroup.values().forEach(ids -> assertThat(ids).isSorted());
+
+        verifyNoInteractions(sqsClient);
+    }
+
+    @Test
+    void shouldFailParallelBatchProcessingWithInvalidConcurrency() {
+        assertThatExceptionOfType(IllegalArgumentException.class)
+                .isThrownBy(() -> parallelBatchProcessor(event, false, (message) -> "Success", 0, false));
+    }
+
+    @Test
+    void shouldReportFailedMessagesInPartialBatchResponse() {
+        SQSBatchResponse response = partialBatchProcessor(event, new FailureSampleInnerSqsHandler());
+
+        assertThat(response.getBatchItemFailures())
+                .extracting(SQSBatchResponse.BatchItemFailure::getItemIdentifier)
+                .containsExactly("2e1424d4-f796-459a-8184-9c92662be6da");
+
+        verify(interactionClient).listQueues();
+        verifyNoInteractions(sqsClient);
+    }
+
+    @Test
+    void shouldReturnEmptyPartialBatchResponseWhenAllSuccess() {
+        SQSBatchResponse response = partialBatchProcessor(event, SampleInnerSqsHandler.class);
+
+        assertThat(response.getBatchItemFailures()).isEmpty();
+
+        verifyNoInteractions(sqsClient);
+    }
+
+    @Test
+    void shouldReportFollowingMessagesOfFailedGroupInPartialBatchResponse() {
+        SQSEvent fifoEvent = new SQSEvent();
+        List<SQSMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            SQSMessage message = new SQSMessage();
+            message.setMessageId(String.valueOf(i));
+            message.setAttributes(Collections.singletonMap("MessageGroupId", "group" + (i % 2)));
+            messages.add(message);
+        }
+        fifoEvent.setRecords(messages);
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+        SQSBatchResponse response = partialBatchProcessor(fifoEvent, (message) -> {
+            processed.add(message.getMessageId());
+            if ("2".equals(message.getMessageId())) {
+                throw new RuntimeException("Failed processing");
+            }
+            return "Success";
+        });
+
+        assertThat(processed).containsExactly("0", "1", "2", "3", "5");
+        assertThat(response.getBatchItemFailures())
+                .extracting(SQSBatchResponse.BatchItemFailure::getItemIdentifier)
+                .containsExactlyInAnyOrder("2", "4");
+
+        verifyNoInteractions(sqsClient);
+    }
+
+    @Test
+    void shouldNotReportNonRetryableMessagesToDeleteInPartialBatchResponse() {
+        SQSBatchResponse response = partialBatchProcessor(event, (message) -> {
+            if ("2e1424d4-f796-459a-8184-9c92662be6da".equals(message.getMessageId())) {
+                throw new IllegalArgumentException("Invalid message");
+            }
+            throw new IllegalStateException("Failed processing");
+        }, 2, true, IllegalArgumentException.class);
+
+        assertThat(response.getBatchItemFailures())
+                .extracting(SQSBatchResponse.BatchItemFailure::getItemIdentifier)
+                .containsExactly("059f36b4-87a3-44ab-83d2-661975830a7d");
+
+        verifyNoInteractions(sqsClient);
+    }
+
+    @Test
+    void shouldBatchProcessDeserializedBodies() {
+        event.getRecords().get(0).setBody("{\"id\":1,\"name\":\"first\",\"unknown\":true}");
+        event.getRecords().get(1).setBody("{\"id\":2,\"name\":\"second\"}");
+
+        List<String> returnValues = batchProcessor(event, Order.class, (order, message) -> order.id + ":" + order.name);
+
+        assertThat(returnValues)
+                .containsExactly("1:first", "2:second");
+
+        verifyNoInteractions(sqsClient);
+    }
+
+    @Test
+    void shouldFailMessagesWithBodyNotDeserialized() {
+        event.getRecords().get(0).setBody("{\"id\":1,\"name\":\"first\"}");
+        event.getRecords().get(1).setBody("Test message.");
+
+        assertThatExceptionOfType(SQSBatchProcessingException.class)
+                .isThrownBy(() -> batchProcessor(event, Order.class, (order, message) -> order.name))
+                .satisfies(e -> {
+                    assertThat(e.successMessageReturnValues())
+                            .containsExactly("first");
+
+                    assertThat(e.getFailures())
+                            .extracting("messageId")
+                            .containsExactly("2e1424d4-f796-459a-8184-9c92662be6da");
+
+                    assertThat(e.getExceptions())
+                            .singleElement()
+                            .isInstanceOf(UncheckedIOException.class);
+                });
+
+        verify(sqsClient).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    @Test
+    void shouldParallelBatchProcessDeserializedBodies() {
+        event.getRecords().get(0).setBody("{\"id\":1,\"name\":\"first\"}");
+        event.getRecords().get(1).setBody("{\"id\":2,\"name\":\"second\"}");
+
+        List<Integer> returnValues = parallelBatchProcessor(event, Order.class, (order, message) -> order.id);
+
+        assertThat(returnValues)
+                .containsExactly(1, 2);
+    }
+
+    @Test
+    void shouldParallelBatchProcessAndDeleteBodiesNotDeserialized() {
+        event.getRecords().get(0).setBody("{\"id\":1,\"name\":\"first\"}");
+        event.getRecords().get(1).setBody("Test message.");
+
+        List<Integer> returnValues = parallelBatchProcessor(event, false, Order.class, (order, message) -> order.id,
+                2, true, UncheckedIOException.class);
+
+        assertThat(returnValues)
+                .containsExactly(1);
+
+        verify(sqsClient, times(0)).sendMessageBatch(any(SendMessageBatchRequest.class));
+        verify(sqsClient).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    public static class Order {
+        public int id;
+        public String name;
+    }
+
     public class FailureSampleInnerSqsHandler implements SqsMessageHandler<String> {
         @Override
         public String process(SQSEvent.SQSMessage message) {
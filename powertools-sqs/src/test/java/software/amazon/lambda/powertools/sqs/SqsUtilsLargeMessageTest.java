@@ -2,9 +2,14 @@ package software.amazon.lambda.powertools.sqs;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
@@ -17,14 +22,22 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.utils.IoUtils;
 import software.amazon.awssdk.utils.StringInputStream;
 import software.amazon.lambda.powertools.sqs.internal.SqsLargeMessageAspect;
 
@@ -33,6 +46,9 @@ import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -83,6 +99,154 @@ class SqsUtilsLargeMessageTest {
                 });
     }
 
+    @Test
+    public void shouldDownloadPayloadsOfSeveralMessages() {
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            return new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream(("Message " + request.key()).getBytes())));
+        });
+
+        SQSEvent sqsEvent = messagesWithBodies(
+                "[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"" + BUCKET_NAME + "\",\"s3Key\":\"key1\"}]",
+                "This is small message",
+                "[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"" + BUCKET_NAME + "\",\"s3Key\":\"key2\"}]");
+
+        List<String> bodies = SqsUtils.enrichedMessageFromS3(sqsEvent, false, sqsMessages -> sqsMessages.stream()
+                .map(SQSMessage::getBody)
+                .collect(Collectors.toList()));
+
+        assertThat(bodies)
+                .containsExactly("Message key1", "This is small message", "Message key2");
+
+        verify(s3Client, times(2)).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void shouldOnlyCopyLargeMessages() {
+        ResponseInputStream<GetObjectResponse> s3Response = new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream("A big message".getBytes())));
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(s3Response);
+
+        String pointer = "[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"" + BUCKET_NAME + "\",\"s3Key\":\"" + BUCKET_KEY + "\"}]";
+        SQSEvent sqsEvent = messagesWithBodies(pointer, "This is small message");
+        sqsEvent.getRecords().get(0).setMessageId("large");
+
+        List<SQSMessage> sqsMessages = SqsUtils.enrichedMessageFromS3(sqsEvent, false, messages -> messages);
+
+        assertThat(sqsMessages.get(0))
+                .isNotSameAs(sqsEvent.getRecords().get(0))
+                .satisfies(message -> {
+                    assertThat(message.getBody()).isEqualTo("A big message");
+                    assertThat(message.getMessageId()).isEqualTo("large");
+                });
+        assertThat(sqsMessages.get(1))
+                .isSameAs(sqsEvent.getRecords().get(1));
+        assertThat(sqsEvent.getRecords().get(0).getBody())
+                .isEqualTo(pointer);
+    }
+
+    @Test
+    public void shouldDownloadPayloadsWithAsyncClient() {
+        S3AsyncClient s3AsyncClient = mock(S3AsyncClient.class);
+        doAnswer(invocation -> {
+            GetObjectRequest request = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), ("Message " + request.key()).getBytes()));
+        }).when(s3AsyncClient).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+        when(s3AsyncClient.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(DeleteObjectsResponse.builder().build()));
+
+        SqsUtils.overrideS3AsyncClient(s3AsyncClient);
+
+        SQSEvent sqsEvent = messagesWithBodies(
+                "[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"" + BUCKET_NAME + "\",\"s3Key\":\"key1\"}]",
+                "[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"" + BUCKET_NAME + "\",\"s3Key\":\"key2\"}]");
+
+        try {
+            List<String> bodies = SqsUtils.enrichedMessageFromS3(sqsEvent, sqsMessages -> sqsMessages.stream()
+                    .map(SQSMessage::getBody)
+                    .collect(Collectors.toList()));
+
+            assertThat(bodies)
+                    .containsExactly("Message key1", "Message key2");
+        } finally {
+            SqsUtils.overrideS3AsyncClient(null);
+        }
+
+        verify(s3Client, never()).getObject(any(GetObjectRequest.class));
+        verify(s3AsyncClient).deleteObjects(any(DeleteObjectsRequest.class));
+        verifyNoInteractions(s3Client);
+    }
+
+    @Test
+    public void shouldDeletePayloadsWithOneRequestPerBucket() {
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream("A big message".getBytes()))));
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder().build());
+
+        SQSEvent sqsEvent = messagesWithBodies(
+                "[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"bucket1\",\"s3Key\":\"key1\"}]",
+                "[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"bucket2\",\"s3Key\":\"key2\"}]",
+                "[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"bucket1\",\"s3Key\":\"key3\"}]");
+
+        SqsUtils.enrichedMessageFromS3(sqsEvent, sqsMessages -> sqsMessages);
+
+        ArgumentCaptor<DeleteObjectsRequest> delete = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+
+        verify(s3Client, times(2)).deleteObjects(delete.capture());
+        verify(s3Client, never()).deleteObject(any(DeleteObjectRequest.class));
+
+        assertThat(delete.getAllValues())
+                .extracting(DeleteObjectsRequest::bucket)
+                .containsExactlyInAnyOrder("bucket1", "bucket2");
+
+        assertThat(delete.getAllValues())
+                .filteredOn(request -> "bucket1".equals(request.bucket()))
+                .flatExtracting(request -> request.delete().objects())
+                .extracting(ObjectIdentifier::key)
+                .containsExactly("key1", "key3");
+    }
+
+    @Test
+    public void shouldFailWhenPayloadsCouldNotBeDeleted() {
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream("A big message".getBytes()))));
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder()
+                .errors(S3Error.builder().key("key2").code("AccessDenied").build())
+                .build());
+
+        SQSEvent sqsEvent = messagesWithBodies(
+                "[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"" + BUCKET_NAME + "\",\"s3Key\":\"key1\"}]",
+                "[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"" + BUCKET_NAME + "\",\"s3Key\":\"key2\"}]");
+
+        assertThatExceptionOfType(SqsLargeMessageAspect.FailedProcessingLargePayloadException.class)
+                .isThrownBy(() -> SqsUtils.enrichedMessageFromS3(sqsEvent, sqsMessages -> sqsMessages))
+                .withMessageContaining("AccessDenied");
+    }
+
+    @Test
+    public void shouldOnlyDownloadLazyPayloadWhenRead() throws IOException {
+        ResponseInputStream<GetObjectResponse> s3Response = new ResponseInputStream<>(GetObjectResponse.builder().build(), AbortableInputStream.create(new ByteArrayInputStream("A big message".getBytes())));
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(s3Response);
+
+        SQSEvent sqsEvent = messageWithBody("[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"" + BUCKET_NAME + "\",\"s3Key\":\"" + BUCKET_KEY + "\"}]");
+
+        try (InputStream body = SqsUtils.largeMessageBody(sqsEvent.getRecords().get(0))) {
+            verifyNoInteractions(s3Client);
+
+            assertThat(IoUtils.toUtf8String(body))
+                    .isEqualTo("A big message");
+        }
+
+        verify(s3Client).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    public void shouldStreamSmallMessageBody() throws IOException {
+        try (InputStream body = SqsUtils.largeMessageBody(messageWithBody("This is small message").getRecords().get(0))) {
+            assertThat(IoUtils.toUtf8String(body))
+                    .isEqualTo("This is small message");
+        }
+
+        verifyNoInteractions(s3Client);
+    }
+
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     public void testLargeMessageDeleteFromS3Toggle(boolean deleteS3Payload) {
@@ -184,6 +348,18 @@ class SqsUtilsLargeMessageTest {
                         .build()));
     }
 
+    private SQSEvent messagesWithBodies(String... messageBodies) {
+        SQSEvent sqsEvent = new SQSEvent();
+        sqsEvent.setRecords(Arrays.stream(messageBodies)
+                .map(body -> {
+                    SQSMessage sqsMessage = new SQSMessage();
+                    sqsMessage.setBody(body);
+                    return sqsMessage;
+                })
+                .collect(Collectors.toList()));
+        return sqsEvent;
+    }
+
     private SQSEvent messageWithBody(String messageBody) {
         SQSMessage sqsMessage = new SQSMessage();
         sqsMessage.setBody(messageBody);
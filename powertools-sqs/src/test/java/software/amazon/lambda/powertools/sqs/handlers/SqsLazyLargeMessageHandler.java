@@ -0,0 +1,25 @@
+package software.amazon.lambda.powertools.sqs.handlers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import software.amazon.awssdk.utils.IoUtils;
+import software.amazon.lambda.powertools.sqs.SqsLargeMessage;
+import software.amazon.lambda.powertools.sqs.SqsUtils;
+
+public class SqsLazyLargeMessageHandler implements RequestHandler<SQSEvent, String> {
+
+    @Override
+    @SqsLargeMessage(lazyPayloads = true)
+    public String handleRequest(SQSEvent sqsEvent, Context context) {
+        try (InputStream body = SqsUtils.largeMessageBody(sqsEvent.getRecords().get(0))) {
+            return IoUtils.toUtf8String(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package software.amazon.lambda.powertools.sqs.internal;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DlqUrlCacheTest {
+
+    private static final String QUEUE_ARN = "arn:aws:sqs:eu-central-1:123456789012:queue";
+    private static final String DLQ_URL = "https://sqs.eu-central-1.amazonaws.com/123456789012/dlq";
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger lookups = new AtomicInteger();
+    private DlqUrlCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new DlqUrlCache(Duration.ofNanos(100), 2, clock::get);
+    }
+
+    @Test
+    void shouldCacheDlqUrlUntilExpired() {
+        assertThat(cache.get(QUEUE_ARN, this::lookup).join()).contains(DLQ_URL);
+        clock.set(99);
+        assertThat(cache.get(QUEUE_ARN, this::lookup).join()).contains(DLQ_URL);
+        assertThat(lookups).hasValue(1);
+
+        clock.set(100);
+        assertThat(cache.get(QUEUE_ARN, this::lookup).join()).contains(DLQ_URL);
+        assertThat(lookups).hasValue(2);
+    }
+
+    @Test
+    void shouldCacheQueueWithoutDlq() {
+        assertThat(cache.get(QUEUE_ARN, arn -> noDlq()).join()).isEmpty();
+        assertThat(cache.get(QUEUE_ARN, this::lookup).join()).isEmpty();
+
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void shouldShareInFlightLookup() {
+        CompletableFuture<Optional<String>> pending = new CompletableFuture<>();
+
+        CompletableFuture<Optional<String>> first = cache.get(QUEUE_ARN, arn -> pending);
+        CompletableFuture<Optional<String>> second = cache.get(QUEUE_ARN, this::lookup);
+        pending.complete(Optional.of(DLQ_URL));
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.join()).contains(DLQ_URL);
+        assertThat(lookups).hasValue(0);
+    }
+
+    @Test
+    void shouldNotCacheFailedLookup() {
+        CompletableFuture<Optional<String>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("Failed"));
+
+        assertThatThrownBy(() -> cache.get(QUEUE_ARN, arn -> failed).join())
+                .hasCauseInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.get(QUEUE_ARN, this::lookup).join()).contains(DLQ_URL);
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void shouldRegisterCallbackOnceForCachedLookup() {
+        CompletableFuture<Optional<String>> pending = new CompletableFuture<>();
+
+        for (int i = 0; i < 5; i++) {
+            cache.get(QUEUE_ARN, arn -> pending);
+        }
+
+        assertThat(pending.getNumberOfDependents()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotCacheLookupFailingSynchronously() {
+        assertThatThrownBy(() -> cache.get(QUEUE_ARN, arn -> {
+            throw new IllegalStateException("Failed");
+        }).join()).hasCauseInstanceOf(IllegalStateException.class);
+
+        assertThat(cache.get(QUEUE_ARN, this::lookup).join()).contains(DLQ_URL);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldEvictOldestEntriesAboveMaximum() {
+        cache.get("arn:aws:sqs:eu-central-1:123456789012:queue1", this::lookup);
+        clock.set(10);
+        cache.get("arn:aws:sqs:eu-central-1:123456789012:queue2", this::lookup);
+        clock.set(20);
+        cache.get("arn:aws:sqs:eu-central-1:123456789012:queue3", this::lookup);
+
+        assertThat(cache.size()).isEqualTo(2);
+
+        cache.get("arn:aws:sqs:eu-central-1:123456789012:queue1", this::lookup);
+        assertThat(lookups).hasValue(4);
+    }
+
+    private CompletableFuture<Optional<String>> lookup(String queueArn) {
+        lookups.incrementAndGet();
+        return CompletableFuture.completedFuture(Optional.of(DLQ_URL));
+    }
+
+    private CompletableFuture<Optional<String>> noDlq() {
+        lookups.incrementAndGet();
+        return CompletableFuture.completedFuture(Optional.empty());
+    }
+}
@@ -22,12 +22,16 @@ import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.http.AbortableInputStream;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.utils.StringInputStream;
 import software.amazon.lambda.powertools.sqs.SqsUtils;
 import software.amazon.lambda.powertools.sqs.handlers.LambdaHandlerApiGateway;
+import software.amazon.lambda.powertools.sqs.handlers.SqsDeferredDeletionMessageHandler;
+import software.amazon.lambda.powertools.sqs.handlers.SqsLazyLargeMessageHandler;
 import software.amazon.lambda.powertools.sqs.handlers.SqsMessageHandler;
 import software.amazon.lambda.powertools.sqs.handlers.SqsNoDeleteMessageHandler;
 
@@ -131,6 +135,46 @@ public class SqsLargeMessageAspectTest {
         verify(s3Client, never()).deleteObject(any(DeleteObjectRequest.class));
     }
 
+    @Test
+    public void testLargeMessageWithDeferredDeletion() {
+        requestHandler = new SqsDeferredDeletionMessageHandler();
+
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(s3ObjectWithLargeMessage());
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder().build());
+        SQSEvent sqsEvent = messageWithBody("[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"" + BUCKET_NAME + "\",\"s3Key\":\"" + BUCKET_KEY + "\"}]");
+
+        String response = requestHandler.handleRequest(sqsEvent, context);
+
+        assertThat(response).isEqualTo("A big message");
+
+        SqsLargeMessageAspect.awaitPendingDeletions();
+
+        ArgumentCaptor<DeleteObjectsRequest> delete = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+
+        verify(s3Client).deleteObjects(delete.capture());
+
+        assertThat(delete.getValue().bucket()).isEqualTo(BUCKET_NAME);
+        assertThat(delete.getValue().delete().objects())
+                .singleElement()
+                .satisfies(object -> assertThat(object.key()).isEqualTo(BUCKET_KEY));
+    }
+
+    @Test
+    public void testLazyLargeMessage() {
+        requestHandler = new SqsLazyLargeMessageHandler();
+
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(s3ObjectWithLargeMessage());
+        SQSEvent sqsEvent = messageWithBody("[\"software.amazon.payloadoffloading.PayloadS3Pointer\",{\"s3BucketName\":\"" + BUCKET_NAME + "\",\"s3Key\":\"" + BUCKET_KEY + "\"}]");
+
+        String response = requestHandler.handleRequest(sqsEvent, context);
+
+        assertThat(response).isEqualTo("A big message");
+        assertThat(sqsEvent.getRecords().get(0).getBody())
+                .startsWith("[\"software.amazon.payloadoffloading.PayloadS3Pointer\"");
+
+        verify(s3Client).getObject(any(GetObjectRequest.class));
+        verify(s3Client).deleteObject(any(DeleteObjectRequest.class));
+    }
 
     @Test
     public void shouldFailEntireBatchIfFailedProcessingDownloadMessageFromS3() {
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.assertj.core.api.Assertions;
@@ -21,6 +22,8 @@ import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
 import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
 import software.amazon.lambda.powertools.sqs.SQSBatchProcessingException;
 import software.amazon.lambda.powertools.sqs.handlers.LambdaHandlerApiGateway;
+import software.amazon.lambda.powertools.sqs.handlers.ParallelBatchPartialFailureHandler;
+import software.amazon.lambda.powertools.sqs.handlers.PartialBatchResponseHandler;
 import software.amazon.lambda.powertools.sqs.handlers.PartialBatchFailureSuppressedHandler;
 import software.amazon.lambda.powertools.sqs.handlers.PartialBatchPartialFailureHandler;
 import software.amazon.lambda.powertools.sqs.handlers.PartialBatchSuccessHandler;
@@ -93,6 +96,37 @@ public class SqsMessageBatchProcessorAspectTest {
         verify(sqsClient).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
     }
 
+    @Test
+    void shouldParallelBatchProcessMessageWithSuccessDeletedOnFailureInBatchFromSQS() {
+        requestHandler = new ParallelBatchPartialFailureHandler();
+
+        assertThatExceptionOfType(SQSBatchProcessingException.class)
+                .isThrownBy(() -> requestHandler.handleRequest(event, context))
+                .satisfies(e -> {
+                    assertThat(e.getFailures())
+                            .extracting("messageId")
+                            .containsExactly("2e1424d4-f796-459a-8184-9c92662be6da");
+
+                    assertThat(e.successMessageReturnValues())
+                            .containsExactly("Success");
+                });
+
+        verify(interactionClient).listQueues();
+        verify(sqsClient).deleteMessageBatch(any(DeleteMessageBatchRequest.class));
+    }
+
+    @Test
+    void shouldReturnPartialBatchResponseWithoutDeletingFromSQS() {
+        SQSBatchResponse response = new PartialBatchResponseHandler().handleRequest(event, context);
+
+        assertThat(response.getBatchItemFailures())
+                .extracting(SQSBatchResponse.BatchItemFailure::getItemIdentifier)
+                .containsExactly("2e1424d4-f796-459a-8184-9c92662be6da");
+
+        verify(interactionClient).listQueues();
+        verifyNoInteractions(sqsClient);
+    }
+
     @Test
     void shouldBatchProcessMessageWithSuccessDeletedOnFailureWithSuppressionInBatchFromSQS() {
         requestHandler = new PartialBatchFailureSuppressedHandler();